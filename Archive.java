@@ -0,0 +1,432 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+
+import static gitlet.Utils.*;
+
+/** Writes the files of a commit as a tar or zip archive, read straight
+ *  from the blobs folder, without the working directory or staging area.
+ *  headers and small files go through one buffer of BUFFER bytes, and
+ *  files of at least that size are sent from their blob file to the
+ *  output with FileChannel.transferTo, which the kernel copies without
+ *  them passing through the JVM when the output is a file or pipe. zip
+ *  entries are stored uncompressed, like the blobs, so a large file is
+ *  read once for its CRC through a mapping and once by transferTo. every
+ *  entry has mode 644 and the commit date, and the commit id is written
+ *  where git archive puts it, so archives of a commit are the same bytes.
+ *  @author Ishika Prashar
+ */
+class Archive {
+    /** bytes in the output buffer, and size from which files are sent zero-copy */
+    static final int BUFFER = 1 << 16;
+    /** tar block size */
+    private static final int BLOCK = 512;
+    /** tar output is padded to a multiple of this, as tar writes it */
+    private static final int RECORD = 20 * BLOCK;
+    /** largest size a tar header holds in its octal field */
+    private static final long TAR_MAX_SIZE = 077777777777L;
+    /** largest value of a zip field before zip64 is needed */
+    private static final long ZIP_MAX = 0xFFFFFFFFL;
+    /** largest entry count of a zip field before zip64 is needed */
+    private static final int ZIP_MAX_ENTRIES = 0xFFFF;
+
+    /** blobs folder read */
+    private final File blobs;
+    /** channel written to */
+    private final WritableByteChannel out;
+    /** headers and small files waiting to be written */
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+    /** bytes written so far, including those still in buf */
+    private long written;
+
+    /**
+     * @param blobs blobs folder of the repository
+     * @param stream stream to write to, flushed but left open. a FileOutputStream
+     *               is written through its channel, so large files are zero-copy
+     */
+    Archive(File blobs, OutputStream stream) {
+        this.blobs = blobs;
+        this.out = stream instanceof FileOutputStream
+                ? ((FileOutputStream) stream).getChannel() : Channels.newChannel(stream);
+    }
+
+    /**
+     * write files as a POSIX tar archive, led by a pax global header holding the
+     * commit id. names too long for the header and sizes too big for it are
+     * given in a pax header of their own.
+     * @param id commit id
+     * @param files files of the commit
+     * @param millis commit date
+     */
+    void tar(ObjectId id, Manifest files, long millis) {
+        long mtime = millis / 1000;
+        tarEntry("pax_global_header", 'g', pax("comment", id.toHex()).length, mtime);
+        put(padded(pax("comment", id.toHex())));
+        for (Map.Entry<String, ObjectId> entry: files.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            try (FileChannel blob = open(entry.getValue())) {
+                long size = blob.size();
+                int split = prefixSplit(name);
+                if (split < 0 || size > TAR_MAX_SIZE) {
+                    ByteArrayOutputStream records = new ByteArrayOutputStream();
+                    if (split < 0) {
+                        records.writeBytes(pax("path", entry.getKey()));
+                    }
+                    if (size > TAR_MAX_SIZE) {
+                        records.writeBytes(pax("size", Long.toString(size)));
+                    }
+                    byte[] ext = records.toByteArray();
+                    tarEntry("PaxHeader", 'x', ext.length, mtime);
+                    put(padded(ext));
+                }
+                ByteBuffer header = tarHeader(name, Math.max(split, 0), '0',
+                        Math.min(size, TAR_MAX_SIZE), mtime);
+                put(header.array());
+                copy(blob, size, null);
+                put(new byte[(int) ((BLOCK - size % BLOCK) % BLOCK)]);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        put(new byte[2 * BLOCK]);
+        put(new byte[(int) ((RECORD - written % RECORD) % RECORD)]);
+        flush();
+    }
+
+    /**
+     * write files as a zip archive of stored entries, with the commit id as
+     * its comment. zip64 fields are used only where a size, offset or the
+     * number of entries does not fit the plain ones.
+     * @param id commit id
+     * @param files files of the commit
+     * @param millis commit date
+     * @param zone time zone the commit was made in, for the DOS date fields
+     */
+    void zip(ObjectId id, Manifest files, long millis, TimeZone zone) {
+        Calendar cal = Calendar.getInstance(zone);
+        cal.setTimeInMillis(millis);
+        if (cal.get(Calendar.YEAR) < 1980) {
+            cal.set(1980, Calendar.JANUARY, 1, 0, 0, 0);
+        }
+        int dosTime = cal.get(Calendar.HOUR_OF_DAY) << 11 | cal.get(Calendar.MINUTE) << 5
+                | cal.get(Calendar.SECOND) / 2;
+        int dosDate = (cal.get(Calendar.YEAR) - 1980) << 9
+                | (cal.get(Calendar.MONTH) + 1) << 5 | cal.get(Calendar.DAY_OF_MONTH);
+        int mtime = (int) (millis / 1000);
+        List<ZipEntry> entries = new ArrayList<>();
+        for (Map.Entry<String, ObjectId> entry: files.entrySet()) {
+            ZipEntry z = new ZipEntry(entry.getKey().getBytes(StandardCharsets.UTF_8), written);
+            try (FileChannel blob = open(entry.getValue())) {
+                z.size = blob.size();
+                byte[] small = z.size < BUFFER ? new byte[(int) z.size] : null;
+                z.crc = crc(blob, small);
+                boolean zip64 = z.size >= ZIP_MAX;
+                ByteBuffer header = little(30 + z.name.length + 9 + (zip64 ? 20 : 0));
+                header.putInt(0x04034b50).putShort((short) (zip64 ? 45 : 20))
+                        .putShort((short) 0x0800).putShort((short) 0)
+                        .putShort((short) dosTime).putShort((short) dosDate)
+                        .putInt((int) z.crc);
+                header.putInt(zip64 ? -1 : (int) z.size).putInt(zip64 ? -1 : (int) z.size)
+                        .putShort((short) z.name.length)
+                        .putShort((short) (9 + (zip64 ? 20 : 0))).put(z.name);
+                header.putShort((short) 0x5455).putShort((short) 5).put((byte) 1)
+                        .putInt(mtime);
+                if (zip64) {
+                    header.putShort((short) 1).putShort((short) 16).putLong(z.size)
+                            .putLong(z.size);
+                }
+                put(header.array());
+                copy(blob, z.size, small);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            entries.add(z);
+        }
+        long start = written;
+        for (ZipEntry z: entries) {
+            int extra = (z.size >= ZIP_MAX ? 16 : 0) + (z.offset >= ZIP_MAX ? 8 : 0);
+            ByteBuffer header = little(46 + z.name.length + 9 + (extra > 0 ? 4 + extra : 0));
+            header.putInt(0x02014b50).putShort((short) (3 << 8 | 45))
+                    .putShort((short) (extra > 0 ? 45 : 20)).putShort((short) 0x0800)
+                    .putShort((short) 0).putShort((short) dosTime).putShort((short) dosDate)
+                    .putInt((int) z.crc);
+            header.putInt(z.size >= ZIP_MAX ? -1 : (int) z.size)
+                    .putInt(z.size >= ZIP_MAX ? -1 : (int) z.size)
+                    .putShort((short) z.name.length)
+                    .putShort((short) (9 + (extra > 0 ? 4 + extra : 0)))
+                    .putShort((short) 0).putShort((short) 0).putShort((short) 0)
+                    .putInt(0100644 << 16).putInt(z.offset >= ZIP_MAX ? -1 : (int) z.offset)
+                    .put(z.name);
+            header.putShort((short) 0x5455).putShort((short) 5).put((byte) 1).putInt(mtime);
+            if (extra > 0) {
+                header.putShort((short) 1).putShort((short) extra);
+                if (z.size >= ZIP_MAX) {
+                    header.putLong(z.size).putLong(z.size);
+                }
+                if (z.offset >= ZIP_MAX) {
+                    header.putLong(z.offset);
+                }
+            }
+            put(header.array());
+        }
+        long size = written - start;
+        if (entries.size() >= ZIP_MAX_ENTRIES || start >= ZIP_MAX || size >= ZIP_MAX) {
+            long end64 = written;
+            ByteBuffer header = little(56 + 20);
+            header.putInt(0x06064b50).putLong(44).putShort((short) (3 << 8 | 45))
+                    .putShort((short) 45).putInt(0).putInt(0).putLong(entries.size())
+                    .putLong(entries.size()).putLong(size).putLong(start);
+            header.putInt(0x07064b50).putInt(0).putLong(end64).putInt(1);
+            put(header.array());
+        }
+        byte[] comment = id.toHex().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer end = little(22 + comment.length);
+        short count = (short) Math.min(entries.size(), ZIP_MAX_ENTRIES);
+        end.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort(count)
+                .putShort(count).putInt((int) Math.min(size, ZIP_MAX))
+                .putInt((int) Math.min(start, ZIP_MAX)).putShort((short) comment.length)
+                .put(comment);
+        put(end.array());
+        flush();
+    }
+
+    /** A zip entry written, kept for the central directory. */
+    private static final class ZipEntry {
+        /** file name as UTF-8 */
+        private final byte[] name;
+        /** offset of its local header */
+        private final long offset;
+        /** size of the file */
+        private long size;
+        /** CRC-32 of the file */
+        private long crc;
+
+        /**
+         * @param name file name as UTF-8
+         * @param offset offset of its local header
+         */
+        private ZipEntry(byte[] name, long offset) {
+            this.name = name;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * @param id blob id
+     * @return its file, open for reading
+     */
+    private FileChannel open(ObjectId id) throws IOException {
+        return FileChannel.open(objectFile(blobs, id).toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * find the CRC-32 of a blob, reading a small one into small and mapping a
+     * large one so it is not copied into the heap
+     * @param blob blob file
+     * @param small array the size of the blob, or null for a large blob
+     * @return its CRC-32
+     */
+    private static long crc(FileChannel blob, byte[] small) throws IOException {
+        CRC32 crc = new CRC32();
+        if (small != null) {
+            ByteBuffer dst = ByteBuffer.wrap(small);
+            while (dst.hasRemaining() && blob.read(dst, dst.position()) >= 0) {
+                continue;
+            }
+            crc.update(small);
+            return crc.getValue();
+        }
+        long size = blob.size();
+        for (long pos = 0; pos < size; pos += Integer.MAX_VALUE) {
+            crc.update(blob.map(FileChannel.MapMode.READ_ONLY, pos,
+                    Math.min(Integer.MAX_VALUE, size - pos)));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * write a blob's contents: small ones through the buffer, large ones from
+     * the file with transferTo
+     * @param blob blob file
+     * @param size its size
+     * @param contents its contents if already read, or null
+     */
+    private void copy(FileChannel blob, long size, byte[] contents) throws IOException {
+        if (size < BUFFER) {
+            if (contents == null) {
+                contents = new byte[(int) size];
+                ByteBuffer dst = ByteBuffer.wrap(contents);
+                while (dst.hasRemaining() && blob.read(dst, dst.position()) >= 0) {
+                    continue;
+                }
+            }
+            put(contents);
+            return;
+        }
+        flush();
+        for (long pos = 0; pos < size; ) {
+            long sent = blob.transferTo(pos, size - pos, out);
+            if (sent <= 0 && pos >= blob.size()) {
+                throw new IllegalArgumentException("blob shrank while archiving");
+            }
+            pos += sent;
+        }
+        written += size;
+    }
+
+    /**
+     * @param name file name as UTF-8
+     * @return where to split name into the ustar prefix and name fields, 0 if it
+     *         fits the name field, or -1 if it needs a pax path
+     */
+    private static int prefixSplit(byte[] name) {
+        if (name.length <= 100) {
+            return 0;
+        }
+        for (int i = Math.min(name.length - 1, 155); i > 0; i -= 1) {
+            if (name[i] == '/') {
+                return name.length - i - 1 <= 100 && name.length - i - 1 > 0 ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * write a header for a pax entry of size bytes
+     * @param name entry name
+     * @param type 'g' for global or 'x' for the next entry
+     * @param size size of the records
+     * @param mtime modification time in seconds
+     */
+    private void tarEntry(String name, char type, long size, long mtime) {
+        put(tarHeader(name.getBytes(StandardCharsets.UTF_8), 0, type, size, mtime).array());
+    }
+
+    /**
+     * @param name file name as UTF-8
+     * @param split index of the slash ending the prefix, or 0 for no prefix.
+     *              a name longer than the fields is cut, and a pax path gives it
+     * @param type entry type
+     * @param size file size
+     * @param mtime modification time in seconds
+     * @return a ustar header
+     */
+    private static ByteBuffer tarHeader(byte[] name, int split, char type, long size,
+                                        long mtime) {
+        ByteBuffer header = ByteBuffer.allocate(BLOCK);
+        if (split > 0) {
+            header.put(name, split + 1, name.length - split - 1);
+            header.position(345);
+            header.put(name, 0, split);
+        } else {
+            header.put(name, 0, Math.min(name.length, 100));
+        }
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, mtime);
+        header.put(156, (byte) type);
+        header.position(257);
+        header.put("ustar\00000".getBytes(StandardCharsets.US_ASCII));
+        header.put("root".getBytes(StandardCharsets.US_ASCII));
+        header.position(297);
+        header.put("root".getBytes(StandardCharsets.US_ASCII));
+        header.position(148);
+        header.put("        ".getBytes(StandardCharsets.US_ASCII));
+        int sum = 0;
+        for (byte b: header.array()) {
+            sum += b & 0xff;
+        }
+        octal(header, 148, 7, sum);
+        return header;
+    }
+
+    /**
+     * write value as zero padded octal ending in a NUL
+     * @param header header written to
+     * @param at offset of the field
+     * @param length length of the field
+     * @param value value written
+     */
+    private static void octal(ByteBuffer header, int at, int length, long value) {
+        String digits = String.format("%0" + (length - 1) + "o", value);
+        header.position(at);
+        header.put(digits.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+    }
+
+    /**
+     * @param key pax keyword
+     * @param value its value
+     * @return the pax record "LENGTH KEY=VALUE\n", LENGTH counting itself
+     */
+    private static byte[] pax(String key, String value) {
+        int rest = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = rest + Integer.toString(rest).length();
+        if (Integer.toString(length).length() > Integer.toString(rest).length()) {
+            length += 1;
+        }
+        return (length + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param bytes contents of a tar entry
+     * @return them padded with NULs to a whole number of blocks
+     */
+    private static byte[] padded(byte[] bytes) {
+        byte[] blocks = new byte[(bytes.length + BLOCK - 1) / BLOCK * BLOCK];
+        System.arraycopy(bytes, 0, blocks, 0, bytes.length);
+        return blocks;
+    }
+
+    /**
+     * @param size size in bytes
+     * @return a little endian buffer for a zip header
+     */
+    private static ByteBuffer little(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** add bytes to the buffer, writing it out whenever it fills */
+    private void put(byte[] bytes) {
+        written += bytes.length;
+        for (int at = 0; at < bytes.length; ) {
+            if (!buf.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(buf.remaining(), bytes.length - at);
+            buf.put(bytes, at, n);
+            at += n;
+        }
+    }
+
+    /** write out the buffer */
+    private void flush() {
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            buf.clear();
+        }
+    }
+}
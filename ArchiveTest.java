@@ -0,0 +1,184 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Archive.
+ *  @author Ishika Prashar
+ */
+public class ArchiveTest {
+    /** repository archived */
+    private final Repository repo = newRepo();
+    /** contents of each file committed, by name */
+    private final Map<String, byte[]> files = new TreeMap<>();
+
+    /** commit a small file, a file too big for the buffer and a long name */
+    public ArchiveTest() {
+        byte[] big = new byte[Archive.BUFFER * 3 + 17];
+        for (int i = 0; i < big.length; i += 1) {
+            big[i] = (byte) (i * 31);
+        }
+        files.put("small.txt", "small\n".getBytes(StandardCharsets.UTF_8));
+        files.put("big.bin", big);
+        files.put("n".repeat(150) + ".txt", "long name\n".getBytes(StandardCharsets.UTF_8));
+        File dir = repo.getGitletDir().getParentFile();
+        for (Map.Entry<String, byte[]> file: files.entrySet()) {
+            Utils.writeContents(new File(dir, file.getKey()), (Object) file.getValue());
+            repo.add(file.getKey());
+        }
+        repo.commit("files");
+    }
+
+    /**
+     * @param format tar or zip
+     * @return the archive of master written to a byte stream
+     */
+    private byte[] archive(String format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        repo.archive("master", format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param format tar or zip
+     * @return the archive of master written to a file, so large files are zero-copy
+     */
+    private File archiveFile(String format) {
+        File file = new File(tempDir(), "archive." + format);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            repo.archive("master", format, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return file;
+    }
+
+    /**
+     * @param header a tar header
+     * @param at offset of a field
+     * @param length its length
+     * @return the field up to its first zero byte
+     */
+    private static String field(byte[] header, int at, int length) {
+        int end = at;
+        while (end < at + length && header[end] != 0) {
+            end += 1;
+        }
+        return new String(header, at, end - at, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param records pax extended header records, each "LENGTH KEY=VALUE\n"
+     * @return the value of each key
+     */
+    private static Map<String, String> pax(byte[] records) {
+        Map<String, String> values = new HashMap<>();
+        for (int at = 0; at < records.length;) {
+            int space = at;
+            while (records[space] != ' ') {
+                space += 1;
+            }
+            int length = Integer.parseInt(new String(records, at, space - at,
+                    StandardCharsets.UTF_8));
+            String record = new String(records, space + 1, at + length - space - 2,
+                    StandardCharsets.UTF_8);
+            int eq = record.indexOf('=');
+            values.put(record.substring(0, eq), record.substring(eq + 1));
+            at += length;
+        }
+        return values;
+    }
+
+    /**
+     * read a tar archive, checking each header's checksum
+     * @param tar the archive
+     * @param globals receives the pax global header's values
+     * @return contents of each file, by name
+     */
+    private static Map<String, byte[]> untar(byte[] tar, Map<String, String> globals) {
+        Map<String, byte[]> read = new TreeMap<>();
+        Map<String, String> next = new HashMap<>();
+        int at = 0;
+        while (tar[at] != 0) {
+            byte[] header = Arrays.copyOfRange(tar, at, at + 512);
+            long sum = 0;
+            for (int i = 0; i < 512; i += 1) {
+                sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+            }
+            assertEquals(Long.parseLong(field(header, 148, 8).trim(), 8), sum);
+            int size = Integer.parseInt(field(header, 124, 12), 8);
+            byte[] body = Arrays.copyOfRange(tar, at + 512, at + 512 + size);
+            at += 512 + (size + 511) / 512 * 512;
+            char type = (char) header[156];
+            if (type == 'g') {
+                globals.putAll(pax(body));
+            } else if (type == 'x') {
+                next = pax(body);
+            } else {
+                String prefix = field(header, 345, 155);
+                String name = next.getOrDefault("path", prefix.isEmpty()
+                        ? field(header, 0, 100) : prefix + "/" + field(header, 0, 100));
+                assertEquals("0000644", field(header, 100, 8));
+                read.put(name, body);
+                next = new HashMap<>();
+            }
+        }
+        return read;
+    }
+
+    /**
+     * @param expected contents of each file, by name
+     * @param actual contents read from an archive, by name
+     */
+    private static void assertSameFiles(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String name: expected.keySet()) {
+            assertTrue(Arrays.equals(expected.get(name), actual.get(name)), name);
+        }
+    }
+
+    public void testTarHoldsFilesAndCommitId() {
+        byte[] tar = archive("tar");
+        assertEquals(0, tar.length % (20 * 512));
+        Map<String, String> globals = new HashMap<>();
+        assertSameFiles(files, untar(tar, globals));
+        assertEquals(repo.branchHead("master").toHex(), globals.get("comment"));
+    }
+
+    public void testZipHoldsFilesAndCommitId() throws IOException {
+        try (ZipFile zip = new ZipFile(archiveFile("zip"))) {
+            assertEquals(repo.branchHead("master").toHex(), zip.getComment());
+            Map<String, byte[]> read = new TreeMap<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                read.put(entry.getName(), zip.getInputStream(entry).readAllBytes());
+            }
+            assertSameFiles(files, read);
+        }
+    }
+
+    public void testZeroCopyOutputIsTheSameBytes() {
+        for (String format: new String[]{"tar", "zip"}) {
+            byte[] streamed = archive(format);
+            assertTrue(Arrays.equals(streamed, Utils.readContents(archiveFile(format))), format);
+            assertTrue(Arrays.equals(streamed, archive(format)), format + " is repeatable");
+        }
+    }
+
+    public void testUnknownFormatIsAnError() {
+        assertThrows(GitletException.class, () -> archive("rar"));
+    }
+}
@@ -0,0 +1,258 @@
+package gitlet;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static gitlet.Utils.*;
+
+/** State of a bisect and the choice of the next commit to test. the state
+ *  file holds one line per fact: "start BRANCH ID" for where the bisect
+ *  began, and "bad ID", "good ID" and "skip ID" for each commit marked, the
+ *  last bad one counting. the candidates are the commits reachable from
+ *  the bad commit and from no good one. each candidate's weight is the
+ *  number of candidates it reaches, itself included, which is one more than
+ *  its parent's along a chain and is counted by a walk at merges. the
+ *  commit tested next is the unskipped one whose weight is closest to half
+ *  the candidates, so either answer rules out about half of them.
+ *  @author Ishika Prashar
+ */
+class Bisect {
+    /** branch checked out when the bisect began */
+    private final String branch;
+    /** commit checked out when the bisect began */
+    private final ObjectId start;
+    /** commit known bad, or null */
+    private ObjectId bad;
+    /** commits known good */
+    private final Set<ObjectId> good = new LinkedHashSet<>();
+    /** commits that cannot be tested */
+    private final Set<ObjectId> skip = new LinkedHashSet<>();
+
+    /**
+     * @param branch branch checked out when the bisect began
+     * @param start commit checked out then
+     */
+    Bisect(String branch, ObjectId start) {
+        this.branch = branch;
+        this.start = start;
+    }
+
+    /** Outcome of choosing the next commit. */
+    static final class Step {
+        /** commit to test next, null when the bisect is over */
+        private final ObjectId next;
+        /** candidates still left to test after next */
+        private final int left;
+        /** first bad commit found, or null */
+        private final ObjectId firstBad;
+        /** commits that may be the first bad one when only skipped ones are left */
+        private final List<ObjectId> onlySkipped;
+
+        /**
+         * @param next commit to test next, or null
+         * @param left candidates left after it
+         * @param firstBad first bad commit, or null
+         * @param onlySkipped possible first bad commits, or null
+         */
+        private Step(ObjectId next, int left, ObjectId firstBad, List<ObjectId> onlySkipped) {
+            this.next = next;
+            this.left = left;
+            this.firstBad = firstBad;
+            this.onlySkipped = onlySkipped;
+        }
+
+        /** @return commit to test next, null when the bisect is over */
+        ObjectId getNext() {
+            return next;
+        }
+
+        /** @return candidates still left to test after the next one */
+        int getLeft() {
+            return left;
+        }
+
+        /** @return about how many more tests the bisect needs after the next one */
+        int getSteps() {
+            return 31 - Integer.numberOfLeadingZeros(left + 1);
+        }
+
+        /** @return first bad commit found, or null */
+        ObjectId getFirstBad() {
+            return firstBad;
+        }
+
+        /** @return possible first bad commits when only skipped ones are left, or null */
+        List<ObjectId> getOnlySkipped() {
+            return onlySkipped;
+        }
+    }
+
+    /**
+     * @param file state file
+     * @return the bisect it records, or null if none is in progress
+     */
+    static Bisect read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        Bisect bisect = null;
+        for (String line: readContentsAsString(file).split("\n")) {
+            String[] fields = line.split(" ");
+            if (fields[0].equals("start") && fields.length == 3) {
+                bisect = new Bisect(fields[1], ObjectId.fromHex(fields[2]));
+            } else if (bisect != null && fields.length == 2) {
+                bisect.mark(fields[0], ObjectId.fromHex(fields[1]));
+            }
+        }
+        return bisect;
+    }
+
+    /** @param file state file to save to */
+    void write(File file) {
+        StringBuilder lines = new StringBuilder();
+        lines.append("start ").append(branch).append(' ').append(start.toHex()).append('\n');
+        if (bad != null) {
+            lines.append("bad ").append(bad.toHex()).append('\n');
+        }
+        for (ObjectId id: good) {
+            lines.append("good ").append(id.toHex()).append('\n');
+        }
+        for (ObjectId id: skip) {
+            lines.append("skip ").append(id.toHex()).append('\n');
+        }
+        replaceContents(file, lines.toString());
+    }
+
+    /**
+     * @param term bad, good or skip
+     * @param id commit marked
+     */
+    void mark(String term, ObjectId id) {
+        switch (term) {
+            case "bad":
+                bad = id;
+                break;
+            case "good":
+                good.add(id);
+                break;
+            case "skip":
+                skip.add(id);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown bisect term " + term);
+        }
+    }
+
+    /** @return branch checked out when the bisect began */
+    String getBranch() {
+        return branch;
+    }
+
+    /** @return commit checked out when the bisect began */
+    ObjectId getStart() {
+        return start;
+    }
+
+    /** @return true once a bad and a good commit are known */
+    boolean ready() {
+        return bad != null && !good.isEmpty();
+    }
+
+    /**
+     * choose the commit to test next, or find the first bad commit
+     * @param parents parents of a commit, null where absent
+     * @return the step
+     */
+    Step next(Function<ObjectId, List<ObjectId>> parents) {
+        Set<ObjectId> goodReach = new HashSet<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>(good);
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            if (goodReach.add(id)) {
+                for (ObjectId parent: parents.apply(id)) {
+                    if (parent != null) {
+                        fringe.add(parent);
+                    }
+                }
+            }
+        }
+        Map<ObjectId, List<ObjectId>> candidates = new HashMap<>();
+        fringe.add(bad);
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            if (goodReach.contains(id) || candidates.containsKey(id)) {
+                continue;
+            }
+            List<ObjectId> inside = new ArrayList<>();
+            for (ObjectId parent: parents.apply(id)) {
+                if (parent != null && !goodReach.contains(parent)) {
+                    inside.add(parent);
+                    fringe.add(parent);
+                }
+            }
+            candidates.put(id, inside);
+        }
+        if (candidates.isEmpty()) {
+            throw error("The bad commit is reachable from a good commit.");
+        }
+        int total = candidates.size();
+        if (total == 1) {
+            return new Step(null, 0, bad, null);
+        }
+        Map<ObjectId, Integer> weights = new HashMap<>();
+        ObjectId best = null;
+        int bestScore = -1;
+        for (ObjectId id: Repository.parentsFirst(List.of(bad), candidates)) {
+            List<ObjectId> inside = candidates.get(id);
+            int weight = inside.size() == 1 ? weights.get(inside.get(0)) + 1
+                    : inside.isEmpty() ? 1 : reached(id, candidates);
+            weights.put(id, weight);
+            int score = Math.min(weight, total - weight);
+            if (score > bestScore && !skip.contains(id) && !id.equals(bad)) {
+                best = id;
+                bestScore = score;
+                if (score == total / 2) {
+                    break;
+                }
+            }
+        }
+        if (best == null) {
+            List<ObjectId> possible = new ArrayList<>();
+            possible.add(bad);
+            for (ObjectId id: candidates.keySet()) {
+                if (!id.equals(bad)) {
+                    possible.add(id);
+                }
+            }
+            return new Step(null, 0, null, possible);
+        }
+        int weight = weights.get(best);
+        return new Step(best, Math.max(weight - 1, total - weight - 1), null, null);
+    }
+
+    /**
+     * @param from a candidate
+     * @param candidates parents among the candidates of each candidate
+     * @return number of candidates reachable from from, itself included
+     */
+    private static int reached(ObjectId from, Map<ObjectId, List<ObjectId>> candidates) {
+        Set<ObjectId> seen = new HashSet<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>();
+        fringe.add(from);
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            if (seen.add(id)) {
+                fringe.addAll(candidates.get(id));
+            }
+        }
+        return seen.size();
+    }
+}
@@ -0,0 +1,135 @@
+package gitlet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Bisect.
+ *  @author Ishika Prashar
+ */
+public class BisectTest {
+    /** parents of each commit made by commit */
+    private final Map<ObjectId, List<ObjectId>> parents = new HashMap<>();
+    /** commits made by commit, in order */
+    private final List<ObjectId> made = new ArrayList<>();
+
+    /**
+     * @param ps parents of the new commit
+     * @return a new commit
+     */
+    private ObjectId commit(ObjectId... ps) {
+        ObjectId id = Utils.hash(Utils.DEFAULT_HASH, "commit " + made.size());
+        parents.put(id, List.of(ps));
+        made.add(id);
+        return id;
+    }
+
+    /**
+     * @param from a commit
+     * @param stop commits not walked past
+     * @return commits reachable from from and from none of stop
+     */
+    private Set<ObjectId> reach(ObjectId from, Set<ObjectId> stop) {
+        Set<ObjectId> seen = new HashSet<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>();
+        fringe.add(from);
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            if (!stop.contains(id) && seen.add(id)) {
+                fringe.addAll(parents.get(id));
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * @param bad bad commit
+     * @param good good commits
+     * @return a bisect with them marked
+     */
+    private static Bisect bisect(ObjectId bad, ObjectId... good) {
+        Bisect b = new Bisect("master", bad);
+        b.mark("bad", bad);
+        for (ObjectId id: good) {
+            b.mark("good", id);
+        }
+        return b;
+    }
+
+    public void testChainIsHalved() {
+        ObjectId good = commit();
+        ObjectId tip = good;
+        for (int i = 0; i < 8; i += 1) {
+            tip = commit(tip);
+        }
+        Bisect.Step step = bisect(tip, good).next(parents::get);
+        assertEquals(made.get(4), step.getNext());
+        assertEquals(3, step.getLeft());
+        assertEquals(2, step.getSteps());
+    }
+
+    public void testWeightsAtMergesCountEachCommitOnce() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round += 1) {
+            parents.clear();
+            made.clear();
+            ObjectId good = commit();
+            for (int i = 0; i < 40; i += 1) {
+                ObjectId first = made.get(made.size() - 1 - random.nextInt(Math.min(3,
+                        made.size())));
+                ObjectId second = made.get(random.nextInt(made.size()));
+                commit(random.nextInt(3) == 0 && !second.equals(first)
+                        ? new ObjectId[]{first, second} : new ObjectId[]{first});
+            }
+            ObjectId bad = made.get(made.size() - 1);
+            Set<ObjectId> goodReach = reach(good, Set.of());
+            Set<ObjectId> candidates = reach(bad, goodReach);
+            int best = 0;
+            for (ObjectId id: candidates) {
+                if (!id.equals(bad)) {
+                    int weight = reach(id, goodReach).size();
+                    best = Math.max(best, Math.min(weight, candidates.size() - weight));
+                }
+            }
+            Bisect.Step step = bisect(bad, good).next(parents::get);
+            int weight = reach(step.getNext(), goodReach).size();
+            assertEquals(best, Math.min(weight, candidates.size() - weight));
+        }
+    }
+
+    public void testSkippedCommitsAreNotChosen() {
+        ObjectId good = commit();
+        ObjectId a = commit(good);
+        ObjectId b = commit(a);
+        ObjectId bad = commit(b);
+        Bisect bisect = bisect(bad, good);
+        bisect.mark("skip", b);
+        assertEquals(a, bisect.next(parents::get).getNext());
+        bisect.mark("skip", a);
+        Bisect.Step step = bisect.next(parents::get);
+        assertEquals(null, step.getNext());
+        assertEquals(bad, step.getOnlySkipped().get(0));
+        assertEquals(Set.of(bad, a, b), new HashSet<>(step.getOnlySkipped()));
+    }
+
+    public void testFirstBadCommitIsFound() {
+        ObjectId good = commit();
+        ObjectId bad = commit(good);
+        Bisect.Step step = bisect(bad, good).next(parents::get);
+        assertEquals(null, step.getNext());
+        assertEquals(bad, step.getFirstBad());
+    }
+
+    public void testBadReachableFromGoodIsAnError() {
+        ObjectId bad = commit();
+        ObjectId good = commit(bad);
+        assertThrows(GitletException.class, () -> bisect(bad, good).next(parents::get));
+    }
+}
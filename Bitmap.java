@@ -0,0 +1,266 @@
+package gitlet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** Immutable compressed bitmap, used for sets of objects numbered by an
+ *  ObjectIndex. the bits are cut into 64 bit words and stored run length
+ *  encoded in the style of EWAH: a marker word holds a run of all zero or
+ *  all one words (bit 63 the run value, bits 32-62 its length in words) and
+ *  the number of literal words stored after it (bits 0-31). and, or and
+ *  andNot stream over both operands a word at a time without decompressing
+ *  either one.
+ *  @author Ishika Prashar
+ */
+final class Bitmap {
+    /** largest run or literal count a marker holds */
+    private static final long MAX_COUNT = 0x7fffffffL;
+
+    /** number of bits */
+    private final int size;
+    /** marker and literal words */
+    private final long[] words;
+
+    /**
+     * @param size number of bits
+     * @param words marker and literal words
+     */
+    private Bitmap(int size, long[] words) {
+        this.size = size;
+        this.words = words;
+    }
+
+    /**
+     * @param bits bits to compress
+     * @param size number of bits
+     * @return compressed copy of bits[0, size)
+     */
+    static Bitmap fromBitSet(BitSet bits, int size) {
+        long[] raw = bits.toLongArray();
+        Builder b = new Builder(size);
+        for (int i = 0; i < wordCount(size); i += 1) {
+            b.add(i < raw.length ? raw[i] : 0);
+        }
+        return b.build();
+    }
+
+    /**
+     * @param size number of bits
+     * @param start first set bit
+     * @param end bit after the last set bit
+     * @return bitmap with bits [start, end) set
+     */
+    static Bitmap range(int size, int start, int end) {
+        BitSet bits = new BitSet(size);
+        bits.set(start, end);
+        return fromBitSet(bits, size);
+    }
+
+    /** @return number of 64 bit words holding size bits */
+    private static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /** @return number of bits */
+    int size() {
+        return size;
+    }
+
+    /** @return number of set bits */
+    int cardinality() {
+        int count = 0;
+        int i = 0;
+        while (i < words.length) {
+            long marker = words[i];
+            if (marker < 0) {
+                count += 64 * runLength(marker);
+            }
+            int literals = literalCount(marker);
+            for (int j = 1; j <= literals; j += 1) {
+                count += Long.bitCount(words[i + j]);
+            }
+            i += 1 + literals;
+        }
+        return count;
+    }
+
+    /** @return uncompressed copy */
+    BitSet toBitSet() {
+        long[] raw = new long[wordCount(size)];
+        WordIterator it = new WordIterator();
+        for (int i = 0; i < raw.length; i += 1) {
+            raw[i] = it.next();
+        }
+        return BitSet.valueOf(raw);
+    }
+
+    /** @return bits set in both this and other */
+    Bitmap and(Bitmap other) {
+        return combine(other, 0);
+    }
+
+    /** @return bits set in this or other */
+    Bitmap or(Bitmap other) {
+        return combine(other, 1);
+    }
+
+    /** @return bits set in this but not in other */
+    Bitmap andNot(Bitmap other) {
+        return combine(other, 2);
+    }
+
+    /**
+     * @param other bitmap of the same size
+     * @param op 0 for and, 1 for or, 2 for and not
+     * @return result of the operation, compressed as it is made
+     */
+    private Bitmap combine(Bitmap other, int op) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("bitmaps of different sizes");
+        }
+        WordIterator a = new WordIterator();
+        WordIterator b = other.new WordIterator();
+        Builder result = new Builder(size);
+        for (int i = 0; i < wordCount(size); i += 1) {
+            long x = a.next();
+            long y = b.next();
+            if (op == 0) {
+                result.add(x & y);
+            } else if (op == 1) {
+                result.add(x | y);
+            } else {
+                result.add(x & ~y);
+            }
+        }
+        return result.build();
+    }
+
+    /** @return run length held by a marker */
+    private static int runLength(long marker) {
+        return (int) ((marker >>> 32) & MAX_COUNT);
+    }
+
+    /** @return literal count held by a marker */
+    private static int literalCount(long marker) {
+        return (int) (marker & 0xffffffffL);
+    }
+
+    /**
+     * write this bitmap to a stream
+     * @param out stream to write to
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(words.length);
+        for (long w: words) {
+            out.writeLong(w);
+        }
+    }
+
+    /**
+     * @param in stream holding a bitmap written by writeTo
+     * @return the bitmap
+     */
+    static Bitmap readFrom(DataInput in) throws IOException {
+        int size = in.readInt();
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i += 1) {
+            words[i] = in.readLong();
+        }
+        return new Bitmap(size, words);
+    }
+
+    /** Expands the compressed words back into the plain word sequence. */
+    private class WordIterator {
+        /** index of the current marker */
+        private int marker = -1;
+        /** run words of the current marker still to return */
+        private int run;
+        /** literal words of the current marker still to return */
+        private int literals;
+        /** index of the next literal */
+        private int next;
+
+        /** @return next plain word, 0 past the end */
+        long next() {
+            while (run == 0 && literals == 0) {
+                marker = marker < 0 ? 0 : next;
+                if (marker >= words.length) {
+                    return 0;
+                }
+                run = runLength(words[marker]);
+                literals = literalCount(words[marker]);
+                next = marker + 1;
+            }
+            if (run > 0) {
+                run -= 1;
+                return words[marker] < 0 ? -1L : 0;
+            }
+            literals -= 1;
+            next += 1;
+            return words[next - 1];
+        }
+    }
+
+    /** Builds a bitmap from its plain words in order. */
+    static class Builder {
+        /** number of bits */
+        private final int size;
+        /** words so far */
+        private long[] words = new long[4];
+        /** number of words used */
+        private int length;
+        /** index of the current marker, -1 if none */
+        private int marker = -1;
+
+        /** @param size number of bits of the bitmap */
+        Builder(int size) {
+            this.size = size;
+        }
+
+        /**
+         * append the next plain word
+         * @param w word
+         */
+        void add(long w) {
+            if (w == 0 || w == -1L) {
+                boolean bit = w != 0;
+                if (marker < 0 || literalCount(words[marker]) > 0
+                        || (runLength(words[marker]) > 0 && (words[marker] < 0) != bit)
+                        || runLength(words[marker]) == MAX_COUNT) {
+                    newMarker();
+                }
+                long count = runLength(words[marker]) + 1;
+                words[marker] = (bit ? Long.MIN_VALUE : 0) | (count << 32);
+            } else {
+                if (marker < 0 || literalCount(words[marker]) == MAX_COUNT) {
+                    newMarker();
+                }
+                words[marker] += 1;
+                append(w);
+            }
+        }
+
+        /** start a new empty marker */
+        private void newMarker() {
+            append(0);
+            marker = length - 1;
+        }
+
+        /** append a word to words */
+        private void append(long w) {
+            if (length == words.length) {
+                words = Arrays.copyOf(words, 2 * length);
+            }
+            words[length] = w;
+            length += 1;
+        }
+
+        /** @return the bitmap */
+        Bitmap build() {
+            return new Bitmap(size, Arrays.copyOf(words, length));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package gitlet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Reachability bitmaps persisted for selected commits. the file holds the
+ *  ObjectIndex numbering the bitmaps were made over, then for each selected
+ *  commit its id and a compressed Bitmap of every object reachable from it.
+ *  objects written after the file are not numbered, and walks that need them
+ *  keep them aside, see Reachability.
+ *  @author Ishika Prashar
+ */
+class BitmapIndex {
+    /** marks the start of a bitmap file, "GTBM" */
+    private static final int MAGIC = 0x4754424d;
+
+    /** numbering of the objects */
+    private final ObjectIndex index;
+    /** bitmap of the objects reachable from each selected commit */
+    private final Map<ObjectId, Bitmap> bitmaps;
+
+    /**
+     * @param index numbering of the objects
+     * @param bitmaps bitmap of each selected commit
+     */
+    BitmapIndex(ObjectIndex index, Map<ObjectId, Bitmap> bitmaps) {
+        this.index = index;
+        this.bitmaps = bitmaps;
+    }
+
+    /** @return numbering of the objects */
+    ObjectIndex getIndex() {
+        return index;
+    }
+
+    /** @return bitmap of each selected commit */
+    Map<ObjectId, Bitmap> getBitmaps() {
+        return bitmaps;
+    }
+
+    /**
+     * read a bitmap file
+     * @param file file written by write
+     * @param commits commit folder
+     * @param manifests manifest folder
+     * @param blobs blob folder
+     * @return the bitmaps, or null if there is no file
+     */
+    static BitmapIndex read(File file, File commits, File manifests, File blobs) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw Utils.error("Not a gitlet bitmap file.");
+            }
+            ObjectIndex index = ObjectIndex.readFrom(in, commits, manifests, blobs);
+            int count = in.readInt();
+            Map<ObjectId, Bitmap> bitmaps = new HashMap<>();
+            for (int i = 0; i < count; i += 1) {
+                ObjectId commit = ObjectId.readFrom(in);
+                bitmaps.put(commit, Bitmap.readFrom(in));
+            }
+            return new BitmapIndex(index, bitmaps);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * replace the bitmap file, writing it aside and renaming it into place.
+     * the file aside is named for this process and thread, as in
+     * Utils.replaceContents, so two writers never write into the same one.
+     * @param file bitmap file
+     */
+    void write(File file) {
+        File temp = new File(file.getPath() + ".tmp-" + ProcessHandle.current().pid()
+                + "-" + Thread.currentThread().getId());
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp.toPath()), 1 << 16))) {
+            out.writeInt(MAGIC);
+            index.writeTo(out);
+            out.writeInt(bitmaps.size());
+            for (Map.Entry<ObjectId, Bitmap> entry: bitmaps.entrySet()) {
+                entry.getKey().writeTo(out);
+                entry.getValue().writeTo(out);
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package gitlet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Bitmap, and of count-objects, which counts with saved bitmaps.
+ *  @author Ishika Prashar
+ */
+public class BitmapTest {
+    /** sizes that end on and off a word boundary */
+    private static final int[] SIZES = {1, 63, 64, 65, 200, 64 * 40, 64 * 40 + 7};
+
+    /**
+     * @param bitmap a bitmap
+     * @return its bytes as writeTo writes them
+     */
+    private static byte[] bytes(Bitmap bitmap) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            bitmap.writeTo(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bitmap a bitmap
+     * @return the bitmap written by writeTo and read back by readFrom
+     */
+    private static Bitmap roundTrip(Bitmap bitmap) {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes(bitmap)))) {
+            return Bitmap.readFrom(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @param random source of the bits
+     * @param size number of bits
+     * @return bits with all zero runs, all one runs and mixed words
+     */
+    private static BitSet mixed(Random random, int size) {
+        BitSet bits = new BitSet(size);
+        int i = 0;
+        while (i < size) {
+            int length = 1 + random.nextInt(200);
+            int kind = random.nextInt(3);
+            for (int j = i; j < Math.min(size, i + length); j += 1) {
+                bits.set(j, kind == 1 || (kind == 2 && random.nextBoolean()));
+            }
+            i += length;
+        }
+        return bits;
+    }
+
+    public void testRoundTrip() {
+        Random random = new Random(37);
+        for (int size: SIZES) {
+            for (int n = 0; n < 20; n += 1) {
+                BitSet bits = mixed(random, size);
+                Bitmap bitmap = Bitmap.fromBitSet(bits, size);
+                assertEquals(bits, bitmap.toBitSet());
+                assertEquals(bits.cardinality(), bitmap.cardinality());
+                Bitmap read = roundTrip(bitmap);
+                assertEquals(size, read.size());
+                assertEquals(bits, read.toBitSet());
+            }
+        }
+    }
+
+    public void testRunsAreCompressed() {
+        int size = 64 * 1000;
+        Bitmap half = Bitmap.range(size, 0, size / 2);
+        assertEquals(size / 2, half.cardinality());
+        assertEquals(8 + 2 * 8, bytes(half).length);
+        Bitmap empty = Bitmap.fromBitSet(new BitSet(), size);
+        assertEquals(0, empty.cardinality());
+        assertEquals(8 + 8, bytes(empty).length);
+        Bitmap middle = Bitmap.range(size, 100, size - 100);
+        assertEquals(size - 200, middle.cardinality());
+        assertTrue(bytes(middle).length <= 8 + 5 * 8, "two literal words and three runs");
+    }
+
+    public void testLiteralWords() {
+        int size = 64 * 10;
+        BitSet bits = new BitSet(size);
+        for (int i = 0; i < size; i += 3) {
+            bits.set(i);
+        }
+        Bitmap bitmap = Bitmap.fromBitSet(bits, size);
+        assertEquals(8 + 11 * 8, bytes(bitmap).length);
+        assertEquals(bits, bitmap.toBitSet());
+        assertEquals(bits, roundTrip(bitmap).toBitSet());
+    }
+
+    public void testOperationsAcrossWordBoundaries() {
+        Random random = new Random(41);
+        for (int size: SIZES) {
+            for (int n = 0; n < 20; n += 1) {
+                BitSet x = mixed(random, size);
+                BitSet y = n % 2 == 0 ? mixed(random, size) : new BitSet();
+                if (n % 2 == 1) {
+                    y.set(size / 3, size - size / 3);
+                }
+                Bitmap a = Bitmap.fromBitSet(x, size);
+                Bitmap b = Bitmap.fromBitSet(y, size);
+                BitSet or = (BitSet) x.clone();
+                or.or(y);
+                BitSet andNot = (BitSet) x.clone();
+                andNot.andNot(y);
+                BitSet and = (BitSet) x.clone();
+                and.and(y);
+                assertEquals(or, a.or(b).toBitSet());
+                assertEquals(andNot, a.andNot(b).toBitSet());
+                assertEquals(and, a.and(b).toBitSet());
+                assertEquals(or.cardinality(), a.or(b).cardinality());
+            }
+        }
+        assertThrows(IllegalArgumentException.class,
+            () -> Bitmap.range(64, 0, 1).or(Bitmap.range(65, 0, 1)));
+    }
+
+    /**
+     * @param body code that prints
+     * @return what it printed
+     */
+    private static String output(Runnable body) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            body.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return bytes.toString();
+    }
+
+    /**
+     * count the objects reachable from a commit by reading every commit
+     * @param repo repository
+     * @param tip commit to start at
+     * @return the commits, manifests and blobs reachable
+     */
+    private static Set<ObjectId> walk(Repository repo, ObjectId tip) {
+        Set<ObjectId> seen = new HashSet<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>(List.of(tip));
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            if (seen.add(id)) {
+                Commit c = repo.readCommit(id);
+                seen.add(c.getManifestID());
+                seen.addAll(c.getBlobMap().values());
+                for (ObjectId p: c.getParent()) {
+                    if (p != null) {
+                        fringe.add(p);
+                    }
+                }
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * @param repo repository
+     * @param objects commits, manifests and blobs
+     * @return count-objects output for them
+     */
+    private static String counts(Repository repo, Set<ObjectId> objects) {
+        int[] counts = new int[3];
+        File gitlet = repo.getGitletDir();
+        for (ObjectId id: objects) {
+            if (Utils.objectFile(new File(gitlet, "commits"), id).isFile()) {
+                counts[0] += 1;
+            } else if (Utils.objectFile(new File(gitlet, "manifests"), id).isFile()) {
+                counts[1] += 1;
+            } else {
+                counts[2] += 1;
+            }
+        }
+        return "commits: " + counts[0] + "\nmanifests: " + counts[1]
+                + "\nblobs: " + counts[2] + "\n";
+    }
+
+    public void testCountObjectsMatchesPlainWalk() {
+        Repository repo = newRepo();
+        File dir = repo.getGitletDir().getParentFile();
+        for (int i = 0; i < 70; i += 1) {
+            Utils.writeContents(new File(dir, "f" + (i % 5) + ".txt"), "version " + i + "\n");
+            repo.add("f" + (i % 5) + ".txt");
+            repo.commit("commit " + i);
+            if (i == 30) {
+                repo.branch("other");
+            }
+        }
+        output(repo::writeBitmaps);
+        for (int i = 0; i < 3; i += 1) {
+            Utils.writeContents(new File(dir, "new.txt"), "after bitmaps " + i + "\n");
+            repo.add("new.txt");
+            repo.commit("after bitmaps " + i);
+        }
+        ObjectId master = repo.branchHead("master");
+        ObjectId other = repo.branchHead("other");
+        assertEquals(counts(repo, walk(repo, master)), output(() ->
+                repo.countObjects(new String[]{"count-objects", "--reachable", "master"})));
+        Set<ObjectId> only = walk(repo, master);
+        only.removeAll(walk(repo, other));
+        assertEquals(counts(repo, only), output(() -> repo.countObjects(new String[]{
+            "count-objects", "--reachable", "master", "--not", "other"})));
+        assertEquals(counts(repo, walk(repo, other)), output(() ->
+                repo.countObjects(new String[]{"count-objects", "--reachable", "other"})));
+    }
+}
@@ -0,0 +1,193 @@
+package gitlet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Stream format used to move objects between repositories in one go.
+ *  a bundle is a magic number followed by (type, 20 byte id, length, bytes) records
+ *  and an END marker. Writers send blobs and manifests before the commits that
+ *  use them and parents before children, so a receiver that stops half way
+ *  never holds a commit whose history or files are missing.
+ *  @author Ishika Prashar
+ */
+class Bundle {
+    /** marks the start of a bundle, "GTLB" */
+    static final int MAGIC = 0x47544c42;
+    /** record types */
+    static final byte END = 0;
+    static final byte COMMIT = 1;
+    static final byte BLOB = 2;
+    static final byte MANIFEST = 3;
+
+    /** stream records are written to */
+    private final DataOutputStream out;
+    /** number of records written so far */
+    private int count;
+
+    /**
+     * start a bundle on a stream
+     * @param stream to write to, left open by close()
+     */
+    Bundle(OutputStream stream) {
+        out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * append one object
+     * @param type COMMIT, MANIFEST or BLOB
+     * @param id hash of contents
+     * @param contents raw bytes of the object file
+     */
+    void add(byte type, ObjectId id, byte[] contents) {
+        try {
+            out.writeByte(type);
+            id.writeTo(out);
+            out.writeInt(contents.length);
+            out.write(contents);
+            count += 1;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * write the END marker and flush
+     * @return number of objects in the bundle
+     */
+    int finish() {
+        try {
+            out.writeByte(END);
+            out.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * read a bundle and write each object into the given folders, skipping
+     * objects that are already there. every object is checked against its id
+     * and written to a temporary file that is renamed into place, so an
+     * interrupted unpack leaves no partial object. a commit is only written
+     * once its parents are stored, so a bundle sending a child before its
+     * parent cannot leave a commit whose history is missing. an object's
+     * bytes are read as they arrive, not allocated from the size sent, so a
+     * bad size cannot use up memory. a DataInputStream is read directly so
+     * nothing past the bundle is consumed.
+     * @param stream to read from
+     * @param algorithm hash algorithm of the receiving repository
+     * @param commits commit folder of receiving repository
+     * @param manifests manifest folder of receiving repository
+     * @param blobs blob folder of receiving repository
+     * @return number of objects read
+     */
+    static int unpack(InputStream stream, String algorithm, File commits, File manifests,
+                      File blobs) {
+        DataInputStream in;
+        if (stream instanceof DataInputStream) {
+            in = (DataInputStream) stream;
+        } else {
+            in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        }
+        Map<ObjectId, byte[]> waiting = new LinkedHashMap<>();
+        int read = 0;
+        try {
+            if (in.readInt() != MAGIC) {
+                throw Utils.error("Not a gitlet bundle.");
+            }
+            byte type = in.readByte();
+            while (type != END) {
+                ObjectId id = ObjectId.readFrom(in);
+                int size = in.readInt();
+                if (size < 0) {
+                    throw Utils.error("Bad object size %d in bundle.", size);
+                }
+                byte[] contents = in.readNBytes(size);
+                if (contents.length != size) {
+                    throw Utils.error("Bundle ended inside object %s.", id);
+                }
+                if (!Utils.hash(algorithm, contents).equals(id)) {
+                    throw Utils.error("Corrupt object %s in bundle.", id);
+                }
+                if (type == COMMIT) {
+                    waiting.put(id, contents);
+                    storeCommits(commits, waiting);
+                } else if (type == MANIFEST) {
+                    store(Utils.objectFile(manifests, id), contents);
+                } else if (type == BLOB) {
+                    store(Utils.objectFile(blobs, id), contents);
+                } else {
+                    throw Utils.error("Unknown object type %d in bundle.", type);
+                }
+                read += 1;
+                type = in.readByte();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (!waiting.isEmpty()) {
+            throw Utils.error("Parent of commit %s missing from bundle.",
+                    waiting.keySet().iterator().next());
+        }
+        return read;
+    }
+
+    /**
+     * write every waiting commit whose parents are stored, until none is left
+     * that can be written. bundles send parents first, so this usually
+     * writes the one commit just read.
+     * @param commits commit folder of receiving repository
+     * @param waiting contents of commits read but not yet written, by id
+     */
+    private static void storeCommits(File commits, Map<ObjectId, byte[]> waiting) {
+        boolean stored = true;
+        while (stored) {
+            stored = false;
+            Iterator<Map.Entry<ObjectId, byte[]>> it = waiting.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<ObjectId, byte[]> entry = it.next();
+                Commit c = Utils.deserialize(entry.getValue(), Commit.class);
+                boolean ready = true;
+                for (ObjectId parent: c.getParent()) {
+                    if (parent != null && !Utils.objectFile(commits, parent).exists()) {
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    store(Utils.objectFile(commits, entry.getKey()), entry.getValue());
+                    it.remove();
+                    stored = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * write an object unless it is already stored, in which case it is
+     * freshened so gc keeps it
+     * @param dest file of the object
+     * @param contents its contents
+     */
+    private static void store(File dest, byte[] contents) {
+        if (dest.exists()) {
+            Utils.freshen(dest);
+            Trace.deduplicated(contents.length);
+            return;
+        }
+        dest.getParentFile().mkdirs();
+        Utils.replaceContents(dest, contents);
+    }
+}
@@ -0,0 +1,98 @@
+package gitlet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Bundle.
+ *  @author Ishika Prashar
+ */
+public class BundleTest {
+    /** commit folder a bundle is unpacked into */
+    private final File commits = new File(tempDir(), "commits");
+    /** manifest folder a bundle is unpacked into */
+    private final File manifests = new File(tempDir(), "manifests");
+    /** blob folder a bundle is unpacked into */
+    private final File blobs = new File(tempDir(), "blobs");
+
+    /** a root commit */
+    private final byte[] parent = Utils.serialize(commit("initial commit", null));
+    /** id of parent */
+    private final ObjectId parentId = hash(parent);
+    /** a child of parent */
+    private final byte[] child = Utils.serialize(commit("child", parentId));
+    /** id of child */
+    private final ObjectId childId = hash(child);
+
+    /**
+     * @param vals byte arrays and Strings
+     * @return their SHA-1 id
+     */
+    private static ObjectId hash(Object... vals) {
+        return Utils.hash(Utils.DEFAULT_HASH, vals);
+    }
+
+    /**
+     * @param msg commit message
+     * @param parentId parent commit, or null
+     * @return a commit of no files
+     */
+    private static Commit commit(String msg, ObjectId parentId) {
+        return new Commit(msg, parentId, null, Manifest.EMPTY,
+                hash(Utils.serialize(Manifest.EMPTY)), null);
+    }
+
+    /**
+     * @param records type, id and contents of each record, in order
+     * @return bytes of a bundle holding them
+     */
+    private static byte[] bundle(Object... records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Bundle b = new Bundle(out);
+        for (int i = 0; i < records.length; i += 3) {
+            b.add((Byte) records[i], (ObjectId) records[i + 1], (byte[]) records[i + 2]);
+        }
+        b.finish();
+        return out.toByteArray();
+    }
+
+    /**
+     * @param bytes a bundle
+     * @return number of objects unpacked from it
+     */
+    private int unpack(byte[] bytes) {
+        return Bundle.unpack(new ByteArrayInputStream(bytes), Utils.DEFAULT_HASH, commits,
+                manifests, blobs);
+    }
+
+    public void testObjectsAreWritten() {
+        byte[] blob = "hello\n".getBytes();
+        ObjectId blobId = hash(blob);
+        assertEquals(3, unpack(bundle(Bundle.BLOB, blobId, blob,
+                Bundle.COMMIT, parentId, parent, Bundle.COMMIT, childId, child)));
+        assertTrue(Utils.objectFile(blobs, blobId).isFile(), "blob written");
+        assertTrue(Utils.objectFile(commits, childId).isFile(), "child written");
+        assertEquals(1, Utils.objectFile(blobs, blobId).getParentFile().list().length);
+    }
+
+    public void testChildBeforeParentIsWrittenAfterIt() {
+        assertEquals(2, unpack(bundle(Bundle.COMMIT, childId, child,
+                Bundle.COMMIT, parentId, parent)));
+        assertTrue(Utils.objectFile(commits, parentId).isFile(), "parent written");
+        assertTrue(Utils.objectFile(commits, childId).isFile(), "child written");
+    }
+
+    public void testMissingParentIsAnError() {
+        assertThrows(GitletException.class, () -> unpack(bundle(Bundle.COMMIT, childId, child)));
+        assertTrue(!Utils.objectFile(commits, childId).exists(),
+                "a commit without its parent is not written");
+    }
+
+    public void testCorruptObjectIsAnError() {
+        byte[] blob = "hello\n".getBytes();
+        ObjectId wrong = hash("other");
+        assertThrows(GitletException.class, () -> unpack(bundle(Bundle.BLOB, wrong, blob)));
+        assertTrue(!Utils.objectFile(blobs, wrong).exists(), "corrupt blob not written");
+    }
+}
@@ -1,58 +1,119 @@
 package gitlet;
+import java.io.File;
 import java.io.Serializable;
 import java.util.*;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 
 
 /** Represents a gitlet commit object.
- *  to create commit objects that store metadata about given commit
+ *  to create commit objects that store metadata about given commit.
+ *  the file map is stored separately as a manifest and only its id is
+ *  serialized with the commit, so history walks never read it. it is loaded
+ *  on the first getBlobMap call. a Bloom filter of the names changed from
+ *  the first parent is serialized with the commit for path filtered log.
  *  @author Ishika Prashar
  */
 public class Commit implements Serializable {
+    /** fixed so adding a field keeps the commits already written by this
+     *  format readable. commits of the original format, with String ids and
+     *  a derived serialVersionUID, cannot be read by this class at all and
+     *  are rewritten by Repository.upgradeFormat instead. */
+    private static final long serialVersionUID = 8793172411782986505L;
+    /** format of commit dates */
+    static final String TIME_FORMAT = "EEE MMM d HH:mm:ss yyyy Z";
 
     /** The message of this Commit. */
     private final String message;
     /**time stamp of this commit */
     private final String time;
     /** parent commit pointer */
-    private final String parent;
-    /** map of blob name to its shah1 id*/
-    private final TreeMap<String, String> blobNameID;
+    private final ObjectId parent;
+    /** id of the manifest mapping blob name to its shah1 id */
+    private final ObjectId manifestID;
+    /** the manifest, null until loaded */
+    private transient Manifest blobNameID;
+    /** folder the manifest is loaded from */
+    private transient File manifestFolder;
     /** second parent pointer for merge commits */
-    private final String secondParent;
+    private final ObjectId secondParent;
+    /** names changed from the first parent, null if not known */
+    private final PathFilter changedPaths;
 
     /**
-     * commit constructor to initialize object and store metadata
+     * commit constructor for a commit tracking the given files
      * @param msg associated with commit
      * @param parentID shah1 of parent of new commit (oldhead id)
      * @param secondParentId shah1 of second parent when merging else null
+     * @param files map of file name to blob id
+     * @param filesID id of files, made with the repository's hash algorithm
+     * @param changed names whose blob differs from the first parent, or null
      */
-    public Commit(String msg, String parentID, String secondParentId) {
-        SimpleDateFormat formatter = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z");
-        if (parentID == null) {
-            message = msg;
-            parent = null;
-            secondParent = null;
-            blobNameID = new TreeMap<>();
-            time = formatter.format(new Date(0));
-
-        } else {
-            message = msg;
-            parent = parentID;
-            secondParent = secondParentId;
-            blobNameID = new TreeMap<>();
-            time = formatter.format(new Date());
-        }
+    public Commit(String msg, ObjectId parentID, ObjectId secondParentId, Manifest files,
+                  ObjectId filesID, Collection<String> changed) {
+        this(msg, parentID, parentID == null ? null : secondParentId, files, filesID, changed,
+                formatTime(parentID == null ? new Date(0) : new Date(), TimeZone.getDefault()));
     }
 
+    /**
+     * commit constructor for a commit made at a given time, used by import and rebase
+     * @param msg associated with commit
+     * @param parentID shah1 of first parent, or null
+     * @param secondParentId shah1 of second parent when merging else null
+     * @param files map of file name to blob id
+     * @param filesID id of files, made with the repository's hash algorithm
+     * @param changed names whose blob differs from the first parent, or null
+     * @param time commit date as made by formatTime
+     */
+    Commit(String msg, ObjectId parentID, ObjectId secondParentId, Manifest files,
+           ObjectId filesID, Collection<String> changed, String time) {
+        message = msg;
+        parent = parentID;
+        secondParent = secondParentId;
+        this.time = time;
+        blobNameID = files;
+        manifestID = filesID;
+        changedPaths = changed == null ? null : PathFilter.of(changed);
+    }
 
     /**
-     * @return blobNameId hashmap
+     * @param date a time
+     * @param zone time zone to show it in
+     * @return the time as commit dates are written
      */
-    public TreeMap<String, String> getBlobMap() {
+    static String formatTime(Date date, TimeZone zone) {
+        SimpleDateFormat formatter = new SimpleDateFormat(TIME_FORMAT);
+        formatter.setTimeZone(zone);
+        return formatter.format(date);
+    }
+
+
+    /**
+     * @return blobNameId map, sorted by file name, read on first use
+     */
+    public Manifest getBlobMap() {
+        if (this.blobNameID == null) {
+            this.blobNameID = Utils.readObject(Utils.objectFile(manifestFolder, manifestID),
+                    Manifest.class);
+        }
         return this.blobNameID;
     }
 
+    /**
+     * @return id of the manifest
+     */
+    public ObjectId getManifestID() {
+        return this.manifestID;
+    }
+
+    /**
+     * set where getBlobMap reads the manifest from, done when the commit is read
+     * @param folder manifest folder of the repository holding this commit
+     */
+    void setManifestFolder(File folder) {
+        this.manifestFolder = folder;
+    }
+
     /**
      * @return message string
      */
@@ -68,10 +129,36 @@ public class Commit implements Serializable {
     }
 
     /**
-     * @return parent string ID
+     * @return the commit date in milliseconds since 1970
+     */
+    long getMillis() {
+        try {
+            return new SimpleDateFormat(TIME_FORMAT).parse(this.time).getTime();
+        } catch (ParseException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @return offset from UTC the commit date was written in, like -0800
+     */
+    String getZone() {
+        return this.time.substring(this.time.lastIndexOf(' ') + 1);
+    }
+
+    /**
+     * @param name file name
+     * @return false if this commit certainly kept name as its first parent had it
+     */
+    public boolean mightChange(String name) {
+        return changedPaths == null || changedPaths.mightContain(name);
+    }
+
+    /**
+     * @return parent IDs, first then second, null where absent
      */
-    public List<String> getParent() {
-        List<String> parents = new ArrayList<>();
+    public List<ObjectId> getParent() {
+        List<ObjectId> parents = new ArrayList<>();
         parents.add(this.parent);
         parents.add(this.secondParent);
         return parents;
@@ -0,0 +1,296 @@
+package gitlet;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Line based differ used by the diff command.
+ *  computes a shortest edit script between two versions of a file with
+ *  the linear space variant of the Myers algorithm and prints it as
+ *  unified hunks.
+ *  @author Ishika Prashar
+ */
+class Diff {
+    /** lines of context printed around each change */
+    static final int CONTEXT = 3;
+
+    /** edit kinds */
+    private static final char KEEP = ' ';
+    private static final char INSERT = '+';
+    private static final char DELETE = '-';
+
+    /** old version lines */
+    private final String[] oldLines;
+    /** new version lines */
+    private final String[] newLines;
+    /** edit script as (kind, old index, new index) triples */
+    private final List<int[]> edits;
+    /** number of inserted lines */
+    private int insertions;
+    /** number of deleted lines */
+    private int deletions;
+    /** true if either version is binary and was not split into lines */
+    private final boolean binary;
+
+    /**
+     * diff two versions of a file
+     * @param oldContents bytes of old version, null if the file is added
+     * @param newContents bytes of new version, null if the file is removed
+     */
+    Diff(byte[] oldContents, byte[] newContents) {
+        binary = isBinary(oldContents) || isBinary(newContents);
+        edits = new ArrayList<>();
+        if (binary) {
+            oldLines = new String[0];
+            newLines = new String[0];
+        } else {
+            oldLines = splitLines(oldContents);
+            newLines = splitLines(newContents);
+            computeEdits();
+        }
+    }
+
+    /**
+     * @return true if this diff is between binary contents
+     */
+    boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * @return true if contents look like binary data
+     */
+    static boolean isBinary(byte[] contents) {
+        if (contents == null) {
+            return false;
+        }
+        int limit = Math.min(contents.length, 8000);
+        for (int i = 0; i < limit; i += 1) {
+            if (contents[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of inserted lines
+     */
+    int getInsertions() {
+        return insertions;
+    }
+
+    /**
+     * @return number of deleted lines
+     */
+    int getDeletions() {
+        return deletions;
+    }
+
+    /**
+     * split contents into lines keeping the line terminator
+     * @param contents bytes of file or null
+     * @return array of lines
+     */
+    private static String[] splitLines(byte[] contents) {
+        if (contents == null || contents.length == 0) {
+            return new String[0];
+        }
+        String text = new String(contents, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    /**
+     * fill edits with the shortest edit script of the whole files
+     */
+    private void computeEdits() {
+        diffRange(0, oldLines.length, 0, newLines.length);
+    }
+
+    /**
+     * append the shortest edit script of oldLines[oLo, oHi) and
+     * newLines[nLo, nHi) to edits. the common prefix and suffix are trimmed,
+     * then the rest is split at a point on a shortest path found by
+     * middleSnake and each half is diffed on its own. only two rows of
+     * furthest reaching x values are kept, so memory is linear in the number
+     * of lines rather than growing with every edit.
+     * @source "An O(ND) Difference Algorithm and Its Variations", E. Myers, section 4b
+     */
+    private void diffRange(int oLo, int oHi, int nLo, int nHi) {
+        while (oLo < oHi && nLo < nHi && oldLines[oLo].equals(newLines[nLo])) {
+            edits.add(new int[]{KEEP, oLo, nLo});
+            oLo += 1;
+            nLo += 1;
+        }
+        int suffix = 0;
+        while (oLo < oHi - suffix && nLo < nHi - suffix
+                && oldLines[oHi - 1 - suffix].equals(newLines[nHi - 1 - suffix])) {
+            suffix += 1;
+        }
+        oHi -= suffix;
+        nHi -= suffix;
+        if (oLo == oHi) {
+            for (int y = nLo; y < nHi; y += 1) {
+                edits.add(new int[]{INSERT, oLo, y});
+                insertions += 1;
+            }
+        } else if (nLo == nHi) {
+            for (int x = oLo; x < oHi; x += 1) {
+                edits.add(new int[]{DELETE, x, nLo});
+                deletions += 1;
+            }
+        } else {
+            int[] split = middleSnake(oLo, oHi, nLo, nHi);
+            diffRange(oLo, oLo + split[0], nLo, nLo + split[1]);
+            diffRange(oLo + split[0], oHi, nLo + split[1], nHi);
+        }
+        for (int i = 0; i < suffix; i += 1) {
+            edits.add(new int[]{KEEP, oHi + i, nHi + i});
+        }
+    }
+
+    /**
+     * search forward from the start and backward from the end of
+     * oldLines[oLo, oHi) and newLines[nLo, nHi) at once until the two meet.
+     * the ranges must differ in their first and in their last lines, so
+     * the point returned is neither the start nor the end.
+     * @return {x, y} offsets into the ranges of a point on a shortest edit path
+     */
+    private int[] middleSnake(int oLo, int oHi, int nLo, int nHi) {
+        int n = oHi - oLo;
+        int m = nHi - nLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int max = (n + m + 1) / 2;
+        int offset = max + 1;
+        int[] forward = new int[2 * max + 3];
+        int[] backward = new int[2 * max + 3];
+        for (int d = 0; d <= max; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])) {
+                    x = forward[offset + k + 1];
+                } else {
+                    x = forward[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && oldLines[oLo + x].equals(newLines[nLo + y])) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[offset + k] = x;
+                int c = delta - k;
+                if (odd && c >= -(d - 1) && c <= d - 1 && x + backward[offset + c] >= n) {
+                    return new int[]{x, y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])) {
+                    x = backward[offset + k + 1];
+                } else {
+                    x = backward[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m
+                        && oldLines[oHi - 1 - x].equals(newLines[nHi - 1 - y])) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[offset + k] = x;
+                int c = delta - k;
+                if (!odd && c >= -d && c <= d && x + forward[offset + c] >= n) {
+                    return new int[]{n - x, m - y};
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+
+    /**
+     * print the unified hunks of this diff
+     * @param out stream to print to
+     */
+    void printHunks(PrintStream out) {
+        int i = 0;
+        while (i < edits.size()) {
+            if (edits.get(i)[0] == KEEP) {
+                i += 1;
+                continue;
+            }
+            int start = Math.max(0, i - CONTEXT);
+            int end = i;
+            int keeps = 0;
+            while (end < edits.size() && keeps <= 2 * CONTEXT) {
+                if (edits.get(end)[0] == KEEP) {
+                    keeps += 1;
+                } else {
+                    keeps = 0;
+                }
+                end += 1;
+            }
+            end = Math.min(edits.size(), end - keeps + Math.min(keeps, CONTEXT));
+            printHunk(out, start, end);
+            i = end;
+        }
+    }
+
+    /**
+     * print one hunk covering edits[start, end)
+     */
+    private void printHunk(PrintStream out, int start, int end) {
+        int oldStart = edits.get(start)[1];
+        int newStart = edits.get(start)[2];
+        int oldCount = 0;
+        int newCount = 0;
+        for (int i = start; i < end; i += 1) {
+            char kind = (char) edits.get(i)[0];
+            if (kind != INSERT) {
+                oldCount += 1;
+            }
+            if (kind != DELETE) {
+                newCount += 1;
+            }
+        }
+        out.println("@@ -" + range(oldStart, oldCount) + " +" + range(newStart, newCount) + " @@");
+        for (int i = start; i < end; i += 1) {
+            int[] edit = edits.get(i);
+            String line;
+            if (edit[0] == INSERT) {
+                line = newLines[edit[2]];
+            } else {
+                line = oldLines[edit[1]];
+            }
+            out.print((char) edit[0]);
+            out.print(line);
+            if (!line.endsWith("\n")) {
+                out.println();
+                out.println("\\ No newline at end of file");
+            }
+        }
+    }
+
+    /**
+     * format a hunk range the way unified diffs do
+     */
+    private static String range(int start, int count) {
+        if (count == 0) {
+            return start + ",0";
+        }
+        if (count == 1) {
+            return String.valueOf(start + 1);
+        }
+        return (start + 1) + "," + count;
+    }
+}
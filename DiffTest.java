@@ -0,0 +1,100 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Diff.
+ *  @author Ishika Prashar
+ */
+public class DiffTest {
+    /**
+     * @param lines lines of a file
+     * @return the file's bytes, each line ended by a newline
+     */
+    private static byte[] file(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line: lines) {
+            text.append(line).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param a old lines
+     * @param b new lines
+     * @return fewest lines inserted and deleted to turn a into b, by dynamic programming
+     */
+    private static int editDistance(String[] a, String[] b) {
+        int[][] lcs = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i -= 1) {
+            for (int j = b.length - 1; j >= 0; j -= 1) {
+                lcs[i][j] = a[i].equals(b[j]) ? lcs[i + 1][j + 1] + 1
+                        : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+            }
+        }
+        return a.length + b.length - 2 * lcs[0][0];
+    }
+
+    /**
+     * @param d a diff
+     * @return its unified hunks
+     */
+    private static String hunks(Diff d) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        d.printHunks(new PrintStream(bytes, true));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    public void testSingleChange() {
+        Diff d = new Diff(file("a", "b", "c"), file("a", "x", "c"));
+        assertEquals(1, d.getInsertions());
+        assertEquals(1, d.getDeletions());
+        assertEquals("@@ -1,3 +1,3 @@\n a\n-b\n+x\n c\n", hunks(d));
+    }
+
+    public void testAddedAndRemovedFiles() {
+        Diff added = new Diff(null, file("a", "b"));
+        assertEquals(2, added.getInsertions());
+        assertEquals(0, added.getDeletions());
+        Diff removed = new Diff(file("a", "b"), null);
+        assertEquals(0, removed.getInsertions());
+        assertEquals(2, removed.getDeletions());
+    }
+
+    public void testBinary() {
+        Diff d = new Diff(new byte[]{1, 0, 2}, file("a"));
+        assertTrue(d.isBinary(), "contents with a zero byte are binary");
+    }
+
+    public void testShortestScriptOnRandomFiles() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round += 1) {
+            String[] a = new String[random.nextInt(30)];
+            String[] b = new String[random.nextInt(30)];
+            for (int i = 0; i < a.length; i += 1) {
+                a[i] = String.valueOf((char) ('a' + random.nextInt(4)));
+            }
+            for (int i = 0; i < b.length; i += 1) {
+                b[i] = String.valueOf((char) ('a' + random.nextInt(4)));
+            }
+            Diff d = new Diff(file(a), file(b));
+            assertEquals(editDistance(a, b), d.getInsertions() + d.getDeletions());
+            assertEquals(b.length - a.length, d.getInsertions() - d.getDeletions());
+        }
+    }
+
+    public void testLongFilesWithManyChanges() {
+        String[] a = new String[20000];
+        String[] b = new String[20000];
+        for (int i = 0; i < a.length; i += 1) {
+            a[i] = "line " + i;
+            b[i] = i % 2 == 0 ? "line " + i : "changed " + i;
+        }
+        Diff d = new Diff(file(a), file(b));
+        assertEquals(10000, d.getInsertions());
+        assertEquals(10000, d.getDeletions());
+    }
+}
@@ -0,0 +1,186 @@
+package gitlet;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static gitlet.Utils.*;
+
+/** Writes a repository's history as a stream FastImport reads back, in the
+ *  format of git fast-export. commits come parents first, grouped by the
+ *  first ref, in name order, that reaches them, and a root commit is led by
+ *  a reset so it does not continue the ref. each commit lists the files
+ *  it changed from its first parent, and each blob is written once, just
+ *  before the first commit that uses it. reset commands at the end set
+ *  every ref. importing the stream into a new repository gives commits with
+ *  the same ids.
+ *  @author Ishika Prashar
+ */
+class FastExport {
+    /** mode written on file lines, gitlet files have no modes */
+    static final String MODE = "100644";
+    /** manifests of recently written commits kept for their children */
+    private static final int MANIFEST_CACHE = 1024;
+
+    /** repository exported */
+    private final Repository repo;
+    /** its blobs folder */
+    private final File blobs;
+    /** stream written to */
+    private final OutputStream out;
+    /** mark of each commit and blob written, by id */
+    private final Map<ObjectId, Integer> marks = new HashMap<>();
+    /** manifests of recently written commits, by commit id */
+    private final Map<ObjectId, Manifest> recent =
+        new LinkedHashMap<ObjectId, Manifest>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, Manifest> eldest) {
+                return size() > MANIFEST_CACHE;
+            }
+        };
+
+    /**
+     * @param repo repository to export
+     * @param blobs its blobs folder
+     * @param stream stream to write to, flushed but left open
+     */
+    FastExport(Repository repo, File blobs, OutputStream stream) {
+        this.repo = repo;
+        this.blobs = blobs;
+        this.out = new BufferedOutputStream(stream, 1 << 16);
+    }
+
+    /**
+     * write the history reachable from refs
+     * @param refs commit of each ref, by name
+     * @return number of commits written
+     */
+    int run(Map<String, ObjectId> refs) {
+        Map<ObjectId, List<ObjectId>> parents = new HashMap<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>(refs.values());
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            if (parents.containsKey(id)) {
+                continue;
+            }
+            List<ObjectId> ps = repo.readCommit(id).getParent();
+            parents.put(id, ps);
+            for (ObjectId parent: ps) {
+                if (parent != null && !parents.containsKey(parent)) {
+                    fringe.add(parent);
+                }
+            }
+        }
+        int count = 0;
+        for (Map.Entry<String, ObjectId> ref: refs.entrySet()) {
+            for (ObjectId id: Repository.parentsFirst(List.of(ref.getValue()), parents)) {
+                commit(refName(ref.getKey()), id);
+                parents.remove(id);
+                count += 1;
+            }
+        }
+        for (Map.Entry<String, ObjectId> ref: refs.entrySet()) {
+            write("reset " + refName(ref.getKey()) + "\n" + "from :"
+                    + marks.get(ref.getValue()) + "\n\n");
+        }
+        try {
+            out.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * write a commit, and before it the blobs it adds that were not written yet
+     * @param ref ref it is written on
+     * @param id commit id
+     */
+    private void commit(String ref, ObjectId id) {
+        Commit c = repo.readCommit(id);
+        Manifest files = c.getBlobMap();
+        ObjectId parent = c.getParent().get(0);
+        Manifest before = Manifest.EMPTY;
+        if (parent != null) {
+            before = recent.get(parent);
+            if (before == null) {
+                before = repo.readCommit(parent).getBlobMap();
+            }
+        }
+        List<String> changes = new ArrayList<>();
+        for (Map.Entry<String, ObjectId> entry: files.entrySet()) {
+            ObjectId blob = entry.getValue();
+            if (!blob.equals(before.get(entry.getKey()))) {
+                if (!marks.containsKey(blob)) {
+                    byte[] contents = readContents(objectFile(blobs, blob));
+                    write("blob\n" + "mark :" + mark(blob) + "\n" + "data " + contents.length
+                            + "\n");
+                    write(contents);
+                    write("\n");
+                }
+                changes.add("M " + MODE + " :" + marks.get(blob) + " "
+                        + FastImport.quote(entry.getKey()) + "\n");
+            }
+        }
+        for (String name: before.keySet()) {
+            if (!files.containsKey(name)) {
+                changes.add("D " + FastImport.quote(name) + "\n");
+            }
+        }
+        byte[] msg = (c.getMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+        if (parent == null) {
+            write("reset " + ref + "\n");
+        }
+        write("commit " + ref + "\n" + "mark :" + mark(id) + "\n"
+                + "committer gitlet <gitlet> " + c.getMillis() / 1000 + " " + c.getZone() + "\n"
+                + "data " + msg.length + "\n");
+        write(msg);
+        if (parent != null) {
+            write("from :" + marks.get(parent) + "\n");
+        }
+        if (c.getParent().get(1) != null) {
+            write("merge :" + marks.get(c.getParent().get(1)) + "\n");
+        }
+        write(String.join("", changes) + "\n");
+        recent.put(id, files);
+    }
+
+    /**
+     * @param id object id
+     * @return a new mark for it
+     */
+    private int mark(ObjectId id) {
+        marks.put(id, marks.size() + 1);
+        return marks.size();
+    }
+
+    /**
+     * @param name gitlet ref name
+     * @return its name in the stream
+     */
+    private static String refName(String name) {
+        return (name.contains("/") ? FastImport.REMOTES : FastImport.HEADS) + name;
+    }
+
+    /** write text as UTF-8 */
+    private void write(String text) {
+        write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** write bytes */
+    private void write(byte[] bytes) {
+        try {
+            out.write(bytes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
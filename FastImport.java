@@ -0,0 +1,590 @@
+package gitlet;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static gitlet.Utils.*;
+
+/** Bulk import of history from a stream in the format of git fast-import,
+ *  cut down to what gitlet stores: blob, commit (mark, committer date, data,
+ *  from, merge, and M, D and deleteall file commands), reset, progress,
+ *  checkpoint and done. file modes, authors and other options are read and
+ *  ignored. objects go straight into the object folders without the working
+ *  directory or staging area. the stream is parsed on the calling thread,
+ *  which only serializes and hashes commits and manifests, since a commit's
+ *  id depends on its parent's. blobs are hashed and every object is written
+ *  by a pool of workers, behind a bounded queue so parsing never runs far
+ *  ahead of the disk. refs are only returned once every object is written,
+ *  so no ref ever names an object that is not stored yet.
+ *  @author Ishika Prashar
+ */
+class FastImport {
+    /** prefix of local branch refs in the stream */
+    static final String HEADS = "refs/heads/";
+    /** prefix of remote branch refs in the stream */
+    static final String REMOTES = "refs/remotes/";
+    /** prefix of every other ref in the stream, such as a tag */
+    static final String OTHER = "refs/";
+    /** manifests of recent commits kept for the commits that follow them */
+    private static final int MANIFEST_CACHE = 1024;
+    /** queued writes per worker before the parser has to wait */
+    private static final int QUEUE_PER_THREAD = 64;
+
+    /** repository imported into */
+    private final Repository repo;
+    /** blobs folder */
+    private final File blobs;
+    /** manifests folder */
+    private final File manifests;
+    /** commits folder */
+    private final File commits;
+    /** folder objects are written into before being renamed into place */
+    private final File tmp;
+    /** where progress lines go */
+    private final PrintStream progress;
+    /** workers hashing and writing objects */
+    private final ThreadPoolExecutor workers;
+    /** tracks writes not yet finished */
+    private final Phaser writes = new Phaser(1);
+    /** first error a worker hit */
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    /** ids of objects written or being written by this import */
+    private final Set<ObjectId> written = ConcurrentHashMap.newKeySet();
+    /** fan-out folders known to exist */
+    private final Set<File> folders = ConcurrentHashMap.newKeySet();
+
+    /** stream being read */
+    private BufferedInputStream in;
+    /** line given back to be read again, or null */
+    private String pushedBack;
+    /** object id of each mark, blob ids completing once hashed */
+    private final Map<String, CompletableFuture<ObjectId>> marks = new HashMap<>();
+    /** commit each ref named in the stream points at, null for a fresh branch */
+    private final Map<String, ObjectId> tips = new TreeMap<>();
+    /** manifests of recently imported commits, by commit id */
+    private final Map<ObjectId, Manifest> recent =
+        new LinkedHashMap<ObjectId, Manifest>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, Manifest> eldest) {
+                return size() > MANIFEST_CACHE;
+            }
+        };
+    /** number of blobs read */
+    private int blobCount;
+    /** number of commits read */
+    private int commitCount;
+    /** number of objects written */
+    private final AtomicInteger objectCount = new AtomicInteger();
+
+    /**
+     * @param repo repository to import into
+     * @param blobs its blobs folder
+     * @param manifests its manifests folder
+     * @param commits its commits folder
+     * @param tmp its folder of temporary files
+     * @param threads number of workers
+     * @param progress stream progress lines are printed on
+     */
+    FastImport(Repository repo, File blobs, File manifests, File commits, File tmp,
+               int threads, PrintStream progress) {
+        this.repo = repo;
+        this.blobs = blobs;
+        this.manifests = manifests;
+        this.commits = commits;
+        this.tmp = tmp;
+        this.progress = progress;
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * read a whole stream and store its objects
+     * @param stream stream to read
+     * @return commit of each ref the stream set, by gitlet ref name
+     */
+    Map<String, ObjectId> run(InputStream stream) {
+        in = new BufferedInputStream(stream, 1 << 16);
+        tmp.mkdirs();
+        try {
+            for (String line = readLine(); line != null; line = readLine()) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                } else if (line.equals("blob")) {
+                    blob();
+                } else if (line.startsWith("commit ")) {
+                    commit(refName(line.substring("commit ".length())));
+                } else if (line.startsWith("reset ")) {
+                    reset(refName(line.substring("reset ".length())));
+                } else if (line.startsWith("progress ")) {
+                    progress.println(line);
+                } else if (line.equals("checkpoint")) {
+                    awaitWrites();
+                } else if (line.equals("done")) {
+                    break;
+                } else if (!line.startsWith("feature ") && !line.startsWith("option ")) {
+                    throw error("Unsupported fast-import command: %s", line);
+                }
+            }
+            awaitWrites();
+        } finally {
+            workers.shutdownNow();
+        }
+        Map<String, ObjectId> refs = new TreeMap<>();
+        for (Map.Entry<String, ObjectId> tip: tips.entrySet()) {
+            if (tip.getKey().startsWith(OTHER)) {
+                progress.printf("Skipped %s: only branches are imported.%n", tip.getKey());
+            } else if (tip.getValue() != null) {
+                refs.put(tip.getKey(), tip.getValue());
+            }
+        }
+        return refs;
+    }
+
+    /** @return number of blobs read */
+    int blobs() {
+        return blobCount;
+    }
+
+    /** @return number of commits read */
+    int commits() {
+        return commitCount;
+    }
+
+    /** @return number of objects written, leaving out those already stored */
+    int objectsWritten() {
+        return objectCount.get();
+    }
+
+    /** read a blob command: an optional mark and the data, hashed and written by a worker */
+    private void blob() {
+        String mark = readMark();
+        byte[] contents = readData(readLine());
+        blobCount += 1;
+        CompletableFuture<ObjectId> id = new CompletableFuture<>();
+        submit(() -> {
+            try {
+                ObjectId hashed = repo.hash(contents);
+                id.complete(hashed);
+                store(blobs, hashed, contents);
+            } catch (RuntimeException excp) {
+                id.completeExceptionally(excp);
+                throw excp;
+            }
+        });
+        if (mark != null) {
+            marks.put(mark, id);
+        }
+    }
+
+    /**
+     * read a commit command and its file commands, then make the commit
+     * @param ref ref the commit goes on
+     */
+    private void commit(String ref) {
+        String mark = readMark();
+        String time = null;
+        String line = readLine();
+        while (line != null && (line.startsWith("author ") || line.startsWith("committer ")
+                || line.startsWith("original-oid ") || line.startsWith("encoding "))) {
+            if (line.startsWith("committer ")) {
+                time = parseTime(line);
+            }
+            line = readLine();
+        }
+        String msg = new String(readData(line), StandardCharsets.UTF_8);
+        if (msg.endsWith("\n")) {
+            msg = msg.substring(0, msg.length() - 1);
+        }
+        ObjectId parent = tip(ref);
+        ObjectId second = null;
+        line = readLine();
+        if (line != null && line.isEmpty()) {
+            line = readLine();
+        }
+        if (line != null && line.startsWith("from ")) {
+            parent = resolve(line.substring("from ".length()));
+            line = readLine();
+        }
+        if (line != null && line.startsWith("merge ")) {
+            second = resolve(line.substring("merge ".length()));
+            line = readLine();
+        }
+        if (line != null && line.startsWith("merge ")) {
+            throw error("A commit can have at most two parents.");
+        }
+        Manifest before = parent == null ? Manifest.EMPTY : manifestOf(parent);
+        Manifest base = before;
+        TreeMap<String, ObjectId> added = new TreeMap<>();
+        Set<String> removed = new HashSet<>();
+        for (; line != null && !line.isEmpty(); line = readLine()) {
+            if (line.startsWith("M ")) {
+                String[] fields = line.split(" ", 4);
+                if (fields.length != 4) {
+                    throw error("Bad fast-import line: %s", line);
+                }
+                ObjectId blob;
+                if (fields[2].equals("inline")) {
+                    byte[] contents = readData(readLine());
+                    blob = repo.hash(contents);
+                    store(blobs, blob, contents);
+                } else {
+                    blob = resolve(fields[2]);
+                }
+                String path = unquote(fields[3]);
+                added.put(path, blob);
+                removed.remove(path);
+            } else if (line.startsWith("D ")) {
+                String path = unquote(line.substring(2));
+                added.remove(path);
+                removed.add(path);
+            } else if (line.equals("deleteall")) {
+                base = Manifest.EMPTY;
+                added.clear();
+                removed.clear();
+            } else {
+                pushedBack = line;
+                break;
+            }
+        }
+        Manifest files = base.withChanges(added, removed);
+        Set<String> changed = null;
+        if (parent != null) {
+            changed = new HashSet<>();
+            if (base == before) {
+                for (Map.Entry<String, ObjectId> entry: added.entrySet()) {
+                    if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                        changed.add(entry.getKey());
+                    }
+                }
+                for (String name: removed) {
+                    if (before.containsKey(name)) {
+                        changed.add(name);
+                    }
+                }
+            } else {
+                changed.addAll(diff(before, files));
+            }
+        }
+        if (time == null) {
+            time = Commit.formatTime(new Date(), TimeZone.getDefault());
+        }
+        Commit c = new Commit(msg, parent, second, files, repo.hash(serialize(files)), changed,
+                time);
+        byte[] serial = serialize(c);
+        ObjectId id = repo.hash(serial);
+        if (!written.contains(c.getManifestID())) {
+            byte[] manifest = serialize(files);
+            submit(() -> store(manifests, c.getManifestID(), manifest));
+        }
+        submit(() -> store(commits, id, serial));
+        commitCount += 1;
+        recent.put(id, files);
+        tips.put(ref, id);
+        if (mark != null) {
+            marks.put(mark, CompletableFuture.completedFuture(id));
+        }
+    }
+
+    /**
+     * read a reset command, which points a ref at a commit, or makes the
+     * next commit on it start a new history if no commit is given
+     * @param ref ref reset
+     */
+    private void reset(String ref) {
+        String line = readLine();
+        if (line != null && line.startsWith("from ")) {
+            tips.put(ref, resolve(line.substring("from ".length())));
+        } else {
+            tips.put(ref, null);
+            pushedBack = line;
+        }
+    }
+
+    /**
+     * @param ref ref name
+     * @return commit the ref points at so far, the repository's before this import
+     */
+    private ObjectId tip(String ref) {
+        if (!tips.containsKey(ref)) {
+            tips.put(ref, ref.startsWith(OTHER) ? null : repo.branchHead(ref));
+        }
+        return tips.get(ref);
+    }
+
+    /**
+     * @param name ref name in the stream
+     * @return its gitlet name, without refs/heads/ or refs/remotes/. any
+     *         other ref, such as a tag, keeps its refs/ name: its commits
+     *         are imported and it can be named later in the stream, but it
+     *         is not made a branch.
+     */
+    private static String refName(String name) {
+        if (name.startsWith(HEADS)) {
+            return name.substring(HEADS.length());
+        } else if (name.startsWith(REMOTES)) {
+            return name.substring(REMOTES.length());
+        }
+        return name;
+    }
+
+    /**
+     * @param ref a mark like :12, an object id, or a ref name
+     * @return the object it names
+     */
+    private ObjectId resolve(String ref) {
+        if (ref.startsWith(":")) {
+            CompletableFuture<ObjectId> id = marks.get(ref);
+            if (id == null) {
+                throw error("Unknown mark %s.", ref);
+            }
+            try {
+                return id.join();
+            } catch (CompletionException excp) {
+                throw excp.getCause() instanceof RuntimeException
+                        ? (RuntimeException) excp.getCause() : excp;
+            }
+        } else if (ref.length() == ObjectId.HEX_LENGTH && ref.matches("[0-9a-f]+")) {
+            return ObjectId.fromHex(ref);
+        }
+        ObjectId id = tip(refName(ref));
+        if (id == null) {
+            throw error("Unknown ref %s.", ref);
+        }
+        return id;
+    }
+
+    /**
+     * @param commit commit id
+     * @return its manifest, waiting for pending writes if it must be read back
+     */
+    private Manifest manifestOf(ObjectId commit) {
+        Manifest files = recent.get(commit);
+        if (files == null) {
+            awaitWrites();
+            files = repo.readCommit(commit).getBlobMap();
+        }
+        return files;
+    }
+
+    /**
+     * @param before manifest of the first parent
+     * @param after new manifest
+     * @return names whose blob differs between them
+     */
+    private static Set<String> diff(Manifest before, Manifest after) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, ObjectId> entry: after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String name: before.keySet()) {
+            if (!after.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param line committer line ending with seconds since 1970 and a zone like +0100
+     * @return the date as commits write it
+     */
+    private static String parseTime(String line) {
+        String[] fields = line.split(" ");
+        try {
+            long seconds = Long.parseLong(fields[fields.length - 2]);
+            String zone = fields[fields.length - 1];
+            return Commit.formatTime(new Date(seconds * 1000),
+                    TimeZone.getTimeZone("GMT" + zone.substring(0, 3) + ":" + zone.substring(3)));
+        } catch (NumberFormatException | IndexOutOfBoundsException excp) {
+            throw error("Bad fast-import line: %s", line);
+        }
+    }
+
+    /**
+     * run a write on a worker
+     * @param write the write
+     */
+    private void submit(Runnable write) {
+        writes.register();
+        workers.execute(() -> {
+            try {
+                write.run();
+            } catch (RuntimeException excp) {
+                failure.compareAndSet(null, excp);
+            } finally {
+                writes.arriveAndDeregister();
+            }
+        });
+    }
+
+    /** wait until every write so far is finished, throwing the first that failed */
+    private void awaitWrites() {
+        writes.arriveAndAwaitAdvance();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * write an object unless it is stored already. it is written to a file
+     * in the tmp folder named for this process and worker, then renamed into
+     * its bucket, so an import that is killed never leaves part of an object
+     * under the object's name. an object already stored is freshened so gc
+     * keeps it.
+     * @param folder object folder
+     * @param id object id
+     * @param contents its contents
+     */
+    private void store(File folder, ObjectId id, byte[] contents) {
+        if (!written.add(id)) {
+            return;
+        }
+        File file = bucketFile(folder, id);
+        if (file.exists()) {
+            freshen(file);
+            return;
+        }
+        if (folders.add(file.getParentFile())) {
+            file.getParentFile().mkdirs();
+        }
+        File temp = join(tmp, ProcessHandle.current().pid() + "-import-"
+                + Thread.currentThread().getId());
+        writeContents(temp, contents);
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            objectCount.incrementAndGet();
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** @return the mark on the next line, or null if it is not a mark line */
+    private String readMark() {
+        String line = readLine();
+        if (line != null && line.startsWith("mark ")) {
+            return line.substring("mark ".length());
+        }
+        pushedBack = line;
+        return null;
+    }
+
+    /**
+     * @param header a data line, data followed by a byte count
+     * @return the bytes that follow it
+     */
+    private byte[] readData(String header) {
+        if (header == null || !header.startsWith("data ")) {
+            throw error("Expected data, got: %s", header);
+        }
+        try {
+            int length = Integer.parseInt(header.substring("data ".length()));
+            byte[] data = in.readNBytes(length);
+            if (data.length != length) {
+                throw error("Unexpected end of fast-import stream.");
+            }
+            return data;
+        } catch (NumberFormatException excp) {
+            throw error("Bad fast-import line: %s", header);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** @return next line without its newline, or null at the end of the stream */
+    private String readLine() {
+        if (pushedBack != null) {
+            String line = pushedBack;
+            pushedBack = null;
+            return line;
+        }
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try {
+            for (int b = in.read(); b != '\n'; b = in.read()) {
+                if (b < 0) {
+                    return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path path from a file command, quoted C style if it starts with "
+     * @return the path
+     */
+    static String unquote(String path) {
+        if (!path.startsWith("\"")) {
+            return path;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        for (int i = 1; i < bytes.length - 1; i += 1) {
+            byte b = bytes[i];
+            if (b != '\\') {
+                out.write(b);
+                continue;
+            }
+            i += 1;
+            switch (bytes[i]) {
+                case 'n':
+                    out.write('\n');
+                    break;
+                case 't':
+                    out.write('\t');
+                    break;
+                default:
+                    if (bytes[i] >= '0' && bytes[i] <= '7') {
+                        out.write(Integer.parseInt(new String(bytes, i, 3,
+                                StandardCharsets.US_ASCII), 8));
+                        i += 2;
+                    } else {
+                        out.write(bytes[i]);
+                    }
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path file name
+     * @return the path as a file command writes it, quoted if it has to be
+     */
+    static String quote(String path) {
+        if (!path.startsWith("\"") && path.indexOf('\n') < 0 && path.indexOf('\\') < 0) {
+            return path;
+        }
+        return "\"" + path.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+                + "\"";
+    }
+}
@@ -0,0 +1,84 @@
+package gitlet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of FastImport and FastExport.
+ *  @author Ishika Prashar
+ */
+public class FastImportTest {
+    /** progress printed by imports */
+    private final ByteArrayOutputStream progress = new ByteArrayOutputStream();
+
+    /**
+     * @param repo a repository
+     * @param name a file in its working directory
+     * @param contents new contents of the file
+     */
+    private static void write(Repository repo, String name, String contents) {
+        Utils.writeContents(new File(repo.getGitletDir().getParentFile(), name), contents);
+        repo.add(name);
+    }
+
+    /**
+     * @param repo repository to export
+     * @return its history as a fast-import stream
+     */
+    private static String export(Repository repo) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        repo.fastExport(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param repo repository to import into
+     * @param stream a fast-import stream
+     * @return number of commits imported
+     */
+    private int load(Repository repo, String stream) {
+        return repo.fastImport(new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)),
+                new PrintStream(progress, true));
+    }
+
+    public void testRoundTripKeepsCommitIds() {
+        Repository from = newRepo();
+        write(from, "a.txt", "a\n");
+        from.commit("add a");
+        from.branch("other");
+        write(from, "b.txt", "b\n");
+        from.commit("add b");
+        from.checkoutBranch("other");
+        write(from, "c.txt", "c\n");
+        from.rm("a.txt");
+        from.commit("add c, remove a");
+        from.checkoutBranch("master");
+        from.merge("other");
+        Repository to = newRepo();
+        assertEquals(5, load(to, export(from)));
+        assertEquals(from.branchHead("master"), to.branchHead("master"));
+        assertEquals(from.branchHead("other"), to.branchHead("other"));
+        assertEquals(export(from), export(to));
+        String[] left = new File(to.getGitletDir(), "tmp").list();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    public void testOtherRefsAreNotBranches() {
+        Repository from = newRepo();
+        write(from, "a.txt", "a\n");
+        from.commit("add a");
+        String head = from.branchHead("master").toHex();
+        Repository to = newRepo();
+        load(to, export(from) + "reset refs/tags/v1\nfrom " + head + "\n\n"
+                + "commit refs/tags/v2\ncommitter x <x> 0 +0000\ndata 4\ntag\n\n"
+                + "from refs/tags/v1\n\n");
+        assertEquals(from.branchHead("master"), to.branchHead("master"));
+        assertTrue(!new File(to.getGitletDir(), "branches/refs").exists(), "no tag branches");
+        String printed = progress.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.contains("Skipped refs/tags/v1"), printed);
+        assertTrue(printed.contains("Skipped refs/tags/v2"), printed);
+    }
+}
@@ -0,0 +1,208 @@
+package gitlet;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static gitlet.Utils.*;
+
+/** Integrity check of a repository's objects. every stored object is read
+ *  back and re-hashed by a fixed pool of workers, since an object's name is
+ *  the hash of its contents. then history is walked from every ref, HEAD and
+ *  the staging area to find objects that are referenced but missing or
+ *  corrupt, and stored objects nothing references, which are dangling.
+ *  progress and throughput go to stderr while the hashing runs.
+ *  @author Ishika Prashar
+ */
+class Fsck {
+    /** names of the object kinds, by ObjectIndex kind */
+    private static final String[] KINDS = {"commit", "manifest", "blob"};
+    /** milliseconds between progress lines */
+    private static final long PROGRESS_INTERVAL = 1000;
+
+    /** repository checked */
+    private final Repository repo;
+    /** numbering of the stored objects */
+    private final ObjectIndex index;
+    /** number of workers hashing objects */
+    private final int threads;
+    /** where progress goes */
+    private final PrintStream progress;
+
+    /** stored objects whose contents do not hash to their name */
+    private final BitSet corrupt = new BitSet();
+    /** problems found, one line each, sorted */
+    private final Set<String> problems = new TreeSet<>();
+    /** ids of referenced objects that are not stored */
+    private final Set<ObjectId> missing = new HashSet<>();
+    /** objects referenced from a ref, HEAD or the staging area */
+    private final BitSet reachable = new BitSet();
+
+    /**
+     * @param repo repository to check
+     * @param index numbering of its objects
+     * @param threads number of workers reading objects at once
+     * @param progress stream progress lines are printed on
+     */
+    Fsck(Repository repo, ObjectIndex index, int threads, PrintStream progress) {
+        this.repo = repo;
+        this.index = index;
+        this.threads = threads;
+        this.progress = progress;
+    }
+
+    /**
+     * check the repository and print every problem found and a summary
+     * @param roots commit of each ref, by name, HEAD included
+     * @param staged blob ids in the staging area
+     * @return number of problems found
+     */
+    int run(Map<String, ObjectId> roots, Collection<ObjectId> staged) {
+        long start = System.nanoTime();
+        long bytes = hashAll();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (int i = corrupt.nextSetBit(0); i >= 0; i = corrupt.nextSetBit(i + 1)) {
+            problems.add("corrupt " + KINDS[index.kind(i)] + " " + index.id(i));
+        }
+        walk(roots, staged);
+        int dangling = 0;
+        for (int i = reachable.nextClearBit(0); i < index.size();
+             i = reachable.nextClearBit(i + 1)) {
+            if (!corrupt.get(i)) {
+                problems.add("dangling " + KINDS[index.kind(i)] + " " + index.id(i));
+                dangling += 1;
+            }
+        }
+        for (String problem: problems) {
+            System.out.println(problem);
+        }
+        System.out.printf("Checked %d objects, %d bytes in %.1f s (%.1f MB/s): "
+                + "%d corrupt, %d missing, %d dangling.%n", index.size(), bytes, seconds,
+                bytes / 1e6 / Math.max(seconds, 1e-9), corrupt.cardinality(), missing.size(),
+                dangling);
+        return problems.size();
+    }
+
+    /**
+     * re-hash every stored object with a pool of threads workers, each taking
+     * the next unchecked object, and print progress while they run
+     * @return bytes read
+     */
+    private long hashAll() {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        LongAdder bytes = new LongAdder();
+        Set<Integer> bad = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t += 1) {
+            pool.execute(() -> {
+                for (int i = next.getAndIncrement(); i < index.size();
+                     i = next.getAndIncrement()) {
+                    File file = index.file(i);
+                    try {
+                        byte[] contents = readContents(file);
+                        bytes.add(contents.length);
+                        if (!repo.hash(contents).equals(index.id(i))) {
+                            bad.add(i);
+                        }
+                    } catch (IllegalArgumentException excp) {
+                        bad.add(i);
+                    }
+                    done.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        long start = System.nanoTime();
+        try {
+            while (!pool.awaitTermination(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+                double seconds = (System.nanoTime() - start) / 1e9;
+                progress.printf("Checking objects: %d/%d, %.1f MB/s%n", done.get(),
+                        index.size(), bytes.sum() / 1e6 / seconds);
+            }
+        } catch (InterruptedException excp) {
+            pool.shutdownNow();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (int i: bad) {
+            corrupt.set(i);
+        }
+        return bytes.sum();
+    }
+
+    /**
+     * walk history from the roots, marking what is reachable and noting what
+     * is missing or unreadable
+     * @param roots commit of each ref, by name
+     * @param staged blob ids in the staging area
+     */
+    private void walk(Map<String, ObjectId> roots, Collection<ObjectId> staged) {
+        Deque<ObjectId> fringe = new ArrayDeque<>();
+        for (Map.Entry<String, ObjectId> root: roots.entrySet()) {
+            if (reach(ObjectIndex.COMMIT, root.getValue(), "ref " + root.getKey())) {
+                fringe.add(root.getValue());
+            }
+        }
+        List<ObjectId> manifests = new ArrayList<>();
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            Commit c = repo.readCommit(id);
+            if (reach(ObjectIndex.MANIFEST, c.getManifestID(), "commit " + id)) {
+                manifests.add(c.getManifestID());
+            }
+            for (ObjectId parent: c.getParent()) {
+                if (parent != null && reach(ObjectIndex.COMMIT, parent, "commit " + id)) {
+                    fringe.add(parent);
+                }
+            }
+        }
+        for (ObjectId blob: staged) {
+            reach(ObjectIndex.BLOB, blob, "staging area");
+        }
+        Map<ObjectId, ObjectId> blobs = new ConcurrentHashMap<>();
+        manifests.parallelStream().forEach(manifest -> {
+            for (ObjectId blob: repo.readManifest(manifest).values()) {
+                blobs.putIfAbsent(blob, manifest);
+            }
+        });
+        for (Map.Entry<ObjectId, ObjectId> blob: blobs.entrySet()) {
+            reach(ObjectIndex.BLOB, blob.getKey(), "manifest " + blob.getValue());
+        }
+    }
+
+    /**
+     * mark an object referenced by the walk
+     * @param kind kind of the object
+     * @param id object id
+     * @param from what references it, for the report
+     * @return true if it was stored intact and not reached before, so it can be read
+     */
+    private boolean reach(int kind, ObjectId id, String from) {
+        int i = index.find(kind, id);
+        if (i < 0) {
+            if (missing.add(id)) {
+                problems.add("missing " + KINDS[kind] + " " + id + " (from " + from + ")");
+            }
+            return false;
+        }
+        if (reachable.get(i)) {
+            return false;
+        }
+        reachable.set(i);
+        return !corrupt.get(i);
+    }
+}
@@ -0,0 +1,129 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Fsck on repositories with damaged and deleted objects.
+ *  @author Ishika Prashar
+ */
+public class FsckTest {
+    /** repository checked */
+    private final Repository repo = newRepo();
+    /** its .gitlet folder */
+    private final File gitlet = repo.getGitletDir();
+    /** the parent of tip */
+    private final ObjectId parent;
+    /** the commit master points at */
+    private final ObjectId tip;
+    /** manifest of tip */
+    private final ObjectId manifest;
+    /** blob of b.txt, which only tip has */
+    private final ObjectId blob;
+
+    /** commit a.txt, then b.txt on top of it */
+    public FsckTest() {
+        File dir = gitlet.getParentFile();
+        Utils.writeContents(new File(dir, "a.txt"), "contents of a\n");
+        repo.add("a.txt");
+        repo.commit("add a");
+        parent = repo.branchHead("master");
+        Utils.writeContents(new File(dir, "b.txt"), "contents of b\n");
+        repo.add("b.txt");
+        repo.commit("add b");
+        tip = repo.branchHead("master");
+        manifest = repo.readCommit(tip).getManifestID();
+        blob = repo.hash("contents of b\n");
+    }
+
+    /**
+     * @param folder commits, manifests or blobs
+     * @param id object id
+     * @return file the object is stored in
+     */
+    private File file(String folder, ObjectId id) {
+        return Utils.objectFile(new File(gitlet, folder), id);
+    }
+
+    /**
+     * cut a stored object to half its length
+     * @param folder commits, manifests or blobs
+     * @param id object id
+     */
+    private void truncate(String folder, ObjectId id) {
+        File file = file(folder, id);
+        byte[] contents = Utils.readContents(file);
+        Utils.writeContents(file, (Object) Arrays.copyOf(contents, contents.length / 2));
+    }
+
+    /** @return lines fsck prints, the summary last */
+    private List<String> fsck() {
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            repo.fsck();
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        return new ArrayList<>(Arrays.asList(bytes.toString().split("\n")));
+    }
+
+    /**
+     * check fsck reports a problem and ends with counts
+     * @param problem line expected among the problems
+     * @param counts expected end of the summary
+     */
+    private void assertReports(String problem, String counts) {
+        List<String> lines = fsck();
+        String summary = lines.remove(lines.size() - 1);
+        assertTrue(lines.contains(problem), lines + " has " + problem);
+        assertTrue(summary.endsWith(counts), summary + " ends with " + counts);
+    }
+
+    public void testIntactRepository() {
+        List<String> lines = fsck();
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith("0 corrupt, 0 missing, 0 dangling."), "clean");
+    }
+
+    public void testTruncatedBlob() {
+        truncate("blobs", blob);
+        assertReports("corrupt blob " + blob, "1 corrupt, 0 missing, 0 dangling.");
+    }
+
+    public void testTruncatedManifest() {
+        truncate("manifests", manifest);
+        assertReports("corrupt manifest " + manifest, "1 corrupt, 0 missing, 1 dangling.");
+    }
+
+    public void testTruncatedCommit() {
+        truncate("commits", parent);
+        assertReports("corrupt commit " + parent, "1 corrupt, 0 missing, 3 dangling.");
+    }
+
+    public void testMissingBlob() {
+        assertTrue(file("blobs", blob).delete(), "blob deleted");
+        assertReports("missing blob " + blob + " (from manifest " + manifest + ")",
+                "0 corrupt, 1 missing, 0 dangling.");
+    }
+
+    public void testMissingManifest() {
+        assertTrue(file("manifests", manifest).delete(), "manifest deleted");
+        assertReports("missing manifest " + manifest + " (from commit " + tip + ")",
+                "0 corrupt, 1 missing, 1 dangling.");
+    }
+
+    public void testMissingCommit() {
+        assertTrue(file("commits", parent).delete(), "commit deleted");
+        assertReports("missing commit " + parent + " (from commit " + tip + ")",
+                "0 corrupt, 1 missing, 3 dangling.");
+    }
+}
@@ -4,16 +4,16 @@ package gitlet;
  *  result of .getMessage() is the error message to be printed.
  *  @author P. N. Hilfinger
  */
-class GitletException extends RuntimeException {
+public class GitletException extends RuntimeException {
 
 
     /** A GitletException with no message. */
-    GitletException() {
+    public GitletException() {
         super();
     }
 
     /** A GitletException MSG as its message. */
-    GitletException(String msg) {
+    public GitletException(String msg) {
         super(msg);
     }
 
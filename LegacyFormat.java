@@ -0,0 +1,178 @@
+package gitlet;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Reads the objects of a repository made before commits kept their files
+ *  in a manifest, for Repository.upgradeFormat. such a commit was a
+ *  serialized Commit whose ids and file map held hex Strings, and whose
+ *  serialVersionUID was the one the JVM derived for it. its stream cannot
+ *  be read into today's Commit, so the stream's description of the old
+ *  class is swapped for OldCommit, a class of the same fields. the staging
+ *  area of the time is read into OldStage the same way; its class looked
+ *  like today's Stage to serialization, so it is only ever read here.
+ *  @author Ishika Prashar
+ */
+class LegacyFormat {
+    /** serialVersionUID of the old Commit */
+    static final long COMMIT_UID = 8102278303825578941L;
+    /** serialVersionUID of the old Stage, which today's Stage keeps */
+    static final long STAGE_UID = -3154431519242789691L;
+
+    /** A commit as the old format stored it. */
+    static final class OldCommit implements Serializable {
+        /** same as the old Commit */
+        private static final long serialVersionUID = COMMIT_UID;
+        /** commit message */
+        private String message;
+        /** commit date */
+        private String time;
+        /** hex id of the first parent, or null */
+        private String parent;
+        /** hex blob id of each file, by name */
+        private TreeMap<String, String> blobNameID;
+        /** hex id of the second parent, or null */
+        private String secondParent;
+
+        /**
+         * @param message commit message
+         * @param time commit date
+         * @param parent hex id of the first parent, or null
+         * @param secondParent hex id of the second parent, or null
+         * @param files hex blob id of each file, by name
+         */
+        OldCommit(String message, String time, String parent, String secondParent,
+                  TreeMap<String, String> files) {
+            this.message = message;
+            this.time = time;
+            this.parent = parent;
+            this.secondParent = secondParent;
+            this.blobNameID = files;
+        }
+
+        /** @return commit message */
+        String getMessage() {
+            return message;
+        }
+
+        /** @return commit date */
+        String getTime() {
+            return time;
+        }
+
+        /** @return first and second parent, without the absent ones */
+        List<ObjectId> getParents() {
+            List<ObjectId> parents = new ArrayList<>();
+            for (String id: new String[]{parent, secondParent}) {
+                if (id != null) {
+                    parents.add(ObjectId.fromHex(id));
+                }
+            }
+            return parents;
+        }
+
+        /** @return blob id of each file, by name */
+        Manifest getFiles() {
+            Manifest.Builder files = new Manifest.Builder();
+            for (Map.Entry<String, String> file: blobNameID.entrySet()) {
+                files.add(file.getKey(), ObjectId.fromHex(file.getValue()));
+            }
+            return files.build();
+        }
+    }
+
+    /** A staging area as the old format stored it. */
+    static final class OldStage implements Serializable {
+        /** same as the old Stage */
+        private static final long serialVersionUID = STAGE_UID;
+        /** hex blob id of each file staged for addition, by name */
+        private TreeMap<String, String> addBlob;
+        /** hex blob id of each file staged for removal, by name */
+        private TreeMap<String, String> removeBlob;
+
+        /**
+         * @param add hex blob id of each file staged for addition
+         * @param remove hex blob id of each file staged for removal
+         */
+        OldStage(TreeMap<String, String> add, TreeMap<String, String> remove) {
+            addBlob = add;
+            removeBlob = remove;
+        }
+
+        /** @return the staging area with ObjectIds */
+        Stage toStage() {
+            Stage stage = new Stage();
+            for (Map.Entry<String, String> file: addBlob.entrySet()) {
+                stage.getAddBlob().put(file.getKey(), ObjectId.fromHex(file.getValue()));
+            }
+            for (Map.Entry<String, String> file: removeBlob.entrySet()) {
+                stage.getRemoveBlob().put(file.getKey(), ObjectId.fromHex(file.getValue()));
+            }
+            return stage;
+        }
+    }
+
+    /** Reads old Commits and Stages as OldCommits and OldStages. */
+    private static class Input extends ObjectInputStream {
+        /** @param in stream of a serialized object */
+        Input(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+                throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            if (desc.getName().equals(Commit.class.getName())
+                    && desc.getSerialVersionUID() == COMMIT_UID) {
+                return ObjectStreamClass.lookup(OldCommit.class);
+            } else if (desc.getName().equals(Stage.class.getName())
+                    && desc.getSerialVersionUID() == STAGE_UID) {
+                return ObjectStreamClass.lookup(OldStage.class);
+            }
+            return desc;
+        }
+    }
+
+    /**
+     * @param file a commit file
+     * @return the commit, or null if it is not in the old format
+     */
+    static OldCommit readCommit(File file) {
+        Object obj = read(file);
+        return obj instanceof OldCommit ? (OldCommit) obj : null;
+    }
+
+    /**
+     * @param file the staging area file
+     * @return the staging area, or null if it is not in the old format
+     */
+    static OldStage readStage(File file) {
+        Object obj = read(file);
+        return obj instanceof OldStage ? (OldStage) obj : null;
+    }
+
+    /**
+     * @param file a serialized object
+     * @return the object, old classes read as their Old counterparts, or
+     *         null if it is of a class this version cannot read
+     */
+    private static Object read(File file) {
+        try (Input in = new Input(new FileInputStream(file))) {
+            return in.readObject();
+        } catch (InvalidClassException excp) {
+            return null;
+        } catch (IOException | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
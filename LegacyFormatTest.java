@@ -0,0 +1,130 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of LegacyFormat and the upgrade of old repositories.
+ *  @author Ishika Prashar
+ */
+public class LegacyFormatTest {
+    /** Writes OldCommits and OldStages as the old Commit and Stage were written. */
+    private static class OldOutput extends ObjectOutputStream {
+        /** @param out stream to write to */
+        OldOutput(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            String name = desc.forClass() == LegacyFormat.OldCommit.class ? "gitlet.Commit"
+                    : desc.forClass() == LegacyFormat.OldStage.class ? "gitlet.Stage" : null;
+            if (name == null) {
+                super.writeClassDescriptor(desc);
+                return;
+            }
+            writeUTF(name);
+            writeLong(desc.getSerialVersionUID());
+            writeByte(ObjectStreamConstants.SC_SERIALIZABLE);
+            writeShort(desc.getFields().length);
+            for (ObjectStreamField field: desc.getFields()) {
+                writeByte(field.getTypeCode());
+                writeUTF(field.getName());
+                if (!field.isPrimitive()) {
+                    writeObject(field.getTypeString());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param obj an OldCommit or OldStage
+     * @return its bytes as the old gitlet wrote it
+     */
+    private static byte[] old(Object obj) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OldOutput out = new OldOutput(bytes)) {
+            out.writeObject(obj);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * store a commit as the old gitlet did, flat and named by its SHA-1
+     * @param commits commits folder
+     * @param c the commit
+     * @return its old id
+     */
+    private static String store(File commits, LegacyFormat.OldCommit c) {
+        byte[] bytes = old(c);
+        String id = Utils.sha1(bytes);
+        Utils.writeContents(new File(commits, id), (Object) bytes);
+        return id;
+    }
+
+    public void testOldRepositoryIsUpgraded() {
+        File dir = tempDir();
+        File gitlet = new File(dir, ".gitlet");
+        File commits = new File(gitlet, "commits");
+        File blobs = new File(gitlet, "blobs");
+        File branches = new File(gitlet, "branches");
+        commits.mkdirs();
+        blobs.mkdirs();
+        branches.mkdirs();
+        String a = Utils.sha1("a\n");
+        String b = Utils.sha1("b\n");
+        Utils.writeContents(new File(blobs, a), "a\n");
+        Utils.writeContents(new File(blobs, b), "b\n");
+        String root = store(commits, new LegacyFormat.OldCommit("initial commit",
+                Commit.formatTime(new Date(0), TimeZone.getDefault()), null, null,
+                new TreeMap<>()));
+        TreeMap<String, String> files = new TreeMap<>();
+        files.put("a.txt", a);
+        String child = store(commits, new LegacyFormat.OldCommit("add a",
+                "Mon Oct 19 06:00:00 2026 +0000", root, null, files));
+        Utils.writeContents(new File(branches, "master"), child);
+        Utils.writeContents(new File(branches, "other"), root);
+        Utils.writeContents(new File(branches, "HEAD"), child);
+        Utils.writeContents(new File(branches, "current"), "master");
+        TreeMap<String, String> added = new TreeMap<>();
+        added.put("b.txt", b);
+        Utils.writeContents(new File(gitlet, "staging area"),
+                (Object) old(new LegacyFormat.OldStage(added, new TreeMap<>())));
+
+        Repository repo = new Repository(dir.getPath());
+        ObjectId master = repo.branchHead("master");
+        Commit c = repo.readCommit(master);
+        assertEquals("add a", c.getMessage());
+        assertEquals(ObjectId.fromHex(a), c.getBlobMap().get("a.txt"));
+        assertEquals("Mon Oct 19 06:00:00 2026 +0000", c.getTimeStamp());
+        assertEquals(repo.branchHead("other"), c.getParent().get(0));
+        assertEquals(newRepo().branchHead("master"), repo.branchHead("other"));
+        assertTrue(!new File(commits, child).exists(), "old commit deleted");
+        assertTrue(!new File(commits, root).exists(), "old root deleted");
+        Stage stage = Utils.readObject(new File(gitlet, "staging area"), Stage.class);
+        assertEquals(ObjectId.fromHex(b), stage.getAddBlob().get("b.txt"));
+        repo.commit("add b");
+        assertEquals(ObjectId.fromHex(b),
+                repo.readCommit(repo.branchHead("master")).getBlobMap().get("b.txt"));
+    }
+
+    public void testUnreadableObjectIsAGitletException() {
+        Repository repo = newRepo();
+        File commits = new File(repo.getGitletDir(), "commits");
+        File head = Utils.objectFile(commits, repo.branchHead("master"));
+        Utils.writeContents(head, (Object) old(new LegacyFormat.OldCommit("initial commit",
+                "Thu Jan 1 00:00:00 1970 +0000", null, null, new TreeMap<>())));
+        assertThrows(GitletException.class, () -> Utils.readObject(head, Commit.class));
+    }
+}
@@ -0,0 +1,36 @@
+package gitlet;
+
+/** Transport to a remote that is another .gitlet directory on this machine.
+ *  @author Ishika Prashar
+ */
+class LocalTransport implements Transport {
+    /** the remote repository */
+    private final Repository remote;
+
+    /**
+     * @param remote repository opened on the remote's .gitlet directory
+     */
+    LocalTransport(Repository remote) {
+        this.remote = remote;
+    }
+
+    @Override
+    public ObjectId branchHead(String branch) {
+        return remote.branchHead(branch);
+    }
+
+    @Override
+    public void fetch(ObjectId want, Repository local) {
+        Repository.transfer(remote, local, want);
+    }
+
+    @Override
+    public boolean push(String branch, ObjectId expected, ObjectId id, Repository local) {
+        Repository.transfer(local, remote, id);
+        return remote.updateBranch(branch, expected, id);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,273 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static gitlet.Utils.*;
+
+/** Locks shared by every gitlet process working in a repository. each lock
+ *  is a FileChannel lock on a file in the locks folder, so the operating
+ *  system drops it when a process dies and a crash never leaves a repository
+ *  locked. the staging area and HEAD each have a lock, and refs are hashed
+ *  onto STRIPES ref locks so writers of different branches rarely wait on
+ *  each other. objects are named by their contents and are written without
+ *  a lock. within a process the threads share one table of held locks, and
+ *  a thread may take a lock it already holds. a lock not granted within
+ *  TIMEOUT milliseconds is an error. to keep writers from deadlocking, locks
+ *  are taken in the order maintenance, recovery, staging area, HEAD, refs,
+ *  packed refs, ref stripes are taken lowest first when more than one is
+ *  needed, and a shared lock is never traded for an exclusive one.
+ *  @author Ishika Prashar
+ */
+class Locks {
+    /** number of ref locks */
+    static final int STRIPES = 16;
+    /** milliseconds to wait for a lock */
+    static final long TIMEOUT = 10000;
+    /** milliseconds between tries for a lock another process holds */
+    private static final long POLL = 10;
+    /** lock state of every lock file this process uses, by absolute file.
+     *  shared by every Repository in the JVM, as the file locks it guards are
+     *  held by the whole process and a second channel on the same file in
+     *  one process cannot take its lock. keyed by file, so repositories in
+     *  different folders never share a lock. */
+    private static final Map<File, State> STATES = new HashMap<>();
+
+    /** folder of lock files */
+    private final File folder;
+
+    /** @param folder folder of lock files, created when first needed */
+    Locks(File folder) {
+        this.folder = folder;
+    }
+
+    /** A lock held by this thread, or several taken together, released by close. */
+    static final class Held implements AutoCloseable {
+        /** state of the lock file, null for several locks */
+        private final State state;
+        /** lock within this process, null for several locks */
+        private final Lock local;
+        /** locks taken together, in the order taken, or null */
+        private final List<Held> parts;
+
+        /**
+         * @param state state of the lock file
+         * @param local lock within this process, already held
+         */
+        private Held(State state, Lock local) {
+            this.state = state;
+            this.local = local;
+            this.parts = null;
+        }
+
+        /** @param parts locks taken together, in the order taken */
+        private Held(List<Held> parts) {
+            this.state = null;
+            this.local = null;
+            this.parts = parts;
+        }
+
+        @Override
+        public void close() {
+            if (parts != null) {
+                for (int i = parts.size() - 1; i >= 0; i -= 1) {
+                    parts.get(i).close();
+                }
+                return;
+            }
+            synchronized (state) {
+                state.holds -= 1;
+                if (state.holds == 0) {
+                    state.close();
+                }
+            }
+            local.unlock();
+        }
+    }
+
+    /** Lock on one file: the lock between threads of this process, and the
+     *  FileChannel lock on the file while any of them holds it. */
+    private static final class State {
+        /** lock between threads */
+        private final ReentrantReadWriteLock local = new ReentrantReadWriteLock();
+        /** open lock file while held */
+        private FileChannel channel;
+        /** lock on it while held */
+        private FileLock lock;
+        /** number of holds by threads of this process */
+        private int holds;
+
+        /**
+         * lock the file, trying until deadline
+         * @param file lock file
+         * @param shared true for a lock other readers may share
+         * @param deadline time in milliseconds to give up at
+         * @return false if another process held it until deadline
+         */
+        private boolean open(File file, boolean shared, long deadline) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            while (true) {
+                lock = channel.tryLock(0, Long.MAX_VALUE, shared);
+                if (lock != null) {
+                    return true;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    close();
+                    return false;
+                }
+                try {
+                    Thread.sleep(POLL);
+                } catch (InterruptedException excp) {
+                    close();
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+
+        /** release the file lock and close the file */
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            } finally {
+                channel = null;
+                lock = null;
+            }
+        }
+    }
+
+    /** @return exclusive lock held while journals of crashed commands are replayed */
+    Held recovery() {
+        return take("recovery", false, TIMEOUT);
+    }
+
+    /** @return exclusive lock on the staging area */
+    Held stage() {
+        return take("stage", false, TIMEOUT);
+    }
+
+    /** @return shared lock on the staging area, for reading it with HEAD */
+    Held readStage() {
+        return take("stage", true, TIMEOUT);
+    }
+
+    /** @return exclusive lock on HEAD and current */
+    Held head() {
+        return take("HEAD", false, TIMEOUT);
+    }
+
+    /**
+     * @param name ref name
+     * @return exclusive lock on the ref's stripe
+     */
+    Held ref(String name) {
+        return take(refLock(name), false, TIMEOUT);
+    }
+
+    /**
+     * take every ref stripe, lowest first, for writers that must see all
+     * loose refs stand still, like pack-refs
+     * @return exclusive locks on all ref stripes, released together
+     */
+    Held allRefs() {
+        List<Held> parts = new ArrayList<>();
+        try {
+            for (int i = 0; i < STRIPES; i += 1) {
+                parts.add(take(stripeLock(i), false, TIMEOUT));
+            }
+        } catch (RuntimeException excp) {
+            new Held(parts).close();
+            throw excp;
+        }
+        return new Held(parts);
+    }
+
+    /** @return lock held while maintenance runs, or null if another run has it */
+    Held tryMaintenance() {
+        return take("maintenance", false, 0);
+    }
+
+    /** @return lock held while maintenance runs, waiting for another run to finish */
+    Held maintenance() {
+        return take("maintenance", false, TIMEOUT);
+    }
+
+    /** @return exclusive lock on the packed refs file */
+    Held packedRefs() {
+        return take("packed-refs", false, TIMEOUT);
+    }
+
+    /** @return name of the lock file of a ref's stripe */
+    private static String refLock(String name) {
+        return stripeLock(Math.floorMod(name.hashCode(), STRIPES));
+    }
+
+    /** @return name of the lock file of stripe i */
+    private static String stripeLock(int i) {
+        return "ref-" + i;
+    }
+
+    /**
+     * take a lock, within this process and then on its file
+     * @param name lock file name
+     * @param shared true for a lock other readers may share
+     * @param timeout milliseconds to wait, 0 to only try once
+     * @return the held lock, or null if timeout is 0 and the lock was taken
+     */
+    private Held take(String name, boolean shared, long timeout) {
+        File file = join(folder, name).getAbsoluteFile();
+        State state;
+        synchronized (STATES) {
+            state = STATES.computeIfAbsent(file, f -> new State());
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        Lock local = shared ? state.local.readLock() : state.local.writeLock();
+        try {
+            if (!local.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                return timedOut(name, timeout);
+            }
+        } catch (InterruptedException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            synchronized (state) {
+                if (state.holds == 0) {
+                    folder.mkdirs();
+                    if (!state.open(file, shared, deadline)) {
+                        local.unlock();
+                        return timedOut(name, timeout);
+                    }
+                }
+                state.holds += 1;
+            }
+        } catch (IOException | RuntimeException excp) {
+            local.unlock();
+            throw excp instanceof RuntimeException ? (RuntimeException) excp
+                    : new IllegalArgumentException(excp.getMessage());
+        }
+        return new Held(state, local);
+    }
+
+    /**
+     * @param name lock file name
+     * @param timeout milliseconds waited
+     * @return null if the caller only tried once
+     */
+    private static Held timedOut(String name, long timeout) {
+        if (timeout == 0) {
+            return null;
+        }
+        throw error("Unable to lock %s.", name);
+    }
+}
@@ -0,0 +1,71 @@
+package gitlet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** One commit as shown by log: its id, parents, date and message. toString
+ *  gives the entry as the log command prints it.
+ *  @author Ishika Prashar
+ */
+public final class LogEntry {
+    /** commit id */
+    private final String id;
+    /** first and, for merges, second parent ids */
+    private final List<String> parents;
+    /** commit date */
+    private final String date;
+    /** commit message */
+    private final String message;
+
+    /**
+     * @param id commit id
+     * @param c the commit
+     */
+    LogEntry(ObjectId id, Commit c) {
+        this.id = id.toHex();
+        List<String> ids = new ArrayList<>();
+        for (ObjectId parent: c.getParent()) {
+            if (parent != null) {
+                ids.add(parent.toHex());
+            }
+        }
+        this.parents = Collections.unmodifiableList(ids);
+        this.date = c.getTimeStamp();
+        this.message = c.getMessage();
+    }
+
+    /** @return commit id */
+    public String getId() {
+        return id;
+    }
+
+    /** @return parent ids, first parent first, empty for the initial commit */
+    public List<String> getParents() {
+        return parents;
+    }
+
+    /** @return commit date */
+    public String getDate() {
+        return date;
+    }
+
+    /** @return commit message */
+    public String getMessage() {
+        return message;
+    }
+
+    /** @return true if the commit merged two branches */
+    public boolean isMerge() {
+        return parents.size() > 1;
+    }
+
+    @Override
+    public String toString() {
+        String entry = "===" + "\n" + "commit " + id + "\n";
+        if (isMerge()) {
+            entry = entry + "Merge: " + parents.get(0).substring(0, 7) + " "
+                    + parents.get(1).substring(0, 7) + "\n";
+        }
+        return entry + "Date: " + date + "\n" + message + "\n";
+    }
+}
@@ -1,16 +1,47 @@
 package gitlet;
-
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
 
 /** Driver class for Gitlet, a subset of the Git version-control system.
+ *  a thin command line front end to Repository: it checks operands, calls
+ *  the repository and prints what it returns, and prints the message of any
+ *  GitletException thrown.
  *  @author TODO
  */
 public class Main {
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND1> <OPERAND2> ... 
+     *  [--trace[=json]] <COMMAND> <OPERAND1> <OPERAND2> ... 
      */
     public static void main(String[] args) {
-        Repository repo = new Repository(System.getProperty("user.dir"), args);
+        args = Trace.configure(args);
+        if (args.length == 0) {
+            System.out.println("Please enter a command.");
+            return;
+        }
+        try (Trace trace = Trace.beginCommand(args[0])) {
+            Repository repo = null;
+            try {
+                repo = new Repository(System.getProperty("user.dir"));
+                run(repo, args);
+            } catch (GitletException excp) {
+                System.out.println(excp.getMessage());
+            } finally {
+                if (repo != null) {
+                    repo.flushCounters();
+                }
+            }
+        }
+    }
+
+    /**
+     * run one command
+     * @param repo repository in the working directory
+     * @param args command and operands
+     */
+    private static void run(Repository repo, String[] args) {
         String firstArg = args[0];
         switch (firstArg) {
             case "init":
@@ -25,7 +56,7 @@ public class Main {
             case "commit":
                 repo.checkGitletDir();
                 repo.checkIncorrectOps(args, 2);
-                repo.commit(args[1], null);
+                repo.commit(args[1]);
                 break;
             case "checkout":
                 repo.checkGitletDir();
@@ -46,8 +77,15 @@ public class Main {
                 break;
             case "log":
                 repo.checkGitletDir();
-                repo.checkIncorrectOps(args, 1);
-                repo.log();
+                if (args.length == 1) {
+                    printLog(repo.log());
+                } else {
+                    boolean full = args.length == 4 && args[1].equals("--full-history");
+                    if (!args[args.length - 2].equals("--") || (args.length != 3 && !full)) {
+                        repo.checkoutElse();
+                    }
+                    printLog(repo.log(args[args.length - 1], full).iterator());
+                }
                 break;
             case "global-log":
                 repo.checkGitletDir();
@@ -62,7 +100,7 @@ public class Main {
             case "status":
                 repo.checkGitletDir();
                 repo.checkIncorrectOps(args, 1);
-                repo.status();
+                System.out.println(repo.status());
                 break;
             case "branch":
                 repo.checkGitletDir();
@@ -74,6 +112,78 @@ public class Main {
                 repo.checkIncorrectOps(args, 2);
                 repo.rmBranch(args[1]);
                 break;
+            case "pack-refs":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 1);
+                repo.packRefs();
+                break;
+            case "sparse-checkout":
+                repo.checkGitletDir();
+                repo.sparseCheckout(args);
+                break;
+            case "fsck":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 1);
+                repo.fsck();
+                break;
+            case "maintenance":
+                repo.checkGitletDir();
+                repo.maintenance(args);
+                break;
+            case "migrate-objects":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 1);
+                repo.migrateObjects();
+                break;
+            case "gc":
+                repo.checkGitletDir();
+                repo.gc(args);
+                break;
+            case "write-bitmaps":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 1);
+                repo.writeBitmaps();
+                break;
+            case "count-objects":
+                repo.checkGitletDir();
+                repo.countObjects(args);
+                break;
+            case "fast-import":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 1);
+                repo.fastImport(System.in, System.err);
+                break;
+            case "fast-export":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 1);
+                repo.fastExport(System.out);
+                break;
+            case "archive":
+                repo.checkGitletDir();
+                if (args.length == 3 && args[2].startsWith("--format=")) {
+                    repo.archive(args[1], args[2].substring("--format=".length()),
+                            new FileOutputStream(FileDescriptor.out));
+                } else {
+                    repo.checkIncorrectOps(args, 2);
+                    repo.archive(args[1], "tar", new FileOutputStream(FileDescriptor.out));
+                }
+                break;
+            case "bisect":
+                repo.checkGitletDir();
+                repo.bisect(args);
+                break;
+            case "cherry-pick":
+                repo.checkGitletDir();
+                if (args.length < 2) {
+                    repo.checkoutElse();
+                }
+                repo.cherryPick(Arrays.asList(args).subList(1, args.length));
+                break;
+            case "rebase":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 2);
+                repo.rebase(args[1]);
+                break;
             case "reset":
                 repo.checkGitletDir();
                 repo.checkIncorrectOps(args, 2);
@@ -82,12 +192,70 @@ public class Main {
             case "merge":
                 repo.checkGitletDir();
                 repo.checkIncorrectOps(args, 2);
-                repo.merge(args[1]);
+                MergeResult merged = repo.merge(args[1]);
+                if (merged.getMessage() != null) {
+                    System.out.println(merged.getMessage());
+                }
+                break;
+            case "diff":
+                repo.checkGitletDir();
+                repo.diff(args);
+                break;
+            case "add-remote":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 3);
+                repo.addRemote(args[1], args[2]);
+                break;
+            case "rm-remote":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 2);
+                repo.rmRemote(args[1]);
+                break;
+            case "push":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 3);
+                repo.push(args[1], args[2]);
+                break;
+            case "fetch":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 3);
+                repo.fetch(args[1], args[2]);
+                break;
+            case "pull":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 3);
+                repo.pull(args[1], args[2]);
+                break;
+            case "serve":
+                repo.checkGitletDir();
+                repo.checkIncorrectOps(args, 2);
+                repo.serve(args[1]);
                 break;
             default:
                 System.out.println("No command with that name exists.");
                 break;
         }
+        if (firstArg.equals("add") || firstArg.equals("commit") || firstArg.equals("merge")
+                || firstArg.equals("fetch") || firstArg.equals("pull")
+                || firstArg.equals("fast-import") || firstArg.equals("cherry-pick")
+                || firstArg.equals("rebase")) {
+            repo.startMaintenanceIfDue();
+        }
+    }
+
+    /**
+     * print log entries one after another, or nothing if there are none
+     * @param entries log entries
+     */
+    private static void printLog(Iterator<LogEntry> entries) {
+        if (!entries.hasNext()) {
+            return;
+        }
+        StringBuilder out = new StringBuilder(entries.next().toString());
+        while (entries.hasNext()) {
+            out.append('\n').append(entries.next());
+        }
+        System.out.println(out);
     }
 
 
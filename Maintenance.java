@@ -0,0 +1,103 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Bookkeeping for background maintenance. counters of objects written since
+ *  each maintenance task last ran are kept in a small properties file, so
+ *  deciding whether a task is due never has to list the object folders.
+ *  objects written are counted in memory and added to the file by flush,
+ *  once per command, rather than rewriting it for every object. runs are
+ *  kept from overlapping by the maintenance lock, see Locks. counters are
+ *  hints: a bump lost to a concurrent writer or a crash only delays a task.
+ *  @author Ishika Prashar
+ */
+class Maintenance {
+    /** counter of objects written since the last gc */
+    static final String OBJECTS_SINCE_GC = "objects-since-gc";
+    /** counter of objects written since bitmaps were last written */
+    static final String OBJECTS_SINCE_BITMAPS = "objects-since-bitmaps";
+
+    /** counters file */
+    private final File state;
+    /** objects written by this process and not yet added to the file */
+    private final AtomicLong pending = new AtomicLong();
+
+    /** @param state counters file */
+    Maintenance(File state) {
+        this.state = state;
+    }
+
+    /** @return the counters, empty if none were saved */
+    private Properties read() {
+        Properties counters = new Properties();
+        if (state.isFile()) {
+            try (Reader in = Files.newBufferedReader(state.toPath(), StandardCharsets.UTF_8)) {
+                counters.load(in);
+            } catch (IOException | IllegalArgumentException excp) {
+                counters.clear();
+            }
+        }
+        return counters;
+    }
+
+    /** save the counters through a temporary file and a rename */
+    private void write(Properties counters) {
+        StringWriter out = new StringWriter();
+        try {
+            counters.store(out, null);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Utils.replaceContents(state, out.toString());
+    }
+
+    /**
+     * @param counter counter name
+     * @return its value, counting objects not yet flushed
+     */
+    long get(String counter) {
+        return Long.parseLong(read().getProperty(counter, "0")) + pending.get();
+    }
+
+    /**
+     * note that objects were written. they are added to every counter by
+     * the next flush.
+     * @param objects number of objects written
+     */
+    void recordObjects(long objects) {
+        if (objects > 0) {
+            pending.addAndGet(objects);
+        }
+    }
+
+    /** add the objects written since the last flush to every counter in the file */
+    synchronized void flush() {
+        long objects = pending.getAndSet(0);
+        if (objects == 0) {
+            return;
+        }
+        Properties counters = read();
+        for (String counter: new String[]{OBJECTS_SINCE_GC, OBJECTS_SINCE_BITMAPS}) {
+            long value = Long.parseLong(counters.getProperty(counter, "0"));
+            counters.setProperty(counter, Long.toString(value + objects));
+        }
+        write(counters);
+    }
+
+    /**
+     * set a counter back to zero after its task ran
+     * @param counter counter name
+     */
+    synchronized void reset(String counter) {
+        flush();
+        Properties counters = read();
+        counters.setProperty(counter, "0");
+        write(counters);
+    }
+}
@@ -0,0 +1,57 @@
+package gitlet;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Maintenance and its lock.
+ *  @author Ishika Prashar
+ */
+public class MaintenanceTest {
+    /** folder of the files under test */
+    private final File dir = tempDir();
+    /** counters file */
+    private final File state = new File(dir, "maintenance");
+
+    public void testCountersAreWrittenOnFlush() {
+        Maintenance maintenance = new Maintenance(state);
+        maintenance.recordObjects(3);
+        maintenance.recordObjects(4);
+        assertTrue(!state.exists(), "nothing written before flush");
+        assertEquals(7L, maintenance.get(Maintenance.OBJECTS_SINCE_GC));
+        maintenance.flush();
+        Maintenance other = new Maintenance(state);
+        assertEquals(7L, other.get(Maintenance.OBJECTS_SINCE_GC));
+        assertEquals(7L, other.get(Maintenance.OBJECTS_SINCE_BITMAPS));
+        maintenance.recordObjects(2);
+        maintenance.flush();
+        assertEquals(9L, other.get(Maintenance.OBJECTS_SINCE_GC));
+    }
+
+    public void testReset() {
+        Maintenance maintenance = new Maintenance(state);
+        maintenance.recordObjects(5);
+        maintenance.reset(Maintenance.OBJECTS_SINCE_GC);
+        assertEquals(0L, maintenance.get(Maintenance.OBJECTS_SINCE_GC));
+        assertEquals(5L, maintenance.get(Maintenance.OBJECTS_SINCE_BITMAPS));
+    }
+
+    public void testMaintenanceLockIsExclusive() throws InterruptedException {
+        Locks locks = new Locks(new File(dir, "locks"));
+        AtomicBoolean taken = new AtomicBoolean();
+        try (Locks.Held held = locks.tryMaintenance()) {
+            assertTrue(held != null, "free lock taken");
+            Thread other = new Thread(() -> {
+                try (Locks.Held second = locks.tryMaintenance()) {
+                    taken.set(second != null);
+                }
+            });
+            other.start();
+            other.join();
+        }
+        assertTrue(!taken.get(), "second run refused while the first holds the lock");
+        try (Locks.Held held = locks.tryMaintenance()) {
+            assertTrue(held != null, "lock free again once released");
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package gitlet;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** Immutable map of file name to blob id, the files of a commit. names are
+ *  kept sorted in one byte array, each stored as the length of the prefix it
+ *  shares with the previous name and the rest of its UTF-8 bytes. every
+ *  RESTART-th name is stored whole so lookups can binary search those and
+ *  scan at most RESTART entries. blob ids sit in a parallel array of 20 byte
+ *  records. iteration is in name order, as merge joins need. new manifests
+ *  are made with a Builder or withChanges.
+ *  @author Ishika Prashar
+ */
+final class Manifest extends AbstractMap<String, ObjectId> implements Serializable {
+    /** a manifest with no files */
+    static final Manifest EMPTY = new Builder().build();
+
+    /** names between restart points */
+    private static final int RESTART = 16;
+
+    /** number of files */
+    private final int size;
+    /** prefix compressed names, in order */
+    private final byte[] names;
+    /** blob ids, LENGTH bytes each, in the same order */
+    private final byte[] ids;
+    /** offset in names of every RESTART-th entry */
+    private transient int[] restarts;
+    /** view returned by entrySet */
+    private transient Set<Map.Entry<String, ObjectId>> entries;
+
+    /**
+     * @param size number of files
+     * @param names prefix compressed names
+     * @param ids blob ids
+     */
+    private Manifest(int size, byte[] names, byte[] ids) {
+        this.size = size;
+        this.names = names;
+        this.ids = ids;
+        this.restarts = findRestarts();
+    }
+
+    /** @return offsets of the restart entries, found by walking the names */
+    private int[] findRestarts() {
+        int[] result = new int[(size + RESTART - 1) / RESTART];
+        int pos = 0;
+        for (int i = 0; i < size; i += 1) {
+            if (i % RESTART == 0) {
+                result[i / RESTART] = pos;
+            }
+            pos = skipVarint(pos);
+            int suffix = readVarint(pos);
+            pos = skipVarint(pos) + suffix;
+        }
+        return result;
+    }
+
+    /** rebuild the restart offsets, which are not stored. */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        restarts = findRestarts();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public ObjectId get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : ObjectId.fromBytes(ids, i * ObjectId.LENGTH);
+    }
+
+    /**
+     * @param key file name
+     * @return index of the entry for key, or -1 if there is none
+     */
+    private int indexOf(Object key) {
+        if (!(key instanceof String) || size == 0) {
+            return -1;
+        }
+        String name = (String) key;
+        int lo = 0;
+        int hi = restarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (restartName(mid).compareTo(name) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        byte[] target = name.getBytes(StandardCharsets.UTF_8);
+        byte[] current = new byte[0];
+        int pos = restarts[lo];
+        int end = Math.min(size, (lo + 1) * RESTART);
+        for (int i = lo * RESTART; i < end; i += 1) {
+            int shared = readVarint(pos);
+            pos = skipVarint(pos);
+            int suffix = readVarint(pos);
+            pos = skipVarint(pos);
+            current = Arrays.copyOf(current, shared + suffix);
+            System.arraycopy(names, pos, current, shared, suffix);
+            pos += suffix;
+            if (Arrays.equals(current, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** @return name stored whole at restart point k */
+    private String restartName(int k) {
+        int pos = skipVarint(restarts[k]);
+        int length = readVarint(pos);
+        pos = skipVarint(pos);
+        return new String(names, pos, length, StandardCharsets.UTF_8);
+    }
+
+    /** @return unsigned varint stored at names[pos] */
+    private int readVarint(int pos) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = names[pos];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+            pos += 1;
+        }
+    }
+
+    /** @return position just after the varint stored at names[pos] */
+    private int skipVarint(int pos) {
+        while (names[pos] < 0) {
+            pos += 1;
+        }
+        return pos + 1;
+    }
+
+    @Override
+    public Set<Map.Entry<String, ObjectId>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, ObjectId>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entries;
+    }
+
+    /** Iterator over the entries in name order, decoding names as it goes. */
+    private class EntryIterator implements Iterator<Map.Entry<String, ObjectId>> {
+        /** index of next entry */
+        private int next;
+        /** offset of next entry in names */
+        private int pos;
+        /** bytes of the last name returned */
+        private byte[] current = new byte[0];
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Map.Entry<String, ObjectId> next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            int shared = readVarint(pos);
+            pos = skipVarint(pos);
+            int suffix = readVarint(pos);
+            pos = skipVarint(pos);
+            if (current.length < shared + suffix) {
+                current = Arrays.copyOf(current, Math.max(shared + suffix, 2 * current.length));
+            }
+            System.arraycopy(names, pos, current, shared, suffix);
+            pos += suffix;
+            String name = new String(current, 0, shared + suffix, StandardCharsets.UTF_8);
+            ObjectId id = ObjectId.fromBytes(ids, next * ObjectId.LENGTH);
+            next += 1;
+            return new AbstractMap.SimpleImmutableEntry<>(name, id);
+        }
+    }
+
+    /**
+     * make the manifest of this one with staged changes applied, in one pass
+     * over both without re-inserting unchanged entries
+     * @param added files to add or replace, iterating in name order
+     * @param removed names of files to drop
+     * @return the new manifest
+     */
+    Manifest withChanges(Map<String, ObjectId> added, Set<String> removed) {
+        Builder builder = new Builder();
+        Iterator<Map.Entry<String, ObjectId>> oldIter = entrySet().iterator();
+        Iterator<Map.Entry<String, ObjectId>> addIter = added.entrySet().iterator();
+        Map.Entry<String, ObjectId> o = oldIter.hasNext() ? oldIter.next() : null;
+        Map.Entry<String, ObjectId> a = addIter.hasNext() ? addIter.next() : null;
+        while (o != null || a != null) {
+            int cmp;
+            if (o == null) {
+                cmp = 1;
+            } else if (a == null) {
+                cmp = -1;
+            } else {
+                cmp = o.getKey().compareTo(a.getKey());
+            }
+            Map.Entry<String, ObjectId> e;
+            if (cmp < 0) {
+                e = o;
+                o = oldIter.hasNext() ? oldIter.next() : null;
+            } else {
+                e = a;
+                a = addIter.hasNext() ? addIter.next() : null;
+                if (cmp == 0) {
+                    o = oldIter.hasNext() ? oldIter.next() : null;
+                }
+            }
+            if (!removed.contains(e.getKey())) {
+                builder.add(e.getKey(), e.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /** Builds a manifest from entries given in name order. */
+    static class Builder {
+        /** prefix compressed names so far */
+        private byte[] names = new byte[64];
+        /** number of bytes used in names */
+        private int namesLength;
+        /** blob ids so far */
+        private byte[] ids = new byte[4 * ObjectId.LENGTH];
+        /** number of entries */
+        private int size;
+        /** last name added */
+        private String last;
+        /** its UTF-8 bytes */
+        private byte[] lastBytes = new byte[0];
+
+        /**
+         * append an entry, names must be added in increasing order
+         * @param name file name
+         * @param id blob id
+         * @return this builder
+         */
+        Builder add(String name, ObjectId id) {
+            if (last != null && last.compareTo(name) >= 0) {
+                throw new IllegalArgumentException("manifest names out of order: " + name);
+            }
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            if (size % RESTART != 0) {
+                int most = Math.min(bytes.length, lastBytes.length);
+                while (shared < most && bytes[shared] == lastBytes[shared]) {
+                    shared += 1;
+                }
+            }
+            int suffix = bytes.length - shared;
+            ensureNames(10 + suffix);
+            writeVarint(shared);
+            writeVarint(suffix);
+            System.arraycopy(bytes, shared, names, namesLength, suffix);
+            namesLength += suffix;
+            if ((size + 1) * ObjectId.LENGTH > ids.length) {
+                ids = Arrays.copyOf(ids, 2 * ids.length);
+            }
+            id.copyTo(ids, size * ObjectId.LENGTH);
+            size += 1;
+            last = name;
+            lastBytes = bytes;
+            return this;
+        }
+
+        /** make room for at least extra more bytes of names */
+        private void ensureNames(int extra) {
+            if (namesLength + extra > names.length) {
+                names = Arrays.copyOf(names, Math.max(namesLength + extra, 2 * names.length));
+            }
+        }
+
+        /** append value to names as an unsigned varint */
+        private void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                names[namesLength] = (byte) ((value & 0x7f) | 0x80);
+                namesLength += 1;
+                value >>>= 7;
+            }
+            names[namesLength] = (byte) value;
+            namesLength += 1;
+        }
+
+        /** @return manifest of the entries added */
+        Manifest build() {
+            return new Manifest(size, Arrays.copyOf(names, namesLength),
+                    Arrays.copyOf(ids, size * ObjectId.LENGTH));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package gitlet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Manifest.
+ *  @author Ishika Prashar
+ */
+public class ManifestTest {
+    /** long prefix the test names share */
+    private static final String PREFIX = "src/main/java/some/deep/package/";
+
+    /**
+     * @param name a file name
+     * @return a made up blob id for it
+     */
+    private static ObjectId id(String name) {
+        return Utils.hash(Utils.DEFAULT_HASH, name);
+    }
+
+    /**
+     * @param n number of names
+     * @return n file names under PREFIX, with an id each, in name order
+     */
+    private static TreeMap<String, ObjectId> files(int n) {
+        TreeMap<String, ObjectId> files = new TreeMap<>();
+        for (int i = 0; i < n; i += 1) {
+            String name = PREFIX + (i % 2 == 0 ? "caf\u00e9" : "file") + String.format("%03d", i);
+            files.put(name, id(name));
+        }
+        return files;
+    }
+
+    /**
+     * @param files entries in name order
+     * @return the manifest of them
+     */
+    private static Manifest build(Map<String, ObjectId> files) {
+        Manifest.Builder builder = new Manifest.Builder();
+        for (Map.Entry<String, ObjectId> file: files.entrySet()) {
+            builder.add(file.getKey(), file.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * check a manifest holds exactly the expected entries, in order
+     * @param expected entries
+     * @param actual manifest
+     */
+    private static void assertSame(TreeMap<String, ObjectId> expected, Manifest actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+        for (Map.Entry<String, ObjectId> file: expected.entrySet()) {
+            assertEquals(file.getValue(), actual.get(file.getKey()));
+        }
+    }
+
+    public void testEveryRestartStoresTheWholeName() {
+        List<Integer> lengths = new ArrayList<>();
+        for (int n = 0; n <= 34; n += 1) {
+            lengths.add(Utils.serialize(build(files(n))).length);
+        }
+        for (int n = 1; n <= 34; n += 1) {
+            int growth = lengths.get(n) - lengths.get(n - 1);
+            if ((n - 1) % 16 == 0) {
+                assertTrue(growth >= ObjectId.LENGTH + PREFIX.length(),
+                        "entry " + (n - 1) + " stored whole");
+            } else {
+                assertTrue(growth < ObjectId.LENGTH + PREFIX.length(),
+                        "entry " + (n - 1) + " shares its prefix");
+            }
+        }
+    }
+
+    public void testGetAcrossRestarts() {
+        for (int n: new int[]{0, 1, 15, 16, 17, 32, 33, 100}) {
+            TreeMap<String, ObjectId> files = files(n);
+            Manifest manifest = build(files);
+            assertSame(files, manifest);
+            for (String name: files.keySet()) {
+                assertEquals(null, manifest.get(name + "x"));
+                assertEquals(null, manifest.get(name.substring(0, name.length() - 1)));
+            }
+            assertEquals(null, manifest.get(""));
+            assertEquals(null, manifest.get("a"));
+            assertEquals(null, manifest.get("zzz"));
+            assertEquals(null, manifest.get(PREFIX));
+            assertTrue(!manifest.containsKey(7), "only names are keys");
+        }
+    }
+
+    public void testNamesMustBeInOrder() {
+        Manifest.Builder builder = new Manifest.Builder().add("b", id("b"));
+        assertThrows(IllegalArgumentException.class, () -> builder.add("a", id("a")));
+        assertThrows(IllegalArgumentException.class, () -> builder.add("b", id("b")));
+    }
+
+    public void testWithChanges() {
+        TreeMap<String, ObjectId> expected = files(50);
+        Manifest manifest = build(expected);
+        TreeMap<String, ObjectId> added = new TreeMap<>();
+        added.put("", id("empty name"));
+        added.put(PREFIX + "file001", id("replaced"));
+        added.put(PREFIX + "file0015", id("new between"));
+        added.put(PREFIX + "file049", id("replaced last"));
+        added.put("zz/new", id("new last"));
+        Set<String> removed = Set.of(PREFIX + "caf\u00e9000", PREFIX + "file017",
+                PREFIX + "file0015", "not there");
+        Manifest changed = manifest.withChanges(added, removed);
+        expected.putAll(added);
+        expected.keySet().removeAll(removed);
+        assertSame(expected, changed);
+        assertSame(files(50), manifest);
+        assertSame(new TreeMap<>(), build(files(20)).withChanges(
+                new TreeMap<>(), files(20).keySet()));
+        assertSame(files(20), Manifest.EMPTY.withChanges(files(20), Set.of()));
+    }
+
+    public void testSerializationRoundTrip() {
+        for (int n: new int[]{0, 16, 40}) {
+            Manifest manifest = build(files(n));
+            Manifest read = Utils.deserialize(Utils.serialize(manifest), Manifest.class);
+            assertSame(files(n), read);
+            assertEquals(manifest, read);
+            assertEquals(Utils.serialize(manifest).length, Utils.serialize(read).length);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package gitlet;
+
+/** Outcome of a merge: what kind of merge happened and the commit the
+ *  current branch was left at.
+ *  @author Ishika Prashar
+ */
+public final class MergeResult {
+    /** Kinds of merge. */
+    public enum Kind {
+        /** a merge commit was made */
+        MERGED,
+        /** a merge commit was made with conflict markers in some files */
+        CONFLICTED,
+        /** the current branch was moved up to the given branch */
+        FAST_FORWARD,
+        /** the given branch was already merged, nothing changed */
+        ALREADY_MERGED
+    }
+
+    /** kind of merge */
+    private final Kind kind;
+    /** head of the current branch after the merge */
+    private final String commitId;
+
+    /**
+     * @param kind kind of merge
+     * @param commitId head of the current branch after the merge
+     */
+    MergeResult(Kind kind, ObjectId commitId) {
+        this.kind = kind;
+        this.commitId = commitId.toHex();
+    }
+
+    /** @return kind of merge */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** @return head of the current branch after the merge */
+    public String getCommitId() {
+        return commitId;
+    }
+
+    /** @return true if some files were left with conflict markers */
+    public boolean hasConflicts() {
+        return kind == Kind.CONFLICTED;
+    }
+
+    /** @return what the merge command prints, or null if nothing */
+    public String getMessage() {
+        switch (kind) {
+            case CONFLICTED:
+                return "Encountered a merge conflict.";
+            case FAST_FORWARD:
+                return "Current branch fast-forwarded.";
+            case ALREADY_MERGED:
+                return "Given branch is an ancestor of the current branch.";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package gitlet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/** The id of a commit or blob: the 20 byte hash of its contents, held in
+ *  three primitive fields instead of a 40 character hex String. ids order
+ *  the same way as their hex forms, so sorted collections of ids and of
+ *  file names agree.
+ *  @author Ishika Prashar
+ */
+final class ObjectId implements Comparable<ObjectId>, Serializable {
+    /** number of bytes in an id */
+    static final int LENGTH = 20;
+    /** number of hex digits in an id */
+    static final int HEX_LENGTH = 2 * LENGTH;
+
+    /** hex digits */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    /** value of each hex digit character, -1 for other characters */
+    private static final byte[] VALUES = new byte['f' + 1];
+
+    static {
+        java.util.Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i += 1) {
+            VALUES[DIGITS[i]] = (byte) i;
+        }
+    }
+
+    /** bytes 0-7, 8-15 and 16-19 of the id, big endian */
+    private final long w1;
+    private final long w2;
+    private final int w3;
+
+    /**
+     * @param w1 bytes 0-7
+     * @param w2 bytes 8-15
+     * @param w3 bytes 16-19
+     */
+    private ObjectId(long w1, long w2, int w3) {
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * @param bytes array holding an id
+     * @param offset index of its first byte
+     * @return the id held in bytes[offset, offset + 20)
+     */
+    static ObjectId fromBytes(byte[] bytes, int offset) {
+        return new ObjectId(getLong(bytes, offset), getLong(bytes, offset + 8),
+                (int) getBits(bytes, offset + 16, 4));
+    }
+
+    /**
+     * @param in stream holding the 20 bytes of an id
+     * @return the id read from in
+     */
+    static ObjectId readFrom(DataInput in) throws IOException {
+        return new ObjectId(in.readLong(), in.readLong(), in.readInt());
+    }
+
+    /**
+     * @param hex 40 hex digit id
+     * @return the id, throws IllegalArgumentException if hex is not one
+     */
+    static ObjectId fromHex(String hex) {
+        if (hex.length() != HEX_LENGTH) {
+            throw new IllegalArgumentException("not an object id: " + hex);
+        }
+        return new ObjectId(hexBits(hex, 0, 16), hexBits(hex, 16, 16), (int) hexBits(hex, 32, 8));
+    }
+
+    /**
+     * @param s a string
+     * @return true if s is a 40 hex digit id
+     */
+    static boolean isHex(String s) {
+        if (s.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i += 1) {
+            char c = s.charAt(i);
+            if (c >= VALUES.length || VALUES[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return value of bytes[offset, offset + 8) as a big endian long */
+    private static long getLong(byte[] bytes, int offset) {
+        return getBits(bytes, offset, 8);
+    }
+
+    /** @return value of bytes[offset, offset + count) as a big endian number */
+    private static long getBits(byte[] bytes, int offset, int count) {
+        long v = 0;
+        for (int i = 0; i < count; i += 1) {
+            v = (v << 8) | (bytes[offset + i] & 0xff);
+        }
+        return v;
+    }
+
+    /** @return value of hex[start, start + count) */
+    private static long hexBits(String hex, int start, int count) {
+        long v = 0;
+        for (int i = start; i < start + count; i += 1) {
+            char c = hex.charAt(i);
+            int d = c < VALUES.length ? VALUES[c] : -1;
+            if (d < 0) {
+                throw new IllegalArgumentException("not an object id: " + hex);
+            }
+            v = (v << 4) | d;
+        }
+        return v;
+    }
+
+    /**
+     * copy the 20 bytes of this id into bytes starting at offset
+     * @param bytes destination
+     * @param offset index of first byte to write
+     */
+    void copyTo(byte[] bytes, int offset) {
+        putBits(bytes, offset, w1, 8);
+        putBits(bytes, offset + 8, w2, 8);
+        putBits(bytes, offset + 16, w3, 4);
+    }
+
+    /**
+     * write the 20 bytes of this id to a stream
+     * @param out stream to write to
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(w1);
+        out.writeLong(w2);
+        out.writeInt(w3);
+    }
+
+    /** @return the 20 bytes of this id */
+    byte[] toBytes() {
+        byte[] bytes = new byte[LENGTH];
+        copyTo(bytes, 0);
+        return bytes;
+    }
+
+    /** store the low count bytes of v big endian at bytes[offset] */
+    private static void putBits(byte[] bytes, int offset, long v, int count) {
+        for (int i = count - 1; i >= 0; i -= 1) {
+            bytes[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    /** @return the 40 hex digits of this id */
+    String toHex() {
+        char[] hex = new char[HEX_LENGTH];
+        putHex(hex, 0, w1, 16);
+        putHex(hex, 16, w2, 16);
+        putHex(hex, 32, w3, 8);
+        return new String(hex);
+    }
+
+    /**
+     * @param n number of digits
+     * @return the first n hex digits of this id, as shown by log
+     */
+    String abbreviate(int n) {
+        return toHex().substring(0, n);
+    }
+
+    /** write the low count hex digits of v at hex[offset] */
+    private static void putHex(char[] hex, int offset, long v, int count) {
+        for (int i = count - 1; i >= 0; i -= 1) {
+            hex[offset + i] = DIGITS[(int) (v & 0xf)];
+            v >>>= 4;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) o;
+        return w1 == other.w1 && w2 == other.w2 && w3 == other.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (w1 >>> 32);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int c = Long.compareUnsigned(w1, other.w1);
+        if (c == 0) {
+            c = Long.compareUnsigned(w2, other.w2);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(w3, other.w3);
+        }
+        return c;
+    }
+}
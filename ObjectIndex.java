@@ -0,0 +1,149 @@
+package gitlet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/** Numbering of every object stored in a repository, so sets of objects can
+ *  be kept as bitmaps with one bit per object. commits come first, then
+ *  manifests, then blobs, each kind sorted by id so an object's number is
+ *  found by binary search.
+ *  @author Ishika Prashar
+ */
+class ObjectIndex {
+    /** object kinds, in numbering order */
+    static final int COMMIT = 0;
+    static final int MANIFEST = 1;
+    static final int BLOB = 2;
+
+    /** folder of each kind */
+    private final File[] folders;
+    /** ids of all objects, in numbering order */
+    private final ObjectId[] ids;
+    /** number of the first object of each kind, and the total at the end */
+    private final int[] starts;
+
+    /**
+     * number the objects currently in the folders
+     * @param commits commit folder
+     * @param manifests manifest folder
+     * @param blobs blob folder
+     */
+    ObjectIndex(File commits, File manifests, File blobs) {
+        folders = new File[]{commits, manifests, blobs};
+        List<ObjectId> all = new ArrayList<>();
+        starts = new int[folders.length + 1];
+        for (int kind = 0; kind < folders.length; kind += 1) {
+            starts[kind] = all.size();
+            List<String> names = objectNamesIn(folders[kind]);
+            if (names != null) {
+                for (String name: names) {
+                    all.add(ObjectId.fromHex(name));
+                }
+            }
+        }
+        starts[folders.length] = all.size();
+        ids = all.toArray(new ObjectId[0]);
+    }
+
+    /**
+     * @param folders folder of each kind
+     * @param ids ids of all objects, in numbering order
+     * @param starts number of the first object of each kind, and the total
+     */
+    private ObjectIndex(File[] folders, ObjectId[] ids, int[] starts) {
+        this.folders = folders;
+        this.ids = ids;
+        this.starts = starts;
+    }
+
+    /**
+     * write the numbering to a stream
+     * @param out stream to write to
+     */
+    void writeTo(DataOutput out) throws IOException {
+        for (int kind = 0; kind < folders.length; kind += 1) {
+            out.writeInt(starts[kind + 1] - starts[kind]);
+        }
+        for (ObjectId id: ids) {
+            id.writeTo(out);
+        }
+    }
+
+    /**
+     * read a numbering written by writeTo
+     * @param in stream to read from
+     * @param commits commit folder
+     * @param manifests manifest folder
+     * @param blobs blob folder
+     * @return the numbering
+     */
+    static ObjectIndex readFrom(DataInput in, File commits, File manifests, File blobs)
+        throws IOException {
+        File[] folders = {commits, manifests, blobs};
+        int[] starts = new int[folders.length + 1];
+        for (int kind = 0; kind < folders.length; kind += 1) {
+            starts[kind + 1] = starts[kind] + in.readInt();
+        }
+        ObjectId[] ids = new ObjectId[starts[folders.length]];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = ObjectId.readFrom(in);
+        }
+        return new ObjectIndex(folders, ids, starts);
+    }
+
+    /** @return number of objects */
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param kind COMMIT, MANIFEST or BLOB
+     * @param id object id
+     * @return number of the object, or -1 if it is not in the index
+     */
+    int find(int kind, ObjectId id) {
+        int i = Arrays.binarySearch(ids, starts[kind], starts[kind + 1], id);
+        return i < 0 ? -1 : i;
+    }
+
+    /** @return id of object number i */
+    ObjectId id(int i) {
+        return ids[i];
+    }
+
+    /** @return kind of object number i */
+    int kind(int i) {
+        int kind = 0;
+        while (i >= starts[kind + 1]) {
+            kind += 1;
+        }
+        return kind;
+    }
+
+    /** @return file object number i is stored in */
+    File file(int i) {
+        return objectFile(folders[kind(i)], ids[i]);
+    }
+
+    /**
+     * @param kind COMMIT, MANIFEST or BLOB
+     * @return number of the first object of that kind
+     */
+    int start(int kind) {
+        return starts[kind];
+    }
+
+    /**
+     * @param kind COMMIT, MANIFEST or BLOB
+     * @return number just past the last object of that kind
+     */
+    int end(int kind) {
+        return starts[kind + 1];
+    }
+}
@@ -0,0 +1,75 @@
+package gitlet;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/** Bloom filter of the file names a commit changed from its first parent,
+ *  saved with the commit so a path's history can skip most commits without
+ *  loading their manifests. mightContain never answers false for a changed
+ *  name, and answers true for an unchanged one about 1% of the time. commits
+ *  changing more than MAX_PATHS names get no filter.
+ *  @author Ishika Prashar
+ */
+final class PathFilter implements Serializable {
+    /** most changed names a filter is made for */
+    static final int MAX_PATHS = 512;
+    /** bits per changed name */
+    private static final int BITS_PER_PATH = 10;
+    /** bits set per name */
+    private static final int HASHES = 7;
+
+    /** filter bits */
+    private final long[] bits;
+
+    /** @param names changed file names */
+    private PathFilter(Collection<String> names) {
+        bits = new long[Math.max(1, (names.size() * BITS_PER_PATH + 63) >>> 6)];
+        for (String name: names) {
+            long h = hash(name);
+            for (int i = 0; i < HASHES; i += 1) {
+                int bit = index(h, i);
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * @param names file names a commit changed from its first parent
+     * @return their filter, or null if there are too many to be worth one
+     */
+    static PathFilter of(Collection<String> names) {
+        return names.size() > MAX_PATHS ? null : new PathFilter(names);
+    }
+
+    /**
+     * @param name file name
+     * @return false if the commit certainly did not change name
+     */
+    boolean mightContain(String name) {
+        long h = hash(name);
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = index(h, i);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return bit the i-th hash of a name with 64 bit hash h sets */
+    private int index(long h, int i) {
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, bits.length << 6);
+    }
+
+    /** @return 64 bit FNV-1a hash of the UTF-8 bytes of name */
+    private static long hash(String name) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b: name.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
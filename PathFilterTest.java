@@ -0,0 +1,57 @@
+package gitlet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of PathFilter.
+ *  @author Ishika Prashar
+ */
+public class PathFilterTest {
+    /**
+     * @param prefix start of every name
+     * @param n number of names
+     * @return n distinct file names
+     */
+    private static List<String> names(String prefix, int n) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            names.add(prefix + i + ".txt");
+        }
+        return names;
+    }
+
+    public void testNoFalseNegatives() {
+        for (int n = 1; n <= PathFilter.MAX_PATHS; n = n * 2 + 1) {
+            List<String> changed = names("dir/file", n);
+            PathFilter filter = PathFilter.of(changed);
+            for (String name: changed) {
+                assertTrue(filter.mightContain(name), name + " of " + n);
+            }
+        }
+    }
+
+    public void testAboutOnePercentFalsePositives() {
+        PathFilter filter = PathFilter.of(names("changed", PathFilter.MAX_PATHS));
+        int tries = 100000;
+        int hits = 0;
+        for (String name: names("unchanged", tries)) {
+            if (filter.mightContain(name)) {
+                hits += 1;
+            }
+        }
+        double rate = (double) hits / tries;
+        assertTrue(rate > 0.002 && rate < 0.02, "false positive rate " + rate);
+    }
+
+    public void testEmptyFilterMatchesNothing() {
+        PathFilter filter = PathFilter.of(Collections.emptyList());
+        assertTrue(!filter.mightContain("a.txt"), "nothing changed");
+    }
+
+    public void testNoFilterAboveMaxPaths() {
+        assertTrue(PathFilter.of(names("f", PathFilter.MAX_PATHS)) != null, "at the limit");
+        assertEquals(null, PathFilter.of(names("f", PathFilter.MAX_PATHS + 1)));
+    }
+}
@@ -0,0 +1,147 @@
+package gitlet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** The set of objects reachable from some commits and blobs, found by walking
+ *  history. objects are marked in a bitmap over an ObjectIndex. a walk stops
+ *  at any commit with a known bitmap and ors that bitmap in instead, so with
+ *  persisted bitmaps only the commits made since they were written are read.
+ *  objects the index does not number are kept aside by kind.
+ *  @author Ishika Prashar
+ */
+class Reachability {
+    /** repository walked */
+    private final Repository repo;
+    /** numbering of the objects */
+    private final ObjectIndex index;
+    /** known bitmaps of some commits */
+    private final Map<ObjectId, Bitmap> known;
+    /** marked numbered objects */
+    private final BitSet marks;
+    /** marked objects the index does not number, by kind */
+    private final List<Set<ObjectId>> extra = new ArrayList<>();
+    /** or of the known bitmaps reached */
+    private Bitmap reused;
+    /** commits whose known bitmap was used */
+    private final Set<ObjectId> reusedCommits = new HashSet<>();
+
+    /** Marks made by one worker reading manifests. */
+    private static class Marks {
+        /** numbered blobs */
+        private final BitSet bits = new BitSet();
+        /** blobs the index does not number */
+        private final Set<ObjectId> extra = new HashSet<>();
+
+        /** add other's marks to these */
+        private void merge(Marks other) {
+            bits.or(other.bits);
+            extra.addAll(other.extra);
+        }
+    }
+
+    /**
+     * @param repo repository to walk
+     * @param index numbering of the objects
+     * @param known bitmaps of some commits over the same numbering
+     */
+    Reachability(Repository repo, ObjectIndex index, Map<ObjectId, Bitmap> known) {
+        this.repo = repo;
+        this.index = index;
+        this.known = known;
+        this.marks = new BitSet(index.size());
+        for (int kind = ObjectIndex.COMMIT; kind <= ObjectIndex.BLOB; kind += 1) {
+            extra.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * @return true if the object was not marked before
+     */
+    private boolean mark(int kind, ObjectId id) {
+        int i = index.find(kind, id);
+        if (i < 0) {
+            return extra.get(kind).add(id);
+        }
+        if (marks.get(i)) {
+            return false;
+        }
+        marks.set(i);
+        return true;
+    }
+
+    /**
+     * @param commit commit reached by the walk
+     * @return true if its known bitmap was used and the walk can stop there
+     */
+    private boolean reuse(ObjectId commit) {
+        Bitmap bitmap = known.get(commit);
+        if (bitmap == null) {
+            return false;
+        }
+        if (reusedCommits.add(commit)) {
+            Trace.cacheHit();
+            reused = reused == null ? bitmap : reused.or(bitmap);
+        }
+        return true;
+    }
+
+    /**
+     * mark everything reachable from the given commits and blobs. commit headers
+     * are walked in turn, then the manifests found are read in parallel.
+     * @param commits commit ids to start from
+     * @param blobs blob ids reachable on their own, like staged files
+     */
+    void walk(Collection<ObjectId> commits, Collection<ObjectId> blobs) {
+        List<ObjectId> manifests = new ArrayList<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>();
+        for (ObjectId id: commits) {
+            if (!reuse(id) && mark(ObjectIndex.COMMIT, id)) {
+                fringe.add(id);
+            }
+        }
+        while (!fringe.isEmpty()) {
+            Commit c = repo.readCommit(fringe.remove());
+            if (mark(ObjectIndex.MANIFEST, c.getManifestID())) {
+                manifests.add(c.getManifestID());
+            }
+            for (ObjectId parent: c.getParent()) {
+                if (parent != null && !reuse(parent) && mark(ObjectIndex.COMMIT, parent)) {
+                    fringe.add(parent);
+                }
+            }
+        }
+        for (ObjectId id: blobs) {
+            mark(ObjectIndex.BLOB, id);
+        }
+        Marks blobMarks = manifests.parallelStream().collect(Marks::new, (m, manifest) -> {
+            for (ObjectId blob: repo.readManifest(manifest).values()) {
+                int i = index.find(ObjectIndex.BLOB, blob);
+                if (i >= 0) {
+                    m.bits.set(i);
+                } else {
+                    m.extra.add(blob);
+                }
+            }
+        }, Marks::merge);
+        marks.or(blobMarks.bits);
+        extra.get(ObjectIndex.BLOB).addAll(blobMarks.extra);
+    }
+
+    /** @return marked numbered objects, including those of known bitmaps used */
+    Bitmap bitmap() {
+        Bitmap walked = Bitmap.fromBitSet(marks, index.size());
+        return reused == null ? walked : walked.or(reused);
+    }
+
+    /** @return marked objects the index does not number, of the given kind */
+    Set<ObjectId> extra(int kind) {
+        return extra.get(kind);
+    }
+}
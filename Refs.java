@@ -0,0 +1,320 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static gitlet.Utils.*;
+
+/** Store of branch refs. a ref is either a loose file in the branches folder
+ *  holding a commit id, or a line of the packed-refs file, which holds many
+ *  refs as "id name" lines sorted by name so one can be found by binary
+ *  search without reading the whole file. a loose ref overrides a packed one
+ *  of the same name. a ref is changed under its stripe of the repository's
+ *  locks, see Locks, by writing its new value to name.lock and renaming that
+ *  over the ref, so readers see the old or the new value and never a partial
+ *  one. HEAD and current in the branches folder are pointer files, not refs,
+ *  and neither are the temporary files written while they are replaced.
+ *  @author Ishika Prashar
+ */
+class Refs {
+    /** suffix of the file a new value is written to before it is renamed
+     *  into place. no ref name ends with it. */
+    private static final String LOCK = ".lock";
+    /** marks the temporary files Utils.replaceContents writes beside HEAD and
+     *  current. no ref name holds it. */
+    private static final String TEMP = ".tmp-";
+
+    /** folder of loose refs */
+    private final File loose;
+    /** packed refs file */
+    private final File packed;
+    /** locks of the repository */
+    private final Locks locks;
+
+    /**
+     * @param loose folder of loose refs, the branches folder
+     * @param packed packed refs file
+     * @param locks locks of the repository
+     */
+    Refs(File loose, File packed, Locks locks) {
+        this.loose = loose;
+        this.packed = packed;
+        this.locks = locks;
+    }
+
+    /**
+     * @param name ref name, remote branches are named remote/branch
+     * @return true if name can be a ref
+     */
+    private static boolean isRefName(String name) {
+        return !name.isEmpty() && !name.equals("HEAD") && !name.equals("current")
+                && !name.endsWith(LOCK) && !name.contains(TEMP);
+    }
+
+    /**
+     * @param name ref name
+     * @return commit id the ref points at, or null if there is no such ref
+     */
+    ObjectId resolve(String name) {
+        if (!isRefName(name)) {
+            return null;
+        }
+        File file = join(loose, name);
+        if (file.isFile()) {
+            return ObjectId.fromHex(readContentsAsString(file));
+        }
+        return findPacked(name);
+    }
+
+    /**
+     * @param name ref name
+     * @return true if the ref exists
+     */
+    boolean exists(String name) {
+        return resolve(name) != null;
+    }
+
+    /**
+     * binary search the packed refs file for a name
+     * @param name ref name
+     * @return its id, or null if it is not packed
+     */
+    private ObjectId findPacked(String name) {
+        if (!packed.isFile()) {
+            return null;
+        }
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(packed.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int lo = 0;
+            int hi = buf.limit();
+            while (lo < hi) {
+                int start = (lo + hi) >>> 1;
+                while (start > lo && buf.get(start - 1) != '\n') {
+                    start -= 1;
+                }
+                int end = start;
+                while (end < buf.limit() && buf.get(end) != '\n') {
+                    end += 1;
+                }
+                int cmp = compareName(buf, start + ObjectId.HEX_LENGTH + 1, end, key);
+                if (cmp == 0) {
+                    byte[] hex = new byte[ObjectId.HEX_LENGTH];
+                    buf.get(start, hex);
+                    return ObjectId.fromHex(new String(hex, StandardCharsets.US_ASCII));
+                } else if (cmp < 0) {
+                    lo = end + 1;
+                } else {
+                    hi = start;
+                }
+            }
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** @return unsigned comparison of buf[start, end) with key */
+    private static int compareName(ByteBuffer buf, int start, int end, byte[] key) {
+        int n = Math.min(end - start, key.length);
+        for (int i = 0; i < n; i += 1) {
+            int c = Integer.compare(buf.get(start + i) & 0xff, key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(end - start, key.length);
+    }
+
+    /**
+     * @return every packed ref, by name
+     */
+    private TreeMap<String, ObjectId> readPacked() {
+        TreeMap<String, ObjectId> refs = new TreeMap<>();
+        if (!packed.isFile()) {
+            return refs;
+        }
+        for (String line: readContentsAsString(packed).split("\n")) {
+            if (line.length() > ObjectId.HEX_LENGTH) {
+                refs.put(line.substring(ObjectId.HEX_LENGTH + 1),
+                        ObjectId.fromHex(line.substring(0, ObjectId.HEX_LENGTH)));
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * @return every ref, loose ones overriding packed ones, by name
+     */
+    TreeMap<String, ObjectId> list() {
+        TreeMap<String, ObjectId> refs = readPacked();
+        addLoose(loose, "", refs);
+        return refs;
+    }
+
+    /** add the loose refs under dir, whose names start with prefix, to refs */
+    private void addLoose(File dir, String prefix, Map<String, ObjectId> refs) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file: files) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                addLoose(file, name + "/", refs);
+            } else if (isRefName(name)) {
+                refs.put(name, ObjectId.fromHex(readContentsAsString(file)));
+            }
+        }
+    }
+
+    /**
+     * point a ref at id if it currently points at expected
+     * @param name ref name
+     * @param expected id the ref must hold, null if it must not exist
+     * @param id new id
+     * @return false if the ref held something else
+     */
+    boolean compareAndSwap(String name, ObjectId expected, ObjectId id) {
+        if (!isRefName(name)) {
+            return false;
+        }
+        try (Locks.Held held = locks.ref(name)) {
+            if (!Objects.equals(resolve(name), expected)) {
+                return false;
+            }
+            write(name, id);
+            return true;
+        }
+    }
+
+    /**
+     * write a loose ref through name.lock and a rename, its stripe held
+     * @param name ref name
+     * @param id new id
+     */
+    private void write(String name, ObjectId id) {
+        File file = join(loose, name);
+        File temp = new File(file.getPath() + LOCK);
+        file.getParentFile().mkdirs();
+        writeContents(temp, id.toHex());
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * force a loose ref and the folder holding it to disk
+     * @param name ref name
+     */
+    void sync(String name) {
+        File file = join(loose, name);
+        if (file.isFile()) {
+            fsync(file);
+            fsync(file.getParentFile());
+        }
+    }
+
+    /**
+     * point a ref at id whatever it held before
+     * @param name ref name
+     * @param id new id
+     */
+    void update(String name, ObjectId id) {
+        if (!isRefName(name)) {
+            throw error("Bad ref name %s.", name);
+        }
+        try (Locks.Held held = locks.ref(name)) {
+            write(name, id);
+        }
+    }
+
+    /**
+     * remove a ref, loose and packed
+     * @param name ref name
+     * @return false if there was no such ref
+     */
+    boolean delete(String name) {
+        try (Locks.Held held = locks.ref(name)) {
+            if (resolve(name) == null) {
+                return false;
+            }
+            if (findPacked(name) != null) {
+                try (Locks.Held packedHeld = locks.packedRefs()) {
+                    TreeMap<String, ObjectId> refs = readPacked();
+                    refs.remove(name);
+                    writePacked(refs);
+                }
+            }
+            join(loose, name).delete();
+            return true;
+        }
+    }
+
+    /**
+     * move every loose ref into the packed refs file. every ref stripe is
+     * held from reading the loose refs until they are deleted, so a ref
+     * deleted or moved meanwhile is neither brought back nor lost.
+     * @return number of refs in the packed file
+     */
+    int pack() {
+        try (Locks.Held refsHeld = locks.allRefs();
+             Locks.Held packedHeld = locks.packedRefs()) {
+            TreeMap<String, ObjectId> looseRefs = new TreeMap<>();
+            addLoose(loose, "", looseRefs);
+            TreeMap<String, ObjectId> refs = readPacked();
+            refs.putAll(looseRefs);
+            writePacked(refs);
+            for (String name: looseRefs.keySet()) {
+                join(loose, name).delete();
+            }
+            return refs.size();
+        }
+    }
+
+    /**
+     * write refs as the new packed refs file, its lock held, through a
+     * temporary file renamed over it. lines are sorted by the UTF-8 bytes of
+     * the names, the order findPacked searches in.
+     */
+    private void writePacked(TreeMap<String, ObjectId> refs) {
+        byte[][] names = new byte[refs.size()][];
+        int i = 0;
+        for (String name: refs.keySet()) {
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+            i += 1;
+        }
+        Arrays.sort(names, Arrays::compareUnsigned);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] name: names) {
+            out.writeBytes(refs.get(new String(name, StandardCharsets.UTF_8)).toHex()
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.write(' ');
+            out.writeBytes(name);
+            out.write('\n');
+        }
+        File temp = new File(packed.getPath() + LOCK);
+        writeContents(temp, out.toByteArray());
+        try {
+            Files.move(temp.toPath(), packed.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
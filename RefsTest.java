@@ -0,0 +1,84 @@
+package gitlet;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Refs.
+ *  @author Ishika Prashar
+ */
+public class RefsTest {
+    /** folder of the refs under test */
+    private final File dir = tempDir();
+    /** folder of loose refs */
+    private final File loose = new File(dir, "branches");
+    /** refs under test */
+    private final Refs refs = new Refs(loose, new File(dir, "packed-refs"),
+            new Locks(new File(dir, "locks")));
+
+    /**
+     * @param i a number
+     * @return an id made from it
+     */
+    private static ObjectId id(int i) {
+        return Utils.hash(Utils.DEFAULT_HASH, "commit " + i);
+    }
+
+    public void testPackMovesLooseRefs() {
+        refs.update("master", id(1));
+        refs.update("origin/master", id(2));
+        assertEquals(2, refs.pack());
+        assertTrue(!new File(loose, "master").exists(), "loose ref removed");
+        assertEquals(id(1), refs.resolve("master"));
+        assertEquals(id(2), refs.resolve("origin/master"));
+        refs.update("master", id(3));
+        assertEquals(id(3), refs.resolve("master"));
+        assertEquals(2, refs.list().size());
+    }
+
+    public void testDeletePackedRef() {
+        refs.update("a", id(1));
+        refs.update("b", id(2));
+        refs.pack();
+        assertTrue(refs.delete("a"), "a deleted");
+        assertEquals(null, refs.resolve("a"));
+        assertEquals(id(2), refs.resolve("b"));
+        assertTrue(!refs.delete("a"), "a already gone");
+    }
+
+    public void testCompareAndSwap() {
+        assertTrue(refs.compareAndSwap("x", null, id(1)), "created");
+        assertTrue(!refs.compareAndSwap("x", null, id(2)), "exists already");
+        assertTrue(!refs.compareAndSwap("x", id(2), id(3)), "wrong expected value");
+        assertTrue(refs.compareAndSwap("x", id(1), id(3)), "moved");
+        assertEquals(id(3), refs.resolve("x"));
+    }
+
+    public void testDeleteDuringPackStaysDeleted() throws InterruptedException {
+        int n = 200;
+        for (int i = 0; i < n; i += 1) {
+            refs.update("branch" + i, id(i));
+        }
+        List<Throwable> errors = new ArrayList<>();
+        Thread packer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20; i += 1) {
+                    refs.pack();
+                }
+            } catch (RuntimeException excp) {
+                errors.add(excp);
+            }
+        });
+        packer.start();
+        for (int i = 0; i < n; i += 2) {
+            assertTrue(refs.delete("branch" + i), "branch" + i + " deleted");
+        }
+        packer.join();
+        assertEquals(List.of(), errors);
+        refs.pack();
+        for (int i = 0; i < n; i += 1) {
+            assertEquals(i % 2 == 0 ? null : id(i), refs.resolve("branch" + i));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package gitlet;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of cherry-pick and rebase, which replay commits in memory.
+ *  @author Ishika Prashar
+ */
+public class ReplayTest {
+    /** repository the commits are replayed in */
+    private final Repository repo = newRepo();
+    /** its working directory */
+    private final File dir = repo.getGitletDir().getParentFile();
+
+    /**
+     * write a file, add it and commit it
+     * @param name file name
+     * @param contents its new contents
+     * @return id of the commit
+     */
+    private ObjectId commit(String name, String contents) {
+        Utils.writeContents(new File(dir, name), contents);
+        repo.add(name);
+        repo.commit("write " + name + " " + contents.trim());
+        return repo.branchHead(current());
+    }
+
+    /** @return the current branch */
+    private String current() {
+        return Utils.readContentsAsString(new File(repo.getGitletDir(), "branches/current"));
+    }
+
+    /** @return the commit HEAD names */
+    private ObjectId head() {
+        return ObjectId.fromHex(Utils.readContentsAsString(
+                new File(repo.getGitletDir(), "branches/HEAD")));
+    }
+
+    /** @return the staging area */
+    private Stage stage() {
+        return Utils.readObject(new File(repo.getGitletDir(), "staging area"), Stage.class);
+    }
+
+    /**
+     * @param name file in the working directory
+     * @return its contents
+     */
+    private String read(String name) {
+        return Utils.readContentsAsString(new File(dir, name));
+    }
+
+    /**
+     * @param id a commit
+     * @return messages of it and its first parents, newest first
+     */
+    private List<String> history(ObjectId id) {
+        List<String> messages = new ArrayList<>();
+        for (ObjectId c = id; c != null; c = repo.readCommit(c).getParent().get(0)) {
+            messages.add(repo.readCommit(c).getMessage());
+        }
+        return messages;
+    }
+
+    /** check the working directory holds HEAD's files with the staged changes */
+    private void assertWorkingTreeMatches() {
+        Manifest files = repo.readCommit(head()).getBlobMap();
+        Stage stage = stage();
+        for (Map.Entry<String, ObjectId> file: files.entrySet()) {
+            ObjectId expected = stage.getAddBlob().getOrDefault(file.getKey(), file.getValue());
+            if (stage.getRemoveBlob().containsKey(file.getKey())) {
+                assertTrue(!new File(dir, file.getKey()).exists(), file.getKey() + " removed");
+            } else {
+                assertEquals(expected, repo.hash(Utils.readContents(new File(dir, file.getKey()))));
+            }
+        }
+        for (Map.Entry<String, ObjectId> file: stage.getAddBlob().entrySet()) {
+            assertEquals(file.getValue(), repo.hash(Utils.readContents(
+                    new File(dir, file.getKey()))));
+        }
+    }
+
+    public void testCleanCherryPick() {
+        commit("a.txt", "a\n");
+        repo.branch("other");
+        ObjectId master = commit("a.txt", "a on master\n");
+        repo.checkoutBranch("other");
+        ObjectId pick = commit("b.txt", "b\n");
+        repo.checkoutBranch("master");
+        String result = repo.cherryPick(List.of(pick.toHex()));
+        ObjectId picked = repo.readCommit(head()).getParent().get(0);
+        assertEquals(result, head().toHex());
+        assertEquals(master, picked);
+        assertEquals(head(), repo.branchHead("master"));
+        assertEquals("write b.txt b", repo.readCommit(head()).getMessage());
+        assertEquals(repo.readCommit(pick).getTimeStamp(), repo.readCommit(head()).getTimeStamp());
+        assertEquals("b\n", read("b.txt"));
+        assertEquals("a on master\n", read("a.txt"));
+        assertTrue(stage().getAddBlob().isEmpty(), "nothing staged");
+        assertWorkingTreeMatches();
+    }
+
+    public void testConflictingPickStopsWithConsistentTree() {
+        commit("a.txt", "a\n");
+        repo.branch("other");
+        ObjectId master = commit("a.txt", "a on master\n");
+        repo.checkoutBranch("other");
+        ObjectId clean = commit("b.txt", "b\n");
+        ObjectId conflicting = commit("a.txt", "a on other\n");
+        ObjectId never = commit("c.txt", "c\n");
+        repo.checkoutBranch("master");
+        repo.cherryPick(List.of(clean.toHex(), conflicting.toHex(), never.toHex()));
+        assertEquals(master, repo.readCommit(head()).getParent().get(0));
+        assertEquals("write b.txt b", repo.readCommit(head()).getMessage());
+        assertEquals(head(), repo.branchHead("master"));
+        assertEquals("<<<<<<< HEAD\na on master\n=======\na on other\n>>>>>>>\n", read("a.txt"));
+        assertTrue(stage().getAddBlob().containsKey("a.txt"), "conflict staged");
+        assertTrue(!new File(dir, "c.txt").exists(), "later commits not replayed");
+        assertWorkingTreeMatches();
+    }
+
+    public void testRebaseOverDivergedBranch() {
+        commit("a.txt", "a\n");
+        repo.branch("other");
+        commit("m.txt", "m\n");
+        commit("m.txt", "m again\n");
+        repo.checkoutBranch("other");
+        ObjectId upstream = commit("o.txt", "o\n");
+        repo.checkoutBranch("master");
+        repo.rebase("other");
+        assertEquals(List.of("write m.txt m again", "write m.txt m", "write o.txt o",
+                "write a.txt a", "initial commit"), history(head()));
+        ObjectId first = repo.readCommit(head()).getParent().get(0);
+        assertEquals(upstream, repo.readCommit(first).getParent().get(0));
+        assertEquals(head(), repo.branchHead("master"));
+        assertEquals("o\n", read("o.txt"));
+        assertEquals("m again\n", read("m.txt"));
+        assertWorkingTreeMatches();
+    }
+
+    public void testRebaseFastForwards() {
+        commit("a.txt", "a\n");
+        repo.branch("other");
+        repo.checkoutBranch("other");
+        ObjectId ahead = commit("b.txt", "b\n");
+        repo.checkoutBranch("master");
+        assertTrue(!new File(dir, "b.txt").exists(), "b only on other");
+        assertEquals(ahead.toHex(), repo.rebase("other"));
+        assertEquals(ahead, head());
+        assertEquals(ahead, repo.branchHead("master"));
+        assertEquals("b\n", read("b.txt"));
+        assertWorkingTreeMatches();
+    }
+
+    public void testUntouchedFilesAreNotRewritten() {
+        commit("a.txt", "a\n");
+        commit("keep.txt", "keep\n");
+        repo.branch("other");
+        repo.checkoutBranch("other");
+        ObjectId pick = commit("b.txt", "b\n");
+        repo.checkoutBranch("master");
+        commit("a.txt", "a on master\n");
+        File keep = new File(dir, "keep.txt");
+        File a = new File(dir, "a.txt");
+        assertTrue(keep.setLastModified(1000000) && a.setLastModified(1000000), "made old");
+        repo.cherryPick(List.of(pick.toHex()));
+        assertEquals(1000000L, keep.lastModified());
+        assertEquals(1000000L, a.lastModified());
+        assertEquals("b\n", read("b.txt"));
+    }
+}
@@ -1,7 +1,21 @@
 package gitlet;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import static gitlet.Utils.*;
 
 /** Represents a gitlet repository.
@@ -21,15 +35,69 @@ public class Repository {
     private final File BRANCHES;
     /** blobs folder to hold all blob files ever */
     private final File BLOB_FOLDER;
+    /** branch refs, loose files in BRANCHES and the packed-refs file */
+    private final Refs REFS;
+    /** locks shared with other gitlet processes, kept in the locks folder */
+    private final Locks LOCKS;
+    /** manifests folder holding the file map of each commit, named by its sha1 id */
+    private final File MANIFESTS;
+    /** remotes folder with one file per remote holding the path of its .gitlet directory */
+    private final File REMOTES;
+    /** file naming the hash algorithm of the repository, absent for SHA-1 */
+    private final File HASH;
+    /** MessageDigest algorithm object ids of this repository are made with */
+    private String hashAlgorithm;
+    /** reachability bitmaps of selected commits, written by write-bitmaps */
+    private final File BITMAPS;
+    /** sparse checkout patterns, absent when every file is checked out */
+    private final File SPARSE;
+    /** state of the bisect in progress, absent when there is none */
+    private final File BISECT;
+    /** patterns read from SPARSE, loaded on first use */
+    private SparseCheckout sparse;
+    /** counters and lock of background maintenance */
+    private final Maintenance MAINTENANCE;
+    /** most blob loads diff keeps in flight at once */
+    private static final int DIFF_THREADS = Math.min(8, Runtime.getRuntime().availableProcessors());
+    /** longest bar of plus and minus signs diff --stat prints for a file */
+    private static final int STAT_BAR = 50;
+    /** most object ids asked about in one round of push and fetch negotiation */
+    private static final int NEGOTIATION_BATCH = 1024;
+    /** milliseconds an unreachable object is kept by gc, so objects being written survive */
+    private static final long GC_GRACE = 14L * 24 * 60 * 60 * 1000;
+    /** most objects fsck reads at once */
+    private static final int FSCK_THREADS = Math.min(8, Runtime.getRuntime().availableProcessors());
+    /** number of workers hashing and writing objects in fast-import */
+    private static final int IMPORT_THREADS = Runtime.getRuntime().availableProcessors();
+    /** names of the maintenance tasks, in the order they run */
+    private static final List<String> MAINTENANCE_TASKS = List.of("pack-refs", "bitmaps", "gc");
+    /** loose refs that make the pack-refs maintenance task due */
+    private static final int PACK_REFS_DUE = 64;
+    /** objects written that make the gc maintenance task due */
+    private static final long GC_DUE = 4096;
+    /** objects written that make the bitmaps maintenance task due */
+    private static final long BITMAPS_DUE = 1024;
+    /** default seconds a maintenance run may start tasks for */
+    private static final long MAINTENANCE_BUDGET = 60;
+    /** milliseconds between maintenance runs of the serve command */
+    private static final long MAINTENANCE_INTERVAL = 5L * 60 * 1000;
+    /** write-bitmaps saves a bitmap for every this many commits of history */
+    private static final int BITMAP_SPACING = 64;
 
 
+    /**
+     * @return the .gitlet directory of this repository
+     */
+    File getGitletDir() {
+        return GITLET_DIR;
+    }
+
     /**
      * error initialized repo check
      */
     public void checkGitletDir() {
         if (!(this.GITLET_DIR.exists())) {
-            System.out.println("Not in an initialized Gitlet directory");
-            System.exit(0);
+            throw error("Not in an initialized Gitlet directory");
         }
     }
 
@@ -39,8 +107,7 @@ public class Repository {
      */
     public void checkIncorrectOps(String[] args, Integer num) {
         if (args.length != num) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw error("Incorrect operands.");
         }
     }
 
@@ -48,8 +115,7 @@ public class Repository {
      * checkout else case
      */
     public void checkoutElse() {
-        System.out.println("Incorrect operands.");
-        System.exit(0);
+        throw error("Incorrect operands.");
     }
 
 
@@ -57,65 +123,265 @@ public class Repository {
      * repo method to create folder and file paths.
      * @param currwd current working directory string of user
      */
-    public Repository(String currwd, String[] args) {
-        CWD = new File(currwd);
-        GITLET_DIR = join(CWD, ".gitlet");
+    public Repository(String currwd) {
+        this(join(new File(currwd), ".gitlet"));
+    }
+
+    /**
+     * open the repository whose working directory is dir, for use as a
+     * library. errors are thrown as GitletExceptions, and the repository can
+     * be used for any number of calls. objects written are counted for
+     * background maintenance once flushCounters is called.
+     * @param dir working directory holding .gitlet
+     * @return the repository
+     */
+    public static Repository open(Path dir) {
+        Repository repo = new Repository(dir.toAbsolutePath().toString());
+        repo.checkGitletDir();
+        return repo;
+    }
+
+    /**
+     * open the repository stored in another .gitlet directory, used for remotes
+     * @param gitletDir the .gitlet directory of the other repository
+     */
+    Repository(File gitletDir) {
+        CWD = gitletDir.getParentFile();
+        GITLET_DIR = gitletDir;
         STAGING_AREA = join(GITLET_DIR, "staging area");
         COMMITS = join(GITLET_DIR, "commits");
         BRANCHES = join(GITLET_DIR, "branches");
         BLOB_FOLDER = join(GITLET_DIR, "blobs");
-        if (args.length == 0) {
-            System.out.println("Please enter a command.");
-            System.exit(0);
+        MANIFESTS = join(GITLET_DIR, "manifests");
+        LOCKS = new Locks(join(GITLET_DIR, "locks"));
+        REFS = new Refs(BRANCHES, join(GITLET_DIR, "packed-refs"), LOCKS);
+        REMOTES = join(GITLET_DIR, "remotes");
+        HASH = join(GITLET_DIR, "hash");
+        hashAlgorithm = HASH.isFile() ? readContentsAsString(HASH).trim() : DEFAULT_HASH;
+        BITMAPS = join(GITLET_DIR, "bitmaps");
+        SPARSE = join(GITLET_DIR, "sparse-checkout");
+        BISECT = join(GITLET_DIR, "bisect");
+        MAINTENANCE = new Maintenance(join(GITLET_DIR, "maintenance"));
+        Transaction.recover(GITLET_DIR, REFS, LOCKS);
+        if (COMMITS.isDirectory() && !MANIFESTS.exists()) {
+            upgradeFormat();
+        }
+    }
+
+    /**
+     * rewrite a repository made before commits kept their files in a
+     * manifest, see LegacyFormat, which has no manifests folder. each old
+     * commit is made again, parents first, with the same message, date and
+     * files, and the branches, HEAD and staging area are moved to the new
+     * commits, all in one transaction. the new commits have new ids, as
+     * their bytes differ. blobs are kept as they are. the old commit files
+     * are deleted once the transaction is done.
+     */
+    private void upgradeFormat() {
+        try (Locks.Held held = LOCKS.recovery()) {
+            if (MANIFESTS.exists()) {
+                return;
+            }
+            Map<ObjectId, LegacyFormat.OldCommit> old = new HashMap<>();
+            Map<ObjectId, List<ObjectId>> parents = new HashMap<>();
+            for (String hex: objectNamesIn(COMMITS)) {
+                ObjectId id = ObjectId.fromHex(hex);
+                LegacyFormat.OldCommit c = LegacyFormat.readCommit(commitFile(id));
+                if (c == null) {
+                    throw error("The repository format is too old or damaged: "
+                            + "commit %s cannot be read.", hex);
+                }
+                old.put(id, c);
+                parents.put(id, c.getParents());
+            }
+            Transaction tx = new Transaction(GITLET_DIR, REFS);
+            Map<ObjectId, ObjectId> renamed = new HashMap<>();
+            Map<ObjectId, Manifest> manifests = new HashMap<>();
+            for (ObjectId id: parentsFirst(old.keySet(), parents)) {
+                LegacyFormat.OldCommit c = old.get(id);
+                List<ObjectId> ps = new ArrayList<>();
+                for (ObjectId parent: c.getParents()) {
+                    ps.add(renamed.get(parent));
+                }
+                Manifest files = c.getFiles();
+                Set<String> changed = null;
+                if (!ps.isEmpty()) {
+                    changed = new HashSet<>();
+                    for (FileChange change: manifestChanges(manifests.get(ps.get(0)), files)) {
+                        changed.add(change.name);
+                    }
+                }
+                Commit upgraded = new Commit(c.getMessage(), ps.isEmpty() ? null : ps.get(0),
+                        ps.size() > 1 ? ps.get(1) : null, files,
+                        hash(serialize(files)), changed, c.getTime());
+                ObjectId newId = writeCommit(upgraded, tx);
+                renamed.put(id, newId);
+                manifests.put(newId, files);
+            }
+            for (Map.Entry<String, ObjectId> ref: REFS.list().entrySet()) {
+                if (renamed.containsKey(ref.getValue())) {
+                    tx.updateRef(ref.getKey(), renamed.get(ref.getValue()));
+                }
+            }
+            ObjectId head = renamed.get(headId());
+            if (head != null) {
+                tx.replace(join(BRANCHES, "HEAD"), head.toHex().getBytes(StandardCharsets.UTF_8));
+            }
+            LegacyFormat.OldStage stage = LegacyFormat.readStage(STAGING_AREA);
+            if (stage != null) {
+                tx.replace(STAGING_AREA, serialize(stage.toStage()));
+            }
+            tx.commit();
+            MANIFESTS.mkdirs();
+            for (ObjectId id: old.keySet()) {
+                commitFile(id).delete();
+            }
         }
     }
 
-    /**set up persistence and create initial commit. */
+    /**set up persistence and create initial commit.
+     * ids are made with SHA-1 unless GITLET_HASH names another algorithm, like SHA-256. */
     public void init() {
         if (GITLET_DIR.exists()) {
-            System.out.println("A Gitlet version-control system "
+            throw error("A Gitlet version-control system "
                     + "already exists in the current directory.");
-            System.exit(0);
         }
         GITLET_DIR.mkdir();
         COMMITS.mkdir();
         BLOB_FOLDER.mkdir();
+        MANIFESTS.mkdir();
         BRANCHES.mkdir();
-        Commit initialCommit = new Commit("initial commit", null, null);
-        File master = join(BRANCHES, "master");
-        File head = join(BRANCHES, "HEAD");
-        File currentBranch = join(BRANCHES, "current");
-        createFileTryCatch(master);
-        createFileTryCatch(head);
-        createFileTryCatch(currentBranch);
+        String algorithm = System.getenv("GITLET_HASH");
+        if (algorithm != null && !algorithm.equals(DEFAULT_HASH)) {
+            checkHashAlgorithm(algorithm);
+            hashAlgorithm = algorithm;
+            writeContents(HASH, algorithm);
+        }
+        Commit initialCommit = new Commit("initial commit", null, null, Manifest.EMPTY,
+                hash(serialize(Manifest.EMPTY)), null);
+        Transaction tx = new Transaction(GITLET_DIR, REFS);
+        ObjectId id = writeCommit(initialCommit, tx);
+        tx.replace(join(BRANCHES, "current"), "master".getBytes(StandardCharsets.UTF_8));
+        tx.replace(join(BRANCHES, "HEAD"), id.toHex().getBytes(StandardCharsets.UTF_8));
+        tx.replace(STAGING_AREA, serialize(new Stage()));
+        tx.updateRef("master", id);
+        tx.commit();
+    }
 
-        File commitID = join(COMMITS, getCommitID(initialCommit));
-        createFileTryCatch(commitID);
-        writeObject(commitID, initialCommit);
+    /**
+     * @param vals byte arrays and Strings
+     * @return id of their concatenation, made with this repository's hash algorithm
+     */
+    ObjectId hash(Object... vals) {
+        return Utils.hash(hashAlgorithm, vals);
+    }
 
-        writeContents(master, getCommitID(initialCommit));
-        writeContents(head, getCommitID(initialCommit));
-        writeContents(currentBranch, "master");
-        createFileTryCatch(STAGING_AREA);
-        Stage stageObject = new Stage();
-        writeObject(STAGING_AREA, stageObject);
+    /**
+     * @return name of the MessageDigest algorithm object ids are made with
+     */
+    String getHashAlgorithm() {
+        return hashAlgorithm;
     }
 
     /**
-     * get shah1 id of a commit object
+     * get shah1 id of a commit object made by this command. a commit read from
+     * the repository is known by the id it was read under instead, since one
+     * saved by an older gitlet may not serialize to the same bytes.
      * @param c commit object
      * @return shah1 id
      */
-    private String getCommitID(Commit c) {
+    private ObjectId getCommitID(Commit c) {
+        byte[] serial = serialize(c);
+        return hash(serial);
+    }
+
+    /**
+     * @param id commit id
+     * @return file the commit is stored in
+     */
+    private File commitFile(ObjectId id) {
+        return objectFile(COMMITS, id);
+    }
+
+    /**
+     * @param id blob id
+     * @return file the blob is stored in
+     */
+    private File blobFile(ObjectId id) {
+        return objectFile(BLOB_FOLDER, id);
+    }
+
+    /**
+     * @param id commit id
+     * @return the commit
+     */
+    Commit readCommit(ObjectId id) {
+        Commit c = readObject(commitFile(id), Commit.class);
+        c.setManifestFolder(MANIFESTS);
+        return c;
+    }
+
+    /**
+     * @param id manifest id
+     * @return the manifest
+     */
+    Manifest readManifest(ObjectId id) {
+        return readObject(objectFile(MANIFESTS, id), Manifest.class);
+    }
+
+    /**
+     * save a new commit and, unless an equal one is already saved, its manifest,
+     * as part of a transaction
+     * @param c commit
+     * @param tx transaction writing the objects
+     * @return id of the commit
+     */
+    private ObjectId writeCommit(Commit c, Transaction tx) {
+        int written = 0;
+        if (tx.addObject(objectFile(MANIFESTS, c.getManifestID()), serialize(c.getBlobMap()))) {
+            written += 1;
+        }
         byte[] serial = serialize(c);
-        return sha1(serial);
+        ObjectId id = hash(serial);
+        if (tx.addObject(commitFile(id), serial)) {
+            written += 1;
+        }
+        MAINTENANCE.recordObjects(written);
+        return id;
+    }
+
+    /**
+     * @param ref file holding a commit id, like a branch or HEAD
+     * @return the commit id it holds
+     */
+    private ObjectId readRef(File ref) {
+        return ObjectId.fromHex(readContentsAsString(ref));
+    }
+
+    /**
+     * @return id of the head commit
+     */
+    private ObjectId headId() {
+        return readRef(join(BRANCHES, "HEAD"));
+    }
+
+    /**
+     * @return sparse checkout patterns of the working directory
+     */
+    private SparseCheckout sparse() {
+        if (sparse == null) {
+            sparse = SparseCheckout.read(SPARSE);
+        }
+        return sparse;
     }
 
     /**
      * handle the try catch exception when using .createNewFile() method.
+     * the parent folder, like the bucket of an object, is created if needed.
      * @param name File to be created
      */
     private static void createFileTryCatch(File name) {
+        name.getParentFile().mkdirs();
         try {
             name.createNewFile();
         } catch (IOException excp) {
@@ -132,80 +398,111 @@ public class Repository {
         File namedFile = join(this.CWD, name);
         Boolean removed = false;
         if (!(namedFile.exists())) {
-            System.out.println("File does not exist.");
-            System.exit(0);
+            throw error("File does not exist.");
         }
-        String idCommit = readContentsAsString(join(BRANCHES, "HEAD"));
-        Stage stager = readObject(STAGING_AREA, Stage.class);
-        if (stager.getRemoveBlob().containsKey(name)) {
-            String rmm = stager.getRemoveBlob().remove(name);
-            removed = true;
-        }
-        Commit c = readObject(join(COMMITS, idCommit), Commit.class);
-        if (c.getBlobMap().containsKey(name)) {
-            String blobID = c.getBlobMap().get(name);
-            File blobFile = join(BLOB_FOLDER, blobID);
-            if (Arrays.equals(readContents(blobFile), readContents(namedFile))) {
+        byte[] fileContent = readContents(namedFile);
+        ObjectId newID = hash(fileContent);
+        if (!newID.equals(readCommit(headId()).getBlobMap().get(name))) {
+            writeBlob(newID, fileContent);
+        }
+        try (Locks.Held stage = LOCKS.stage()) {
+            ObjectId idCommit = headId();
+            Stage stager = readObject(STAGING_AREA, Stage.class);
+            if (stager.getRemoveBlob().containsKey(name)) {
+                stager.getRemoveBlob().remove(name);
+                removed = true;
+            }
+            Commit c = readCommit(idCommit);
+            if (newID.equals(c.getBlobMap().get(name))) {
                 if (removed) {
-                    writeObject(STAGING_AREA, stager);
+                    writeStage(stager);
                 }
-                System.exit(0);
+                return;
             }
+            stager.getAddBlob().put(name, newID);
+            writeStage(stager);
         }
-        byte[] fileContent = readContents(namedFile);
-        File newBlob = join(BLOB_FOLDER, sha1(fileContent));
-        createFileTryCatch(newBlob);
-        writeContents(newBlob, fileContent);
-        stager.getAddBlob().put(name, sha1(fileContent));
-        writeObject(STAGING_AREA, stager);
+    }
+
+    /**
+     * save a blob unless a blob with the same id is already stored. the id is
+     * the hash of the contents, so a stored blob already holds them.
+     * @param id id of the contents
+     * @param contents file contents
+     * @return false if the blob was already stored
+     */
+    private boolean writeBlob(ObjectId id, byte[] contents) {
+        File blob = blobFile(id);
+        if (blob.exists()) {
+            freshen(blob);
+            Trace.deduplicated(contents.length);
+            return false;
+        }
+        blob.getParentFile().mkdirs();
+        replaceContents(blob, contents);
+        MAINTENANCE.recordObjects(1);
+        return true;
     }
 
     /**
      * save snapshot of tracked files in current commit and staging area.
      * @param msg string associated with commit call
-     * @source https://www.geeksforgeeks.org/iterate-map-java/ to iterate hashmap
+     * @return id of the new commit
      */
-    public void commit(String msg, String secondParent) {
-        if (msg.equals("")) {
-            System.out.println("Please enter a commit message.");
-            System.exit(0);
-        }
-        Stage stager = readObject(STAGING_AREA, Stage.class);
-        if (stager.getAddBlob().isEmpty() && stager.getRemoveBlob().isEmpty()) {
-            System.out.println("No changes added to the commit.");
-            System.exit(0);
-        }
-        TreeMap<String, String> stagingArea = stager.getAddBlob();
-        Commit c = new Commit(msg, readContentsAsString(join(BRANCHES, "HEAD")), secondParent);
-        String oldHEAD = readContentsAsString(join(BRANCHES, "HEAD"));
-        Commit oldHeadObj = readObject(join(COMMITS, oldHEAD), Commit.class);
-        TreeMap<String, String> newMapshallow = oldHeadObj.getBlobMap();
-        TreeMap<String, String> newMapdeep = new TreeMap<>();
-        newMapdeep.putAll(newMapshallow);
-        for (Map.Entry<String, String> entry: stagingArea.entrySet()) {
-            if (newMapdeep.containsKey(entry.getKey())) {
-                if (!(newMapdeep.get(entry.getKey()).equals(entry.getValue()))) {
-                    newMapdeep.put(entry.getKey(), entry.getValue());
+    public String commit(String msg) {
+        return commit(msg, null).toHex();
+    }
+
+    /**
+     * save snapshot of tracked files in current commit and staging area.
+     * @param msg string associated with commit call
+     * @param secondParent id of the merged in commit, or null
+     * @return id of the new commit
+     */
+    ObjectId commit(String msg, ObjectId secondParent) {
+        try (Locks.Held stage = LOCKS.stage(); Locks.Held head = LOCKS.head()) {
+            if (msg.equals("")) {
+                throw error("Please enter a commit message.");
+            }
+            Stage stager = readObject(STAGING_AREA, Stage.class);
+            if (stager.getAddBlob().isEmpty() && stager.getRemoveBlob().isEmpty()) {
+                throw error("No changes added to the commit.");
+            }
+            ObjectId oldHEAD = headId();
+            Commit oldHeadObj = readCommit(oldHEAD);
+            Manifest parentFiles = oldHeadObj.getBlobMap();
+            Manifest files = parentFiles.withChanges(stager.getAddBlob(),
+                    stager.getRemoveBlob().keySet());
+            Set<String> changed = new HashSet<>(stager.getRemoveBlob().keySet());
+            for (Map.Entry<String, ObjectId> entry: stager.getAddBlob().entrySet()) {
+                if (!entry.getValue().equals(parentFiles.get(entry.getKey()))) {
+                    changed.add(entry.getKey());
                 }
-            } else {
-                newMapdeep.put(entry.getKey(), entry.getValue());
             }
-        }
-        for (Map.Entry<String, String> entry: stager.getRemoveBlob().entrySet()) {
-            if (newMapdeep.containsKey(entry.getKey())) {
-                newMapdeep.remove(entry.getKey());
+            Commit c = new Commit(msg, oldHEAD, secondParent, files,
+                    hash(serialize(files)), changed);
+            Transaction tx = new Transaction(GITLET_DIR, REFS);
+            for (ObjectId blob: stager.getAddBlob().values()) {
+                tx.sync(blobFile(blob));
             }
+            ObjectId newID = writeCommit(c, tx);
+            stager.getAddBlob().clear();
+            stager.getRemoveBlob().clear();
+            tx.replace(STAGING_AREA, serialize(stager));
+            tx.replace(join(BRANCHES, "HEAD"), newID.toHex().getBytes(StandardCharsets.UTF_8));
+            tx.updateRef(readContentsAsString(join(BRANCHES, "current")), newID);
+            tx.commit();
+            return newID;
         }
-        clearStagearea();
-        c.getBlobMap().putAll(newMapdeep);
-
-        File commitID = join(COMMITS, getCommitID(c));
-        createFileTryCatch(commitID);
-        writeObject(commitID, c);
+    }
 
-        writeContents(join(BRANCHES, "HEAD"), getCommitID(c));
-        String currBranch = readContentsAsString(join(BRANCHES, "current"));
-        writeContents(join(BRANCHES, currBranch), getCommitID(c));
+    /**
+     * save the staging area through a rename, so readers never see half of it.
+     * the caller holds the staging area lock.
+     * @param stager staging area
+     */
+    private void writeStage(Stage stager) {
+        replaceContents(STAGING_AREA, serialize(stager));
     }
 
     /**
@@ -215,7 +512,7 @@ public class Repository {
         Stage stager = readObject(STAGING_AREA, Stage.class);
         stager.getAddBlob().clear();
         stager.getRemoveBlob().clear();
-        writeObject(STAGING_AREA, stager);
+        writeStage(stager);
     }
 
     /**
@@ -223,15 +520,14 @@ public class Repository {
      * @param name string file name
      */
     public void checkout(String name) {
-        String headId = readContentsAsString(join(BRANCHES, "HEAD"));
-        Commit comm = readObject(join(COMMITS, headId), Commit.class);
+        ObjectId headId = headId();
+        Commit comm = readCommit(headId);
         if (!(comm.getBlobMap().containsKey(name))) {
-            System.out.println("File does not exist in that commit");
-            System.exit(0);
+            throw error("File does not exist in that commit");
         } else {
             File currVersion = join(CWD, name);
             createFileTryCatch(currVersion);
-            String toUpdate = readContentsAsString(join(BLOB_FOLDER, comm.getBlobMap().get(name)));
+            String toUpdate = readContentsAsString(blobFile(comm.getBlobMap().get(name)));
             writeContents(currVersion, toUpdate);
         }
     }
@@ -242,102 +538,147 @@ public class Repository {
      * @param name of file to be checked out
      */
     public void checkout(String id, String name) {
-        String idCheck = checkShortId(id);
+        ObjectId idCheck = checkShortId(id);
         if (idCheck == null) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+            throw error("No commit with that id exists.");
         } else {
-            Commit commchk = readObject(join(COMMITS, idCheck), Commit.class);
-            if (!(commchk.getBlobMap().containsKey(name))) {
-                System.out.println("File does not exist in that commit");
-                System.exit(0);
-            } else {
-                File currVersion = join(CWD, name);
-                createFileTryCatch(currVersion);
-                String toUpdate = readContentsAsString(join(BLOB_FOLDER,
-                        commchk.getBlobMap().get(name)));
-                writeContents(currVersion, toUpdate);
-            }
+            checkout(idCheck, name);
+        }
+    }
+
+    /**
+     * take version of file from commit with the given full id, and put in CWD
+     * @param id commit id
+     * @param name of file to be checked out
+     */
+    private void checkout(ObjectId id, String name) {
+        Commit commchk = readCommit(id);
+        if (!(commchk.getBlobMap().containsKey(name))) {
+            throw error("File does not exist in that commit");
+        } else {
+            File currVersion = join(CWD, name);
+            createFileTryCatch(currVersion);
+            String toUpdate = readContentsAsString(blobFile(commchk.getBlobMap().get(name)));
+            writeContents(currVersion, toUpdate);
         }
     }
 
     /**
      * check if shortened commit id matches one in commits folder
      * @param id string commit id
+     * @return the full id, or null if there is no match
      */
-    private String checkShortId(String id) {
-        List<String> lstCommits = plainFilenamesIn(COMMITS);
-        for (String s: lstCommits) {
-            if (s.startsWith(id)) {
-                return s;
-            }
+    private ObjectId checkShortId(String id) {
+        List<String> lstCommits = objectNamesIn(COMMITS, id);
+        if (lstCommits == null || lstCommits.isEmpty()) {
+            return null;
         }
-        return null;
+        return ObjectId.fromHex(lstCommits.get(0));
     }
 
     /**
-     * display information about each commit starting at HEAD going backwards
-     * @source https://howtodoinjava.com/java/string/get-first-4-characters/
+     * information about each commit starting at HEAD going backwards along
+     * first parents, read as the iterator is advanced
+     * @return the commits, HEAD first
      */
-    public void log() {
-        String headid = readContentsAsString(join(BRANCHES, "HEAD"));
-        Commit head = readObject(join(COMMITS, headid), Commit.class);
-        String output = null;
-        if (head.getParent().get(1) != null) {
-            String first = " " + head.getParent().get(0).substring(0, 7) + " ";
-            String second = head.getParent().get(1).substring(0, 7);
-            output = "===" + "\n" + "commit " + headid + "\n" + "Merge:" + first + second + "\n"
-                    + "Date: " + head.getTimeStamp() + "\n" + head.getMessage() + "\n";
-        } else {
-            output = "===" + "\n" + "commit " + headid + "\n" + "Date: "
-                    + head.getTimeStamp() + "\n" + head.getMessage() + "\n";
-        }
-        while (head.getParent().get(0) != null) {
-            String parentId = head.getParent().get(0);
-            Commit parent = readObject((join(COMMITS, parentId)), Commit.class);
-            if (parent.getParent().get(1) != null) {
-                String firstParent = " " + parent.getParent().get(0).substring(0, 7) + " ";
-                String secondParent = parent.getParent().get(1).substring(0, 7);
-                output = output + "\n" + "===" + "\n" + "commit " + parentId + "\n"
-                        + "Merge:" + firstParent + secondParent + "\n" + "Date: "
-                        + parent.getTimeStamp() + "\n" + parent.getMessage() + "\n";
-            } else {
-                output = output + "\n" + "===" + "\n" + "commit " + parentId + "\n"
-                        + "Date: " + parent.getTimeStamp() + "\n" + parent.getMessage() + "\n";
+    public Iterator<LogEntry> log() {
+        ObjectId start = headId();
+        return new Iterator<LogEntry>() {
+            private ObjectId next = start;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public LogEntry next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Commit c = readCommit(next);
+                LogEntry entry = new LogEntry(next, c);
+                next = c.getParent().get(0);
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * like log, the commits starting at HEAD that changed the given file from
+     * their first parent. the changed path filter saved with each commit
+     * rules out most commits without loading their manifests.
+     * @param path file name
+     * @param full true to walk the second parents of merge commits too
+     * @return the commits, HEAD first
+     */
+    public List<LogEntry> log(String path, boolean full) {
+        List<LogEntry> entries = new ArrayList<>();
+        Set<ObjectId> seen = new HashSet<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>();
+        fringe.add(headId());
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            if (!seen.add(id)) {
+                continue;
+            }
+            Commit c = readCommit(id);
+            if (changes(c, path)) {
+                entries.add(new LogEntry(id, c));
+            }
+            if (c.getParent().get(0) != null) {
+                fringe.add(c.getParent().get(0));
+            }
+            if (full && c.getParent().get(1) != null) {
+                fringe.add(c.getParent().get(1));
             }
-            head = parent;
         }
-        System.out.println(output);
+        return entries;
     }
 
+    /**
+     * @param c commit
+     * @param path file name
+     * @return true if c has a different version of path than its first parent
+     */
+    private boolean changes(Commit c, String path) {
+        if (!c.mightChange(path)) {
+            Trace.cacheHit();
+            return false;
+        }
+        ObjectId parent = c.getParent().get(0);
+        ObjectId before = parent == null ? null : readCommit(parent).getBlobMap().get(path);
+        return !Objects.equals(c.getBlobMap().get(path), before);
+    }
 
     /**
      * untrack file if in head commit and remove from add staging area if present
      * @param name string of file name
      */
     public void rm(String name) {
-        File toRm = join(this.CWD, name);
-        Stage stager = readObject(STAGING_AREA, Stage.class);
-        String headid = readContentsAsString(join(BRANCHES, "HEAD"));
-        Commit c = readObject(join(COMMITS, headid), Commit.class);
-        TreeMap<String, String> commMap = c.getBlobMap();
-        if (stager.getRemoveBlob().containsKey(name)) {
-            System.exit(0);
-        } else if (stager.getAddBlob().containsKey(name) && commMap.containsKey(name)) {
-            stager.getAddBlob().remove(name);
-            stager.getRemoveBlob().put(name, commMap.get(name));
-            restrictedDelete(toRm);
-            writeObject(STAGING_AREA, stager);
-        } else if (stager.getAddBlob().containsKey(name)) {
-            stager.getAddBlob().remove(name);
-            writeObject(STAGING_AREA, stager);
-        } else if (commMap.containsKey(name)) {
-            stager.getRemoveBlob().put(name, commMap.get(name));
-            restrictedDelete(toRm);
-            writeObject(STAGING_AREA, stager);
-        } else {
-            System.out.println("No reason to remove the file.");
-            System.exit(0);
+        try (Locks.Held stage = LOCKS.stage()) {
+            File toRm = join(this.CWD, name);
+            Stage stager = readObject(STAGING_AREA, Stage.class);
+            ObjectId headid = headId();
+            Commit c = readCommit(headid);
+            Manifest commMap = c.getBlobMap();
+            if (stager.getRemoveBlob().containsKey(name)) {
+                return;
+            } else if (stager.getAddBlob().containsKey(name) && commMap.containsKey(name)) {
+                stager.getAddBlob().remove(name);
+                stager.getRemoveBlob().put(name, commMap.get(name));
+                restrictedDelete(toRm);
+                writeStage(stager);
+            } else if (stager.getAddBlob().containsKey(name)) {
+                stager.getAddBlob().remove(name);
+                writeStage(stager);
+            } else if (commMap.containsKey(name)) {
+                stager.getRemoveBlob().put(name, commMap.get(name));
+                restrictedDelete(toRm);
+                writeStage(stager);
+            } else {
+                throw error("No reason to remove the file.");
+            }
         }
     }
 
@@ -349,11 +690,11 @@ public class Repository {
      */
     public void globalLog() {
         String output = "";
-        for (String cName: plainFilenamesIn(COMMITS)) {
-            Commit c = readObject(join(COMMITS, cName), Commit.class);
+        for (String cName: objectNamesIn(COMMITS)) {
+            Commit c = readCommit(ObjectId.fromHex(cName));
             if (c.getParent().get(1) != null) {
-                String firstParent = " " + c.getParent().get(0).substring(0, 7) + " ";
-                String secondParent = c.getParent().get(1).substring(0, 7);
+                String firstParent = " " + c.getParent().get(0).abbreviate(7) + " ";
+                String secondParent = c.getParent().get(1).abbreviate(7);
                 output = output + "\n" + "===" + "\n" + "commit " + cName + "\n"
                         + "Merge:" + firstParent + secondParent + "\n" + "Date: " + c.getTimeStamp()
                         + "\n" + c.getMessage() + "\n";
@@ -373,103 +714,89 @@ public class Repository {
      */
     public void find(String msg) {
         String output = "";
-        for (String cName: plainFilenamesIn(COMMITS)) {
-            Commit c = readObject(join(COMMITS, cName), Commit.class);
+        for (String cName: objectNamesIn(COMMITS)) {
+            Commit c = readCommit(ObjectId.fromHex(cName));
             if (c.getMessage().equals(msg)) {
                 output = output + cName + "\n";
             }
         }
         if (output.equals("")) {
-            System.out.println("Found no commit with that message.");
-            System.exit(0);
+            throw error("Found no commit with that message.");
         }
         System.out.println(output.substring(0, output.length() - 1));
     }
 
 
     /**
-     * Display all currently existing branches, with * for current branch.
-     * @source 61b ed - Collections.sort method
+     * the branches, the staged and removed files, and the files changed or
+     * untracked in the working directory, read under a shared lock on the
+     * staging area so they agree with each other
+     * @return the status
      */
-    public void status() {
-        String output = "=== Branches ===" + "\n";
-        List<String> branched = plainFilenamesIn(BRANCHES);
-        Collections.sort(branched);
-        String currBranch = readContentsAsString(join(BRANCHES, "current"));
-        for (String branch: branched) {
-            if ((!branch.equals("HEAD")) && (!branch.equals("current"))) {
-                if (branch.equals(currBranch)) {
-                    output = output + "*" + branch + "\n";
+    public StatusResult status() {
+        try (Locks.Held stage = LOCKS.readStage()) {
+            List<String> branches = new ArrayList<>();
+            String currBranch = readContentsAsString(join(BRANCHES, "current"));
+            for (String branch: REFS.list().keySet()) {
+                if (!branch.contains("/")) {
+                    branches.add(branch);
+                }
+            }
+            Stage stager = readObject(STAGING_AREA, Stage.class);
+            List<String> keyList = new ArrayList<>(stager.getAddBlob().keySet());
+            Collections.sort(keyList);
+            List<String> rkeyList = new ArrayList<>(stager.getRemoveBlob().keySet());
+            Collections.sort(rkeyList);
+            List<String> filenames = new ArrayList<>();
+            ObjectId headid = headId();
+            Commit head = readCommit(headid);
+            for (String name: head.getBlobMap().keySet()) {
+                if (!sparse().includes(name)) {
+                    continue;
+                }
+                File check = join(CWD, name);
+                if (check.exists() && (!stager.getAddBlob().containsKey(name))) {
+                    if (!readContentsAsString(blobFile(head.getBlobMap().get(name)))
+                            .equals(readContentsAsString(check))) {
+                        filenames.add(name + " (modified)");
+                    }
                 } else {
-                    output = output + branch + "\n";
+                    if (!stager.getRemoveBlob().containsKey(name)) {
+                        filenames.add(name + " (deleted)");
+                    }
                 }
             }
-        }
-        output = output + "\n" + "=== Staged Files ===" + "\n";
-        Stage stager = readObject(STAGING_AREA, Stage.class);
-        TreeMap<String, String> addstage = stager.getAddBlob();
-        List<String> keyList = new ArrayList<>(addstage.keySet());
-        Collections.sort(keyList);
-        for (String name: keyList) {
-            output = output + name + "\n";
-        }
-        output = output + "\n" + "=== Removed Files ===" + "\n";
-        TreeMap<String, String> removestage = stager.getRemoveBlob();
-        List<String> rkeyList = new ArrayList<>(removestage.keySet());
-        Collections.sort(rkeyList);
-        for (String name: rkeyList) {
-            output = output + name + "\n";
-        }
-        output = output + "\n" + "=== Modifications Not Staged For Commit ===" + "\n";
-        List<String> filenames = new ArrayList<>();
-        String headid = readContentsAsString(join(BRANCHES, "HEAD"));
-        Commit head = readObject(join(COMMITS, headid), Commit.class);
-        for (String name: head.getBlobMap().keySet()) {
-            File check = join(CWD, name);
-            if (check.exists() && (!stager.getAddBlob().containsKey(name))) {
-                if (!readContentsAsString(join(BLOB_FOLDER,
-                        head.getBlobMap().get(name))).equals(readContentsAsString(check))) {
-                    filenames.add(name + " (modified)");
+            for (String name: stager.getAddBlob().keySet()) {
+                if (!sparse().includes(name)) {
+                    continue;
                 }
-            } else {
-                if (!stager.getRemoveBlob().containsKey(name)) {
+                File check = join(CWD, name);
+                if (check.exists()) {
+                    if (!readContentsAsString(blobFile(stager.getAddBlob().get(name)))
+                            .equals(readContentsAsString(check))) {
+                        filenames.add(name + " (modified)");
+                    }
+                } else {
                     filenames.add(name + " (deleted)");
                 }
             }
-        }
-        for (String name: stager.getAddBlob().keySet()) {
-            File check = join(CWD, name);
-            if (check.exists()) {
-                if (!readContentsAsString(join(BLOB_FOLDER,
-                        stager.getAddBlob().get(name))).equals(readContentsAsString(check))) {
-                    filenames.add(name + " (modified)");
+            Collections.sort(filenames);
+            List<String> untrackedfiles = new ArrayList<>();
+            List<String> allCWD = plainFilenamesIn(CWD);
+            for (String name: allCWD) {
+                if (!stager.getAddBlob().containsKey(name)) {
+                    if (!head.getBlobMap().containsKey(name)) {
+                        untrackedfiles.add(name);
+                    }
                 }
-            } else {
-                filenames.add(name + " (deleted)");
-            }
-        }
-        Collections.sort(filenames);
-        for (String name: filenames) {
-            output = output + name + "\n";
-        }
-        output = output + "\n" + "=== Untracked Files ===" + "\n";
-        List<String> untrackedfiles = new ArrayList<>();
-        List<String> allCWD = plainFilenamesIn(CWD);
-        for (String name: allCWD) {
-            if (!stager.getAddBlob().containsKey(name)) {
-                if (!head.getBlobMap().containsKey(name)) {
+                if (stager.getRemoveBlob().containsKey(name)) {
                     untrackedfiles.add(name);
                 }
             }
-            if (stager.getRemoveBlob().containsKey(name)) {
-                untrackedfiles.add(name);
-            }
+            Collections.sort(untrackedfiles);
+            return new StatusResult(branches, currBranch, keyList, rkeyList, filenames,
+                    untrackedfiles);
         }
-        Collections.sort(untrackedfiles);
-        for (String name: untrackedfiles) {
-            output = output + name + "\n";
-        }
-        System.out.println(output);
     }
 
     /**
@@ -478,36 +805,107 @@ public class Repository {
      *               and puts them in the working directory.
      */
     public void checkoutBranch(String branch) {
-        if (!(plainFilenamesIn(BRANCHES).contains(branch))) {
-            System.out.println("No such branch exists.");
-            System.exit(0);
-        }
-        if (readContentsAsString(join(BRANCHES, "current")).equals(branch)) {
-            System.out.println("No need to checkout the current branch.");
-            System.exit(0);
-        }
-        String givenid = readContentsAsString(join(BRANCHES, branch));
-        Commit given = readObject(join(COMMITS, givenid), Commit.class);
+        try (Locks.Held stage = LOCKS.stage(); Locks.Held head = LOCKS.head()) {
+            if (!branchExists(branch)) {
+                throw error("No such branch exists.");
+            }
+            if (readContentsAsString(join(BRANCHES, "current")).equals(branch)) {
+                throw error("No need to checkout the current branch.");
+            }
+            ObjectId givenid = REFS.resolve(branch);
+            Commit given = readCommit(givenid);
 
-        String currid = readContentsAsString(join(BRANCHES, "HEAD"));
-        Commit curr = readObject(join(COMMITS, currid), Commit.class);
+            ObjectId currid = headId();
+            Commit curr = readCommit(currid);
 
-        if (untrackedError(curr, given)) {
-            System.out.println("There is an untracked file in the way; "
-                    + "delete it, or add and commit it first.");
-            System.exit(0);
+            if (untrackedError(curr, given)) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            checkoutFiles(given, curr);
+            replaceContents(join(BRANCHES, "HEAD"), givenid.toHex());
+            replaceContents(join(BRANCHES, "current"), branch);
+            clearStagearea();
         }
-        for (String file: given.getBlobMap().keySet()) {
-            checkout(givenid, file);
+    }
+
+    /**
+     * put the files of a commit in the working directory in place of those of
+     * the current commit, leaving out files outside the sparse checkout patterns.
+     * each manifest and the patterns are read once, and each blob is copied
+     * straight to its file.
+     * @param given commit to check out
+     * @param curr current commit
+     */
+    private void checkoutFiles(Commit given, Commit curr) {
+        Manifest givenFiles = given.getBlobMap();
+        Manifest currFiles = curr.getBlobMap();
+        SparseCheckout patterns = sparse();
+        for (Map.Entry<String, ObjectId> entry: givenFiles.entrySet()) {
+            if (patterns.includes(entry.getKey())) {
+                File file = join(CWD, entry.getKey());
+                createFileTryCatch(file);
+                writeContents(file, (Object) readContents(blobFile(entry.getValue())));
+            }
         }
-        for (String file: curr.getBlobMap().keySet()) {
-            if (!given.getBlobMap().containsKey(file)) {
+        for (String file: currFiles.keySet()) {
+            if (!givenFiles.containsKey(file) && patterns.includes(file)) {
                 restrictedDelete(join(CWD, file));
             }
         }
-        writeContents(join(BRANCHES, "HEAD"), givenid);
-        writeContents(join(BRANCHES, "current"), branch);
-        clearStagearea();
+    }
+
+    /**
+     * check out a commit without moving the current branch, writing and
+     * deleting only the files whose blobs differ from those of HEAD
+     * @param givenid id of the commit to check out
+     * @return number of files written or deleted
+     */
+    private int checkoutChanged(ObjectId givenid) {
+        try (Locks.Held stage = LOCKS.stage(); Locks.Held head = LOCKS.head()) {
+            Commit curr = readCommit(headId());
+            Commit given = readCommit(givenid);
+            if (untrackedError(curr.getBlobMap(), given.getBlobMap())) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            int count = writeChanged(curr.getBlobMap(), given.getBlobMap());
+            replaceContents(join(BRANCHES, "HEAD"), givenid.toHex());
+            return count;
+        }
+    }
+
+    /**
+     * change the working directory from one set of files to another, writing
+     * and deleting only the files whose blobs differ
+     * @param from files now checked out
+     * @param to files to check out
+     * @return number of files written or deleted
+     */
+    private int writeChanged(Manifest from, Manifest to) {
+        int count = 0;
+        for (FileChange change: manifestChanges(from, to)) {
+            if (!sparse().includes(change.name)) {
+                continue;
+            }
+            File file = join(CWD, change.name);
+            if (change.newId == null) {
+                file.delete();
+            } else {
+                createFileTryCatch(file);
+                writeContents(file, (Object) readContents(blobFile(change.newId)));
+            }
+            count += 1;
+        }
+        return count;
+    }
+
+    /**
+     * @param name branch name, fetched remote branches are named remote/branch
+     * @return true if the branch exists
+     */
+    private boolean branchExists(String name) {
+        return REFS.exists(name);
     }
 
     /**
@@ -517,12 +915,22 @@ public class Repository {
      * @return
      */
     private boolean untrackedError(Commit curr, Commit given) {
+        return untrackedError(curr.getBlobMap(), given.getBlobMap());
+    }
+
+    /**
+     * returns true if untracked file in the way
+     * @param curr files of the current commit
+     * @param given files about to be checked out
+     * @return
+     */
+    private boolean untrackedError(Manifest curr, Manifest given) {
         for (String file: plainFilenamesIn(CWD)) {
-            if (!curr.getBlobMap().containsKey(file)) {
-                if (given.getBlobMap().containsKey(file)) {
+            if (!curr.containsKey(file) && sparse().includes(file)) {
+                if (given.containsKey(file)) {
                     String cwdContents = readContentsAsString(join(CWD, file));
-                    String givenContents = readContentsAsString(join(BLOB_FOLDER,
-                            given.getBlobMap().get(file)));
+                    String givenContents = readContentsAsString(
+                            blobFile(given.get(file)));
                     if (!cwdContents.equals(givenContents)) {
                         return true;
                     }
@@ -537,178 +945,1029 @@ public class Repository {
      * @param name branch name
      */
     public void branch(String name) {
-        if (plainFilenamesIn(BRANCHES).contains(name)) {
-            System.out.println("A branch with that name already exists.");
-            System.exit(0);
+        ObjectId id = headId();
+        if (!REFS.compareAndSwap(name, null, id)) {
+            throw error("A branch with that name already exists.");
         }
-        File newBranch = join(BRANCHES, name);
-        createFileTryCatch(newBranch);
-        String id = readContentsAsString(join(BRANCHES, "HEAD"));
-        writeContents(newBranch, id);
     }
 
 
     /**
-     *Deletes the branch with the given name.
-     * @param branch name of branch
+     * move every loose branch into the packed-refs file, so branch lookups stay
+     * fast with many thousands of branches
      */
-    public void rmBranch(String branch) {
-        if (!plainFilenamesIn(BRANCHES).contains(branch)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
-        }
-        String currBranch = readContentsAsString(join(BRANCHES, "current"));
-        if (currBranch.equals(branch)) {
-            System.out.println("Cannot remove the current branch.");
-            System.exit(0);
-        }
-        join(BRANCHES, branch).delete();
+    public void packRefs() {
+        REFS.pack();
     }
 
     /**
-     * resets file state to that given by commit id.
-     * @param id of commit
+     * show or change the sparse checkout patterns. set replaces them and
+     * disable turns sparse checkout off, and both then bring the working
+     * directory in line: head files newly included are written out, and
+     * unmodified files no longer included are deleted while staying tracked.
+     * @param args sparse-checkout list, sparse-checkout set PATTERN..., or
+     *             sparse-checkout disable
      */
-    public void reset(String id) {
-        String idCheck = checkShortId(id);
-        if (idCheck == null) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
-        }
-        Commit commchk = readObject(join(COMMITS, idCheck), Commit.class);
-        String currId = readContentsAsString(join(BRANCHES, "HEAD"));
-        Commit current = readObject(join(COMMITS, currId), Commit.class);
-
-        if (untrackedError(current, commchk)) {
-            System.out.println("There is an untracked file in the way; delete it, "
-                    + "or add and commit it first.");
-            System.exit(0);
-        }
-
-        for (String file: commchk.getBlobMap().keySet()) {
-            checkout(idCheck, file);
+    public void sparseCheckout(String[] args) {
+        SparseCheckout next = null;
+        if (args.length == 2 && args[1].equals("list")) {
+            for (String pattern: sparse().patterns()) {
+                System.out.println(pattern);
+            }
+            return;
+        } else if (args.length >= 3 && args[1].equals("set")) {
+            next = new SparseCheckout(Arrays.asList(args).subList(2, args.length));
+        } else if (args.length == 2 && args[1].equals("disable")) {
+            next = new SparseCheckout(null);
+        } else {
+            checkoutElse();
         }
-        for (String file: current.getBlobMap().keySet()) {
-            if (!commchk.getBlobMap().containsKey(file)) {
-                restrictedDelete(join(CWD, file));
+        Commit head = readCommit(headId());
+        Stage stager = readObject(STAGING_AREA, Stage.class);
+        for (Map.Entry<String, ObjectId> entry: head.getBlobMap().entrySet()) {
+            String name = entry.getKey();
+            File file = join(CWD, name);
+            if (stager.getAddBlob().containsKey(name)
+                    || stager.getRemoveBlob().containsKey(name)) {
+                continue;
+            }
+            if (next.includes(name) && !file.exists()) {
+                writeContents(file, readContents(blobFile(entry.getValue())));
+            } else if (!next.includes(name) && file.isFile()
+                    && hash(readContents(file)).equals(entry.getValue())) {
+                restrictedDelete(file);
             }
         }
-        writeContents(join(BRANCHES, "HEAD"), idCheck);
-        String currBranch = readContentsAsString(join(BRANCHES, "current"));
-        writeContents(join(BRANCHES, currBranch), idCheck);
-        clearStagearea();
+        next.write(SPARSE);
+        sparse = next;
     }
 
     /**
-     * helper method for merge errors resulting in exits
-     * @param stager stage area
-     * @param branch name of branch to merge check error
+     * verify every stored object hashes to its name and every ref, commit and
+     * manifest points at objects that are stored, printing corrupt, missing
+     * and dangling objects. objects are read by FSCK_THREADS workers at once,
+     * with progress and MB/s printed to stderr as they go.
      */
-    private void mergeErrors(Stage stager, String branch) {
-        if ((!stager.getRemoveBlob().isEmpty()) || (!stager.getAddBlob().isEmpty())) {
-            System.out.println("You have uncommitted changes.");
-            System.exit(0);
-        }
-        if (!plainFilenamesIn(BRANCHES).contains(branch)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
-        }
-        if (readContentsAsString(join(BRANCHES, "current")).equals(branch)) {
-            System.out.println("Cannot merge a branch with itself.");
-            System.exit(0);
-        }
+    public void fsck() {
+        ObjectIndex index = new ObjectIndex(COMMITS, MANIFESTS, BLOB_FOLDER);
+        Map<String, ObjectId> roots = new TreeMap<>(REFS.list());
+        roots.put("HEAD", headId());
+        Stage stager = readObject(STAGING_AREA, Stage.class);
+        List<ObjectId> staged = new ArrayList<>(stager.getAddBlob().values());
+        staged.addAll(stager.getRemoveBlob().values());
+        new Fsck(this, index, FSCK_THREADS, System.err).run(roots, staged);
     }
 
     /**
-     * exit if split pt error
-     * @param splitIDd split pt sha1
-     * @param branch string name
+     * import history from a stream in the format of git fast-import, see
+     * FastImport, then point the refs it names at their new commits. the
+     * working directory and staging area are left alone, as after a fetch.
+     * @param in stream to read
+     * @param progress stream the summary and progress lines are printed on
+     * @return number of commits imported
      */
-    private void splitpterror(String splitIDd, String branch) {
-        String currBranch = readContentsAsString(join(BRANCHES, "current"));
-        String currid = readContentsAsString(join(BRANCHES, currBranch));
-        String givenid = readContentsAsString(join(BRANCHES, branch));
-        if (currid.equals(splitIDd)) {
-            checkoutBranch(branch);
-            System.out.println("Current branch fast-forwarded.");
-            System.exit(0);
-        }
-        if (givenid.equals(splitIDd)) {
-            System.out.println("Given branch is an ancestor of the current branch.");
-            System.exit(0);
+    public int fastImport(InputStream in, PrintStream progress) {
+        long start = System.nanoTime();
+        FastImport importer = new FastImport(this, BLOB_FOLDER, MANIFESTS, COMMITS,
+                Transaction.tmpFolder(GITLET_DIR), IMPORT_THREADS, progress);
+        Map<String, ObjectId> refs = importer.run(in);
+        try (Locks.Held head = LOCKS.head()) {
+            String currBranch = readContentsAsString(join(BRANCHES, "current"));
+            for (Map.Entry<String, ObjectId> ref: refs.entrySet()) {
+                REFS.update(ref.getKey(), ref.getValue());
+                if (ref.getKey().equals(currBranch)) {
+                    replaceContents(join(BRANCHES, "HEAD"), ref.getValue().toHex());
+                }
+            }
         }
+        MAINTENANCE.recordObjects(importer.objectsWritten());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        progress.printf("Imported %d blobs, %d commits and %d refs in %.1f s "
+                + "(%.0f commits/s).%n", importer.blobs(), importer.commits(), refs.size(),
+                seconds, importer.commits() / Math.max(seconds, 1e-9));
+        return importer.commits();
     }
 
     /**
-     * handle untrack exit case
-     * @param currentHead commit
-     * @param givenHead commit
+     * write the history reachable from every ref as a stream fast-import reads
+     * @param out stream to write to
+     * @return number of commits written
      */
-    private void untrackk(Commit currentHead, Commit givenHead) {
-        if (untrackedError(currentHead, givenHead)) {
-            System.out.println("There is an untracked file in the way; delete it, "
-                    + "or add and commit it first.");
-            System.exit(0);
-        }
+    public int fastExport(OutputStream out) {
+        return new FastExport(this, BLOB_FOLDER, out).run(REFS.list());
     }
 
     /**
-     *Merges files from the given branch into the current branch.
-     * @param branch name of branch to merge
+     * write the files of a commit as an archive, read from the object store
+     * without touching the working directory or staging area, see Archive
+     * @param ref branch name or, possibly shortened, commit id
+     * @param format tar or zip
+     * @param out stream to write to, zero-copy for large files if it is a
+     *            FileOutputStream
      */
-    public void merge(String branch) {
-        Stage stager = readObject(STAGING_AREA, Stage.class);
-        boolean mergeConflict = false;
-        mergeErrors(stager, branch);
-        String currBranch = readContentsAsString(join(BRANCHES, "current"));
-        String currid = readContentsAsString(join(BRANCHES, currBranch));
-        Commit currentHead = readObject(join(COMMITS, currid), Commit.class);
-        String givenid = readContentsAsString(join(BRANCHES, branch));
-        Commit givenHead = readObject(join(COMMITS, givenid), Commit.class);
-        Commit splitPoint = bfsFindSplitPoint(givenHead, currentHead);
-        String splitIDd = getCommitID(splitPoint);
-        untrackk(currentHead, givenHead);
-        splitpterror(splitIDd, branch);
-        if (mergeCaseChecks(splitPoint, currentHead, givenHead, givenid)) {
-            mergeConflict = true;
-        }
-        if (currentnonsplit(currentHead, splitPoint, givenHead)) {
-            mergeConflict = true;
-        }
-        if (nonsplitptFiles(givenHead, splitPoint, currentHead, givenid)) {
-            mergeConflict = true;
-        }
-        commit("Merged " + branch + " into " + currBranch + ".", givenid);
-        if (mergeConflict) {
-            System.out.println("Encountered a merge conflict.");
+    public void archive(String ref, String format, OutputStream out) {
+        if (!format.equals("tar") && !format.equals("zip")) {
+            throw error("Unknown archive format %s.", format);
+        }
+        ObjectId id = resolveCommit(ref);
+        Commit c = readCommit(id);
+        Archive archive = new Archive(BLOB_FOLDER, out);
+        if (format.equals("tar")) {
+            archive.tar(id, c.getBlobMap(), c.getMillis());
+        } else {
+            archive.zip(id, c.getBlobMap(), c.getMillis(),
+                    TimeZone.getTimeZone("GMT" + c.getZone()));
         }
     }
 
     /**
-     * main merge work of checking files
-     * @param splitPoint commit
+     * find the commit that introduced a bug by binary search over history, see
+     * Bisect. start begins a bisect, optionally marking a bad commit and good
+     * ones. bad, good and skip mark commits, HEAD if none are given. after each
+     * mark the next commit to test is checked out, HEAD moving while the branch
+     * stays. run tests every commit with a command, which exits with 0 for
+     * good, 125 for skip and 1 to 127 otherwise for bad. reset checks out the
+     * commit the bisect began on and ends it.
+     * @param args bisect start [BAD [GOOD...]], bisect bad|good|skip [COMMIT...],
+     *             bisect run COMMAND [ARG...] or bisect reset
+     */
+    public void bisect(String[] args) {
+        if (args.length < 2) {
+            checkoutElse();
+        }
+        Bisect bisect = Bisect.read(BISECT);
+        if (bisect == null && !args[1].equals("start")) {
+            throw error("Not bisecting.");
+        }
+        Map<ObjectId, List<ObjectId>> read = new HashMap<>();
+        Function<ObjectId, List<ObjectId>> parents = id -> read.computeIfAbsent(id,
+                c -> readCommit(c).getParent());
+        switch (args[1]) {
+            case "start":
+                if (bisect != null) {
+                    throw error("A bisect is already in progress.");
+                }
+                try (Locks.Held stage = LOCKS.readStage()) {
+                    Stage stager = readObject(STAGING_AREA, Stage.class);
+                    if (!stager.getAddBlob().isEmpty() || !stager.getRemoveBlob().isEmpty()) {
+                        throw error("You have uncommitted changes.");
+                    }
+                    bisect = new Bisect(readContentsAsString(join(BRANCHES, "current")),
+                            headId());
+                }
+                for (int i = 2; i < args.length; i += 1) {
+                    bisect.mark(i == 2 ? "bad" : "good", resolveCommit(args[i]));
+                }
+                bisect.write(BISECT);
+                bisectStep(bisect, parents);
+                break;
+            case "bad":
+            case "good":
+            case "skip":
+                if (args.length == 2) {
+                    bisect.mark(args[1], headId());
+                }
+                for (int i = 2; i < args.length; i += 1) {
+                    bisect.mark(args[1], resolveCommit(args[i]));
+                }
+                bisect.write(BISECT);
+                bisectStep(bisect, parents);
+                break;
+            case "run":
+                if (args.length < 3) {
+                    checkoutElse();
+                }
+                bisectRun(bisect, Arrays.copyOfRange(args, 2, args.length), parents);
+                break;
+            case "reset":
+                checkIncorrectOps(args, 2);
+                checkoutChanged(bisect.getStart());
+                try (Locks.Held head = LOCKS.head()) {
+                    replaceContents(join(BRANCHES, "current"), bisect.getBranch());
+                }
+                BISECT.delete();
+                break;
+            default:
+                checkoutElse();
+        }
+    }
+
+    /**
+     * check out the next commit to test and say so, or print the result once
+     * the bisect is over. nothing happens until a bad and a good commit are known.
+     * @param bisect bisect in progress
+     * @param parents parents of a commit, cached as they are read
+     */
+    private void bisectStep(Bisect bisect, Function<ObjectId, List<ObjectId>> parents) {
+        if (!bisect.ready()) {
+            return;
+        }
+        Bisect.Step step = bisect.next(parents);
+        if (step.getNext() != null) {
+            checkoutChanged(step.getNext());
+            System.out.println("Bisecting: " + step.getLeft() + " revisions left to test "
+                    + "after this (roughly " + step.getSteps() + " steps)");
+            System.out.println("[" + step.getNext().toHex() + "] "
+                    + readCommit(step.getNext()).getMessage());
+        } else {
+            printBisectResult(step);
+        }
+    }
+
+    /**
+     * print the first bad commit, or the commits it may be when only skipped
+     * ones are left
+     * @param step last step of a bisect
+     */
+    private void printBisectResult(Bisect.Step step) {
+        if (step.getFirstBad() != null) {
+            Commit c = readCommit(step.getFirstBad());
+            System.out.println(step.getFirstBad().toHex() + " is the first bad commit");
+            System.out.println("Date: " + c.getTimeStamp());
+            System.out.println(c.getMessage());
+        } else {
+            System.out.println("There are only skipped commits left to test.");
+            System.out.println("The first bad commit could be any of:");
+            for (ObjectId id: step.getOnlySkipped()) {
+                System.out.println(id.toHex());
+            }
+        }
+    }
+
+    /**
+     * test commits with a command until the first bad one is found, printing
+     * how long each checkout and test took
+     * @param bisect bisect in progress
+     * @param command command and its arguments, run in the working directory
+     * @param parents parents of a commit, cached as they are read
+     */
+    private void bisectRun(Bisect bisect, String[] command,
+                           Function<ObjectId, List<ObjectId>> parents) {
+        if (!bisect.ready()) {
+            throw error("Mark a bad and a good commit before running.");
+        }
+        long begin = System.nanoTime();
+        int steps = 0;
+        Bisect.Step step = bisect.next(parents);
+        while (step.getNext() != null) {
+            ObjectId id = step.getNext();
+            long start = System.nanoTime();
+            int files = checkoutChanged(id);
+            long tested = System.nanoTime();
+            System.out.flush();
+            int code;
+            try {
+                code = new ProcessBuilder(command).directory(CWD).inheritIO().start().waitFor();
+            } catch (IOException | InterruptedException excp) {
+                throw error("bisect run failed: %s", excp.getMessage());
+            }
+            long end = System.nanoTime();
+            String term = code == 0 ? "good" : code == 125 ? "skip"
+                    : code > 0 && code < 128 ? "bad" : null;
+            if (term == null) {
+                throw error("bisect run failed: exit code %d from %s.", code, command[0]);
+            }
+            bisect.mark(term, id);
+            bisect.write(BISECT);
+            steps += 1;
+            System.out.printf("step %d: %s is %s, checkout %.3f s (%d files), "
+                    + "test %.3f s, %d left%n", steps, id.abbreviate(7), term,
+                    (tested - start) / 1e9, files, (end - tested) / 1e9, step.getLeft());
+            step = bisect.next(parents);
+        }
+        printBisectResult(step);
+        System.out.printf("bisect run took %d steps in %.3f s%n", steps,
+                (System.nanoTime() - begin) / 1e9);
+    }
+
+    /**
+     * run maintenance tasks, by default those that are due: pack-refs once
+     * PACK_REFS_DUE loose refs exist, bitmaps once BITMAPS_DUE objects were
+     * written since bitmaps were saved, and gc, with the usual grace period,
+     * once GC_DUE objects were written since it last ran. no task is started
+     * after the time budget is spent, and the maintenance lock keeps runs
+     * from overlapping. --auto runs quietly at low priority, as started by
+     * startMaintenanceIfDue.
+     * @param args maintenance run [--auto] [--task=NAME] [--budget=SECONDS]
+     */
+    public void maintenance(String[] args) {
+        if (args.length < 2 || !args[1].equals("run")) {
+            checkoutElse();
+        }
+        boolean auto = false;
+        String task = null;
+        long budget = MAINTENANCE_BUDGET;
+        for (int i = 2; i < args.length; i += 1) {
+            if (args[i].equals("--auto")) {
+                auto = true;
+            } else if (args[i].startsWith("--task=") && MAINTENANCE_TASKS.contains(
+                    args[i].substring("--task=".length()))) {
+                task = args[i].substring("--task=".length());
+            } else if (args[i].matches("--budget=[0-9]+")) {
+                budget = Long.parseLong(args[i].substring("--budget=".length()));
+            } else {
+                checkoutElse();
+            }
+        }
+        if (auto) {
+            Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        }
+        List<String> tasks = task == null ? dueMaintenance() : List.of(task);
+        if (!runMaintenance(tasks, budget * 1000, !auto) && !auto) {
+            System.out.println("Maintenance is already running.");
+        }
+    }
+
+    /**
+     * @return names of the maintenance tasks that are due, judged from the
+     * counters bumped by writes and without listing any object folder
+     */
+    private List<String> dueMaintenance() {
+        List<String> due = new ArrayList<>();
+        String[] loose = BRANCHES.list();
+        if (loose != null && loose.length >= PACK_REFS_DUE) {
+            due.add("pack-refs");
+        }
+        if (BITMAPS.isFile() && MAINTENANCE.get(Maintenance.OBJECTS_SINCE_BITMAPS) >= BITMAPS_DUE) {
+            due.add("bitmaps");
+        }
+        if (MAINTENANCE.get(Maintenance.OBJECTS_SINCE_GC) >= GC_DUE) {
+            due.add("gc");
+        }
+        return due;
+    }
+
+    /**
+     * run maintenance tasks in order, starting none after the budget is spent
+     * @param tasks names of the tasks
+     * @param budget milliseconds to start tasks for
+     * @param verbose true to print each task run
+     * @return false if another maintenance run held the lock
+     */
+    private boolean runMaintenance(List<String> tasks, long budget, boolean verbose) {
+        if (tasks.isEmpty()) {
+            return true;
+        }
+        try (Locks.Held held = LOCKS.tryMaintenance()) {
+            if (held == null) {
+                return false;
+            }
+            long deadline = System.currentTimeMillis() + budget;
+            for (String task: tasks) {
+                long start = System.currentTimeMillis();
+                if (start >= deadline) {
+                    if (verbose) {
+                        System.out.println("Time budget spent, skipped " + task + ".");
+                    }
+                    continue;
+                }
+                if (task.equals("pack-refs")) {
+                    REFS.pack();
+                } else if (task.equals("bitmaps")) {
+                    buildBitmaps().write(BITMAPS);
+                    MAINTENANCE.reset(Maintenance.OBJECTS_SINCE_BITMAPS);
+                } else {
+                    prune(GC_GRACE);
+                }
+                if (verbose) {
+                    System.out.println("Ran " + task + " in "
+                            + (System.currentTimeMillis() - start) + " ms.");
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * save the number of objects written by the calls so far to the
+     * maintenance counters, which are kept in memory until then. called
+     * once at the end of each command, and by startMaintenanceIfDue.
+     */
+    public void flushCounters() {
+        if (GITLET_DIR.isDirectory()) {
+            MAINTENANCE.flush();
+        }
+    }
+
+    /**
+     * after a command that writes objects, start maintenance run --auto in a
+     * separate process if any task is due, so the command returns at once.
+     * turned off by setting GITLET_MAINTENANCE=off.
+     */
+    public void startMaintenanceIfDue() {
+        flushCounters();
+        if ("off".equals(System.getenv("GITLET_MAINTENANCE")) || !GITLET_DIR.isDirectory()
+                || dueMaintenance().isEmpty()) {
+            return;
+        }
+        String java = ProcessHandle.current().info().command().orElse("java");
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "gitlet.Main", "maintenance", "run", "--auto");
+        pb.directory(CWD);
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        try {
+            pb.start();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /**
+     * move the objects of a repository made before object folders were fanned
+     * out from the flat commits, manifests and blobs folders into two character
+     * buckets, so no folder holds more than a small share of the objects
+     */
+    public void migrateObjects() {
+        int moved = 0;
+        for (File folder: new File[]{COMMITS, MANIFESTS, BLOB_FOLDER}) {
+            List<String> names = plainFilenamesIn(folder);
+            if (names == null) {
+                continue;
+            }
+            for (String name: names) {
+                if (!ObjectId.isHex(name)) {
+                    continue;
+                }
+                File bucket = join(folder, name.substring(0, FANOUT));
+                bucket.mkdir();
+                try {
+                    Files.move(join(folder, name).toPath(),
+                            join(bucket, name.substring(FANOUT)).toPath(),
+                            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                moved += 1;
+            }
+        }
+        System.out.println("Moved " + moved + " objects into fan-out folders.");
+    }
+
+    /**
+     * delete unreachable commits, manifests and blobs older than the grace period.
+     * objects are numbered by an ObjectIndex and marked from every branch, HEAD
+     * and the staging area. bitmaps written by write-bitmaps are rewritten after,
+     * since they may number objects that are gone.
+     * @param args command line arguments, optionally --prune=now or --prune=DAYS
+     */
+    public void gc(String[] args) {
+        long grace = GC_GRACE;
+        if (args.length == 2 && args[1].startsWith("--prune=")) {
+            String prune = args[1].substring("--prune=".length());
+            if (prune.equals("now")) {
+                grace = 0;
+            } else if (prune.matches("[0-9]+")) {
+                grace = Long.parseLong(prune) * 24 * 60 * 60 * 1000;
+            } else {
+                checkoutElse();
+            }
+        } else if (args.length != 1) {
+            checkoutElse();
+        }
+        try (Locks.Held held = LOCKS.maintenance()) {
+            long[] removed = prune(grace);
+            System.out.println("Removed " + removed[0] + " unreachable objects, "
+                    + removed[1] + " bytes.");
+        }
+    }
+
+    /**
+     * delete unreachable objects last changed before the grace period. the
+     * caller holds the maintenance lock, so no other run deletes or rewrites
+     * bitmaps at the same time. the tips and the staging area are read
+     * together under a shared lock on the staging area. an object written
+     * after the index is made is not in it and is never deleted, and one
+     * staged after the staging area is read is newer than any grace but now.
+     * @param grace milliseconds an unreachable object is kept
+     * @return number of objects and bytes removed
+     */
+    private long[] prune(long grace) {
+        ObjectIndex index = new ObjectIndex(COMMITS, MANIFESTS, BLOB_FOLDER);
+        List<ObjectId> staged;
+        Set<ObjectId> tips;
+        try (Locks.Held stage = LOCKS.readStage()) {
+            Stage stager = readObject(STAGING_AREA, Stage.class);
+            staged = new ArrayList<>(stager.getAddBlob().values());
+            staged.addAll(stager.getRemoveBlob().values());
+            tips = tips();
+        }
+        Reachability reach = new Reachability(this, index, Map.of());
+        reach.walk(tips, staged);
+        BitSet live = reach.bitmap().toBitSet();
+        long cutoff = System.currentTimeMillis() - grace;
+        long removed = 0;
+        long bytes = 0;
+        for (int i = live.nextClearBit(0); i < index.size(); i = live.nextClearBit(i + 1)) {
+            File object = index.file(i);
+            long length = object.length();
+            if (object.lastModified() <= cutoff && object.delete()) {
+                removed += 1;
+                bytes += length;
+            }
+        }
+        MAINTENANCE.reset(Maintenance.OBJECTS_SINCE_GC);
+        if (removed > 0 && BITMAPS.isFile()) {
+            buildBitmaps().write(BITMAPS);
+            MAINTENANCE.reset(Maintenance.OBJECTS_SINCE_BITMAPS);
+        }
+        return new long[]{removed, bytes};
+    }
+
+    /**
+     * @return the commit of every branch and of HEAD
+     */
+    private Set<ObjectId> tips() {
+        Set<ObjectId> tips = new LinkedHashSet<>(REFS.list().values());
+        tips.add(headId());
+        return tips;
+    }
+
+    /**
+     * save reachability bitmaps for the branch heads, HEAD and every
+     * BITMAP_SPACING-th commit of history, so count-objects and later walks
+     * can stop at them instead of reading all of history. runs under the
+     * maintenance lock, so a gc cannot delete objects the bitmaps number.
+     */
+    public void writeBitmaps() {
+        try (Locks.Held held = LOCKS.maintenance()) {
+            BitmapIndex bitmaps = buildBitmaps();
+            bitmaps.write(BITMAPS);
+            MAINTENANCE.reset(Maintenance.OBJECTS_SINCE_BITMAPS);
+            System.out.println("Wrote " + bitmaps.getBitmaps().size() + " bitmaps over "
+                    + bitmaps.getIndex().size() + " objects.");
+        }
+    }
+
+    /**
+     * compute bitmaps for the tips and every BITMAP_SPACING-th commit, parents
+     * first, each walk stopping at the bitmaps already made
+     * @return the bitmaps over a fresh numbering of the objects
+     */
+    private BitmapIndex buildBitmaps() {
+        ObjectIndex index = new ObjectIndex(COMMITS, MANIFESTS, BLOB_FOLDER);
+        Set<ObjectId> tips = tips();
+        Map<ObjectId, List<ObjectId>> parents = new HashMap<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>(tips);
+        while (!fringe.isEmpty()) {
+            ObjectId id = fringe.remove();
+            if (!parents.containsKey(id)) {
+                List<ObjectId> ps = readCommit(id).getParent();
+                parents.put(id, ps);
+                for (ObjectId p: ps) {
+                    if (p != null) {
+                        fringe.add(p);
+                    }
+                }
+            }
+        }
+        List<ObjectId> order = parentsFirst(tips, parents);
+        Map<ObjectId, Bitmap> bitmaps = new HashMap<>();
+        for (int i = 0; i < order.size(); i += 1) {
+            ObjectId id = order.get(i);
+            if (i % BITMAP_SPACING == BITMAP_SPACING - 1 || tips.contains(id)) {
+                Reachability reach = new Reachability(this, index, bitmaps);
+                reach.walk(List.of(id), List.of());
+                bitmaps.put(id, reach.bitmap());
+            }
+        }
+        return new BitmapIndex(index, bitmaps);
+    }
+
+    /**
+     * print how many commits, manifests and blobs are stored, or with
+     * --reachable how many are reachable from a branch or commit, leaving out
+     * those also reachable from the --not one. saved bitmaps are used when
+     * there are any, so only commits newer than them are read.
+     * @param args count-objects [--reachable REF [--not REF]]
+     */
+    public void countObjects(String[] args) {
+        ObjectId want = null;
+        ObjectId not = null;
+        if (args.length >= 3 && args[1].equals("--reachable")) {
+            want = resolveCommit(args[2]);
+            if (args.length == 5 && args[3].equals("--not")) {
+                not = resolveCommit(args[4]);
+            } else if (args.length != 3) {
+                checkoutElse();
+            }
+        } else if (args.length != 1) {
+            checkoutElse();
+        }
+        int[] counts = new int[3];
+        if (want == null) {
+            ObjectIndex index = new ObjectIndex(COMMITS, MANIFESTS, BLOB_FOLDER);
+            for (int kind = ObjectIndex.COMMIT; kind <= ObjectIndex.BLOB; kind += 1) {
+                counts[kind] = index.end(kind) - index.start(kind);
+            }
+        } else {
+            BitmapIndex saved = BitmapIndex.read(BITMAPS, COMMITS, MANIFESTS, BLOB_FOLDER);
+            ObjectIndex index = saved == null
+                    ? new ObjectIndex(COMMITS, MANIFESTS, BLOB_FOLDER) : saved.getIndex();
+            Map<ObjectId, Bitmap> known = saved == null ? Map.of() : saved.getBitmaps();
+            Reachability reach = new Reachability(this, index, known);
+            reach.walk(List.of(want), List.of());
+            Bitmap bits = reach.bitmap();
+            Reachability other = null;
+            if (not != null) {
+                other = new Reachability(this, index, known);
+                other.walk(List.of(not), List.of());
+                bits = bits.andNot(other.bitmap());
+            }
+            for (int kind = ObjectIndex.COMMIT; kind <= ObjectIndex.BLOB; kind += 1) {
+                Set<ObjectId> extra = new HashSet<>(reach.extra(kind));
+                if (other != null) {
+                    extra.removeAll(other.extra(kind));
+                }
+                counts[kind] = bits.and(Bitmap.range(index.size(), index.start(kind),
+                        index.end(kind))).cardinality() + extra.size();
+            }
+        }
+        System.out.println("commits: " + counts[ObjectIndex.COMMIT]);
+        System.out.println("manifests: " + counts[ObjectIndex.MANIFEST]);
+        System.out.println("blobs: " + counts[ObjectIndex.BLOB]);
+    }
+
+    /**
+     * @param ref branch name or, possibly shortened, commit id
+     * @return the commit it names
+     */
+    private ObjectId resolveCommit(String ref) {
+        ObjectId id = REFS.resolve(ref);
+        if (id == null) {
+            id = checkShortId(ref);
+        }
+        if (id == null) {
+            throw error("No commit with that id exists.");
+        }
+        return id;
+    }
+
+    /**
+     *Deletes the branch with the given name.
+     * @param branch name of branch
+     */
+    public void rmBranch(String branch) {
+        try (Locks.Held head = LOCKS.head()) {
+            if (!branchExists(branch)) {
+                throw error("A branch with that name does not exist.");
+            }
+            String currBranch = readContentsAsString(join(BRANCHES, "current"));
+            if (currBranch.equals(branch)) {
+                throw error("Cannot remove the current branch.");
+            }
+            REFS.delete(branch);
+        }
+    }
+
+    /**
+     * resets file state to that given by commit id.
+     * @param id of commit
+     */
+    public void reset(String id) {
+        try (Locks.Held stage = LOCKS.stage(); Locks.Held head = LOCKS.head()) {
+            ObjectId idCheck = checkShortId(id);
+            if (idCheck == null) {
+                throw error("No commit with that id exists.");
+            }
+            Commit commchk = readCommit(idCheck);
+            ObjectId currId = headId();
+            Commit current = readCommit(currId);
+
+            if (untrackedError(current, commchk)) {
+                throw error("There is an untracked file in the way; delete it, "
+                        + "or add and commit it first.");
+            }
+
+            checkoutFiles(commchk, current);
+            replaceContents(join(BRANCHES, "HEAD"), idCheck.toHex());
+            String currBranch = readContentsAsString(join(BRANCHES, "current"));
+            REFS.update(currBranch, idCheck);
+            clearStagearea();
+        }
+    }
+
+    /**
+     * helper method for merge errors resulting in exits
+     * @param stager stage area
+     * @param branch name of branch to merge check error
+     */
+    private void mergeErrors(Stage stager, String branch) {
+        if ((!stager.getRemoveBlob().isEmpty()) || (!stager.getAddBlob().isEmpty())) {
+            throw error("You have uncommitted changes.");
+        }
+        if (!branchExists(branch)) {
+            throw error("A branch with that name does not exist.");
+        }
+        if (readContentsAsString(join(BRANCHES, "current")).equals(branch)) {
+            throw error("Cannot merge a branch with itself.");
+        }
+    }
+
+    /**
+     * finish the merge early if the split point is one of the heads
+     * @param splitIDd split pt sha1
+     * @param branch string name
+     * @return the result if the merge is already done, or null
+     */
+    private MergeResult splitpterror(ObjectId splitIDd, String branch) {
+        String currBranch = readContentsAsString(join(BRANCHES, "current"));
+        ObjectId currid = REFS.resolve(currBranch);
+        ObjectId givenid = REFS.resolve(branch);
+        if (currid.equals(splitIDd)) {
+            reset(givenid.toHex());
+            return new MergeResult(MergeResult.Kind.FAST_FORWARD, givenid);
+        }
+        if (givenid.equals(splitIDd)) {
+            return new MergeResult(MergeResult.Kind.ALREADY_MERGED, currid);
+        }
+        return null;
+    }
+
+    /**
+     * handle untrack exit case
+     * @param currentHead commit
+     * @param givenHead commit
+     */
+    private void untrackk(Commit currentHead, Commit givenHead) {
+        if (untrackedError(currentHead, givenHead)) {
+            throw error("There is an untracked file in the way; delete it, "
+                    + "or add and commit it first.");
+        }
+    }
+
+    /**
+     *Merges files from the given branch into the current branch.
+     * @param branch name of branch to merge
+     * @return what kind of merge was made and the new head
+     */
+    public MergeResult merge(String branch) {
+        try (Locks.Held stage = LOCKS.stage(); Locks.Held head = LOCKS.head()) {
+            Stage stager = readObject(STAGING_AREA, Stage.class);
+            boolean mergeConflict = false;
+            mergeErrors(stager, branch);
+            String currBranch = readContentsAsString(join(BRANCHES, "current"));
+            ObjectId currid = REFS.resolve(currBranch);
+            Commit currentHead = readCommit(currid);
+            ObjectId givenid = REFS.resolve(branch);
+            Commit givenHead = readCommit(givenid);
+            ObjectId splitIDd = bfsFindSplitPoint(givenid, currid);
+            if (splitIDd == null) {
+                throw error("The branches have no commit in common.");
+            }
+            Commit splitPoint = readCommit(splitIDd);
+            untrackk(currentHead, givenHead);
+            MergeResult done = splitpterror(splitIDd, branch);
+            if (done != null) {
+                return done;
+            }
+            if (mergeCaseChecks(splitPoint, currentHead, givenHead, givenid)) {
+                mergeConflict = true;
+            }
+            if (currentnonsplit(currentHead, splitPoint, givenHead)) {
+                mergeConflict = true;
+            }
+            if (nonsplitptFiles(givenHead, splitPoint, currentHead, givenid)) {
+                mergeConflict = true;
+            }
+            ObjectId merged = commit("Merged " + branch + " into " + currBranch + ".", givenid);
+            return new MergeResult(mergeConflict ? MergeResult.Kind.CONFLICTED
+                    : MergeResult.Kind.MERGED, merged);
+        }
+    }
+
+    /**
+     * apply the changes of commits onto HEAD, each as a new commit with the
+     * original message and date, see replay
+     * @param refs branch names or, possibly shortened, commit ids, oldest first
+     * @return id of the new HEAD
+     */
+    public String cherryPick(List<String> refs) {
+        try (Locks.Held stage = LOCKS.stage(); Locks.Held head = LOCKS.head()) {
+            List<ObjectId> picks = new ArrayList<>();
+            for (String ref: refs) {
+                ObjectId id = resolveCommit(ref);
+                if (readCommit(id).getParent().get(1) != null) {
+                    throw error("Cannot cherry-pick a merge commit.");
+                }
+                picks.add(id);
+            }
+            return replay(headId(), picks).toHex();
+        }
+    }
+
+    /**
+     * replay the commits of the current branch that are not in the given
+     * branch onto its head, oldest first, see replay. merge commits are left
+     * out, so the result is linear.
+     * @param branch name of the branch to rebase onto
+     * @return id of the new HEAD
+     */
+    public String rebase(String branch) {
+        try (Locks.Held stage = LOCKS.stage(); Locks.Held head = LOCKS.head()) {
+            if (!branchExists(branch)) {
+                throw error("A branch with that name does not exist.");
+            }
+            if (readContentsAsString(join(BRANCHES, "current")).equals(branch)) {
+                throw error("Cannot rebase a branch onto itself.");
+            }
+            ObjectId upstream = REFS.resolve(branch);
+            ObjectId headid = headId();
+            Set<ObjectId> upstreamReach = new HashSet<>();
+            Deque<ObjectId> fringe = new ArrayDeque<>();
+            fringe.add(upstream);
+            while (!fringe.isEmpty()) {
+                ObjectId id = fringe.remove();
+                if (upstreamReach.add(id)) {
+                    for (ObjectId parent: readCommit(id).getParent()) {
+                        if (parent != null) {
+                            fringe.add(parent);
+                        }
+                    }
+                }
+            }
+            if (upstreamReach.contains(headid)) {
+                if (!headid.equals(upstream)) {
+                    replay(upstream, List.of());
+                }
+                System.out.println("Current branch fast-forwarded.");
+                return upstream.toHex();
+            }
+            Map<ObjectId, List<ObjectId>> own = new HashMap<>();
+            fringe.add(headid);
+            while (!fringe.isEmpty()) {
+                ObjectId id = fringe.remove();
+                if (!upstreamReach.contains(id) && !own.containsKey(id)) {
+                    List<ObjectId> parents = readCommit(id).getParent();
+                    own.put(id, parents);
+                    for (ObjectId parent: parents) {
+                        if (parent != null) {
+                            fringe.add(parent);
+                        }
+                    }
+                }
+            }
+            if (own.isEmpty()) {
+                System.out.println("Current branch is up to date.");
+                return headid.toHex();
+            }
+            List<ObjectId> picks = new ArrayList<>();
+            for (ObjectId id: parentsFirst(List.of(headid), own)) {
+                if (own.get(id).get(1) == null) {
+                    picks.add(id);
+                }
+            }
+            return replay(upstream, picks).toHex();
+        }
+    }
+
+    /**
+     * replay commits onto a commit without touching the working directory
+     * until the end. each commit's changes from its first parent are merged
+     * into the files so far by blob id, in memory, and make a new commit with
+     * the same message and date, or none if they are already there. the
+     * commits are written in one transaction, which moves HEAD and the
+     * current branch to the last one, and then only the files that differ
+     * from the old HEAD are written. a conflict stops the replay after the
+     * commits before it: the conflicting files are written with markers as
+     * merge writes them, the commit's other changes are staged, and the
+     * commits not replayed are listed. the caller holds the staging area and
+     * HEAD locks.
+     * @param onto id of the commit to replay onto
+     * @param commits ids of the commits to replay, oldest first
+     * @return id of the new HEAD
+     */
+    private ObjectId replay(ObjectId onto, List<ObjectId> commits) {
+        Stage stager = readObject(STAGING_AREA, Stage.class);
+        if (!stager.getAddBlob().isEmpty() || !stager.getRemoveBlob().isEmpty()) {
+            throw error("You have uncommitted changes.");
+        }
+        Manifest before = readCommit(headId()).getBlobMap();
+        ObjectId tip = onto;
+        Manifest files = readCommit(onto).getBlobMap();
+        List<Commit> made = new ArrayList<>();
+        Commit last = null;
+        Map<String, byte[]> conflicts = new TreeMap<>();
+        int stopped = commits.size();
+        for (int i = 0; i < commits.size() && stopped == commits.size(); i += 1) {
+            Commit c = readCommit(commits.get(i));
+            ObjectId parent = c.getParent().get(0);
+            Manifest base = Manifest.EMPTY;
+            if (i > 0 && commits.get(i - 1).equals(parent)) {
+                base = last.getBlobMap();
+            } else if (parent != null) {
+                base = readCommit(parent).getBlobMap();
+            }
+            last = c;
+            Map<String, ObjectId> added = new TreeMap<>();
+            Set<String> removed = new TreeSet<>();
+            for (FileChange change: manifestChanges(base, c.getBlobMap())) {
+                ObjectId ours = files.get(change.name);
+                if (Objects.equals(ours, change.newId)) {
+                    continue;
+                } else if (Objects.equals(ours, change.oldId)) {
+                    if (change.newId == null) {
+                        removed.add(change.name);
+                    } else {
+                        added.put(change.name, change.newId);
+                    }
+                } else {
+                    conflicts.put(change.name, conflictContents(ours, change.newId));
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                stopped = i;
+                for (Map.Entry<String, byte[]> conflict: conflicts.entrySet()) {
+                    added.put(conflict.getKey(), hash(conflict.getValue()));
+                }
+                for (Map.Entry<String, ObjectId> entry: added.entrySet()) {
+                    stager.getAddBlob().put(entry.getKey(), entry.getValue());
+                }
+                for (String name: removed) {
+                    stager.getRemoveBlob().put(name, files.get(name));
+                }
+                break;
+            }
+            if (added.isEmpty() && removed.isEmpty()) {
+                continue;
+            }
+            Set<String> changed = new HashSet<>(added.keySet());
+            changed.addAll(removed);
+            files = files.withChanges(added, removed);
+            Commit next = new Commit(c.getMessage(), tip, null, files,
+                    hash(serialize(files)), changed, c.getTimeStamp());
+            made.add(next);
+            tip = getCommitID(next);
+        }
+        Manifest index = files.withChanges(stager.getAddBlob(),
+                stager.getRemoveBlob().keySet());
+        if (untrackedError(before, index)) {
+            throw error("There is an untracked file in the way; "
+                    + "delete it, or add and commit it first.");
+        }
+        Transaction tx = new Transaction(GITLET_DIR, REFS);
+        for (Commit c: made) {
+            writeCommit(c, tx);
+        }
+        for (Map.Entry<String, byte[]> conflict: conflicts.entrySet()) {
+            writeBlob(hash(conflict.getValue()), conflict.getValue());
+            tx.sync(blobFile(hash(conflict.getValue())));
+        }
+        tx.replace(STAGING_AREA, serialize(stager));
+        tx.replace(join(BRANCHES, "HEAD"), tip.toHex().getBytes(StandardCharsets.UTF_8));
+        tx.updateRef(readContentsAsString(join(BRANCHES, "current")), tip);
+        tx.commit();
+        writeChanged(before, index);
+        if (stopped < commits.size()) {
+            System.out.println("Encountered a merge conflict.");
+            System.out.println("Could not apply " + commits.get(stopped).abbreviate(7) + " "
+                    + readCommit(commits.get(stopped)).getMessage());
+            if (stopped + 1 < commits.size()) {
+                System.out.println("Not replayed:");
+                for (ObjectId id: commits.subList(stopped + 1, commits.size())) {
+                    System.out.println(id.toHex());
+                }
+            }
+        }
+        return tip;
+    }
+
+    /**
+     * @param ours blob id on the current side, null if the file is absent there
+     * @param theirs blob id on the replayed side, null if the file is absent there
+     * @return the file with both versions between conflict markers, as merge writes it
+     */
+    private byte[] conflictContents(ObjectId ours, ObjectId theirs) {
+        String current = ours == null ? "" : readContentsAsString(blobFile(ours));
+        String given = theirs == null ? "" : readContentsAsString(blobFile(theirs));
+        return ("<<<<<<< HEAD\n" + current + "=======\n" + given + ">>>>>>>\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * main merge work of checking files
+     * @param splitPoint commit
      * @param currentHead commit
      * @param givenHead commit
      * @param givenid commit
      * @return boolean merge conflict
      */
     private Boolean mergeCaseChecks(Commit splitPoint, Commit currentHead,
-                                    Commit givenHead, String givenid) {
+                                    Commit givenHead, ObjectId givenid) {
         boolean mergeConflict = false;
         for (String file: splitPoint.getBlobMap().keySet()) {
-            File splitBlob = join(BLOB_FOLDER, splitPoint.getBlobMap().get(file));
+            File splitBlob = blobFile(splitPoint.getBlobMap().get(file));
             byte[] splitContents = readContents(splitBlob);
             if (currentHead.getBlobMap().containsKey(file)
                     && givenHead.getBlobMap().containsKey(file)) {
-                File currBlob = join(BLOB_FOLDER, currentHead.getBlobMap().get(file));
+                File currBlob = blobFile(currentHead.getBlobMap().get(file));
                 byte[] currContents = readContents(currBlob);
-                File givenBlob = join(BLOB_FOLDER, givenHead.getBlobMap().get(file));
+                File givenBlob = blobFile(givenHead.getBlobMap().get(file));
                 byte[] givenContents = readContents(givenBlob);
                 if ((Arrays.equals(currContents, splitContents))
                         && (!Arrays.equals(givenContents, splitContents))) {
-                    if (join(CWD, file).exists()) {
-                        checkout(givenid, file);
-                        add(file);
+                    if (join(CWD, file).exists() || !sparse().includes(file)) {
+                        takeGiven(givenid, givenHead, file);
                     }
                 }
                 if ((!Arrays.equals(currContents, splitContents))
@@ -721,10 +1980,10 @@ public class Repository {
                         continue;
                     }
                     if (!Arrays.equals(currContents, givenContents)) {
-                        String currentID = currentHead.getBlobMap().get(file);
-                        String currentContent = readContentsAsString(join(BLOB_FOLDER, currentID));
-                        String givenID = givenHead.getBlobMap().get(file);
-                        String givenContent = readContentsAsString(join(BLOB_FOLDER, givenID));
+                        ObjectId currentID = currentHead.getBlobMap().get(file);
+                        String currentContent = readContentsAsString(blobFile(currentID));
+                        ObjectId givenID = givenHead.getBlobMap().get(file);
+                        String givenContent = readContentsAsString(blobFile(givenID));
                         mergeConflict = true;
                         String toReplace = "<<<<<<< HEAD\n" + currentContent + "=======\n"
                                 + givenContent + ">>>>>>>\n";
@@ -734,15 +1993,15 @@ public class Repository {
                     }
                 }
             } else if (currentHead.getBlobMap().containsKey(file)) {
-                File currBlob = join(BLOB_FOLDER, currentHead.getBlobMap().get(file));
+                File currBlob = blobFile(currentHead.getBlobMap().get(file));
                 byte[] currContents = readContents(currBlob);
                 if ((Arrays.equals(currContents, splitContents))
                         && (!givenHead.getBlobMap().containsKey(file))) {
                     rm(file);
                 }
                 if (!Arrays.equals(currContents, splitContents)) {
-                    String currentID2 = currentHead.getBlobMap().get(file);
-                    String currentContent2 = readContentsAsString(join(BLOB_FOLDER, currentID2));
+                    ObjectId currentID2 = currentHead.getBlobMap().get(file);
+                    String currentContent2 = readContentsAsString(blobFile(currentID2));
                     mergeConflict = true;
                     String toReplace2 = "<<<<<<< HEAD\n" + currentContent2
                             + "=======\n" + "" + ">>>>>>>\n";
@@ -751,15 +2010,15 @@ public class Repository {
                     add(file);
                 }
             } else if (givenHead.getBlobMap().containsKey(file)) {
-                File givenBlob = join(BLOB_FOLDER, givenHead.getBlobMap().get(file));
+                File givenBlob = blobFile(givenHead.getBlobMap().get(file));
                 byte[] givenContents = readContents(givenBlob);
                 if (Arrays.equals(givenContents, splitContents)
                         && (!currentHead.getBlobMap().containsKey(file))) {
                     continue;
                 }
                 if (!Arrays.equals(givenContents, splitContents)) {
-                    String givenID2 = givenHead.getBlobMap().get(file);
-                    String givenContent2 = readContentsAsString(join(BLOB_FOLDER, givenID2));
+                    ObjectId givenID2 = givenHead.getBlobMap().get(file);
+                    String givenContent2 = readContentsAsString(blobFile(givenID2));
                     mergeConflict = true;
                     String toReplace2 = "<<<<<<< HEAD\n" + "" + "=======\n"
                             + givenContent2 + ">>>>>>>\n";
@@ -773,6 +2032,25 @@ public class Repository {
     }
 
 
+    /**
+     * take the given branch's version of a file in a merge. a file outside the
+     * sparse checkout patterns is staged straight from its blob, not written out.
+     * @param givenid id of the given branch head
+     * @param givenHead given branch head
+     * @param file file name
+     */
+    private void takeGiven(ObjectId givenid, Commit givenHead, String file) {
+        if (sparse().includes(file)) {
+            checkout(givenid, file);
+            add(file);
+        } else {
+            Stage stager = readObject(STAGING_AREA, Stage.class);
+            stager.getRemoveBlob().remove(file);
+            stager.getAddBlob().put(file, givenHead.getBlobMap().get(file));
+            writeStage(stager);
+        }
+    }
+
     /**
      * helps with non split file checks
      * @param givenHead commit
@@ -782,20 +2060,19 @@ public class Repository {
      * @return boolean merge conflict result
      */
     private Boolean nonsplitptFiles(Commit givenHead, Commit splitPoint, Commit currentHead,
-                                 String givenid) {
+                                 ObjectId givenid) {
         boolean mergeConflict = false;
         for (String file: givenHead.getBlobMap().keySet()) {
             if ((!splitPoint.getBlobMap().containsKey(file))
                     && (!currentHead.getBlobMap().containsKey(file))) {
-                checkout(givenid, file);
-                add(file);
+                takeGiven(givenid, givenHead, file);
             }
             if (!splitPoint.getBlobMap().containsKey(file)) {
                 if (currentHead.getBlobMap().containsKey(file)) {
-                    String currCont = readContentsAsString(join(BLOB_FOLDER,
-                            currentHead.getBlobMap().get(file)));
-                    String givenCont = readContentsAsString(join(BLOB_FOLDER,
-                            givenHead.getBlobMap().get(file)));
+                    String currCont = readContentsAsString(
+                            blobFile(currentHead.getBlobMap().get(file)));
+                    String givenCont = readContentsAsString(
+                            blobFile(givenHead.getBlobMap().get(file)));
                     if (!givenCont.equals(currCont)) {
                         String toReplace = "<<<<<<< HEAD\n" + currCont + "=======\n"
                                 + givenCont + ">>>>>>>\n";
@@ -826,10 +2103,10 @@ public class Repository {
             }
             if (!splitPoint.getBlobMap().containsKey(file)) {
                 if (givenHead.getBlobMap().containsKey(file)) {
-                    String currCont = readContentsAsString(join(BLOB_FOLDER,
-                            currentHead.getBlobMap().get(file)));
-                    String givenCont = readContentsAsString(join(BLOB_FOLDER,
-                            givenHead.getBlobMap().get(file)));
+                    String currCont = readContentsAsString(
+                            blobFile(currentHead.getBlobMap().get(file)));
+                    String givenCont = readContentsAsString(
+                            blobFile(givenHead.getBlobMap().get(file)));
                     if (!currCont.equals(givenCont)) {
                         String toReplace = "<<<<<<< HEAD\n" + currCont + "=======\n"
                                 + givenCont + ">>>>>>>\n";
@@ -844,21 +2121,23 @@ public class Repository {
     }
 
     /**
-     * private helper for merge to traverse given and curr branch and return the split point
-     * @param givenBranch commit
-     * @param currentBranch commit
-     * @return commit split point
+     * private helper for merge to traverse given and curr branch and return the split point.
+     * commits are compared by the ids they are stored under, never by hashing
+     * them again, since a commit saved by an older gitlet may not serialize
+     * to the same bytes.
+     * @param givenIDd id of the head of the given branch
+     * @param currIDd id of the head of the current branch
+     * @return id of the split point
      */
-    private Commit bfsFindSplitPoint(Commit givenBranch, Commit currentBranch) {
-        Collection<String> markedGiven = new HashSet<>();
-        Collection<String> markedCurrent = new HashSet<>();
-        Queue<String> fringe = new PriorityQueue<>();
-        String givenIDd = getCommitID(givenBranch);
+    private ObjectId bfsFindSplitPoint(ObjectId givenIDd, ObjectId currIDd) {
+        Collection<ObjectId> markedGiven = new HashSet<>();
+        Collection<ObjectId> markedCurrent = new HashSet<>();
+        Queue<ObjectId> fringe = new PriorityQueue<>();
         fringe.add(givenIDd);
         markedGiven.add(givenIDd);
         while (!fringe.isEmpty()) {
-            String v = fringe.remove();
-            for (String w: readObject(join(COMMITS, v), Commit.class).getParent()) {
+            ObjectId v = fringe.remove();
+            for (ObjectId w: readCommit(v).getParent()) {
                 if ((!markedGiven.contains(w)) && (w != null)) {
                     fringe.add(w);
                     markedGiven.add(w);
@@ -866,20 +2145,19 @@ public class Repository {
             }
         }
         fringe.clear();
-        String currIDd = getCommitID(currentBranch);
         fringe.add(currIDd);
         markedCurrent.add(currIDd);
         if (markedGiven.contains(currIDd)) {
-            return currentBranch;
+            return currIDd;
         }
         while (!fringe.isEmpty()) {
-            String v = fringe.remove();
-            for (String w: readObject(join(COMMITS, v), Commit.class).getParent()) {
+            ObjectId v = fringe.remove();
+            for (ObjectId w: readCommit(v).getParent()) {
                 if ((!markedCurrent.contains(w)) && (w != null)) {
                     fringe.add(w);
                     markedCurrent.add(w);
                     if (markedGiven.contains(w)) {
-                        return readObject(join(COMMITS, w), Commit.class);
+                        return w;
                     }
                 }
             }
@@ -887,22 +2165,683 @@ public class Repository {
         return null;
     }
 
-    //Is a remote just another .gitlet directory on the local computer that we would attempt
-    // to interact with? Instead of changing just what's in the current .gitlet folder,
-    // the remote commands would also change what's in the other .gitlet folder?
+    /**
+     * show changes between commits, the index and the working tree.
+     * with no commit compares the index (head plus staged changes) to the working tree,
+     * with one commit compares that commit to the working tree,
+     * with two commits compares the first to the second.
+     * @param args command line arguments, optionally containing --stat
+     */
+    public void diff(String[] args) {
+        boolean stat = false;
+        List<String> ids = new ArrayList<>();
+        for (int i = 1; i < args.length; i += 1) {
+            if (args[i].equals("--stat")) {
+                stat = true;
+            } else {
+                ids.add(args[i]);
+            }
+        }
+        if (ids.size() > 2) {
+            checkoutElse();
+        }
+        Manifest index = indexMap();
+        Manifest oldMap;
+        Manifest newMap;
+        boolean workTree = ids.size() < 2;
+        if (ids.isEmpty()) {
+            oldMap = index;
+        } else {
+            oldMap = diffCommitMap(ids.get(0));
+        }
+        if (workTree) {
+            newMap = workTreeMap(index);
+        } else {
+            newMap = diffCommitMap(ids.get(1));
+        }
+        List<FileChange> changes = manifestChanges(oldMap, newMap);
+        if (changes.isEmpty()) {
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(DIFF_THREADS,
+                changes.size()));
+        try {
+            printDiffs(changes, workTree, stat, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * map of files tracked by the index, the head commit plus staged changes
+     * @return sorted map of file name to blob id
+     */
+    private Manifest indexMap() {
+        ObjectId headid = headId();
+        Commit head = readCommit(headid);
+        Stage stager = readObject(STAGING_AREA, Stage.class);
+        return head.getBlobMap().withChanges(stager.getAddBlob(),
+                stager.getRemoveBlob().keySet());
+    }
+
+    /**
+     * blob map of the commit named by a possibly shortened id, exits if there is none
+     * @param id commit id
+     * @return sorted map of file name to blob id
+     */
+    private Manifest diffCommitMap(String id) {
+        ObjectId idCheck = checkShortId(id);
+        if (idCheck == null) {
+            throw error("No commit with that id exists.");
+        }
+        return readCommit(idCheck).getBlobMap();
+    }
+
+    /**
+     * hash the working tree versions of the tracked files, files missing from
+     * the working tree are left out
+     * @param index map of tracked files
+     * @return sorted map of file name to sha1 of its working tree contents
+     */
+    private Manifest workTreeMap(Manifest index) {
+        Manifest.Builder work = new Manifest.Builder();
+        for (String name: index.keySet()) {
+            File file = join(CWD, name);
+            if (file.isFile()) {
+                work.add(name, hash(readContents(file)));
+            }
+        }
+        return work.build();
+    }
+
+    /** A file that differs between two manifests. */
+    private static class FileChange {
+        /** file name */
+        private final String name;
+        /** blob id on the old side, null if the file is absent there */
+        private final ObjectId oldId;
+        /** blob id on the new side, null if the file is absent there */
+        private final ObjectId newId;
+
+        FileChange(String name, ObjectId oldId, ObjectId newId) {
+            this.name = name;
+            this.oldId = oldId;
+            this.newId = newId;
+        }
+    }
+
+    /**
+     * merge join two sorted manifests in a single pass. entries with equal
+     * blob ids are skipped without reading any content.
+     * @param oldMap old manifest
+     * @param newMap new manifest
+     * @return changed files in name order
+     */
+    private List<FileChange> manifestChanges(Manifest oldMap, Manifest newMap) {
+        List<FileChange> changes = new ArrayList<>();
+        Iterator<Map.Entry<String, ObjectId>> oldIter = oldMap.entrySet().iterator();
+        Iterator<Map.Entry<String, ObjectId>> newIter = newMap.entrySet().iterator();
+        Map.Entry<String, ObjectId> o = oldIter.hasNext() ? oldIter.next() : null;
+        Map.Entry<String, ObjectId> n = newIter.hasNext() ? newIter.next() : null;
+        while (o != null || n != null) {
+            int cmp;
+            if (o == null) {
+                cmp = 1;
+            } else if (n == null) {
+                cmp = -1;
+            } else {
+                cmp = o.getKey().compareTo(n.getKey());
+            }
+            if (cmp < 0) {
+                changes.add(new FileChange(o.getKey(), o.getValue(), null));
+                o = oldIter.hasNext() ? oldIter.next() : null;
+            } else if (cmp > 0) {
+                changes.add(new FileChange(n.getKey(), null, n.getValue()));
+                n = newIter.hasNext() ? newIter.next() : null;
+            } else {
+                if (!o.getValue().equals(n.getValue())) {
+                    changes.add(new FileChange(o.getKey(), o.getValue(), n.getValue()));
+                }
+                o = oldIter.hasNext() ? oldIter.next() : null;
+                n = newIter.hasNext() ? newIter.next() : null;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * load and diff changed files on the pool and print them in name order.
+     * at most twice the pool size of files are loaded ahead of the printer so
+     * memory stays bounded however many files changed.
+     * @param changes list from manifestChanges
+     * @param workTree true if new versions come from the working tree
+     * @param stat true to print a diffstat instead of hunks
+     * @param pool executor to load blobs on
+     */
+    private void printDiffs(List<FileChange> changes, boolean workTree, boolean stat,
+                            ExecutorService pool) {
+        Deque<Future<Diff>> window = new ArrayDeque<>();
+        int width = 0;
+        for (FileChange change: changes) {
+            width = Math.max(width, change.name.length());
+        }
+        int insertions = 0;
+        int deletions = 0;
+        int next = 0;
+        int printed = 0;
+        while (printed < changes.size()) {
+            while (next < changes.size() && window.size() < 2 * DIFF_THREADS) {
+                FileChange change = changes.get(next);
+                window.add(pool.submit(() -> new Diff(
+                        loadDiffBlob(change.name, change.oldId, false),
+                        loadDiffBlob(change.name, change.newId, workTree))));
+                next += 1;
+            }
+            Diff d;
+            try {
+                d = window.remove().get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (stat) {
+                printStatLine(changes.get(printed).name, width, d);
+                insertions += d.getInsertions();
+                deletions += d.getDeletions();
+            } else {
+                printFileDiff(changes.get(printed), d);
+            }
+            printed += 1;
+        }
+        if (stat) {
+            System.out.println(" " + changes.size() + " file"
+                    + (changes.size() == 1 ? "" : "s") + " changed, " + insertions
+                    + " insertions(+), " + deletions + " deletions(-)");
+        }
+    }
+
+    /**
+     * read one side of a changed file
+     * @param name file name
+     * @param id blob id or null if the file is absent on this side
+     * @param workTree true to read the working tree file instead of the blob
+     * @return contents or null
+     */
+    private byte[] loadDiffBlob(String name, ObjectId id, boolean workTree) {
+        if (id == null) {
+            return null;
+        }
+        if (workTree) {
+            return readContents(join(CWD, name));
+        }
+        return readContents(blobFile(id));
+    }
+
+    /**
+     * print unified diff header and hunks for one file
+     * @param change changed file
+     * @param d diff of its contents
+     */
+    private void printFileDiff(FileChange change, Diff d) {
+        String name = change.name;
+        System.out.println("diff --gitlet a/" + name + " b/" + name);
+        if (change.oldId == null) {
+            System.out.println("new file");
+        } else if (change.newId == null) {
+            System.out.println("deleted file");
+        }
+        String oldLabel = change.oldId == null ? "/dev/null" : "a/" + name;
+        String newLabel = change.newId == null ? "/dev/null" : "b/" + name;
+        if (d.isBinary()) {
+            System.out.println("Binary files " + oldLabel + " and " + newLabel + " differ");
+            return;
+        }
+        System.out.println("--- " + oldLabel);
+        System.out.println("+++ " + newLabel);
+        d.printHunks(System.out);
+    }
+
+    /**
+     * print the stat line of one file as soon as its diff is done, so no diff
+     * is kept once printed. a bar longer than STAT_BAR is scaled down to it.
+     * @param name file name
+     * @param width length of the longest changed file name
+     * @param d diff of the file
+     */
+    private void printStatLine(String name, int width, Diff d) {
+        String padded = String.format("%-" + width + "s", name);
+        if (d.isBinary()) {
+            System.out.println(" " + padded + " | Bin");
+            return;
+        }
+        int total = d.getInsertions() + d.getDeletions();
+        int plus = d.getInsertions();
+        int minus = d.getDeletions();
+        if (total > STAT_BAR) {
+            plus = (int) Math.ceil(plus * (double) STAT_BAR / total);
+            minus = (int) Math.ceil(minus * (double) STAT_BAR / total);
+        }
+        System.out.println(" " + padded + " | " + total + " "
+                + "+".repeat(plus) + "-".repeat(minus));
+    }
+
+    /**
+     * save a remote under the given name
+     * @param remoteName name of remote
+     * @param remoteDir path of the remote's .gitlet directory, using / as separator,
+     *                  or gitlet://host:port or gitlet+unix:path of a served repository
+     */
     public void addRemote(String remoteName, String remoteDir) {
+        File remote = join(REMOTES, remoteName);
+        if (remote.exists()) {
+            throw error("A remote with that name already exists.");
+        }
+        REMOTES.mkdir();
+        if (remoteDir.startsWith(SocketTransport.SCHEME)
+                || remoteDir.startsWith(SocketTransport.UNIX_SCHEME)) {
+            writeContents(remote, remoteDir);
+        } else {
+            writeContents(remote, remoteDir.replace("/", File.separator));
+        }
     }
 
+    /**
+     * remove the remote with the given name
+     * @param remoteName name of remote
+     */
     public void rmRemote(String remoteName) {
+        File remote = join(REMOTES, remoteName);
+        if (!remote.isFile()) {
+            throw error("A remote with that name does not exist.");
+        }
+        remote.delete();
+    }
+
+    /**
+     * open a saved remote, exits if it is unknown or a local remote's directory is gone.
+     * remotes saved as gitlet://host:port or gitlet+unix:path are reached over a socket
+     * served by the serve command, anything else is a local .gitlet directory.
+     * @param remoteName name of remote
+     * @return connection to the remote, to be closed by the caller
+     */
+    private Transport openRemote(String remoteName) {
+        File remote = join(REMOTES, remoteName);
+        if (!remote.isFile()) {
+            throw error("A remote with that name does not exist.");
+        }
+        String location = readContentsAsString(remote);
+        if (location.startsWith(SocketTransport.SCHEME)
+                || location.startsWith(SocketTransport.UNIX_SCHEME)) {
+            return new SocketTransport(location);
+        }
+        File dir = new File(location);
+        if (!dir.isAbsolute()) {
+            dir = join(CWD, dir.getPath());
+        }
+        if (!join(dir, "commits").isDirectory()) {
+            throw error("Remote directory not found.");
+        }
+        return new LocalTransport(new Repository(dir));
     }
 
+    /**
+     * append the current branch's commits to the given branch of the remote.
+     * the remote branch head must be in the history of the current head.
+     * @param remoteName name of remote
+     * @param remoteBranch branch of remote to update
+     */
     public void push(String remoteName, String remoteBranch) {
+        ObjectId headId = headId();
+        try (Transport remote = openRemote(remoteName)) {
+            ObjectId remoteId = remote.branchHead(remoteBranch);
+            if ((remoteId != null && !isAncestor(remoteId, headId))
+                    || !remote.push(remoteBranch, remoteId, headId, this)) {
+                throw error("Please pull down remote changes before pushing.");
+            }
+        }
     }
 
+    /**
+     * copy the given branch of the remote, with the commits and blobs this
+     * repository lacks, into a local branch named remote/branch
+     * @param remoteName name of remote
+     * @param remoteBranch branch of remote to fetch
+     */
     public void fetch(String remoteName, String remoteBranch) {
+        String localRef = remoteName + "/" + remoteBranch;
+        ObjectId before = REFS.resolve(localRef);
+        ObjectId want;
+        try (Transport remote = openRemote(remoteName)) {
+            want = remote.branchHead(remoteBranch);
+            if (want == null) {
+                throw error("That remote does not have that branch.");
+            }
+            remote.fetch(want, this);
+        }
+        if (!REFS.compareAndSwap(localRef, before, want) && !want.equals(REFS.resolve(localRef))) {
+            throw error("%s was changed by another command during the fetch.", localRef);
+        }
     }
 
+    /**
+     * fetch the given branch of the remote and merge it into the current branch
+     * @param remoteName name of remote
+     * @param remoteBranch branch of remote to pull
+     */
     public void pull(String remoteName, String remoteBranch) {
+        fetch(remoteName, remoteBranch);
+        merge(remoteName + "/" + remoteBranch);
+    }
+
+    /**
+     * serve this repository to other processes until killed. a low priority
+     * thread runs due maintenance tasks every MAINTENANCE_INTERVAL, since
+     * pushes keep writing objects while no add or commit starts maintenance.
+     * @param address port on the loopback interface, host:port, or unix:path
+     */
+    public void serve(String address) {
+        Thread maintenance = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(MAINTENANCE_INTERVAL);
+                } catch (InterruptedException excp) {
+                    return;
+                }
+                runMaintenance(dueMaintenance(), MAINTENANCE_BUDGET * 1000, false);
+            }
+        }, "gitlet-maintenance");
+        maintenance.setDaemon(true);
+        maintenance.setPriority(Thread.MIN_PRIORITY);
+        maintenance.start();
+        new Server(this, address).serve();
+    }
+
+    /**
+     * @param ancestor commit id
+     * @param descendant commit id
+     * @return true if ancestor is descendant or in its history
+     */
+    private boolean isAncestor(ObjectId ancestor, ObjectId descendant) {
+        Set<ObjectId> marked = new HashSet<>();
+        Deque<ObjectId> fringe = new ArrayDeque<>();
+        fringe.add(descendant);
+        marked.add(descendant);
+        while (!fringe.isEmpty()) {
+            ObjectId v = fringe.remove();
+            if (v.equals(ancestor)) {
+                return true;
+            }
+            for (ObjectId w: readCommit(v).getParent()) {
+                if (w != null && marked.add(w)) {
+                    fringe.add(w);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return every branch of this repository and the commit id it points at,
+     * as advertised to clients of the serve command
+     */
+    Map<String, ObjectId> branchHeads() {
+        TreeMap<String, ObjectId> heads = new TreeMap<>();
+        for (Map.Entry<String, ObjectId> ref: REFS.list().entrySet()) {
+            if (!ref.getKey().contains("/")) {
+                heads.put(ref.getKey(), ref.getValue());
+            }
+        }
+        return heads;
+    }
+
+    /**
+     * @param branch name of branch
+     * @return commit id the branch points at, or null if there is no such branch
+     */
+    ObjectId branchHead(String branch) {
+        return REFS.resolve(branch);
+    }
+
+    /**
+     * move a branch from expected to id, and HEAD with it if it is the current
+     * branch. used when receiving a push.
+     * @param branch name of branch
+     * @param expected commit id the branch must still hold, null if it must not exist
+     * @param id new commit id
+     * @return false if the branch was changed by someone else
+     */
+    boolean updateBranch(String branch, ObjectId expected, ObjectId id) {
+        try (Locks.Held head = LOCKS.head()) {
+            if (!REFS.compareAndSwap(branch, expected, id)) {
+                return false;
+            }
+            if (readContentsAsString(join(BRANCHES, "current")).equals(branch)) {
+                replaceContents(join(BRANCHES, "HEAD"), id.toHex());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param ids commit ids
+     * @return which of the commits this repository has
+     */
+    boolean[] hasCommits(List<ObjectId> ids) {
+        return hasObjects(COMMITS, ids);
+    }
+
+    /**
+     * @param ids blob ids
+     * @return which of the blobs this repository has
+     */
+    boolean[] hasBlobs(List<ObjectId> ids) {
+        return hasObjects(BLOB_FOLDER, ids);
+    }
+
+    /**
+     * @param folder object folder to look in
+     * @param ids object ids
+     * @return which of the objects exist in the folder
+     */
+    private static boolean[] hasObjects(File folder, List<ObjectId> ids) {
+        boolean[] has = new boolean[ids.size()];
+        for (int i = 0; i < has.length; i += 1) {
+            has[i] = objectFile(folder, ids.get(i)).exists();
+        }
+        return has;
+    }
+
+    /**
+     * write the objects of a bundle into this repository
+     * @param in stream holding a bundle
+     * @return number of objects read
+     */
+    int unpackObjects(InputStream in) {
+        MANIFESTS.mkdir();
+        int read = Bundle.unpack(in, hashAlgorithm, COMMITS, MANIFESTS, BLOB_FOLDER);
+        MAINTENANCE.recordObjects(read);
+        MAINTENANCE.flush();
+        return read;
+    }
+
+    /**
+     * send the objects reachable from want that dst lacks from src to dst as one bundle,
+     * packing on a second thread while dst unpacks from a pipe
+     * @param src repository sending objects
+     * @param dst repository receiving objects
+     * @param want commit id dst should end up with
+     */
+    static void transfer(Repository src, Repository dst, ObjectId want) {
+        if (!src.hashAlgorithm.equals(dst.hashAlgorithm)) {
+            throw error("Cannot copy objects made with %s into a repository using %s.",
+                    src.hashAlgorithm, dst.hashAlgorithm);
+        }
+        ExecutorService packer = Executors.newSingleThreadExecutor();
+        PipedInputStream in = new PipedInputStream(1 << 16);
+        try {
+            PipedOutputStream out = new PipedOutputStream(in);
+            Future<Integer> packed = packer.submit(() -> {
+                try (out) {
+                    return src.packObjects(want, dst::hasCommits, dst::hasBlobs, out);
+                }
+            });
+            dst.unpackObjects(in);
+            packed.get();
+        } catch (IOException | InterruptedException | ExecutionException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            try {
+                in.close();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            packer.shutdownNow();
+        }
+    }
+
+    /**
+     * write a bundle of the commits reachable from want that the receiver does not
+     * have, with their manifests, plus the blobs those commits changed that it does not have.
+     * the walk goes a generation at a time, asking the receiver about the whole
+     * generation at once, and stops at commits it has since it then has their whole
+     * history too. so only the missing commits and their new blobs are ever read or sent.
+     * @param want commit id to send
+     * @param hasCommits answers which of a batch of commit ids the receiver has
+     * @param hasBlobs answers which of a batch of blob ids the receiver has
+     * @param out stream to write the bundle to
+     * @return number of objects sent
+     */
+    int packObjects(ObjectId want, Function<List<ObjectId>, boolean[]> hasCommits,
+                    Function<List<ObjectId>, boolean[]> hasBlobs, OutputStream out) {
+        Map<ObjectId, List<ObjectId>> missing = new HashMap<>();
+        Set<ObjectId> blobs = new LinkedHashSet<>();
+        Set<ObjectId> manifests = new LinkedHashSet<>();
+        Set<ObjectId> seen = new HashSet<>();
+        List<ObjectId> generation = new ArrayList<>();
+        generation.add(want);
+        seen.add(want);
+        while (!generation.isEmpty()) {
+            boolean[] has = askInBatches(hasCommits, generation);
+            List<ObjectId> next = new ArrayList<>();
+            for (int i = 0; i < has.length; i += 1) {
+                if (has[i]) {
+                    continue;
+                }
+                Commit c = readCommit(generation.get(i));
+                missing.put(generation.get(i), c.getParent());
+                manifests.add(c.getManifestID());
+                blobs.addAll(newBlobs(c));
+                for (ObjectId parent: c.getParent()) {
+                    if (parent != null && seen.add(parent)) {
+                        next.add(parent);
+                    }
+                }
+            }
+            generation = next;
+        }
+        List<ObjectId> blobList = new ArrayList<>(blobs);
+        boolean[] hasBlob = askInBatches(hasBlobs, blobList);
+        Bundle bundle = new Bundle(out);
+        for (int i = 0; i < hasBlob.length; i += 1) {
+            if (!hasBlob[i]) {
+                bundle.add(Bundle.BLOB, blobList.get(i),
+                        readContents(blobFile(blobList.get(i))));
+            }
+        }
+        for (ObjectId manifest: manifests) {
+            bundle.add(Bundle.MANIFEST, manifest, readContents(objectFile(MANIFESTS, manifest)));
+        }
+        for (ObjectId commit: parentsFirst(List.of(want), missing)) {
+            bundle.add(Bundle.COMMIT, commit, readContents(commitFile(commit)));
+        }
+        return bundle.finish();
+    }
+
+    /**
+     * blobs a commit brings in that none of its parents hold at the same path.
+     * any other blob of the commit is one of a parent's, so it was either
+     * offered with that parent or the receiver has it with that parent.
+     * @param c a commit
+     * @return blob ids of the files that differ from every parent
+     */
+    private Set<ObjectId> newBlobs(Commit c) {
+        Set<ObjectId> result = new LinkedHashSet<>();
+        List<ObjectId> parents = c.getParent();
+        if (parents.isEmpty() || parents.get(0) == null) {
+            result.addAll(c.getBlobMap().values());
+            return result;
+        }
+        Manifest first = readCommit(parents.get(0)).getBlobMap();
+        for (FileChange change: manifestChanges(first, c.getBlobMap())) {
+            if (change.newId == null) {
+                continue;
+            }
+            boolean inherited = false;
+            for (ObjectId other: parents.subList(1, parents.size())) {
+                if (other != null && change.newId.equals(
+                        readCommit(other).getBlobMap().get(change.name))) {
+                    inherited = true;
+                }
+            }
+            if (!inherited) {
+                result.add(change.newId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * ask about ids in batches of at most NEGOTIATION_BATCH so no single
+     * question gets too large
+     * @param has answers which of a batch of ids are present
+     * @param ids ids to ask about
+     * @return answer for every id
+     */
+    private static boolean[] askInBatches(Function<List<ObjectId>, boolean[]> has,
+                                          List<ObjectId> ids) {
+        boolean[] result = new boolean[ids.size()];
+        for (int from = 0; from < ids.size(); from += NEGOTIATION_BATCH) {
+            int to = Math.min(ids.size(), from + NEGOTIATION_BATCH);
+            boolean[] answer = has.apply(ids.subList(from, to));
+            System.arraycopy(answer, 0, result, from, to - from);
+        }
+        return result;
+    }
+
+    /**
+     * order commits so that every commit comes after its parents
+     * @param wants newest commits
+     * @param missing map of commit id to its parents for the commits to order
+     * @return commit ids of missing, parents first
+     */
+    static List<ObjectId> parentsFirst(Collection<ObjectId> wants,
+                                       Map<ObjectId, List<ObjectId>> missing) {
+        List<ObjectId> order = new ArrayList<>();
+        Map<ObjectId, Boolean> done = new HashMap<>();
+        Deque<ObjectId> stack = new ArrayDeque<>();
+        for (ObjectId want: wants) {
+            if (missing.containsKey(want) && !done.containsKey(want)) {
+                stack.push(want);
+            }
+            while (!stack.isEmpty()) {
+                ObjectId top = stack.peek();
+                if (done.containsKey(top)) {
+                    stack.pop();
+                    if (!done.get(top)) {
+                        done.put(top, true);
+                        order.add(top);
+                    }
+                    continue;
+                }
+                done.put(top, false);
+                for (ObjectId parent: missing.get(top)) {
+                    if (parent != null && missing.containsKey(parent)
+                            && !done.containsKey(parent)) {
+                        stack.push(parent);
+                    }
+                }
+            }
+        }
+        return order;
     }
 
 }
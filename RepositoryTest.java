@@ -0,0 +1,296 @@
+package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Repository.
+ *  @author Ishika Prashar
+ */
+public class RepositoryTest {
+    public void testHashAlgorithmIsPerRepository() {
+        File gitletDir = new File(tempDir(), ".gitlet");
+        gitletDir.mkdir();
+        Utils.writeContents(new File(gitletDir, "hash"), "SHA-256");
+        Repository sha256 = new Repository(gitletDir);
+        Repository sha1 = newRepo();
+        assertEquals("SHA-256", sha256.getHashAlgorithm());
+        assertEquals("SHA-1", sha1.getHashAlgorithm());
+        assertEquals(Utils.hash("SHA-256", "x"), sha256.hash("x"));
+        assertEquals(Utils.hash("SHA-1", "x"), sha1.hash("x"));
+        assertTrue(!sha1.hash("x").equals(sha256.hash("x")), "algorithms differ");
+        assertEquals("SHA-1", new Repository(sha1.getGitletDir()).getHashAlgorithm());
+    }
+
+    public void testReusedObjectsAreFreshened() {
+        Repository repo = newRepo();
+        File dir = repo.getGitletDir().getParentFile();
+        Utils.writeContents(new File(dir, "a.txt"), "same\n");
+        repo.add("a.txt");
+        repo.commit("first");
+        File blob = Utils.objectFile(new File(repo.getGitletDir(), "blobs"), repo.hash("same\n"));
+        assertTrue(blob.setLastModified(1000), "blob made old");
+        Utils.writeContents(new File(dir, "b.txt"), "same\n");
+        repo.add("b.txt");
+        assertTrue(blob.lastModified() > 1000, "blob freshened by add");
+        File empty = Utils.objectFile(new File(repo.getGitletDir(), "manifests"),
+                repo.hash(Utils.serialize(Manifest.EMPTY)));
+        assertTrue(empty.setLastModified(1000), "manifest made old");
+        repo.rm("a.txt");
+        repo.rm("b.txt");
+        repo.commit("no files");
+        assertTrue(empty.lastModified() > 1000, "manifest freshened by commit");
+    }
+
+    public void testCheckoutBranchWithSparsePatterns() {
+        Repository repo = newRepo();
+        File dir = repo.getGitletDir().getParentFile();
+        byte[] binary = {0, 1, (byte) 0xff, '\n'};
+        Utils.writeContents(new File(dir, "keep.txt"), "keep\n");
+        Utils.writeContents(new File(dir, "skip.txt"), "skip\n");
+        repo.add("keep.txt");
+        repo.add("skip.txt");
+        repo.commit("both");
+        repo.branch("other");
+        Utils.writeContents(new File(dir, "keep.bin"), (Object) binary);
+        repo.add("keep.bin");
+        repo.rm("keep.txt");
+        repo.commit("binary");
+        repo.sparseCheckout(new String[]{"sparse-checkout", "set", "keep*"});
+        repo.checkoutBranch("other");
+        assertEquals("keep\n", Utils.readContentsAsString(new File(dir, "keep.txt")));
+        assertTrue(!new File(dir, "keep.bin").exists(), "file not in other deleted");
+        assertTrue(!new File(dir, "skip.txt").exists(), "file outside patterns left out");
+        repo.checkoutBranch("master");
+        assertTrue(Arrays.equals(binary,
+                Utils.readContents(new File(dir, "keep.bin"))), "binary file copied exactly");
+        assertTrue(!new File(dir, "keep.txt").exists(), "removed file deleted");
+    }
+
+    public void testMergeUsesStoredIdOfSplitPoint() {
+        Repository repo = newRepo();
+        File gitlet = repo.getGitletDir();
+        File commits = new File(gitlet, "commits");
+        ObjectId emptyFiles = repo.hash(Utils.serialize(Manifest.EMPTY));
+        ObjectId root = ObjectId.fromHex(
+                Utils.readContentsAsString(new File(gitlet, "branches/master")));
+        byte[] base = Utils.serialize(new Commit("base", root, null, Manifest.EMPTY,
+                emptyFiles, null));
+        ObjectId baseId = repo.hash("stored by an older version");
+        File baseFile = Utils.objectFile(commits, baseId);
+        baseFile.getParentFile().mkdirs();
+        Utils.writeContents(baseFile, (Object) base);
+        byte[] child = Utils.serialize(new Commit("child", baseId, null, Manifest.EMPTY,
+                emptyFiles, null));
+        ObjectId childId = repo.hash(child);
+        File childFile = Utils.objectFile(commits, childId);
+        childFile.getParentFile().mkdirs();
+        Utils.writeContents(childFile, (Object) child);
+        Utils.writeContents(new File(gitlet, "branches/master"), baseId.toHex());
+        Utils.writeContents(new File(gitlet, "branches/HEAD"), baseId.toHex());
+        Utils.writeContents(new File(gitlet, "branches/other"), childId.toHex());
+        MergeResult result = repo.merge("other");
+        assertEquals(MergeResult.Kind.FAST_FORWARD, result.getKind());
+        assertEquals(childId.toHex(), result.getCommitId());
+    }
+
+    /**
+     * @param entries log entries
+     * @return their messages, in order
+     */
+    private static List<String> messages(List<LogEntry> entries) {
+        List<String> messages = new ArrayList<>();
+        for (LogEntry entry: entries) {
+            messages.add(entry.getMessage());
+        }
+        return messages;
+    }
+
+    public void testLogOfPathFollowsFirstParentsUnlessFull() {
+        Repository repo = newRepo();
+        File dir = repo.getGitletDir().getParentFile();
+        Utils.writeContents(new File(dir, "f.txt"), "f\n");
+        Utils.writeContents(new File(dir, "g.txt"), "g\n");
+        repo.add("f.txt");
+        repo.add("g.txt");
+        repo.commit("add f and g");
+        repo.branch("other");
+        Utils.writeContents(new File(dir, "g.txt"), "g on master\n");
+        repo.add("g.txt");
+        repo.commit("change g");
+        repo.checkoutBranch("other");
+        Utils.writeContents(new File(dir, "f.txt"), "f on other\n");
+        repo.add("f.txt");
+        repo.commit("change f");
+        repo.checkoutBranch("master");
+        repo.merge("other");
+        assertEquals(List.of("Merged other into master.", "add f and g"),
+                messages(repo.log("f.txt", false)));
+        assertEquals(List.of("Merged other into master.", "change f", "add f and g"),
+                messages(repo.log("f.txt", true)));
+        assertEquals(List.of("change g", "add f and g"), messages(repo.log("g.txt", false)));
+
+        ObjectId merge = repo.branchHead("master");
+        Manifest files = repo.readCommit(merge).getBlobMap().withChanges(
+                new TreeMap<>(Map.of("f.txt", repo.hash("f again\n"))), Set.of());
+        byte[] noFilter = Utils.serialize(new Commit("no filter", merge, null, files,
+                repo.hash(Utils.serialize(files)), null));
+        ObjectId id = repo.hash(noFilter);
+        File gitlet = repo.getGitletDir();
+        File file = Utils.objectFile(new File(gitlet, "commits"), id);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, (Object) noFilter);
+        File manifest = Utils.objectFile(new File(gitlet, "manifests"),
+                repo.hash(Utils.serialize(files)));
+        manifest.getParentFile().mkdirs();
+        Utils.writeContents(manifest, (Object) Utils.serialize(files));
+        Utils.writeContents(new File(gitlet, "branches/master"), id.toHex());
+        Utils.writeContents(new File(gitlet, "branches/HEAD"), id.toHex());
+        assertTrue(repo.readCommit(id).mightChange("g.txt"), "a commit without a filter");
+        assertEquals(List.of("no filter", "Merged other into master.", "add f and g"),
+                messages(repo.log("f.txt", false)));
+        assertEquals(List.of("change g", "add f and g"), messages(repo.log("g.txt", false)));
+    }
+
+    public void testPackOffersOnlyChangedBlobs() {
+        Repository repo = newRepo();
+        File dir = repo.getGitletDir().getParentFile();
+        for (String name: new String[]{"a.txt", "b.txt", "c.txt"}) {
+            Utils.writeContents(new File(dir, name), name + "\n");
+            repo.add(name);
+        }
+        repo.commit("three files");
+        ObjectId base = repo.branchHead("master");
+        repo.branch("other");
+        Utils.writeContents(new File(dir, "a.txt"), "a on master\n");
+        repo.add("a.txt");
+        repo.commit("change a");
+        repo.checkoutBranch("other");
+        Utils.writeContents(new File(dir, "b.txt"), "b on other\n");
+        repo.add("b.txt");
+        repo.commit("change b");
+        repo.checkoutBranch("master");
+        repo.merge("other");
+        List<ObjectId> offered = new ArrayList<>();
+        int sent = repo.packObjects(repo.branchHead("master"), ids -> {
+            boolean[] has = new boolean[ids.size()];
+            for (int i = 0; i < has.length; i += 1) {
+                has[i] = ids.get(i).equals(base);
+            }
+            return has;
+        }, ids -> {
+            offered.addAll(ids);
+            return new boolean[ids.size()];
+        }, new ByteArrayOutputStream());
+        assertEquals(Set.of(repo.hash("a on master\n"), repo.hash("b on other\n")),
+                Set.copyOf(offered));
+        assertEquals(2, offered.size());
+        assertEquals(2 + 3 + 3, sent);
+    }
+
+    public void testGcPrunesOnlyOldUnreachableObjects() {
+        Repository repo = newRepo();
+        File dir = repo.getGitletDir().getParentFile();
+        File blobs = new File(repo.getGitletDir(), "blobs");
+        Utils.writeContents(new File(dir, "a.txt"), "committed\n");
+        repo.add("a.txt");
+        repo.commit("add a");
+        Utils.writeContents(new File(dir, "b.txt"), "staged\n");
+        repo.add("b.txt");
+        File committed = Utils.objectFile(blobs, repo.hash("committed\n"));
+        File staged = Utils.objectFile(blobs, repo.hash("staged\n"));
+        File old = Utils.objectFile(blobs, repo.hash("old garbage\n"));
+        File recent = Utils.objectFile(blobs, repo.hash("recent garbage\n"));
+        old.getParentFile().mkdirs();
+        recent.getParentFile().mkdirs();
+        Utils.writeContents(old, "old garbage\n");
+        Utils.writeContents(recent, "recent garbage\n");
+        for (File f: new File[]{committed, staged, old}) {
+            assertTrue(f.setLastModified(1000), f + " made old");
+        }
+        repo.gc(new String[]{"gc"});
+        assertTrue(!old.exists(), "old unreachable blob pruned");
+        assertTrue(recent.exists(), "recent unreachable blob kept");
+        assertTrue(committed.exists(), "reachable blob kept");
+        assertTrue(staged.exists(), "staged blob kept");
+        repo.commit("add b");
+        assertEquals(repo.hash("staged\n"),
+                repo.readCommit(repo.branchHead("master")).getBlobMap().get("b.txt"));
+    }
+
+    /**
+     * move the fanned out objects of a folder back to where a repository made
+     * before fan-out kept them
+     * @param folder commits, manifests or blobs folder
+     * @param every move one object of every this many, the rest stay
+     * @return the ids moved
+     */
+    private static List<String> flatten(File folder, int every) {
+        List<String> moved = new ArrayList<>();
+        List<String> names = Utils.objectNamesIn(folder);
+        for (int i = 0; i < names.size(); i += every) {
+            File bucketed = Utils.bucketFile(folder, ObjectId.fromHex(names.get(i)));
+            assertTrue(bucketed.renameTo(new File(folder, names.get(i))), "moved flat");
+            moved.add(names.get(i));
+        }
+        return moved;
+    }
+
+    public void testFlatObjectsAreReadBeforeAndAfterMigration() {
+        Repository repo = newRepo();
+        File dir = repo.getGitletDir().getParentFile();
+        File commits = new File(repo.getGitletDir(), "commits");
+        ObjectId root = repo.branchHead("master");
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i += 1) {
+            Utils.writeContents(new File(dir, "a.txt"), "version " + i + "\n");
+            repo.add("a.txt");
+            repo.commit("version " + i);
+            ids.add(repo.branchHead("master"));
+        }
+        List<String> flat = new ArrayList<>(flatten(commits, 2));
+        flat.addAll(flatten(new File(repo.getGitletDir(), "manifests"), 1));
+        flat.addAll(flatten(new File(repo.getGitletDir(), "blobs"), 3));
+        List<String> all = Utils.objectNamesIn(commits);
+        assertEquals(21, all.size());
+        for (int pass = 0; pass < 2; pass += 1) {
+            Repository reader = new Repository(dir.getPath());
+            for (int i = 0; i < ids.size(); i += 1) {
+                assertEquals("version " + i, reader.readCommit(ids.get(i)).getMessage());
+                reader.checkout(ids.get(i).toHex().substring(0, 8), "a.txt");
+                assertEquals("version " + i + "\n",
+                        Utils.readContentsAsString(new File(dir, "a.txt")));
+            }
+            for (char c: "0123456789abcdef".toCharArray()) {
+                List<String> expected = new ArrayList<>();
+                for (String id: all) {
+                    if (id.charAt(0) == c) {
+                        expected.add(id);
+                    }
+                }
+                assertEquals(expected, Utils.objectNamesIn(commits, String.valueOf(c)));
+                if (expected.size() == 1 && !expected.get(0).equals(root.toHex())) {
+                    reader.checkout(String.valueOf(c), "a.txt");
+                    assertEquals(reader.readCommit(ObjectId.fromHex(expected.get(0)))
+                            .getBlobMap().get("a.txt"),
+                            reader.hash(Utils.readContents(new File(dir, "a.txt"))));
+                }
+            }
+            if (pass == 0) {
+                reader.migrateObjects();
+                for (String id: flat) {
+                    assertTrue(!new File(commits, id).exists()
+                            && !new File(repo.getGitletDir(), "blobs/" + id).exists(),
+                            id + " moved into a bucket");
+                }
+            }
+        }
+        assertEquals(all, Utils.objectNamesIn(commits));
+    }
+}
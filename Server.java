@@ -0,0 +1,287 @@
+package gitlet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/** Serves a repository to push, fetch and pull from other processes.
+ *  on connect the server advertises every branch and its commit id. the
+ *  client then asks to fetch a commit or push a branch. the side sending
+ *  objects asks the receiver which commits and blobs it has, a generation
+ *  at a time, and then streams only the missing objects as one bundle.
+ *  each connection gets its own thread, virtual where the JDK has them.
+ *  a push's objects are unpacked before the write lock that serializes
+ *  branch updates to a repository is taken, so a slow client holds up no
+ *  other push, and a TCP client that sends nothing for READ_TIMEOUT is cut
+ *  off. a unix socket has no read timeout; its clients are local.
+ *  @author Ishika Prashar
+ */
+class Server {
+    /** request types sent by the client after the advertisement */
+    static final byte FETCH = 1;
+    static final byte PUSH = 2;
+    /** questions sent by the side sending objects */
+    static final byte QUERY_COMMITS = 3;
+    static final byte QUERY_BLOBS = 4;
+    /** most ids one query may ask about */
+    static final int MAX_QUERY = 1 << 16;
+    /** milliseconds a TCP connection may wait for the client's next bytes */
+    static final int READ_TIMEOUT = 60 * 1000;
+
+    /** write locks for pushes, one per .gitlet directory */
+    private static final Map<String, ReentrantLock> WRITE_LOCKS = new ConcurrentHashMap<>();
+
+    /** repository being served */
+    private final Repository repo;
+    /** address to listen on */
+    private final SocketAddress address;
+
+    /**
+     * @param repo repository to serve
+     * @param address port on the loopback interface, host:port, or unix:path
+     */
+    Server(Repository repo, String address) {
+        this.repo = repo;
+        this.address = parseAddress(address);
+    }
+
+    /**
+     * @param address port on the loopback interface, host:port, or unix:path
+     * @return socket address it names
+     */
+    static SocketAddress parseAddress(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        }
+        int colon = address.lastIndexOf(':');
+        try {
+            if (colon < 0) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        Integer.parseInt(address));
+            }
+            return new InetSocketAddress(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1)));
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Bad address %s.", address);
+        }
+    }
+
+    /**
+     * @return an executor running each task on its own virtual thread, or on a
+     * pooled platform thread on JDKs without virtual threads
+     */
+    static ExecutorService newConnectionExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /** accept and serve connections until the process is killed. */
+    void serve() {
+        try (ServerSocketChannel listener = bind()) {
+            System.out.println("Serving on " + listener.getLocalAddress());
+            serve(listener);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @return a listener bound to the address. a unix socket file is deleted
+     *         when the process exits.
+     */
+    ServerSocketChannel bind() {
+        boolean unix = address instanceof UnixDomainSocketAddress;
+        try {
+            ServerSocketChannel listener = unix
+                    ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                    : ServerSocketChannel.open();
+            listener.bind(address);
+            if (unix) {
+                Path socket = ((UnixDomainSocketAddress) address).getPath();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        Files.deleteIfExists(socket);
+                    } catch (IOException excp) {
+                        return;
+                    }
+                }));
+            }
+            return listener;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * accept and serve connections until the listener is closed
+     * @param listener bound listener
+     */
+    void serve(ServerSocketChannel listener) {
+        ExecutorService connections = newConnectionExecutor();
+        try {
+            while (true) {
+                SocketChannel connection = listener.accept();
+                connections.submit(() -> handle(connection));
+            }
+        } catch (ClosedChannelException excp) {
+            return;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            connections.shutdownNow();
+        }
+    }
+
+    /**
+     * serve one connection: advertise branches, then answer one fetch or push
+     * @param connection socket to the client
+     */
+    private void handle(SocketChannel connection) {
+        try (connection) {
+            InputStream raw;
+            if (connection.getRemoteAddress() instanceof InetSocketAddress) {
+                connection.socket().setSoTimeout(READ_TIMEOUT);
+                raw = connection.socket().getInputStream();
+            } else {
+                raw = Channels.newInputStream(connection);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(connection), 1 << 16));
+            Map<String, ObjectId> heads = repo.branchHeads();
+            out.writeInt(heads.size());
+            for (Map.Entry<String, ObjectId> head: heads.entrySet()) {
+                out.writeUTF(head.getKey());
+                head.getValue().writeTo(out);
+            }
+            out.flush();
+            byte request = in.readByte();
+            if (request == FETCH) {
+                ObjectId want = ObjectId.readFrom(in);
+                repo.packObjects(want, asker(in, out, QUERY_COMMITS),
+                        asker(in, out, QUERY_BLOBS), out);
+            } else if (request == PUSH) {
+                String branch = in.readUTF();
+                ObjectId expected = in.readBoolean() ? ObjectId.readFrom(in) : null;
+                ObjectId id = ObjectId.readFrom(in);
+                answerQueries(in, out, repo);
+                repo.unpackObjects(in);
+                ReentrantLock lock = writeLock(repo.getGitletDir());
+                lock.lock();
+                boolean updated;
+                try {
+                    updated = repo.updateBranch(branch, expected, id);
+                } finally {
+                    lock.unlock();
+                }
+                out.writeBoolean(updated);
+                out.flush();
+            }
+        } catch (EOFException excp) {
+            return;
+        } catch (IOException | IllegalArgumentException | GitletException excp) {
+            System.err.println("Connection failed: " + excp.getMessage());
+        }
+    }
+
+    /**
+     * @param gitletDir .gitlet directory of a repository
+     * @return the lock pushes to that repository hold while writing
+     */
+    private static ReentrantLock writeLock(File gitletDir) {
+        String key;
+        try {
+            key = gitletDir.getCanonicalPath();
+        } catch (IOException excp) {
+            key = gitletDir.getAbsolutePath();
+        }
+        return WRITE_LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
+    }
+
+    /**
+     * @param in stream from the receiver
+     * @param out stream to the receiver
+     * @param kind QUERY_COMMITS or QUERY_BLOBS
+     * @return function asking the receiver which of a batch of ids it has
+     */
+    static Function<List<ObjectId>, boolean[]> asker(DataInputStream in, DataOutputStream out,
+                                                     byte kind) {
+        return ids -> {
+            try {
+                out.writeByte(kind);
+                out.writeInt(ids.size());
+                for (ObjectId id: ids) {
+                    id.writeTo(out);
+                }
+                out.flush();
+                boolean[] has = new boolean[ids.size()];
+                for (int i = 0; i < has.length; i += 1) {
+                    has[i] = in.readBoolean();
+                }
+                return has;
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        };
+    }
+
+    /**
+     * answer questions from the side sending objects until its bundle starts,
+     * leaving the stream at the start of the bundle
+     * @param in stream from the sender
+     * @param out stream to the sender
+     * @param local repository receiving objects
+     */
+    static void answerQueries(DataInputStream in, DataOutputStream out, Repository local)
+        throws IOException {
+        while (true) {
+            in.mark(1);
+            byte kind = in.readByte();
+            if (kind != QUERY_COMMITS && kind != QUERY_BLOBS) {
+                in.reset();
+                return;
+            }
+            int count = in.readInt();
+            if (count < 0 || count > MAX_QUERY) {
+                throw Utils.error("Bad query of %d ids.", count);
+            }
+            List<ObjectId> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i += 1) {
+                ids.add(ObjectId.readFrom(in));
+            }
+            boolean[] has = kind == QUERY_COMMITS ? local.hasCommits(ids) : local.hasBlobs(ids);
+            for (boolean h: has) {
+                out.writeBoolean(h);
+            }
+            out.flush();
+        }
+    }
+}
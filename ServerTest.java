@@ -0,0 +1,139 @@
+package gitlet;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Server and SocketTransport over the loopback interface.
+ *  @author Ishika Prashar
+ */
+public class ServerTest {
+    /** repository served */
+    private final Repository served = newRepo();
+    /** repository pushing to and fetching from it */
+    private final Repository client = newRepo();
+
+    /**
+     * write a file, add it and commit it
+     * @param repo repository
+     * @param name file name
+     * @param contents its contents
+     */
+    private static void commit(Repository repo, String name, String contents) {
+        Utils.writeContents(new File(repo.getGitletDir().getParentFile(), name), contents);
+        repo.add(name);
+        repo.commit("write " + name);
+    }
+
+    /** Body run while the served repository is served. */
+    private interface Session {
+        /**
+         * @param port port the server listens on
+         * @throws Exception anything
+         */
+        void run(int port) throws Exception;
+    }
+
+    /**
+     * serve the served repository on an ephemeral loopback port, with the
+     * client's remote origin pointing at it, while running session
+     * @param session what to do while it is served
+     */
+    private void serving(Session session) throws Exception {
+        Server server = new Server(served, "0");
+        try (ServerSocketChannel listener = server.bind()) {
+            Thread thread = new Thread(() -> server.serve(listener));
+            thread.start();
+            int port = ((InetSocketAddress) listener.getLocalAddress()).getPort();
+            client.addRemote("origin", "gitlet://"
+                    + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port);
+            session.run(port);
+            listener.close();
+            thread.join();
+        }
+    }
+
+    /**
+     * connect without SocketTransport and read the branch advertisement
+     * @param port server port
+     * @return the connection
+     */
+    private static SocketChannel connect(int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+        int count = in.readInt();
+        for (int i = 0; i < count; i += 1) {
+            in.readUTF();
+            ObjectId.readFrom(in);
+        }
+        return channel;
+    }
+
+    /**
+     * start a push of a new branch, stopping before the objects
+     * @param channel connection to the server
+     * @param branch branch pushed
+     * @return stream to the server
+     */
+    private DataOutputStream startPush(SocketChannel channel, String branch)
+        throws IOException {
+        DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+        out.writeByte(Server.PUSH);
+        out.writeUTF(branch);
+        out.writeBoolean(false);
+        client.branchHead("master").writeTo(out);
+        return out;
+    }
+
+    public void testFetchAndPush() throws Exception {
+        commit(served, "served.txt", "from the server\n");
+        commit(client, "client.txt", "from the client\n");
+        serving(port -> {
+            client.fetch("origin", "master");
+            assertEquals(served.branchHead("master"), client.branchHead("origin/master"));
+            assertEquals("from the server\n", Utils.readContentsAsString(Utils.objectFile(
+                    new File(client.getGitletDir(), "blobs"),
+                    client.hash("from the server\n"))));
+            client.push("origin", "feature");
+        });
+        assertEquals(client.branchHead("master"), served.branchHead("feature"));
+        assertEquals(client.hash("from the client\n"),
+                served.readCommit(served.branchHead("feature")).getBlobMap().get("client.txt"));
+    }
+
+    public void testStalledPushDoesNotBlockOthers() throws Exception {
+        commit(client, "client.txt", "from the client\n");
+        serving(port -> {
+            try (SocketChannel stalled = connect(port)) {
+                DataOutputStream out = startPush(stalled, "stalled");
+                out.writeInt(Bundle.MAGIC);
+                out.flush();
+                client.push("origin", "feature");
+                assertEquals(client.branchHead("master"), served.branchHead("feature"));
+            }
+        });
+        assertEquals(null, served.branchHead("stalled"));
+    }
+
+    public void testOversizedQueryIsRefused() throws Exception {
+        serving(port -> {
+            try (SocketChannel bad = connect(port)) {
+                DataOutputStream out = startPush(bad, "bad");
+                out.writeByte(Server.QUERY_COMMITS);
+                out.writeInt(Integer.MAX_VALUE);
+                out.flush();
+                assertEquals(-1, Channels.newInputStream(bad).read());
+            }
+            client.fetch("origin", "master");
+            assertEquals(served.branchHead("master"), client.branchHead("origin/master"));
+        });
+    }
+}
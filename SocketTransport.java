@@ -0,0 +1,103 @@
+package gitlet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import static gitlet.Utils.*;
+
+/** Transport to a repository served by the serve command of another process.
+ *  @author Ishika Prashar
+ */
+class SocketTransport implements Transport {
+    /** prefix of remotes reached over TCP, as in gitlet://host:port */
+    static final String SCHEME = "gitlet://";
+    /** prefix of remotes reached over a unix socket, as in gitlet+unix:/path */
+    static final String UNIX_SCHEME = "gitlet+unix:";
+
+    /** connection to the server */
+    private final SocketChannel channel;
+    /** stream from the server */
+    private final DataInputStream in;
+    /** stream to the server */
+    private final DataOutputStream out;
+    /** branches advertised by the server */
+    private final Map<String, ObjectId> heads = new HashMap<>();
+
+    /**
+     * connect to a server and read its branch advertisement
+     * @param location gitlet://host:port or gitlet+unix:path
+     */
+    SocketTransport(String location) {
+        String address;
+        if (location.startsWith(UNIX_SCHEME)) {
+            address = "unix:" + location.substring(UNIX_SCHEME.length());
+        } else {
+            address = location.substring(SCHEME.length());
+        }
+        try {
+            channel = SocketChannel.open(Server.parseAddress(address));
+            in = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            int count = in.readInt();
+            for (int i = 0; i < count; i += 1) {
+                heads.put(in.readUTF(), ObjectId.readFrom(in));
+            }
+        } catch (IOException excp) {
+            throw error("Remote directory not found.");
+        }
+    }
+
+    @Override
+    public ObjectId branchHead(String branch) {
+        return heads.get(branch);
+    }
+
+    @Override
+    public void fetch(ObjectId want, Repository local) {
+        try {
+            out.writeByte(Server.FETCH);
+            want.writeTo(out);
+            out.flush();
+            Server.answerQueries(in, out, local);
+            local.unpackObjects(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    @Override
+    public boolean push(String branch, ObjectId expected, ObjectId id, Repository local) {
+        try {
+            out.writeByte(Server.PUSH);
+            out.writeUTF(branch);
+            out.writeBoolean(expected != null);
+            if (expected != null) {
+                expected.writeTo(out);
+            }
+            id.writeTo(out);
+            out.flush();
+            local.packObjects(id, Server.asker(in, out, Server.QUERY_COMMITS),
+                    Server.asker(in, out, Server.QUERY_BLOBS), out);
+            return in.readBoolean();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package gitlet;
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Sparse checkout patterns, kept one per line in a file of the .gitlet
+ *  directory. a tracked file is written to the working directory only if its
+ *  name matches one of the patterns, globs like *.txt or docs/**, with a
+ *  pattern ending in / taking everything under that folder. files outside
+ *  the patterns stay tracked by commits but are not written or scanned.
+ *  with no patterns file every file is included.
+ *  @author Ishika Prashar
+ */
+class SparseCheckout {
+    /** patterns as written */
+    private final List<String> patterns;
+    /** matcher of each pattern */
+    private final List<PathMatcher> matchers = new ArrayList<>();
+
+    /**
+     * @param patterns patterns to include, null to include everything
+     */
+    SparseCheckout(List<String> patterns) {
+        this.patterns = patterns;
+        if (patterns != null) {
+            for (String pattern: patterns) {
+                String glob = pattern.endsWith("/") ? pattern + "**" : pattern;
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+            }
+        }
+    }
+
+    /**
+     * @param file patterns file
+     * @return the patterns in file, or sparse checkout off if there is no file
+     */
+    static SparseCheckout read(File file) {
+        if (!file.isFile()) {
+            return new SparseCheckout(null);
+        }
+        List<String> patterns = new ArrayList<>();
+        for (String line: Utils.readContentsAsString(file).split("\n")) {
+            if (!line.isBlank()) {
+                patterns.add(line.strip());
+            }
+        }
+        return new SparseCheckout(patterns);
+    }
+
+    /**
+     * save the patterns, or remove the file if sparse checkout is off
+     * @param file patterns file
+     */
+    void write(File file) {
+        if (patterns == null) {
+            file.delete();
+        } else {
+            Utils.writeContents(file, patterns.isEmpty() ? "" : String.join("\n", patterns) + "\n");
+        }
+    }
+
+    /** @return true if only some files are included */
+    boolean isEnabled() {
+        return patterns != null;
+    }
+
+    /** @return the patterns, empty if sparse checkout is off */
+    List<String> patterns() {
+        return patterns == null ? Collections.emptyList() : patterns;
+    }
+
+    /**
+     * @param name tracked file name
+     * @return true if the file belongs in the working directory
+     */
+    boolean includes(String name) {
+        if (patterns == null) {
+            return true;
+        }
+        for (PathMatcher matcher: matchers) {
+            if (matcher.matches(Paths.get(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -7,10 +7,13 @@ import java.util.TreeMap;
  *  @author Ishika Prashar
  */
 public class Stage implements Serializable {
+    /** the one the JVM derived for the first Stage, whose maps held hex
+     *  Strings. a staging area of that time is read by LegacyFormat. */
+    private static final long serialVersionUID = -3154431519242789691L;
     /**map file name to its blob shah1 for add*/
-    private TreeMap<String, String> addBlob;
+    private TreeMap<String, ObjectId> addBlob;
     /**map file name to its blob shah1 for remove*/
-    private TreeMap<String, String> removeBlob;
+    private TreeMap<String, ObjectId> removeBlob;
 
 
     /**
@@ -25,7 +28,7 @@ public class Stage implements Serializable {
      * acess add stage
      * @return map of staging area
      */
-    public TreeMap<String, String> getAddBlob() {
+    public TreeMap<String, ObjectId> getAddBlob() {
         return addBlob;
     }
 
@@ -33,7 +36,7 @@ public class Stage implements Serializable {
      * access remove stage
      * @return map of staging area for removal
      */
-    public TreeMap<String, String> getRemoveBlob() {
+    public TreeMap<String, ObjectId> getRemoveBlob() {
         return removeBlob;
     }
 
@@ -0,0 +1,93 @@
+package gitlet;
+import java.util.Collections;
+import java.util.List;
+
+/** What status reports: the branches, the staging area, and how the working
+ *  directory differs from it and the head commit. each list is sorted.
+ *  toString gives the report as the status command prints it.
+ *  @author Ishika Prashar
+ */
+public final class StatusResult {
+    /** local branch names */
+    private final List<String> branches;
+    /** current branch name */
+    private final String currentBranch;
+    /** files staged for addition */
+    private final List<String> staged;
+    /** files staged for removal */
+    private final List<String> removed;
+    /** changed files not staged, each followed by (modified) or (deleted) */
+    private final List<String> modified;
+    /** files neither staged nor tracked */
+    private final List<String> untracked;
+
+    /**
+     * @param branches local branch names
+     * @param currentBranch current branch name
+     * @param staged files staged for addition
+     * @param removed files staged for removal
+     * @param modified changed files not staged, with (modified) or (deleted)
+     * @param untracked files neither staged nor tracked
+     */
+    StatusResult(List<String> branches, String currentBranch, List<String> staged,
+                 List<String> removed, List<String> modified, List<String> untracked) {
+        this.branches = Collections.unmodifiableList(branches);
+        this.currentBranch = currentBranch;
+        this.staged = Collections.unmodifiableList(staged);
+        this.removed = Collections.unmodifiableList(removed);
+        this.modified = Collections.unmodifiableList(modified);
+        this.untracked = Collections.unmodifiableList(untracked);
+    }
+
+    /** @return local branch names */
+    public List<String> getBranches() {
+        return branches;
+    }
+
+    /** @return current branch name */
+    public String getCurrentBranch() {
+        return currentBranch;
+    }
+
+    /** @return files staged for addition */
+    public List<String> getStaged() {
+        return staged;
+    }
+
+    /** @return files staged for removal */
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    /** @return changed files not staged, each followed by (modified) or (deleted) */
+    public List<String> getModified() {
+        return modified;
+    }
+
+    /** @return files neither staged nor tracked */
+    public List<String> getUntracked() {
+        return untracked;
+    }
+
+    @Override
+    public String toString() {
+        String output = "=== Branches ===" + "\n";
+        for (String branch: branches) {
+            output = output + (branch.equals(currentBranch) ? "*" : "") + branch + "\n";
+        }
+        output = output + "\n" + "=== Staged Files ===" + "\n" + lines(staged);
+        output = output + "\n" + "=== Removed Files ===" + "\n" + lines(removed);
+        output = output + "\n" + "=== Modifications Not Staged For Commit ===" + "\n"
+                + lines(modified);
+        return output + "\n" + "=== Untracked Files ===" + "\n" + lines(untracked);
+    }
+
+    /** @return names, one per line */
+    private static String lines(List<String> names) {
+        StringBuilder out = new StringBuilder();
+        for (String name: names) {
+            out.append(name).append('\n');
+        }
+        return out.toString();
+    }
+}
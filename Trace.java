@@ -0,0 +1,342 @@
+package gitlet;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Per command instrumentation of the I/O and hashing done through Utils.
+ *  records wall time of the command and, for each kind of operation, how
+ *  many were done, how many bytes they moved and how long they took, plus
+ *  directory listings, cache hits and object writes skipped because the
+ *  object was already stored. the counts belong to a Trace made by begin
+ *  and ended by close, so each command, or each library call wrapped in
+ *  one, gets its own report. the hooks in Utils cannot tell which command
+ *  an operation is for, so one command is traced at a time in a JVM and
+ *  begin fails while another is. the command line turns tracing on with a
+ *  leading --trace or --trace=json argument or the GITLET_TRACE=text|json
+ *  environment variable, which print a report to stderr when the command
+ *  ends, and whenever a JDK Flight Recorder recording is running, which gets
+ *  gitlet.Command and gitlet.Io events. when no command is traced every hook
+ *  is a single static field test.
+ *  @author Ishika Prashar
+ */
+public final class Trace implements AutoCloseable {
+
+    /** Kinds of traced operations. for LIST_DIR the bytes recorded are
+     *  the number of names listed. */
+    enum Op {
+        READ_OBJECT("readObject"),
+        WRITE_OBJECT("writeObject"),
+        READ_CONTENTS("readContents"),
+        WRITE_CONTENTS("writeContents"),
+        SERIALIZE("serialize"),
+        SHA1("sha1"),
+        LIST_DIR("plainFilenamesIn");
+
+        /** name used in reports */
+        private final String label;
+
+        Op(String label) {
+            this.label = label;
+        }
+    }
+
+    /** "text" or "json" for a report on stderr from the command line, or null */
+    private static String format;
+    /** command being traced, or null */
+    private static volatile Trace current;
+
+    /** number, bytes and nanoseconds of each kind of operation */
+    private final LongAdder[] counts = adders();
+    private final LongAdder[] bytes = adders();
+    private final LongAdder[] nanos = adders();
+    /** lookups answered from a cache */
+    private final LongAdder cacheHits = new LongAdder();
+    /** number and bytes of object writes skipped as the object was stored */
+    private final LongAdder dedupCount = new LongAdder();
+    private final LongAdder dedupBytes = new LongAdder();
+
+    /** command traced */
+    private final String command;
+    /** System.nanoTime() when it started */
+    private final long commandStart;
+    /** nanoseconds it took, set by close */
+    private long wall;
+    /** true if a flight recording was running when it started */
+    private final boolean jfr;
+    /** flight recorder event of the command, or null */
+    private final CommandEvent commandEvent;
+    /** "text" or "json" to print a report on stderr when closed, or null */
+    private final String report;
+
+    /**
+     * @param command name of the command
+     * @param report "text" or "json" for a report on stderr, or null
+     */
+    private Trace(String command, String report) {
+        this.command = command;
+        this.report = report;
+        jfr = FlightRecorder.isInitialized()
+                && !FlightRecorder.getFlightRecorder().getRecordings().isEmpty();
+        if (jfr) {
+            commandEvent = new CommandEvent();
+            commandEvent.command = command;
+            commandEvent.begin();
+        } else {
+            commandEvent = null;
+        }
+        commandStart = System.nanoTime();
+    }
+
+    /** @return one adder per Op */
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[Op.values().length];
+        for (int i = 0; i < adders.length; i += 1) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * choose the report the command line prints, as the environment and
+     * arguments ask
+     * @param args command line arguments
+     * @return args without a leading --trace option
+     */
+    static String[] configure(String[] args) {
+        format = System.getenv("GITLET_TRACE");
+        if (args.length > 0 && args[0].startsWith("--trace")) {
+            format = args[0].equals("--trace=json") ? "json" : "text";
+            String[] rest = new String[args.length - 1];
+            System.arraycopy(args, 1, rest, 0, rest.length);
+            args = rest;
+        }
+        if (format != null && !format.equals("json")) {
+            format = "text";
+        }
+        return args;
+    }
+
+    /**
+     * start tracing a command from the command line, if configure or a
+     * flight recording asks for it
+     * @param name name of the command
+     * @return the trace, to be closed when the command ends, or null
+     */
+    static Trace beginCommand(String name) {
+        if (format == null && !(FlightRecorder.isInitialized()
+                && !FlightRecorder.getFlightRecorder().getRecordings().isEmpty())) {
+            return null;
+        }
+        return start(name, format);
+    }
+
+    /**
+     * start counting the operations of a command, such as a call into
+     * Repository, until the returned trace is closed. the counts are read
+     * with toString or toJson after closing.
+     * @param name name of the command
+     * @return the trace
+     * @throws IllegalStateException if another command is being traced
+     */
+    public static Trace begin(String name) {
+        return start(name, null);
+    }
+
+    /**
+     * @param name name of the command
+     * @param report "text" or "json" for a report on stderr, or null
+     * @return the trace, made current
+     */
+    private static synchronized Trace start(String name, String report) {
+        if (current != null) {
+            throw new IllegalStateException("already tracing " + current.command);
+        }
+        current = new Trace(name, report);
+        return current;
+    }
+
+    /** stop counting, send the flight recorder event and print any report */
+    @Override
+    public void close() {
+        synchronized (Trace.class) {
+            if (current != this) {
+                return;
+            }
+            current = null;
+        }
+        wall = System.nanoTime() - commandStart;
+        if (commandEvent != null) {
+            commandEvent.objectsRead = counts[Op.READ_OBJECT.ordinal()].sum();
+            commandEvent.objectsWritten = counts[Op.WRITE_OBJECT.ordinal()].sum();
+            commandEvent.bytesRead = bytes[Op.READ_OBJECT.ordinal()].sum()
+                    + bytes[Op.READ_CONTENTS.ordinal()].sum();
+            commandEvent.bytesWritten = bytes[Op.WRITE_CONTENTS.ordinal()].sum();
+            commandEvent.dirListings = counts[Op.LIST_DIR.ordinal()].sum();
+            commandEvent.cacheHits = cacheHits.sum();
+            commandEvent.bytesDeduplicated = dedupBytes.sum();
+            commandEvent.commit();
+        }
+        if ("json".equals(report)) {
+            System.err.println(toJson());
+        } else if (report != null) {
+            System.err.print(this);
+        }
+    }
+
+    /** @return 0 if no command is traced, else System.nanoTime() to pass to end */
+    static long start() {
+        return current != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * record an operation begun when start returned START
+     * @param op kind of operation
+     * @param start value from start(), 0 if tracing was off
+     * @param moved bytes moved by the operation
+     */
+    static void end(Op op, long start, long moved) {
+        Trace trace = current;
+        if (start == 0 || trace == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        trace.counts[op.ordinal()].increment();
+        trace.bytes[op.ordinal()].add(moved);
+        trace.nanos[op.ordinal()].add(elapsed);
+        if (trace.jfr) {
+            IoEvent event = new IoEvent();
+            event.operation = op.label;
+            event.bytes = moved;
+            event.elapsed = elapsed;
+            event.commit();
+        }
+    }
+
+    /** record a lookup answered from a cache. */
+    static void cacheHit() {
+        Trace trace = current;
+        if (trace != null) {
+            trace.cacheHits.increment();
+        }
+    }
+
+    /**
+     * record an object write skipped because the object was already stored
+     * @param size size of the object
+     */
+    static void deduplicated(long size) {
+        Trace trace = current;
+        if (trace != null) {
+            trace.dedupCount.increment();
+            trace.dedupBytes.add(size);
+        }
+    }
+
+    /** @return report of the command as one line of JSON */
+    public String toJson() {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format(Locale.ROOT, "{\"command\": %s, \"wall_ms\": %.3f, \"ops\": {",
+                quote(command), wall / 1e6));
+        String sep = "";
+        for (Op op: Op.values()) {
+            b.append(sep).append(String.format(Locale.ROOT,
+                    "\"%s\": {\"count\": %d, \"bytes\": %d, \"ms\": %.3f}", op.label,
+                    counts[op.ordinal()].sum(), bytes[op.ordinal()].sum(),
+                    nanos[op.ordinal()].sum() / 1e6));
+            sep = ", ";
+        }
+        b.append(String.format(Locale.ROOT, "}, \"cache_hits\": %d, "
+                + "\"deduplicated\": {\"count\": %d, \"bytes\": %d}}",
+                cacheHits.sum(), dedupCount.sum(), dedupBytes.sum()));
+        return b.toString();
+    }
+
+    /**
+     * @param s any string
+     * @return s as a JSON string, quoted and with quotes, backslashes and
+     *         control characters escaped
+     */
+    static String quote(String s) {
+        StringBuilder b = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i += 1) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c == '\n') {
+                b.append("\\n");
+            } else if (c == '\t') {
+                b.append("\\t");
+            } else if (c < 0x20) {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    /** @return report of the command as a table, one line per kind of operation */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("trace: %s %.3f ms%n", command, wall / 1e6));
+        for (Op op: Op.values()) {
+            if (counts[op.ordinal()].sum() > 0) {
+                out.append(String.format("  %-16s %8d calls %12d bytes %10.3f ms%n", op.label,
+                        counts[op.ordinal()].sum(), bytes[op.ordinal()].sum(),
+                        nanos[op.ordinal()].sum() / 1e6));
+            }
+        }
+        out.append(String.format("  %-16s %8d%n", "cache hits", cacheHits.sum()));
+        if (dedupCount.sum() > 0) {
+            out.append(String.format("  %-16s %8d objs  %12d bytes%n", "deduplicated",
+                    dedupCount.sum(), dedupBytes.sum()));
+        }
+        return out.toString();
+    }
+
+    /** Flight recorder event for one command. */
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    @Description("A gitlet command and the I/O it did")
+    static class CommandEvent extends Event {
+        @Label("Command")
+        String command;
+        @Label("Objects Read")
+        long objectsRead;
+        @Label("Objects Written")
+        long objectsWritten;
+        @Label("Bytes Read")
+        long bytesRead;
+        @Label("Bytes Written")
+        long bytesWritten;
+        @Label("Directory Listings")
+        long dirListings;
+        @Label("Cache Hits")
+        long cacheHits;
+        @Label("Bytes Deduplicated")
+        long bytesDeduplicated;
+    }
+
+    /** Flight recorder event for one traced operation. */
+    @Name("gitlet.Io")
+    @Label("Gitlet I/O")
+    @Category("Gitlet")
+    @Description("One object read or write, hash or directory listing")
+    static class IoEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Bytes")
+        long bytes;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+}
@@ -0,0 +1,40 @@
+package gitlet;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Trace.
+ *  @author Ishika Prashar
+ */
+public class TraceTest {
+    public void testQuotePlainString() {
+        assertEquals("\"commit\"", Trace.quote("commit"));
+    }
+
+    public void testQuoteEscapes() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\te\\u0001\"", Trace.quote("a\"b\\c\nd\te\u0001"));
+    }
+
+    public void testCountsBelongToTheirTrace() {
+        Repository repo = newRepo();
+        Trace trace = Trace.begin("branch");
+        try {
+            repo.branch("other");
+        } finally {
+            trace.close();
+        }
+        String json = trace.toJson();
+        assertTrue(json.startsWith("{\"command\": \"branch\""), json);
+        assertTrue(json.matches(".*\"count\": [1-9].*"), json);
+        Trace later = Trace.begin("nothing");
+        later.close();
+        assertTrue(!later.toJson().matches(".*\"count\": [1-9].*"),
+                "a new trace starts from zero");
+    }
+
+    public void testOneCommandTracedAtATime() {
+        try (Trace trace = Trace.begin("first")) {
+            assertThrows(IllegalStateException.class, () -> Trace.begin("second"));
+        }
+        Trace.begin("after").close();
+    }
+}
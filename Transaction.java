@@ -0,0 +1,277 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/** A group of writes made durable together. new objects and replaced files
+ *  are written to temporary files in the tmp folder of .gitlet, named by the
+ *  transaction, so none is ever mistaken for a ref or an object. then all of
+ *  them are forced to disk at once, then a journal naming every rename and
+ *  ref update, one tab separated line each, is written and forced. from
+ *  that point the transaction has happened: the renames and ref updates are
+ *  applied, their folders forced, and the journal deleted. a process that
+ *  crashes before the journal is written leaves only unused temporary files,
+ *  which the next command deletes; one that crashes after has its journal
+ *  replayed by the next command, see recover.
+ *  @author Ishika Prashar
+ */
+class Transaction {
+    /** prefix of journal file names, followed by the transaction id */
+    private static final String JOURNAL = "journal-";
+    /** folder of temporary files within .gitlet */
+    private static final String TMP = "tmp";
+    /** marks the name of a temporary file made by Utils.replaceContents,
+     *  followed by the id of the process writing it */
+    private static final String TEMP_MARK = ".tmp-";
+    /** transactions begun by this process, to keep temporary names apart */
+    private static int count;
+
+    /** .gitlet directory */
+    private final File gitletDir;
+    /** refs updated */
+    private final Refs refs;
+    /** process id and number of this transaction */
+    private final String id;
+    /** folder of temporary files */
+    private final File tmp;
+    /** temporary file and destination of each rename, in order */
+    private final List<File[]> renames = new ArrayList<>();
+    /** files already written outside the transaction to force with it */
+    private final List<File> synced = new ArrayList<>();
+    /** new id and id expected before of each ref updated, by name */
+    private final Map<String, ObjectId[]> refUpdates = new LinkedHashMap<>();
+
+    /**
+     * @param gitletDir .gitlet directory of the repository
+     * @param refs refs of the repository
+     */
+    Transaction(File gitletDir, Refs refs) {
+        this.gitletDir = gitletDir;
+        this.refs = refs;
+        synchronized (Transaction.class) {
+            count += 1;
+            id = ProcessHandle.current().pid() + "-" + count;
+        }
+        tmp = tmpFolder(gitletDir);
+    }
+
+    /**
+     * @param gitletDir .gitlet directory of a repository
+     * @return its folder of temporary files, whose names start with the id
+     *         of the process writing them so recover can delete stale ones
+     */
+    static File tmpFolder(File gitletDir) {
+        return join(gitletDir, TMP);
+    }
+
+    /**
+     * write an object unless it is already stored, in which case it is
+     * freshened so gc keeps it
+     * @param dest file of the object
+     * @param contents its contents
+     * @return false if it was already stored
+     */
+    boolean addObject(File dest, byte[] contents) {
+        if (dest.exists()) {
+            freshen(dest);
+            return false;
+        }
+        replace(dest, contents);
+        return true;
+    }
+
+    /**
+     * replace a file, like HEAD or the staging area
+     * @param file file to replace
+     * @param contents its new contents
+     */
+    void replace(File file, byte[] contents) {
+        File temp = join(tmp, id + "-" + renames.size());
+        if (renames.isEmpty()) {
+            tmp.mkdirs();
+        }
+        file.getParentFile().mkdirs();
+        writeContents(temp, contents);
+        renames.add(new File[]{temp, file});
+    }
+
+    /**
+     * force a file written earlier, like a staged blob, with this transaction
+     * @param file file to force
+     */
+    void sync(File file) {
+        synced.add(file);
+    }
+
+    /**
+     * point a ref at a commit once the transaction commits
+     * @param name ref name
+     * @param id commit id
+     */
+    void updateRef(String name, ObjectId id) {
+        refUpdates.put(name, new ObjectId[]{id, refs.resolve(name)});
+    }
+
+    /**
+     * force every written file, record the transaction in the journal, then
+     * apply its renames and ref updates
+     */
+    void commit() {
+        for (File[] rename: renames) {
+            fsync(rename[0]);
+        }
+        for (File file: synced) {
+            fsync(file);
+        }
+        if (!renames.isEmpty()) {
+            fsync(tmp);
+        }
+        StringBuilder entries = new StringBuilder();
+        for (File[] rename: renames) {
+            entries.append("rename\t").append(relative(rename[0])).append('\t')
+                    .append(relative(rename[1])).append('\n');
+        }
+        for (Map.Entry<String, ObjectId[]> ref: refUpdates.entrySet()) {
+            ObjectId[] ids = ref.getValue();
+            entries.append("ref\t").append(ids[0].toHex()).append('\t')
+                    .append(ids[1] == null ? "-" : ids[1].toHex()).append('\t')
+                    .append(ref.getKey()).append('\n');
+        }
+        File journal = join(gitletDir, JOURNAL + id);
+        File temp = new File(journal.getPath() + ".new");
+        writeContents(temp, entries.toString());
+        fsync(temp);
+        move(temp, journal);
+        fsync(gitletDir);
+        apply(journal, false);
+    }
+
+    /**
+     * apply the renames and ref updates of a journal, then delete it
+     * @param journal journal file
+     * @param replay true if replaying after a crash, when ref updates are
+     *               only made if no other writer moved the ref since
+     */
+    private void apply(File journal, boolean replay) {
+        Set<File> folders = new LinkedHashSet<>();
+        List<String[]> refLines = new ArrayList<>();
+        for (String line: readContentsAsString(journal).split("\n")) {
+            String[] fields = line.split("\t", 4);
+            if (fields[0].equals("rename") && fields.length == 3) {
+                File dest = join(gitletDir, fields[2]);
+                move(join(gitletDir, fields[1]), dest);
+                folders.add(dest.getParentFile());
+            } else if (fields[0].equals("ref") && fields.length == 4) {
+                refLines.add(fields);
+            }
+        }
+        for (File folder: folders) {
+            fsync(folder);
+        }
+        for (String[] fields: refLines) {
+            ObjectId id = ObjectId.fromHex(fields[1]);
+            if (replay) {
+                ObjectId expected = fields[2].equals("-") ? null : ObjectId.fromHex(fields[2]);
+                refs.compareAndSwap(fields[3], expected, id);
+            } else {
+                refs.update(fields[3], id);
+            }
+            refs.sync(fields[3]);
+        }
+        journal.delete();
+    }
+
+    /**
+     * replay the journals left by processes that crashed after committing a
+     * transaction but before finishing it, then delete the temporary files
+     * such processes left. journals and files of live processes are left to
+     * them. journals are replayed under the recovery lock, so two commands
+     * starting at once do not both replay one, and a journal gone once the
+     * lock is held was replayed by the other.
+     * @param gitletDir .gitlet directory of the repository
+     * @param refs refs of the repository
+     * @param locks locks of the repository
+     */
+    static void recover(File gitletDir, Refs refs, Locks locks) {
+        String[] names = gitletDir.list((dir, name) -> name.startsWith(JOURNAL)
+                && !name.endsWith(".new") && !alive(name.substring(JOURNAL.length())));
+        if (names == null) {
+            return;
+        }
+        if (names.length > 0) {
+            try (Locks.Held held = locks.recovery()) {
+                for (String name: names) {
+                    File journal = join(gitletDir, name);
+                    if (journal.isFile()) {
+                        new Transaction(gitletDir, refs).apply(journal, true);
+                    }
+                }
+            }
+        }
+        deleteStale(tmpFolder(gitletDir), "");
+        deleteStale(gitletDir, TEMP_MARK);
+        deleteStale(join(gitletDir, "branches"), TEMP_MARK);
+    }
+
+    /**
+     * delete the files in folder whose names hold mark followed by the id of
+     * a process that is no longer running
+     * @param folder folder to clean
+     * @param mark text before the process id, empty if names start with it
+     */
+    private static void deleteStale(File folder, String mark) {
+        String[] names = folder.list();
+        if (names == null) {
+            return;
+        }
+        for (String name: names) {
+            int at = mark.isEmpty() ? 0 : name.lastIndexOf(mark);
+            if (at >= 0 && !alive(name.substring(at + mark.length()))) {
+                File file = join(folder, name);
+                if (file.isFile()) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param owner text starting with a process id and a dash
+     * @return true unless it names a process that is not running
+     */
+    private static boolean alive(String owner) {
+        try {
+            long pid = Long.parseLong(owner.split("-", 2)[0]);
+            return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+        } catch (NumberFormatException excp) {
+            return true;
+        }
+    }
+
+    /** @return path of file relative to the .gitlet directory */
+    private String relative(File file) {
+        return gitletDir.toPath().relativize(file.toPath()).toString();
+    }
+
+    /** rename from over to, doing nothing if from was already renamed */
+    private static void move(File from, File to) {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException excp) {
+            return;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package gitlet;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static gitlet.UnitTest.*;
+
+/** Tests of Transaction and its recovery.
+ *  @author Ishika Prashar
+ */
+public class TransactionTest {
+    /** id of a process that is not running */
+    private static final String DEAD = "999999999";
+
+    /** repository under test */
+    private final Repository repo = newRepo();
+    /** its .gitlet directory */
+    private final File gitlet = repo.getGitletDir();
+    /** its branches folder */
+    private final File branches = new File(gitlet, "branches");
+    /** its refs */
+    private final Refs refs = new Refs(branches, new File(gitlet, "packed-refs"),
+            new Locks(new File(gitlet, "locks")));
+
+    /**
+     * @param s text
+     * @return its UTF-8 bytes
+     */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void testCommitRenamesAndUpdatesRefs() {
+        ObjectId id = refs.resolve("master");
+        Transaction tx = new Transaction(gitlet, refs);
+        File file = new File(gitlet, "example");
+        tx.replace(file, bytes("contents"));
+        tx.updateRef("topic", id);
+        assertTrue(!file.exists(), "nothing renamed before commit");
+        String[] during = branches.list();
+        tx.commit();
+        assertEquals("contents", Utils.readContentsAsString(file));
+        assertEquals(id, refs.resolve("topic"));
+        assertEquals(0, new File(gitlet, "tmp").list().length);
+        for (String name: during) {
+            assertTrue(!name.contains(".tmp"), "no temporary file among refs: " + name);
+        }
+    }
+
+    public void testStrayTempFilesAreNotRefsAndAreDeleted() {
+        Utils.writeContents(new File(branches, "current.tmp-" + DEAD + "-1"), "master");
+        Utils.writeContents(new File(branches, "HEAD.tmp-" + DEAD + "-1"), "master");
+        assertEquals(1, refs.list().size());
+        new File(gitlet, "tmp").mkdir();
+        File leftover = new File(gitlet, "tmp/" + DEAD + "-1-0");
+        Utils.writeContents(leftover, "partial");
+        File mine = new File(gitlet, "staging area.tmp-" + ProcessHandle.current().pid() + "-1");
+        Utils.writeContents(mine, "in use");
+        new Repository(gitlet);
+        assertEquals(3, branches.list().length);
+        assertTrue(!leftover.exists(), "temporary file of a dead process deleted");
+        assertTrue(mine.exists(), "temporary file of a live process kept");
+    }
+
+    public void testJournalOfDeadProcessIsReplayed() {
+        ObjectId id = refs.resolve("master");
+        new File(gitlet, "tmp").mkdir();
+        Utils.writeContents(new File(gitlet, "tmp/" + DEAD + "-1-0"), "replayed");
+        Utils.writeContents(new File(gitlet, "journal-" + DEAD + "-1"),
+                "rename\ttmp/" + DEAD + "-1-0\texample\n"
+                + "ref\t" + id.toHex() + "\t-\ttopic\n");
+        new Repository(gitlet);
+        assertEquals("replayed", Utils.readContentsAsString(new File(gitlet, "example")));
+        assertEquals(id, refs.resolve("topic"));
+        assertTrue(!new File(gitlet, "journal-" + DEAD + "-1").exists(), "journal deleted");
+    }
+
+    public void testReplayKeepsRefMovedSince() {
+        ObjectId id = refs.resolve("master");
+        ObjectId other = Utils.hash(Utils.DEFAULT_HASH, "other");
+        refs.update("topic", other);
+        Utils.writeContents(new File(gitlet, "journal-" + DEAD + "-1"),
+                "ref\t" + id.toHex() + "\t-\ttopic\n");
+        new Repository(gitlet);
+        assertEquals(other, refs.resolve("topic"));
+    }
+
+    public void testConcurrentRecoveryReplaysOnce() throws InterruptedException {
+        ObjectId id = refs.resolve("master");
+        for (int round = 0; round < 20; round += 1) {
+            Utils.writeContents(new File(gitlet, "journal-" + DEAD + "-" + round),
+                    "ref\t" + id.toHex() + "\t-\tround" + round + "\n");
+            List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i += 1) {
+                Thread t = new Thread(() -> {
+                    try {
+                        new Repository(gitlet);
+                    } catch (RuntimeException excp) {
+                        errors.add(excp);
+                    }
+                });
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t: threads) {
+                t.join();
+            }
+            assertEquals(List.of(), errors);
+            assertEquals(id, refs.resolve("round" + round));
+        }
+    }
+}
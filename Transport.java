@@ -0,0 +1,36 @@
+package gitlet;
+
+/** A connection to a remote repository, used by push, fetch and pull.
+ *  @author Ishika Prashar
+ */
+interface Transport extends AutoCloseable {
+
+    /**
+     * @param branch name of a branch on the remote
+     * @return commit id the branch points at, or null if the remote has no such branch
+     */
+    ObjectId branchHead(String branch);
+
+    /**
+     * copy the commits reachable from want, and their blobs, that local lacks
+     * from the remote into local
+     * @param want commit id local should end up with
+     * @param local repository receiving objects
+     */
+    void fetch(ObjectId want, Repository local);
+
+    /**
+     * copy the commits reachable from id, and their blobs, that the remote lacks
+     * from local into the remote, then move the remote branch from expected to id
+     * @param branch name of branch on the remote
+     * @param expected commit id the remote branch must still hold, null if it must not exist
+     * @param id commit id to move the remote branch to
+     * @param local repository sending objects
+     * @return false if the remote branch was changed by someone else
+     */
+    boolean push(String branch, ObjectId expected, ObjectId id, Repository local);
+
+    /** close the connection. */
+    @Override
+    void close();
+}
@@ -0,0 +1,165 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/** Runs the unit tests. each test class has public no argument methods whose
+ *  names start with test, and each one runs on a fresh instance of its class.
+ *  a test fails by throwing, usually through one of the assertions here.
+ *  temporary directories made by a test are deleted once it finishes.
+ *  kept free of any test library so make check needs nothing but a jdk.
+ *  @author Ishika Prashar
+ */
+public class UnitTest {
+    /** test classes run by main */
+    private static final Class<?>[] TESTS = {
+        ArchiveTest.class,
+        BisectTest.class,
+        BitmapTest.class,
+        BundleTest.class,
+        DiffTest.class,
+        FastImportTest.class,
+        FsckTest.class,
+        LegacyFormatTest.class,
+        MaintenanceTest.class,
+        ManifestTest.class,
+        PathFilterTest.class,
+        RefsTest.class,
+        RepositoryTest.class,
+        ReplayTest.class,
+        ServerTest.class,
+        TransactionTest.class,
+        TraceTest.class,
+    };
+
+    /** temporary directories made by the running test */
+    private static final List<File> TEMP_DIRS = new ArrayList<>();
+
+    /**
+     * run every test and exit with status 1 if any failed
+     * @param args names of test classes to run, all of them if empty
+     */
+    public static void main(String... args) {
+        int run = 0;
+        int failed = 0;
+        for (Class<?> test: TESTS) {
+            if (args.length > 0 && !List.of(args).contains(test.getSimpleName())) {
+                continue;
+            }
+            for (Method method: test.getDeclaredMethods()) {
+                if (!method.getName().startsWith("test")
+                        || !Modifier.isPublic(method.getModifiers())
+                        || method.getParameterCount() != 0) {
+                    continue;
+                }
+                run += 1;
+                String name = test.getSimpleName() + "." + method.getName();
+                try {
+                    method.invoke(test.getDeclaredConstructor().newInstance());
+                } catch (InvocationTargetException excp) {
+                    failed += 1;
+                    System.out.println("FAIL " + name + ": " + excp.getCause());
+                    excp.getCause().printStackTrace(System.out);
+                } catch (ReflectiveOperationException excp) {
+                    failed += 1;
+                    System.out.println("FAIL " + name + ": " + excp);
+                } finally {
+                    for (File dir: TEMP_DIRS) {
+                        delete(dir);
+                    }
+                    TEMP_DIRS.clear();
+                }
+            }
+        }
+        System.out.println(run + " tests, " + failed + " failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * @param condition must be true
+     * @param message reported if it is not
+     */
+    static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * @param expected expected value
+     * @param actual actual value, must equal expected
+     */
+    static void assertEquals(Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError("expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    /** Code run by assertThrows. */
+    interface Body {
+        /** run it
+         * @throws Exception anything
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * @param type exception body must throw
+     * @param body code to run
+     * @return the exception thrown
+     */
+    static <T extends Throwable> T assertThrows(Class<T> type, Body body) {
+        try {
+            body.run();
+        } catch (Throwable excp) {
+            if (type.isInstance(excp)) {
+                return type.cast(excp);
+            }
+            throw new AssertionError("expected " + type.getSimpleName() + " but got " + excp,
+                    excp);
+        }
+        throw new AssertionError("expected " + type.getSimpleName());
+    }
+
+    /**
+     * @return a new empty directory, deleted when the test finishes
+     */
+    static File tempDir() {
+        try {
+            File dir = Files.createTempDirectory("gitlet-test").toFile();
+            TEMP_DIRS.add(dir);
+            return dir;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @return a repository freshly made with init in a new temporary directory
+     */
+    static Repository newRepo() {
+        Repository repo = new Repository(tempDir().getPath());
+        repo.init();
+        return repo;
+    }
+
+    /**
+     * delete a file or a directory and everything under it
+     * @param file file or directory
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child: children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
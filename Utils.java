@@ -1,22 +1,29 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /** Assorted utilities.
@@ -33,28 +40,68 @@ class Utils {
 
     /* SHA-1 HASH VALUES. */
 
-    /** Returns the SHA-1 hash of the concatenation of VALS, which may
-     *  be any mixture of byte arrays and Strings. */
-    static String sha1(Object... vals) {
+    /** Name of the MessageDigest algorithm a repository uses unless it
+     *  names another. */
+    static final String DEFAULT_HASH = "SHA-1";
+
+    /** Digests per thread, by algorithm name, each reset by every use. */
+    private static final Map<String, ThreadLocal<MessageDigest>> DIGESTS =
+        new ConcurrentHashMap<>();
+
+    /** Returns per thread digests for the algorithm NAME. */
+    private static ThreadLocal<MessageDigest> newDigest(String name) {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
+            MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support " + name);
+        }
+        return ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance(name);
+            } catch (NoSuchAlgorithmException excp) {
+                throw new IllegalArgumentException("System does not support " + name);
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+        });
+    }
+
+    /** Throws IllegalArgumentException unless the MessageDigest algorithm
+     *  NAME is supported. */
+    static void checkHashAlgorithm(String name) {
+        DIGESTS.computeIfAbsent(name, Utils::newDigest);
+    }
+
+    /** Returns the id of the concatenation of VALS, which may be any
+     *  mixture of byte arrays and Strings, made with the MessageDigest
+     *  algorithm named ALGORITHM, such as SHA-1 or SHA-256.  Digests
+     *  longer than an ObjectId are truncated, so ids and the object file
+     *  names made from them keep their length.  Each repository names its
+     *  own algorithm, see Repository.hash. */
+    static ObjectId hash(String algorithm, Object... vals) {
+        long start = Trace.start();
+        long length = 0;
+        MessageDigest md = DIGESTS.computeIfAbsent(algorithm, Utils::newDigest).get();
+        md.reset();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+                length += ((byte[]) val).length;
+            } else if (val instanceof String) {
+                byte[] bytes = ((String) val).getBytes(StandardCharsets.UTF_8);
+                md.update(bytes);
+                length += bytes.length;
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
             }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
         }
+        ObjectId id = ObjectId.fromBytes(md.digest(), 0);
+        Trace.end(Trace.Op.SHA1, start, length);
+        return id;
+    }
+
+    /** Returns the SHA-1 hash of the concatenation of VALS, which may
+     *  be any mixture of byte arrays and Strings. */
+    static String sha1(Object... vals) {
+        return hash(DEFAULT_HASH, vals).toHex();
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -97,8 +144,11 @@ class Utils {
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
+        long start = Trace.start();
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] contents = Files.readAllBytes(file.toPath());
+            Trace.end(Trace.Op.READ_CONTENTS, start, contents.length);
+            return contents;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -116,6 +166,8 @@ class Utils {
      *  either a String or a byte array.  Throws IllegalArgumentException
      *  in case of problems. */
     static void writeContents(File file, Object... contents) {
+        long start = Trace.start();
+        long length = 0;
         try {
             if (file.isDirectory()) {
                 throw
@@ -124,28 +176,79 @@ class Utils {
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
             for (Object obj : contents) {
+                byte[] bytes;
                 if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
+                    bytes = (byte[]) obj;
                 } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
+                    bytes = ((String) obj).getBytes(StandardCharsets.UTF_8);
                 }
+                str.write(bytes);
+                length += bytes.length;
             }
             str.close();
+            Trace.end(Trace.Op.WRITE_CONTENTS, start, length);
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
+    /** Replace FILE with the concatenated CONTENTS as writeContents does,
+     *  but through a temporary file named for this process and thread that
+     *  is then renamed over FILE, so readers see either the old or the new
+     *  contents and never a partial write.  Throws IllegalArgumentException
+     *  in case of problems. */
+    static void replaceContents(File file, Object... contents) {
+        File temp = new File(file.getPath() + ".tmp-" + ProcessHandle.current().pid()
+                             + "-" + Thread.currentThread().getId());
+        writeContents(temp, contents);
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Set the last modified time of FILE, a stored object being reused
+     *  instead of written, to now. gc keeps unreachable objects changed
+     *  within its grace period, so an object a running command reuses is not
+     *  deleted before the command makes it reachable. */
+    static void freshen(File file) {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    /** Force the contents of FILE, a plain file or a directory, to the
+     *  storage device.  Directories are forced so renames within them are
+     *  durable; platforms that cannot open a directory skip that.  Throws
+     *  IllegalArgumentException in case of problems with a plain file. */
+    static void fsync(File file) {
+        boolean dir = file.isDirectory();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                dir ? StandardOpenOption.READ : StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!dir) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
+        long start = Trace.start();
         try {
             ObjectInputStream in =
                 new ObjectInputStream(new FileInputStream(file));
             T result = expectedClass.cast(in.readObject());
             in.close();
+            Trace.end(Trace.Op.READ_OBJECT, start, start == 0 ? 0 : file.length());
             return result;
+        } catch (InvalidClassException excp) {
+            throw error("%s is in a repository format this version of gitlet cannot read.",
+                    file);
         } catch (IOException | ClassCastException
                  | ClassNotFoundException excp) {
             throw new IllegalArgumentException(excp.getMessage());
@@ -154,7 +257,10 @@ class Utils {
 
     /** Write OBJ to FILE. */
     static void writeObject(File file, Serializable obj) {
-        writeContents(file, serialize(obj));
+        long start = Trace.start();
+        byte[] contents = serialize(obj);
+        writeContents(file, contents);
+        Trace.end(Trace.Op.WRITE_OBJECT, start, contents.length);
     }
 
     /* DIRECTORIES */
@@ -172,11 +278,13 @@ class Utils {
      *  lexicographic order as Java Strings.  Returns null if DIR does
      *  not denote a directory. */
     static List<String> plainFilenamesIn(File dir) {
+        long start = Trace.start();
         String[] files = dir.list(PLAIN_FILES);
         if (files == null) {
             return null;
         } else {
             Arrays.sort(files);
+            Trace.end(Trace.Op.LIST_DIR, start, files.length);
             return Arrays.asList(files);
         }
     }
@@ -188,6 +296,71 @@ class Utils {
         return plainFilenamesIn(new File(dir));
     }
 
+    /* OBJECT FOLDERS */
+
+    /** Length of the bucket names objects are fanned out into. */
+    static final int FANOUT = 2;
+
+    /** Return the file holding the object ID in the object folder FOLDER,
+     *  FOLDER/ab/cdef... for id abcdef..., or the flat FOLDER/abcdef... of
+     *  an object stored before the folder was fanned out. The bucket folder
+     *  is not created. */
+    static File objectFile(File folder, ObjectId id) {
+        File bucketed = bucketFile(folder, id);
+        if (!bucketed.exists()) {
+            File flat = join(folder, id.toHex());
+            if (flat.exists()) {
+                return flat;
+            }
+        }
+        return bucketed;
+    }
+
+    /** Return FOLDER/ab/cdef..., where a new object with id abcdef... is
+     *  written, without looking at the disk. */
+    static File bucketFile(File folder, ObjectId id) {
+        String hex = id.toHex();
+        return join(folder, hex.substring(0, FANOUT), hex.substring(FANOUT));
+    }
+
+    /** Returns the sorted hex ids of all objects in the object folder
+     *  FOLDER, fanned out or flat. Returns null if FOLDER does not denote
+     *  a directory. */
+    static List<String> objectNamesIn(File folder) {
+        return objectNamesIn(folder, "");
+    }
+
+    /** Returns the sorted hex ids of the objects in the object folder FOLDER
+     *  starting with PREFIX. Only the buckets PREFIX can match are listed.
+     *  Returns null if FOLDER does not denote a directory. */
+    static List<String> objectNamesIn(File folder, String prefix) {
+        long start = Trace.start();
+        String[] top = folder.list();
+        if (top == null) {
+            return null;
+        }
+        String bucketPrefix = prefix.length() > FANOUT ? prefix.substring(0, FANOUT) : prefix;
+        List<String> names = new ArrayList<>();
+        for (String name: top) {
+            if (name.length() == FANOUT && name.startsWith(bucketPrefix)) {
+                String[] bucket = new File(folder, name).list();
+                if (bucket != null) {
+                    for (String rest: bucket) {
+                        String hex = name + rest;
+                        if (hex.startsWith(prefix) && ObjectId.isHex(hex)) {
+                            names.add(hex);
+                        }
+                    }
+                }
+            } else if (name.startsWith(prefix) && ObjectId.isHex(name)) {
+                names.add(name);
+            }
+        }
+        names.sort(null);
+        Trace.end(Trace.Op.LIST_DIR, start, names.size());
+        return names;
+    }
+
     /* OTHER FILE UTILITIES */
 
     /** Return the concatentation of FIRST and OTHERS into a File designator,
@@ -209,17 +382,33 @@ class Utils {
 
     /** Returns a byte array containing the serialized contents of OBJ. */
     static byte[] serialize(Serializable obj) {
+        long start = Trace.start();
         try {
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
             ObjectOutputStream objectStream = new ObjectOutputStream(stream);
             objectStream.writeObject(obj);
             objectStream.close();
+            Trace.end(Trace.Op.SERIALIZE, start, stream.size());
             return stream.toByteArray();
         } catch (IOException excp) {
             throw error("Internal error serializing commit.");
         }
     }
 
+    /** Return an object of type T read from the bytes CONTENTS, casting it
+     *  to EXPECTEDCLASS.  Throws IllegalArgumentException in case of problems. */
+    static <T extends Serializable> T deserialize(byte[] contents, Class<T> expectedClass) {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(contents))) {
+            return expectedClass.cast(in.readObject());
+        } catch (InvalidClassException excp) {
+            throw error("An object is in a repository format this version of gitlet "
+                    + "cannot read.");
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
 
 
     /* MESSAGES AND ERROR REPORTING */
@@ -0,0 +1,297 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** Micro benchmark harness for gitlet commands and the Utils primitives.
+ *  every benchmark is run against a generated repository for each
+ *  combination of file count, file size and history depth, with warmup
+ *  iterations followed by measured ones, in the manner of JMH.
+ *  usage: java gitlet.Benchmark [--files 100,1000] [--size 1024]
+ *         [--depth 10,100] [--warmup 3] [--iterations 10] [--only NAME,...]
+ *         [--csv FILE]
+ *  @author Ishika Prashar
+ */
+public class Benchmark {
+    /** file counts to generate repositories with */
+    private static int[] files = {100, 1000};
+    /** file sizes in bytes */
+    private static int[] sizes = {1024};
+    /** number of commits in generated histories */
+    private static int[] depths = {10, 100};
+    /** unmeasured iterations per benchmark */
+    private static int warmup = 3;
+    /** measured iterations per benchmark */
+    private static int iterations = 10;
+    /** names of benchmarks to run, all if null */
+    private static List<String> only = null;
+    /** file to also write results to as csv, or null */
+    private static String csv = null;
+
+    /** stream commands print to while measured */
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    /** a benchmarked operation, with untimed setup before each call */
+    private interface Case {
+        /** get ready for iteration i */
+        default void setup(Fixture f, int i) {
+        }
+
+        /** the timed part of iteration i */
+        void run(Fixture f, int i);
+    }
+
+    /** names and cases in the order they are run */
+    private static final String[] NAMES = {
+        "add", "commit", "log", "global-log", "find", "status",
+        "checkoutBranch", "reset", "merge", "sha1", "serialize", "readObject",
+    };
+
+    /**
+     * @param name benchmark name
+     * @return the case run under that name
+     */
+    private static Case benchmark(String name) {
+        switch (name) {
+            case "add":
+                return new Case() {
+                    public void setup(Fixture f, int i) {
+                        f.modify(0, i);
+                    }
+                    public void run(Fixture f, int i) {
+                        f.repo.add(f.name(0));
+                    }
+                };
+            case "commit":
+                return new Case() {
+                    public void setup(Fixture f, int i) {
+                        f.modify(0, i);
+                        f.repo.add(f.name(0));
+                    }
+                    public void run(Fixture f, int i) {
+                        f.repo.commit("bench " + i, null);
+                    }
+                };
+            case "log":
+                return (f, i) -> f.repo.log().forEachRemaining(entry -> { });
+            case "global-log":
+                return (f, i) -> f.repo.globalLog();
+            case "find":
+                return (f, i) -> f.repo.find("commit 1");
+            case "status":
+                return (f, i) -> f.repo.status();
+            case "checkoutBranch":
+                return (f, i) -> f.repo.checkoutBranch(i % 2 == 0 ? "other" : "master");
+            case "reset":
+                return (f, i) -> f.repo.reset(i % 2 == 0 ? f.parentId : f.headId);
+            case "merge":
+                return new Case() {
+                    public void setup(Fixture f, int i) {
+                        f.prepareMerge(i);
+                    }
+                    public void run(Fixture f, int i) {
+                        f.repo.merge("merge" + i);
+                    }
+                };
+            case "sha1":
+                return (f, i) -> f.repo.hash(f.contents);
+            case "serialize":
+                return (f, i) -> serialize(f.headCommit);
+            case "readObject":
+                return (f, i) -> readObject(objectFile(join(f.gitlet, "commits"),
+                        ObjectId.fromHex(f.headId)), Commit.class);
+            default:
+                throw error("No benchmark named %s.", name);
+        }
+    }
+
+    /** A generated repository in a temporary directory. */
+    private static class Fixture {
+        /** working directory */
+        private final File dir;
+        /** its .gitlet directory */
+        private final File gitlet;
+        /** repository under test */
+        private final Repository repo;
+        /** number of files */
+        private final int count;
+        /** contents of a file of the benchmarked size */
+        private final byte[] contents;
+        /** source of file contents */
+        private final Random random = new Random(61);
+        /** head commit id when generated */
+        private String headId;
+        /** its parent */
+        private String parentId;
+        /** head commit when generated */
+        private Commit headCommit;
+
+        /**
+         * init a repository, commit count files of the given size, then make
+         * depth - 1 more commits each changing one file, and a branch named other
+         * whose head changes every tenth file
+         */
+        Fixture(int count, int size, int depth) throws IOException {
+            this.count = count;
+            dir = Files.createTempDirectory("gitlet-bench").toFile();
+            gitlet = join(dir, ".gitlet");
+            repo = new Repository(dir.getPath());
+            contents = new byte[size];
+            repo.init();
+            for (int j = 0; j < count; j += 1) {
+                write(j, 0);
+                repo.add(name(j));
+            }
+            repo.commit("commit 1", null);
+            for (int d = 2; d <= depth; d += 1) {
+                modify(d % count, d);
+                repo.add(name(d % count));
+                repo.commit("commit " + d, null);
+            }
+            repo.branch("other");
+            repo.checkoutBranch("other");
+            for (int j = 0; j < count; j += 10) {
+                modify(j, -1);
+                repo.add(name(j));
+            }
+            repo.commit("other", null);
+            repo.checkoutBranch("master");
+            headId = readContentsAsString(join(gitlet, "branches", "HEAD"));
+            headCommit = readObject(objectFile(join(gitlet, "commits"),
+                    ObjectId.fromHex(headId)), Commit.class);
+            ObjectId parent = headCommit.getParent().get(0);
+            parentId = parent == null ? headId : parent.toHex();
+            random.nextBytes(contents);
+        }
+
+        /** @return name of file j */
+        String name(int j) {
+            return "file" + j + ".txt";
+        }
+
+        /** write version v of file j */
+        void write(int j, int v) {
+            byte[] data = new byte[contents.length];
+            Arrays.fill(data, (byte) ('a' + (j % 26)));
+            byte[] stamp = (j + ":" + v + ":" + random.nextLong() + "\n").getBytes();
+            System.arraycopy(stamp, 0, data, 0, Math.min(stamp.length, data.length));
+            writeContents(join(dir, name(j)), data);
+        }
+
+        /** change the contents of file j */
+        void modify(int j, int v) {
+            write(j, v);
+        }
+
+        /**
+         * make a branch merge + i with one new commit, and a new commit on
+         * master touching a different file, so merging it is a real merge
+         */
+        void prepareMerge(int i) {
+            repo.branch("merge" + i);
+            repo.checkoutBranch("merge" + i);
+            modify(1 % count, i);
+            repo.add(name(1 % count));
+            repo.commit("merge side " + i, null);
+            repo.checkoutBranch("master");
+            modify(2 % count, i);
+            repo.add(name(2 % count));
+            repo.commit("merge main " + i, null);
+        }
+
+        /** delete the repository */
+        void delete() throws IOException {
+            try (var paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * parse a comma separated list of ints
+     */
+    private static int[] ints(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /** run the benchmarks selected by ARGS and print a table of results. */
+    public static void main(String[] args) throws IOException {
+        for (int a = 0; a + 1 < args.length; a += 2) {
+            switch (args[a]) {
+                case "--files" -> files = ints(args[a + 1]);
+                case "--size" -> sizes = ints(args[a + 1]);
+                case "--depth" -> depths = ints(args[a + 1]);
+                case "--warmup" -> warmup = Integer.parseInt(args[a + 1]);
+                case "--iterations" -> iterations = Integer.parseInt(args[a + 1]);
+                case "--only" -> only = Arrays.asList(args[a + 1].split(","));
+                case "--csv" -> csv = args[a + 1];
+                default -> throw error("Unknown option %s.", args[a]);
+            }
+        }
+        PrintStream stdout = System.out;
+        List<String> rows = new ArrayList<>();
+        rows.add("benchmark,files,size,depth,iterations,mean_ms,stddev_ms,min_ms,max_ms");
+        stdout.printf("%-15s %7s %7s %6s %10s %10s %10s%n",
+                "benchmark", "files", "size", "depth", "mean ms", "stddev", "max ms");
+        for (int count: files) {
+            for (int size: sizes) {
+                for (int depth: depths) {
+                    for (String name: NAMES) {
+                        if (only != null && !only.contains(name)) {
+                            continue;
+                        }
+                        double[] times = measure(benchmark(name), count, size, depth);
+                        double mean = Arrays.stream(times).average().orElse(0);
+                        double var = Arrays.stream(times).map(t -> (t - mean) * (t - mean))
+                                .sum() / Math.max(1, times.length - 1);
+                        double min = Arrays.stream(times).min().orElse(0);
+                        double max = Arrays.stream(times).max().orElse(0);
+                        stdout.printf("%-15s %7d %7d %6d %10.3f %10.3f %10.3f%n",
+                                name, count, size, depth, mean, Math.sqrt(var), max);
+                        rows.add(String.format("%s,%d,%d,%d,%d,%.4f,%.4f,%.4f,%.4f", name,
+                                count, size, depth, times.length, mean, Math.sqrt(var), min, max));
+                    }
+                }
+            }
+        }
+        if (csv != null) {
+            Files.write(Path.of(csv), rows);
+        }
+    }
+
+    /**
+     * run one benchmark on a fresh fixture
+     * @return measured times in milliseconds
+     */
+    private static double[] measure(Case c, int count, int size, int depth) throws IOException {
+        Fixture f = new Fixture(count, size, depth);
+        PrintStream stdout = System.out;
+        double[] times = new double[iterations];
+        try {
+            System.setOut(NULL_OUT);
+            for (int i = 0; i < warmup + iterations; i += 1) {
+                c.setup(f, i);
+                long start = System.nanoTime();
+                c.run(f, i);
+                long elapsed = System.nanoTime() - start;
+                if (i >= warmup) {
+                    times[i - warmup] = elapsed / 1e6;
+                }
+            }
+        } finally {
+            System.setOut(stdout);
+            f.delete();
+        }
+        return times;
+    }
+}
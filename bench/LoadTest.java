@@ -0,0 +1,322 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/** End to end load tester. builds a repository from a seeded RepoModel,
+ *  replays a weighted mix of commands against it in process and reports,
+ *  per command, p50/p99/max latency, bytes read and written and peak heap,
+ *  as JSON or CSV so runs can be diffed.
+ *  usage: java gitlet.LoadTest [--seed N] [--commits N] [--files N]
+ *         [--branches N] [--merge-rate P] [--churn N] [--skew S]
+ *         [--binary-ratio P] [--size BYTES] [--ops N] [--mix cmd=weight,...]
+ *         [--format json|csv] [--out FILE] [--dir DIR]
+ *  @author Ishika Prashar
+ */
+public class LoadTest {
+    /** commands the mix can contain */
+    private static final String[] COMMANDS = {
+        "status", "log", "global-log", "find", "add-commit", "checkout", "reset", "diff",
+    };
+    /** default weights of the commands */
+    private static final String DEFAULT_MIX =
+        "status=25,log=10,global-log=5,find=5,add-commit=25,checkout=15,reset=5,diff=10";
+
+    /** model the repository is generated from */
+    private final RepoModel model = new RepoModel();
+    /** number of commands to replay */
+    private int ops = 500;
+    /** weight of each command */
+    private final Map<String, Integer> mix = new LinkedHashMap<>();
+    /** json or csv */
+    private String format = "json";
+    /** file to write the report to, stdout if null */
+    private String out;
+    /** directory to build the repository in, a temporary one if null */
+    private String dir;
+
+    /** repository under test */
+    private Repository repo;
+    /** its working directory */
+    private File workDir;
+    /** random source for the replay */
+    private Random random;
+    /** branch checked out */
+    private String current = "master";
+    /** measurements of each command */
+    private final Map<String, Samples> samples = new LinkedHashMap<>();
+    /** heap memory pools, whose peaks are reset before each command */
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+    /** Measurements of one command. */
+    private static class Samples {
+        /** latencies in nanoseconds */
+        private final List<Long> nanos = new ArrayList<>();
+        /** bytes read by each run, or -1 where not known */
+        private long bytesRead;
+        /** bytes written */
+        private long bytesWritten;
+        /** largest heap in use while it ran */
+        private long peakHeap;
+    }
+
+    /** build and load test a repository as ARGS describe. */
+    public static void main(String[] args) throws IOException {
+        LoadTest test = new LoadTest();
+        test.parse(args);
+        test.run();
+    }
+
+    /** read options from ARGS. */
+    private void parse(String[] args) {
+        parseMix(DEFAULT_MIX);
+        for (int a = 0; a + 1 < args.length; a += 2) {
+            String v = args[a + 1];
+            switch (args[a]) {
+                case "--seed" -> model.seed = Long.parseLong(v);
+                case "--commits" -> model.commits = Integer.parseInt(v);
+                case "--files" -> model.files = Integer.parseInt(v);
+                case "--branches" -> model.branches = Integer.parseInt(v);
+                case "--merge-rate" -> model.mergeRate = Double.parseDouble(v);
+                case "--churn" -> model.churn = Double.parseDouble(v);
+                case "--skew" -> model.skew = Double.parseDouble(v);
+                case "--binary-ratio" -> model.binaryRatio = Double.parseDouble(v);
+                case "--size" -> model.medianSize = Integer.parseInt(v);
+                case "--ops" -> ops = Integer.parseInt(v);
+                case "--mix" -> parseMix(v);
+                case "--format" -> format = v;
+                case "--out" -> out = v;
+                case "--dir" -> dir = v;
+                default -> throw error("Unknown option %s.", args[a]);
+            }
+        }
+    }
+
+    /** replace the mix with the weights in LIST, given as cmd=weight,... */
+    private void parseMix(String list) {
+        mix.clear();
+        for (String item: list.split(",")) {
+            String[] pair = item.split("=");
+            if (!Arrays.asList(COMMANDS).contains(pair[0])) {
+                throw error("Unknown command %s in mix.", pair[0]);
+            }
+            mix.put(pair[0], Integer.parseInt(pair[1]));
+        }
+    }
+
+    /** generate the repository, replay the mix and write the report. */
+    private void run() throws IOException {
+        workDir = dir == null ? Files.createTempDirectory("gitlet-load").toFile() : new File(dir);
+        workDir.mkdirs();
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+        long start = System.nanoTime();
+        repo = model.generate(workDir);
+        long generateNanos = System.nanoTime() - start;
+        random = new Random(model.seed + 1);
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < ops; i += 1) {
+                replay(chooseCommand(), i);
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+        String report = format.equals("csv") ? csv() : json(generateNanos);
+        if (out == null) {
+            System.out.print(report);
+        } else {
+            Files.writeString(Path.of(out), report);
+        }
+    }
+
+    /** @return a command drawn from the mix */
+    private String chooseCommand() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int r = random.nextInt(total);
+        for (Map.Entry<String, Integer> e: mix.entrySet()) {
+            r -= e.getValue();
+            if (r < 0) {
+                return e.getKey();
+            }
+        }
+        throw error("Empty mix.");
+    }
+
+    /**
+     * prepare and run one command, measuring only the command itself
+     * @param command name from the mix
+     * @param i number of this operation
+     */
+    private void replay(String command, int i) {
+        Runnable op;
+        List<String> tracked = plainFilenamesIn(workDir);
+        switch (command) {
+            case "status" -> op = repo::status;
+            case "log" -> op = repo::log;
+            case "global-log" -> op = repo::globalLog;
+            case "find" -> op = () -> repo.find("initial commit");
+            case "add-commit" -> {
+                String name = tracked.get(random.nextInt(tracked.size()));
+                writeContents(join(workDir, name), "load " + i + " " + random.nextLong() + "\n");
+                op = () -> {
+                    repo.add(name);
+                    repo.commit("load " + i, null);
+                };
+            }
+            case "checkout" -> {
+                List<String> others = new ArrayList<>(model.branchNames());
+                others.remove(current);
+                if (others.isEmpty()) {
+                    return;
+                }
+                String branch = others.get(random.nextInt(others.size()));
+                current = branch;
+                op = () -> repo.checkoutBranch(branch);
+            }
+            case "reset" -> {
+                String head = repo.branchHead(current).toHex();
+                op = () -> repo.reset(head);
+            }
+            case "diff" -> {
+                ObjectId head = repo.branchHead(current);
+                ObjectId parent = repo.readCommit(head).getParent().get(0);
+                if (parent == null) {
+                    return;
+                }
+                op = () -> repo.diff(new String[]{"diff", parent.toHex(), head.toHex()});
+            }
+            default -> throw error("Unknown command %s.", command);
+        }
+        measure(command, op);
+    }
+
+    /** run OP and record its latency, I/O and peak heap under COMMAND. */
+    private void measure(String command, Runnable op) {
+        Samples s = samples.computeIfAbsent(command, k -> new Samples());
+        for (MemoryPoolMXBean pool: heapPools) {
+            pool.resetPeakUsage();
+        }
+        long[] ioBefore = processIo();
+        long start = System.nanoTime();
+        op.run();
+        long elapsed = System.nanoTime() - start;
+        long[] ioAfter = processIo();
+        long peak = 0;
+        for (MemoryPoolMXBean pool: heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        s.nanos.add(elapsed);
+        if (ioBefore == null || ioAfter == null || s.bytesRead < 0) {
+            s.bytesRead = -1;
+            s.bytesWritten = -1;
+        } else {
+            s.bytesRead += ioAfter[0] - ioBefore[0];
+            s.bytesWritten += ioAfter[1] - ioBefore[1];
+        }
+        s.peakHeap = Math.max(s.peakHeap, peak);
+    }
+
+    /**
+     * @return bytes read and written by this process so far, from /proc/self/io,
+     * or null where that is not available
+     */
+    private static long[] processIo() {
+        File io = new File("/proc/self/io");
+        if (!io.canRead()) {
+            return null;
+        }
+        long[] result = new long[2];
+        for (String line: readContentsAsString(io).split("\n")) {
+            if (line.startsWith("rchar:")) {
+                result[0] = Long.parseLong(line.substring(6).trim());
+            } else if (line.startsWith("wchar:")) {
+                result[1] = Long.parseLong(line.substring(6).trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param sorted latencies in ascending order
+     * @param p percentile in (0, 1]
+     * @return nearest rank percentile in milliseconds
+     */
+    private static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, rank)] / 1e6;
+    }
+
+    /** @return report as a CSV table with one row per command */
+    private String csv() {
+        StringBuilder b = new StringBuilder("command,count,p50_ms,p99_ms,max_ms,"
+                + "bytes_read_per_op,bytes_written_per_op,peak_heap_bytes\n");
+        for (Map.Entry<String, Samples> e: samples.entrySet()) {
+            long[] sorted = sortedNanos(e.getValue());
+            Samples s = e.getValue();
+            b.append(String.format("%s,%d,%.3f,%.3f,%.3f,%d,%d,%d%n", e.getKey(), sorted.length,
+                    percentile(sorted, 0.5), percentile(sorted, 0.99),
+                    percentile(sorted, 1.0), perOp(s.bytesRead, sorted.length),
+                    perOp(s.bytesWritten, sorted.length), s.peakHeap));
+        }
+        return b.toString();
+    }
+
+    /** @return report as a JSON document with the model and one entry per command */
+    private String json(long generateNanos) {
+        StringBuilder b = new StringBuilder("{\n");
+        b.append(String.format("  \"model\": {\"seed\": %d, \"commits\": %d, \"files\": %d, "
+                + "\"branches\": %d, \"merge_rate\": %s, \"churn\": %s, \"skew\": %s, "
+                + "\"binary_ratio\": %s, \"median_size\": %d},%n", model.seed, model.commits,
+                model.files, model.branches, model.mergeRate, model.churn, model.skew,
+                model.binaryRatio, model.medianSize));
+        b.append(String.format("  \"generate_ms\": %.1f,%n", generateNanos / 1e6));
+        b.append(String.format("  \"ops\": %d,%n", ops));
+        b.append("  \"commands\": [");
+        String sep = "\n";
+        for (Map.Entry<String, Samples> e: samples.entrySet()) {
+            long[] sorted = sortedNanos(e.getValue());
+            Samples s = e.getValue();
+            b.append(sep).append(String.format("    {\"command\": \"%s\", \"count\": %d, "
+                    + "\"p50_ms\": %.3f, \"p99_ms\": %.3f, \"max_ms\": %.3f, "
+                    + "\"bytes_read_per_op\": %d, \"bytes_written_per_op\": %d, "
+                    + "\"peak_heap_bytes\": %d}", e.getKey(), sorted.length,
+                    percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 1.0),
+                    perOp(s.bytesRead, sorted.length), perOp(s.bytesWritten, sorted.length),
+                    s.peakHeap));
+            sep = ",\n";
+        }
+        b.append("\n  ]\n}\n");
+        return b.toString();
+    }
+
+    /** @return latencies of S in ascending order */
+    private static long[] sortedNanos(Samples s) {
+        long[] sorted = s.nanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /** @return TOTAL divided over COUNT operations, or -1 if unknown */
+    private static long perOp(long total, int count) {
+        return total < 0 ? -1 : total / count;
+    }
+}
@@ -0,0 +1,221 @@
+package gitlet;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/** Seeded model of a repository's history, used to generate realistic
+ *  repositories for load testing. history grows on master and a set of
+ *  feature branches, features are merged back into master, and each commit
+ *  changes a few files picked with a power law skew so a small set of hot
+ *  files churns much more than the rest. files are a mix of text and binary
+ *  with log-normally distributed sizes. the repository is built through the
+ *  ordinary commands, so it has exactly the layout gitlet itself writes.
+ *  @author Ishika Prashar
+ */
+class RepoModel {
+    /** seed of the random source, the same seed builds the same history */
+    long seed = 61;
+    /** commits to make after the initial one */
+    int commits = 1000;
+    /** files in the first commit */
+    int files = 100;
+    /** feature branches besides master */
+    int branches = 4;
+    /** chance that a step on master is a merge of a feature branch */
+    double mergeRate = 0.1;
+    /** mean number of files changed per commit */
+    double churn = 3;
+    /** power law exponent for picking files, 1 is uniform, higher is more skewed */
+    double skew = 3;
+    /** fraction of files that are binary */
+    double binaryRatio = 0.1;
+    /** median file size in bytes */
+    int medianSize = 2048;
+
+    /** chances that a changed file is added or removed instead of modified */
+    private static final double ADD_RATE = 0.1;
+    private static final double REMOVE_RATE = 0.05;
+    /** words text files are made of */
+    private static final String[] WORDS = {
+        "commit", "branch", "merge", "blob", "tree", "stage", "head", "log",
+        "remote", "fetch", "push", "reset", "split", "point", "file", "id",
+    };
+
+    /** random source of the model */
+    private Random random;
+    /** repository being built */
+    private Repository repo;
+    /** its working directory */
+    private File dir;
+    /** next new file number */
+    private int nextFile;
+    /** names of the feature branches */
+    private final List<String> features = new ArrayList<>();
+    /** whether each feature has commits master has not merged */
+    private boolean[] featureAhead;
+    /** whether master has commits since each feature was last merged or branched */
+    private boolean[] masterAhead;
+    /** branch checked out */
+    private String current = "master";
+    /** files added or changed by the commit being made, which must not be removed */
+    private final Set<String> touched = new HashSet<>();
+
+    /**
+     * build a repository following this model in dir, which must not have one yet
+     * @param workDir working directory to build in
+     * @return the repository, left on master
+     */
+    Repository generate(File workDir) {
+        dir = workDir;
+        random = new Random(seed);
+        repo = new Repository(dir.getPath());
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            repo.init();
+            for (int i = 0; i < files; i += 1) {
+                addFile();
+            }
+            repo.commit("initial files", null);
+            featureAhead = new boolean[branches];
+            masterAhead = new boolean[branches];
+            for (int b = 0; b < branches; b += 1) {
+                features.add("feature" + b);
+                repo.branch("feature" + b);
+            }
+            for (int c = 1; c < commits; c += 1) {
+                step(c);
+            }
+            switchTo("master");
+        } finally {
+            System.setOut(stdout);
+        }
+        return repo;
+    }
+
+    /** @return names of all branches the model made */
+    List<String> branchNames() {
+        List<String> names = new ArrayList<>(features);
+        names.add(0, "master");
+        return names;
+    }
+
+    /**
+     * make commit c, either on master, a merge of a feature into master, or on a feature
+     */
+    private void step(int c) {
+        int b = branches == 0 ? -1 : random.nextInt(branches);
+        boolean onMaster = b < 0 || random.nextBoolean();
+        if (onMaster && b >= 0 && featureAhead[b] && masterAhead[b]
+                && random.nextDouble() < mergeRate * 2) {
+            switchTo("master");
+            repo.merge(features.get(b));
+            featureAhead[b] = false;
+            masterAhead[b] = false;
+            return;
+        }
+        switchTo(onMaster ? "master" : features.get(b));
+        int changes = 1 + poisson(churn - 1);
+        touched.clear();
+        for (int i = 0; i < changes; i += 1) {
+            change();
+        }
+        repo.commit("commit " + c, null);
+        if (onMaster) {
+            for (int f = 0; f < branches; f += 1) {
+                masterAhead[f] = true;
+            }
+        } else {
+            featureAhead[b] = true;
+        }
+    }
+
+    /** check out branch if it is not current */
+    private void switchTo(String branch) {
+        if (!current.equals(branch)) {
+            repo.checkoutBranch(branch);
+            current = branch;
+        }
+    }
+
+    /** modify, add or remove one file of the working tree, and stage it */
+    private void change() {
+        List<String> tracked = plainFilenamesIn(dir);
+        double kind = random.nextDouble();
+        if (tracked.isEmpty() || kind < ADD_RATE) {
+            addFile();
+            return;
+        }
+        String name = tracked.get(pick(tracked.size()));
+        if (kind < ADD_RATE + REMOVE_RATE && tracked.size() > 1 && !touched.contains(name)) {
+            repo.rm(name);
+        } else {
+            writeContents(join(dir, name), contents(name.endsWith(".bin")));
+            repo.add(name);
+            touched.add(name);
+        }
+    }
+
+    /** write and stage a new file */
+    private void addFile() {
+        boolean binary = random.nextDouble() < binaryRatio;
+        String name = "f" + nextFile + (binary ? ".bin" : ".txt");
+        nextFile += 1;
+        writeContents(join(dir, name), contents(binary));
+        repo.add(name);
+        touched.add(name);
+    }
+
+    /**
+     * @param n number of choices
+     * @return index in [0, n) picked with the model's skew towards low indices
+     */
+    private int pick(int n) {
+        return Math.min(n - 1, (int) (n * Math.pow(random.nextDouble(), skew)));
+    }
+
+    /**
+     * @param mean mean of distribution
+     * @return poisson distributed count
+     */
+    private int poisson(double mean) {
+        double limit = Math.exp(-Math.max(0, mean));
+        double p = random.nextDouble();
+        int k = 0;
+        while (p > limit) {
+            p *= random.nextDouble();
+            k += 1;
+        }
+        return k;
+    }
+
+    /**
+     * @param binary true for binary contents
+     * @return new file contents with a log-normally distributed size
+     */
+    private byte[] contents(boolean binary) {
+        int size = Math.max(1, (int) (medianSize * Math.exp(random.nextGaussian())));
+        if (binary) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            data[0] = 0;
+            return data;
+        }
+        StringBuilder text = new StringBuilder(size + 16);
+        while (text.length() < size) {
+            for (int w = 0; w < 8; w += 1) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            text.append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}